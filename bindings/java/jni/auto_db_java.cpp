@@ -24,6 +24,7 @@
 
 #include <algorithm>
 #include <sstream>
+#include <system_error>
 
 using std::stringstream;
 using std::for_each;
@@ -51,6 +52,11 @@ TskAutoDbJava::TskAutoDbJava()
     m_addUnallocSpace = false;
     m_minChunkSize = -1;
     m_maxChunkSize = -1;
+    m_fsWalkThreads = 1;
+    m_fsWalkParent = NULL;
+    m_fsWalkQueueClosed = false;
+    m_fileBatchCount = 0;
+    m_fileBatchLastPathOffset = -1;
 
     m_jniEnv = NULL;
 
@@ -59,6 +65,19 @@ TskAutoDbJava::TskAutoDbJava()
 
 TskAutoDbJava::~TskAutoDbJava()
 {
+    // Normally the workers are done by now (see finishFsWalks()), but make
+    // sure none of them outlives this object
+    m_stopped = true;
+    {
+        std::lock_guard<std::mutex> guard(m_fsWalkMutex);
+        m_fsWalkQueue.clear();
+        m_fsWalkQueueClosed = true;
+    }
+    m_fsWalkCond.notify_all();
+    for (size_t i = 0; i < m_fsWalkWorkers.size(); i++) {
+        m_fsWalkWorkers[i].join();
+    }
+
     closeImage();
     tsk_deinit_lock(&m_curDirPathLock);
 }
@@ -73,6 +92,11 @@ TskAutoDbJava::initializeJni(JNIEnv * jniEnv, jobject jobj) {
     m_jniEnv = jniEnv;
     m_javaDbObj = m_jniEnv->NewGlobalRef(jobj);
 
+    // Needed to attach the file system walk worker threads
+    if (m_jniEnv->GetJavaVM(&m_javaVm) != JNI_OK) {
+        return TSK_ERR;
+    }
+
     jclass localCallbackClass = m_jniEnv->FindClass("org/sleuthkit/datamodel/TskCaseDbBridge");
     if (localCallbackClass == NULL) {
         return TSK_ERR;
@@ -110,8 +134,8 @@ TskAutoDbJava::initializeJni(JNIEnv * jniEnv, jobject jobj) {
         return TSK_ERR;
     }
 
-    m_addFileMethodID = m_jniEnv->GetMethodID(m_callbackClass, "addFile", "(JJJIIILjava/lang/String;JJIIIIJJJJJIIILjava/lang/String;Ljava/lang/String;JJJLjava/lang/String;)J");
-    if (m_addFileMethodID == NULL) {
+    m_addFileBatchMethodID = m_jniEnv->GetMethodID(m_callbackClass, "addFileBatch", "(Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;)J");
+    if (m_addFileBatchMethodID == NULL) {
         return TSK_ERR;
     }
 
@@ -457,46 +481,6 @@ void extractExtension(char *name, char *extension) {
     }
 }
 
-/**
-* Convert a sequence of characters to a jstring object.
-* We first convert the character sequence to UTF16 and then
-* use the JNI NewString() method to create the jstring.
-* We do it this way because we encountered data that contained
-* 4 byte (or more) UTF8 encoded characters and the JNI NewStringUTF()
-* method does not handle 4 byte UTF8 encoding.
-*
-* @param input The sequence of characters to be turned into a jstring.
-* @param newJString The new jstring object created from the input.
-* @returns TSK_ERR on error, TSK_OK on success
-*/
-TSK_RETVAL_ENUM TskAutoDbJava::createJString(const char * input, jstring & newJString) {
-    size_t input_len = strlen(input) + 1;
-    UTF16 * utf16_input;
-
-    if ((utf16_input = (UTF16 *)tsk_malloc(input_len * sizeof(UTF16))) == NULL) {
-        return TSK_ERR;
-    }
-
-    UTF8 * source = (UTF8 *)input;
-    UTF16 * target = utf16_input;
-
-    if (tsk_UTF8toUTF16((const UTF8 **)&source, (const UTF8 *)&source[input_len], &target, &target[input_len], TSKlenientConversion) != TSKconversionOK) {
-        free(utf16_input);
-        return TSK_ERR;
-    }
-
-    /*
-     * To determine the length of the new string we we subtract the address
-     * of the start of the UTF16 buffer from the address at the end of the 
-     * UTF16 buffer (target is advanced in the call to the conversion routine
-     * above).
-     */
-    newJString = m_jniEnv->NewString(utf16_input, (target - utf16_input) - 1);
-
-    free(utf16_input);
-    return TSK_OK;
-}
-
 /**
 * Adds a file and its associated slack file to database.
 * Does not learn object ID for new files, and files may
@@ -585,12 +569,6 @@ TskAutoDbJava::addFile(TSK_FS_FILE* fs_file,
         }
     }
 
-    jstring namej;
-    if (createJString(name, namej) != TSK_OK) {
-        free(name);
-        return TSK_ERR;
-    }
-
     // clean up path
     // +2 = space for leading slash and terminating null
     size_t path_len = strlen(path) + 2;
@@ -602,64 +580,36 @@ TskAutoDbJava::addFile(TSK_FS_FILE* fs_file,
     strncpy(escaped_path, "/", path_len);
     strncat(escaped_path, path, path_len - strlen(escaped_path));
 
-    jstring pathj;
-    if (createJString(escaped_path, pathj) != TSK_OK) {
-        free(name);
-        free(escaped_path);
-        return TSK_ERR;
-    }
-
-    // Escaped path is not needed beyond this point so free it.
-    free(escaped_path);
-
-    jstring extj;
-    if (createJString(extension, extj) != TSK_OK) {
-        free(name);
-        return TSK_ERR;
-    }
-
     /* NTFS uses sequence, otherwise we hash the path. We do this to map to the
     * correct parent folder if there are two from the root dir that eventually point to
     * the same folder (one deleted and one allocated) or two hard links. */
-    jlong par_seqj;
+    int64_t par_seq;
     if (TSK_FS_TYPE_ISNTFS(fs_file->fs_info->ftype))
     {
-        par_seqj = fs_file->name->par_seq;
+        par_seq = fs_file->name->par_seq;
     }
     else {
-        par_seqj = -1;
+        par_seq = -1;
     }
     TSK_INUM_T par_meta_addr = fs_file->name->par_addr;
  
-	char *sid_str = NULL;
-	jstring sidj = NULL;	// return null across JNI if sid is not available
-	
-	if (tsk_fs_file_get_owner_sid(fs_file, &sid_str) == 0) {
-		if (createJString(sid_str, sidj) != TSK_OK) {
-			free(sid_str);
-			return TSK_ERR;
-		}
-		free(sid_str);	
+	char *sid_str = NULL;	// sent as null if sid is not available
+	if (tsk_fs_file_get_owner_sid(fs_file, &sid_str) != 0) {
+		sid_str = NULL;
 	}
-		
-    // Add the file to the database
-    jlong ret_val = m_jniEnv->CallLongMethod(m_javaDbObj, m_addFileMethodID,
-        parObjId, fsObjId,
+
+    // Add the file to the batch
+    TSK_RETVAL_ENUM retval = addFileRecord(parObjId, fsObjId,
         dataSourceObjId,
         TSK_DB_FILES_TYPE_FS,
-        type, idx, namej,
+        type, idx, name,
         fs_file->name->meta_addr, (uint64_t)fs_file->name->meta_seq,
         fs_file->name->type, meta_type, fs_file->name->flags, meta_flags,
         size,
-        (unsigned long long)crtime, (unsigned long long)ctime, (unsigned long long) atime, (unsigned long long) mtime,
-        meta_mode, gid, uid, 
-        pathj, extj, 
-        (uint64_t)meta_seq, par_meta_addr, par_seqj, sidj);
-
-    if (ret_val < 0) {
-        free(name);
-        return TSK_ERR;
-    }
+        crtime, ctime, atime, mtime,
+        meta_mode, gid, uid,
+        escaped_path, extension,
+        (uint64_t)meta_seq, par_meta_addr, par_seq, sid_str);
 
     // Add entry for the slack space.
     // Current conditions for creating a slack file:
@@ -668,7 +618,8 @@ TskAutoDbJava::addFile(TSK_FS_FILE* fs_file,
     //   - The allocated size is greater than the initialized file size
     //     See github issue #756 on why initsize and not size.
     //   - The data is not compressed
-    if ((fs_attr != NULL)
+    if ((retval == TSK_OK)
+        && (fs_attr != NULL)
         && ((strlen(name) > 0) && (!TSK_FS_ISDOT(name)))
         && (!(fs_file->meta->flags & TSK_FS_META_FLAG_COMP))
         && (fs_attr->flags & TSK_FS_ATTR_NONRES)
@@ -677,40 +628,167 @@ TskAutoDbJava::addFile(TSK_FS_FILE* fs_file,
         if (strlen(extension) > 0) {
             strncat(extension, "-slack", 6);
         }
-        jstring slackNamej;
-        if (createJString(name, slackNamej) != TSK_OK) {
-            free(name);
-            return TSK_ERR;
-        }
-        jstring slackExtj;
-        if (createJString(extension, slackExtj) != TSK_OK) {
-            free(name);
-            return TSK_ERR;
-        }
         TSK_OFF_T slackSize = fs_attr->nrd.allocsize - fs_attr->nrd.initsize;
 
-        // Add slack file to database
-        jlong ret_val = m_jniEnv->CallLongMethod(m_javaDbObj, m_addFileMethodID,
-            parObjId, fsObjId,
+        // Add slack file to the batch
+        retval = addFileRecord(parObjId, fsObjId,
             dataSourceObjId,
             TSK_DB_FILES_TYPE_SLACK,
-            type, idx, slackNamej,
+            type, idx, name,
             fs_file->name->meta_addr, (uint64_t)fs_file->name->meta_seq,
             TSK_FS_NAME_TYPE_REG, TSK_FS_META_TYPE_REG, fs_file->name->flags, meta_flags,
             slackSize,
-            (unsigned long long)crtime, (unsigned long long)ctime, (unsigned long long) atime, (unsigned long long) mtime,
-            meta_mode, gid, uid, // md5TextPtr, known,
-            pathj, slackExtj, 
-            (uint64_t)meta_seq, par_meta_addr, par_seqj, sidj);
-
-        if (ret_val < 0) {
-            free(name);
-            return TSK_ERR;
-        }
+            crtime, ctime, atime, mtime,
+            meta_mode, gid, uid,
+            escaped_path, extension,
+            (uint64_t)meta_seq, par_meta_addr, par_seq, sid_str);
     }
 
     free(name);
+    free(escaped_path);
+    free(sid_str);
+
+    return retval;
+}
+
+/*
+* File records are sent to TskCaseDbBridge.addFileBatch() in batches instead
+* of one call per file. Each record is a fixed sequence of values in native
+* byte order, and the strings of the batch are stored once in a separate
+* UTF-8 area that the records point into with an offset and a length. The
+* layout must match TskCaseDbBridge.addFileBatch().
+*/
+#define FILE_BATCH_MAX_RECORDS 1000
+#define FILE_BATCH_MAX_STRING_BYTES (1024 * 1024)
+
+static void
+appendInt64(vector<char> & buf, int64_t value) {
+    const char * bytes = (const char *)&value;
+    buf.insert(buf.end(), bytes, bytes + sizeof(value));
+}
+
+static void
+appendInt32(vector<char> & buf, int32_t value) {
+    const char * bytes = (const char *)&value;
+    buf.insert(buf.end(), bytes, bytes + sizeof(value));
+}
+
+/**
+* Add a string to the string area of the file batch and append its offset and
+* length to the current record. A NULL string has a length of -1.
+* @param str The string, may be NULL
+*/
+void
+TskAutoDbJava::appendBatchString(const char * str) {
+    if (str == NULL) {
+        appendInt32(m_fileBatchRecords, 0);
+        appendInt32(m_fileBatchRecords, -1);
+        return;
+    }
+    size_t len = strlen(str);
+    appendInt32(m_fileBatchRecords, (int32_t)m_fileBatchStrings.size());
+    appendInt32(m_fileBatchRecords, (int32_t)len);
+    m_fileBatchStrings.insert(m_fileBatchStrings.end(), str, str + len);
+}
 
+/**
+* Adds a file record to the batch, sending the batch to the database if it
+* is full. Consecutive files in the same folder share the path string.
+* The parameters match TskCaseDbBridge.addFile().
+* @returns TSK_ERR on error, TSK_OK on success
+*/
+TSK_RETVAL_ENUM
+TskAutoDbJava::addFileRecord(int64_t parObjId, int64_t fsObjId, int64_t dataSourceObjId,
+    int fileType, int attrType, int attrId, const char * name,
+    uint64_t metaAddr, uint64_t metaSeq,
+    int dirType, int metaType, int dirFlags, int metaFlags,
+    int64_t size, time_t crtime, time_t ctime, time_t atime, time_t mtime,
+    int mode, int gid, int uid,
+    const char * path, const char * extension,
+    uint64_t seq, uint64_t parMetaAddr, int64_t parSeq, const char * ownerUid)
+{
+    appendInt64(m_fileBatchRecords, parObjId);
+    appendInt64(m_fileBatchRecords, fsObjId);
+    appendInt64(m_fileBatchRecords, dataSourceObjId);
+    appendInt32(m_fileBatchRecords, fileType);
+    appendInt32(m_fileBatchRecords, attrType);
+    appendInt32(m_fileBatchRecords, attrId);
+    appendBatchString(name);
+    appendInt64(m_fileBatchRecords, (int64_t)metaAddr);
+    appendInt64(m_fileBatchRecords, (int64_t)metaSeq);
+    appendInt32(m_fileBatchRecords, dirType);
+    appendInt32(m_fileBatchRecords, metaType);
+    appendInt32(m_fileBatchRecords, dirFlags);
+    appendInt32(m_fileBatchRecords, metaFlags);
+    appendInt64(m_fileBatchRecords, size);
+    appendInt64(m_fileBatchRecords, (int64_t)crtime);
+    appendInt64(m_fileBatchRecords, (int64_t)ctime);
+    appendInt64(m_fileBatchRecords, (int64_t)atime);
+    appendInt64(m_fileBatchRecords, (int64_t)mtime);
+    appendInt32(m_fileBatchRecords, mode);
+    appendInt32(m_fileBatchRecords, gid);
+    appendInt32(m_fileBatchRecords, uid);
+    if ((m_fileBatchLastPathOffset >= 0) && (m_fileBatchLastPath == path)) {
+        appendInt32(m_fileBatchRecords, m_fileBatchLastPathOffset);
+        appendInt32(m_fileBatchRecords, (int32_t)m_fileBatchLastPath.size());
+    }
+    else {
+        m_fileBatchLastPathOffset = (int32_t)m_fileBatchStrings.size();
+        m_fileBatchLastPath = path;
+        appendBatchString(path);
+    }
+    appendBatchString(extension);
+    appendInt64(m_fileBatchRecords, (int64_t)seq);
+    appendInt64(m_fileBatchRecords, (int64_t)parMetaAddr);
+    appendInt64(m_fileBatchRecords, parSeq);
+    appendBatchString(ownerUid);
+    m_fileBatchCount++;
+
+    if ((m_fileBatchCount >= FILE_BATCH_MAX_RECORDS)
+        || (m_fileBatchStrings.size() >= FILE_BATCH_MAX_STRING_BYTES)) {
+        return flushFileBatch();
+    }
+    return TSK_OK;
+}
+
+/**
+* Send the batched file records to the database.
+* @returns TSK_ERR on error (the error will have been set but not registered), TSK_OK on success
+*/
+TSK_RETVAL_ENUM
+TskAutoDbJava::flushFileBatch() {
+    if (m_fileBatchCount == 0) {
+        return TSK_OK;
+    }
+
+    jlong ret_val = -1;
+    jobject recordsj = m_jniEnv->NewDirectByteBuffer(m_fileBatchRecords.data(), m_fileBatchRecords.size());
+    // Every record has a path, so the string area is never empty
+    jobject stringsj = m_jniEnv->NewDirectByteBuffer(m_fileBatchStrings.data(), m_fileBatchStrings.size());
+    if ((recordsj != NULL) && (stringsj != NULL)) {
+        ret_val = m_jniEnv->CallLongMethod(m_javaDbObj, m_addFileBatchMethodID,
+            recordsj, (jint)m_fileBatchCount, stringsj);
+    }
+    if (recordsj != NULL) {
+        m_jniEnv->DeleteLocalRef(recordsj);
+    }
+    if (stringsj != NULL) {
+        m_jniEnv->DeleteLocalRef(stringsj);
+    }
+
+    int batchCount = m_fileBatchCount;
+    m_fileBatchRecords.clear();
+    m_fileBatchStrings.clear();
+    m_fileBatchCount = 0;
+    m_fileBatchLastPath.clear();
+    m_fileBatchLastPathOffset = -1;
+
+    if (ret_val < 0) {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_AUTO_DB);
+        tsk_error_set_errstr("Error adding a batch of %d files to the database", batchCount);
+        return TSK_ERR;
+    }
     return TSK_OK;
 }
 
@@ -975,6 +1053,10 @@ void TskAutoDbJava::setAddUnallocSpace(int64_t minChunkSize, int64_t maxChunkSiz
     m_maxChunkSize = maxChunkSize;
 }
 
+void TskAutoDbJava::setFsWalkThreads(int threads) {
+    m_fsWalkThreads = (threads > 1) ? threads : 1;
+}
+
 /**
  * Adds an image to the database.
  *
@@ -1284,7 +1366,10 @@ TskAutoDbJava::filterFs(TSK_FS_INFO * fs_info)
     TSK_FS_FILE *file_root;
     m_foundStructure = true;
 
-    if (m_poolFound) {
+    if (m_fsWalkParent != NULL) {
+        // This is a worker, the file system was added by the process that queued it
+    }
+    else if (m_poolFound) {
         // there's a pool
         if (TSK_OK != addFsInfo(fs_info, m_curPoolVol, m_curFsId)) {
             registerError();
@@ -1306,6 +1391,15 @@ TskAutoDbJava::filterFs(TSK_FS_INFO * fs_info)
         }
     }
 
+    // Let a worker thread walk the file system. File systems in pools are
+    // opened from the pool volume rather than the image, so they can't be
+    // reopened by a worker and are walked here.
+    if ((m_fsWalkThreads > 1) && (m_fsWalkParent == NULL)
+        && (fs_info->img_info == m_img_info)) {
+        queueFsWalk(fs_info);
+        return TSK_FILTER_SKIP;
+    }
+
 
     // We won't hit the root directory on the walk, so open it now 
     if ((file_root = tsk_fs_file_open(fs_info, NULL, "/")) != NULL) {
@@ -1367,7 +1461,20 @@ uint8_t TskAutoDbJava::addFilesInImgToDb()
             TSK_VS_PART_FLAG_UNALLOC));
 
     uint8_t retVal = 0;
-    if (findFilesInImg()) {
+    uint8_t findRetVal = findFilesInImg();
+
+    // Send the files still in the batch (the unallocated space needs the root folders)
+    if (flushFileBatch() != TSK_OK) {
+        registerError();
+        findRetVal = 1;
+    }
+
+    // Wait for the file systems being walked by worker threads
+    if (finishFsWalks()) {
+        findRetVal = 1;
+    }
+
+    if (findRetVal) {
         // map the boolean return value from findFiles to the three-state return value we use
         // @@@ findFiles should probably return this three-state enum too
         if (m_foundStructure == false) {
@@ -1545,11 +1652,163 @@ TskAutoDbJava::setDatasourceObjId(int64_t img_id)
     m_curImgId = img_id;
 }
 
+/**
+ * Check if the process (or the process that queued this worker) was canceled
+ */
+bool
+TskAutoDbJava::isStopped() const
+{
+    return m_stopped || ((m_fsWalkParent != NULL) && m_fsWalkParent->m_stopped);
+}
+
+/**
+ * Queue a file system that was added to the database to be walked by a
+ * worker thread, starting another worker if there are fewer than allowed.
+ * @param fs_info The file system
+ */
+void
+TskAutoDbJava::queueFsWalk(const TSK_FS_INFO * fs_info)
+{
+    FS_WALK_ITEM item;
+    item.offset = fs_info->offset;
+    item.ftype = fs_info->ftype;
+    item.fsObjId = m_curFsId;
+
+    std::lock_guard<std::mutex> guard(m_fsWalkMutex);
+    m_fsWalkQueue.push_back(item);
+    if (m_fsWalkWorkers.size() < (size_t)m_fsWalkThreads) {
+        try {
+            m_fsWalkWorkers.push_back(std::thread(&TskAutoDbJava::runFsWalkWorker, this));
+        }
+        catch (const std::system_error &) {
+            // The file system stays queued and finishFsWalks() will walk it
+            if (tsk_verbose)
+                tsk_fprintf(stderr, "TskAutoDbJava::queueFsWalk: Error starting worker thread\n");
+        }
+    }
+    m_fsWalkCond.notify_one();
+}
+
+/**
+ * Body of a worker thread. Walks queued file systems until the queue is
+ * closed and empty.
+ */
+void
+TskAutoDbJava::runFsWalkWorker()
+{
+    JNIEnv * jniEnv = NULL;
+    if (m_javaVm->AttachCurrentThread((void **)&jniEnv, NULL) != JNI_OK) {
+        // Leave the queued file systems for the other workers or finishFsWalks()
+        if (tsk_verbose)
+            tsk_fprintf(stderr, "TskAutoDbJava::runFsWalkWorker: Error attaching thread to the JVM\n");
+        return;
+    }
+
+    while (true) {
+        FS_WALK_ITEM item;
+        {
+            std::unique_lock<std::mutex> lock(m_fsWalkMutex);
+            m_fsWalkCond.wait(lock, [this] { return (m_fsWalkQueue.empty() == false) || m_fsWalkQueueClosed; });
+            if (m_fsWalkQueue.empty()) {
+                break;
+            }
+            item = m_fsWalkQueue.front();
+            m_fsWalkQueue.pop_front();
+        }
+        walkQueuedFs(jniEnv, item);
+    }
+
+    m_javaVm->DetachCurrentThread();
+}
+
+/**
+ * Walk a queued file system. The file system is reopened and walked by a
+ * separate TskAutoDbJava that shares this process's callback object, so the
+ * per file state is not shared between threads. Errors are saved to be
+ * registered by finishFsWalks().
+ * @param jniEnv Java environment of the calling thread
+ * @param item The file system to walk
+ */
+void
+TskAutoDbJava::walkQueuedFs(JNIEnv * jniEnv, const FS_WALK_ITEM & item)
+{
+    if (isStopped()) {
+        return;
+    }
+
+    TskAutoDbJava walker;
+    walker.m_fsWalkParent = this;
+    walker.m_javaVm = m_javaVm;
+    walker.m_jniEnv = jniEnv;
+    walker.m_callbackClass = m_callbackClass;
+    walker.m_javaDbObj = m_javaDbObj;
+    walker.m_addFileBatchMethodID = m_addFileBatchMethodID; // The walk only adds files
+    walker.m_curImgId = m_curImgId;
+    walker.m_curFsId = item.fsObjId;
+    walker.m_noFatFsOrphans = m_noFatFsOrphans;
+
+    TSK_FS_INFO * fs_info = tsk_fs_open_img(m_img_info, item.offset, item.ftype);
+    if (fs_info == NULL) {
+        tsk_error_set_errstr2("Error reopening file system at offset %" PRIdOFF, item.offset);
+        walker.registerError();
+    }
+    else {
+        walker.findFilesInFs(fs_info);
+        tsk_fs_close(fs_info);
+    }
+    if (walker.flushFileBatch() != TSK_OK) {
+        walker.registerError();
+    }
+
+    const vector<error_record> errors = walker.getErrorList();
+    if (errors.empty() == false) {
+        std::lock_guard<std::mutex> guard(m_fsWalkMutex);
+        m_fsWalkErrors.insert(m_fsWalkErrors.end(), errors.begin(), errors.end());
+    }
+}
+
+/**
+ * Wait for the worker threads to walk all of the queued file systems and
+ * register the errors they found.
+ * @returns 1 if errors occurred while walking the file systems, 0 otherwise
+ */
+uint8_t
+TskAutoDbJava::finishFsWalks()
+{
+    {
+        std::lock_guard<std::mutex> guard(m_fsWalkMutex);
+        m_fsWalkQueueClosed = true;
+    }
+    m_fsWalkCond.notify_all();
+    for (size_t i = 0; i < m_fsWalkWorkers.size(); i++) {
+        m_fsWalkWorkers[i].join();
+    }
+    m_fsWalkWorkers.clear();
+
+    // Walk anything left behind by workers that could not be started
+    while (m_fsWalkQueue.empty() == false) {
+        FS_WALK_ITEM item = m_fsWalkQueue.front();
+        m_fsWalkQueue.pop_front();
+        walkQueuedFs(m_jniEnv, item);
+    }
+
+    uint8_t retval = m_fsWalkErrors.empty() ? 0 : 1;
+    for (size_t i = 0; i < m_fsWalkErrors.size(); i++) {
+        tsk_error_reset();
+        tsk_error_set_errno(m_fsWalkErrors[i].code);
+        tsk_error_set_errstr("%s", m_fsWalkErrors[i].msg1.c_str());
+        tsk_error_set_errstr2("%s", m_fsWalkErrors[i].msg2.c_str());
+        registerError();
+    }
+    m_fsWalkErrors.clear();
+    return retval;
+}
+
 TSK_RETVAL_ENUM
 TskAutoDbJava::processFile(TSK_FS_FILE * fs_file, const char *path)
 {
     // Check if the process has been canceled
-     if (m_stopped) {
+     if (isStopped()) {
         if (tsk_verbose)
             tsk_fprintf(stderr, "TskAutoDbJava::processFile: Stop request detected\n");
         return TSK_STOP;
@@ -1561,17 +1820,18 @@ TskAutoDbJava::processFile(TSK_FS_FILE * fs_file, const char *path)
      * we at least show $OrphanFiles as status.  The secondary check
      * is to grab the parent folder from files once we return back 
      * into a folder when we are doing our depth-first recursion. */
+    TskAutoDbJava * progress = (m_fsWalkParent != NULL) ? m_fsWalkParent : this;
     if (isDir(fs_file)) {
         m_curDirAddr = fs_file->name->meta_addr;
-        tsk_take_lock(&m_curDirPathLock);
-        m_curDirPath = string(path) + fs_file->name->name;
-        tsk_release_lock(&m_curDirPathLock);
+        tsk_take_lock(&progress->m_curDirPathLock);
+        progress->m_curDirPath = string(path) + fs_file->name->name;
+        tsk_release_lock(&progress->m_curDirPathLock);
     }
     else if (m_curDirAddr != fs_file->name->par_addr) {
         m_curDirAddr = fs_file->name->par_addr;
-        tsk_take_lock(&m_curDirPathLock);
-        m_curDirPath = path;
-        tsk_release_lock(&m_curDirPathLock);
+        tsk_take_lock(&progress->m_curDirPathLock);
+        progress->m_curDirPath = path;
+        tsk_release_lock(&progress->m_curDirPathLock);
     }
 
     /* process the attributes.  The case of having 0 attributes can occur
@@ -23,6 +23,11 @@ using std::map;
 #include <string>
 using std::string;
 
+#include <condition_variable>
+#include <deque>
+#include <mutex>
+#include <thread>
+
 #include "tsk/auto/tsk_auto_i.h"
 #include "tsk/auto/tsk_db.h"
 #include "jni.h"
@@ -95,6 +100,15 @@ class TskAutoDbJava :public TskAuto {
     */
     virtual void setAddUnallocSpace(int64_t minChunkSize, int64_t maxChunkSize);
 
+    /**
+     * Sets the number of file systems that are walked at the same time. 
+     * When more than one, file systems found directly in the image or in a
+     * volume are walked on worker threads while the image is still being
+     * searched for more file systems. Default value is 1.
+     * @param threads The number of file systems to walk at the same time
+     */
+    void setFsWalkThreads(int threads);
+
     uint8_t addFilesInImgToDb();
 
     /**
@@ -138,6 +152,24 @@ class TskAutoDbJava :public TskAuto {
     bool m_foundStructure;  ///< Set to true when we find either a volume or file system
     bool m_attributeAdded; ///< Set to true when an attribute was added by processAttributes
 
+    // Parallel file system walk. File systems found by the main walk are
+    // added to the database and queued, and worker threads walk them with
+    // their own TskAutoDbJava so that the per file state is not shared.
+    typedef struct _FS_WALK_ITEM {
+        TSK_OFF_T offset;
+        TSK_FS_TYPE_ENUM ftype;
+        int64_t fsObjId;
+    } FS_WALK_ITEM;
+
+    int m_fsWalkThreads;    ///< Number of file systems to walk at the same time
+    TskAutoDbJava * m_fsWalkParent; ///< Process that queued the file system if this is a worker, NULL otherwise
+    std::deque<FS_WALK_ITEM> m_fsWalkQueue;
+    bool m_fsWalkQueueClosed;
+    vector<std::thread> m_fsWalkWorkers;
+    vector<error_record> m_fsWalkErrors;
+    std::mutex m_fsWalkMutex;   ///< protects the queue, the closed flag and the errors
+    std::condition_variable m_fsWalkCond;
+
     // These are used to write unallocated blocks for pools at the end of the add image
     // process. We can't load the pool_info objects directly from the database so we will
     // store info about them here.
@@ -145,6 +177,7 @@ class TskAutoDbJava :public TskAuto {
     std::map<int64_t, int64_t> m_poolOffsetToVsId;
 
     // JNI data
+    JavaVM * m_javaVm = NULL;
     JNIEnv * m_jniEnv = NULL;
     jclass m_callbackClass = NULL;
     jobject m_javaDbObj = NULL;
@@ -155,7 +188,7 @@ class TskAutoDbJava :public TskAuto {
     jmethodID m_addVolumeMethodID = NULL;
     jmethodID m_addPoolMethodID = NULL;
     jmethodID m_addFileSystemMethodID = NULL;
-    jmethodID m_addFileMethodID = NULL;
+    jmethodID m_addFileBatchMethodID = NULL;
     jmethodID m_addUnallocParentMethodID = NULL;
     jmethodID m_addLayoutFileMethodID = NULL;
     jmethodID m_addLayoutFileRangeMethodID = NULL;
@@ -169,7 +202,29 @@ class TskAutoDbJava :public TskAuto {
     void saveObjectInfo(int64_t objId, int64_t parObjId, TSK_DB_OBJECT_TYPE_ENUM type);
     TSK_RETVAL_ENUM getObjectInfo(int64_t objId, TSK_DB_OBJECT** obj_info);
 
-    TSK_RETVAL_ENUM createJString(const char * inputString, jstring & newJString);
+    // File records waiting to be sent to the database (see addFileRecord())
+    vector<char> m_fileBatchRecords;
+    vector<char> m_fileBatchStrings;    ///< UTF-8 string area the records point into
+    int m_fileBatchCount;
+    string m_fileBatchLastPath;     ///< Path of the last record, shared by the next record if it is the same
+    int32_t m_fileBatchLastPathOffset;  ///< Offset of m_fileBatchLastPath in the string area, -1 if none
+
+    void appendBatchString(const char * str);
+    TSK_RETVAL_ENUM addFileRecord(int64_t parObjId, int64_t fsObjId, int64_t dataSourceObjId,
+        int fileType, int attrType, int attrId, const char * name,
+        uint64_t metaAddr, uint64_t metaSeq,
+        int dirType, int metaType, int dirFlags, int metaFlags,
+        int64_t size, time_t crtime, time_t ctime, time_t atime, time_t mtime,
+        int mode, int gid, int uid,
+        const char * path, const char * extension,
+        uint64_t seq, uint64_t parMetaAddr, int64_t parSeq, const char * ownerUid);
+    TSK_RETVAL_ENUM flushFileBatch();
+
+    bool isStopped() const;
+    void queueFsWalk(const TSK_FS_INFO * fs_info);
+    void runFsWalkWorker();
+    void walkQueuedFs(JNIEnv * jniEnv, const FS_WALK_ITEM & item);
+    uint8_t finishFsWalks();
 
     // prevent copying until we add proper logic to handle it
     TskAutoDbJava(const TskAutoDbJava&);
@@ -734,6 +734,56 @@ JNIEXPORT jboolean JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbLooku
     return file_known;
 }
 
+/**
+ * Looks up a set of binary hashes in a hash database.
+ * @param env Pointer to Java environment from which this method was called.
+ * @param obj The Java object from which this method was called.
+ * @param hashes A direct buffer with the binary hashes, one after the other.
+ * @param hashCount The number of hashes in the buffer.
+ * @param hashLength The number of bytes in each hash.
+ * @param dbHandle A handle for the hash database.
+ * @return A bitmap with bit i % 8 of byte i / 8 set if hash i is found.
+ */
+JNIEXPORT jbyteArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbLookupBatch
+(JNIEnv * env, jclass obj, jobject hashes, jint hashCount, jint hashLength, jint dbHandle)
+{
+    if ((size_t)dbHandle > hashDbs.size()) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return NULL;
+    }
+
+    TSK_HDB_INFO *db = hashDbs.at(dbHandle-1);
+    if (db == NULL) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return NULL;
+    }
+
+    if ((hashCount < 0) || (hashLength <= 0) || (hashLength > 255)) {
+        setThrowTskCoreError(env, "Invalid hash count or length");
+        return NULL;
+    }
+
+    const uint8_t *cHashes = (const uint8_t *) env->GetDirectBufferAddress(hashes);
+    if ((cHashes == NULL) || 
+        (env->GetDirectBufferCapacity(hashes) < (jlong)hashCount * hashLength)) {
+        setThrowTskCoreError(env, "Invalid hash buffer");
+        return NULL;
+    }
+
+    std::vector<uint8_t> hits((hashCount + 7) / 8);
+    if (tsk_hdb_lookup_raw_batch(db, cHashes, (size_t)hashCount, (uint8_t)hashLength, hits.data()) == -1) {
+        setThrowTskCoreError(env, tsk_error_get_errstr());
+        return NULL;
+    }
+
+    jbyteArray result = env->NewByteArray((jsize)hits.size());
+    if (result == NULL) {
+        return NULL;
+    }
+    env->SetByteArrayRegion(result, 0, (jsize)hits.size(), (const jbyte *)hits.data());
+    return result;
+}
+
 /**
  * Looks up a hash in a hash database.
  * @param env Pointer to Java environment from which this method was called.
@@ -1088,6 +1138,26 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_runAddImgNat(JNIEnv * env,
 }
 
 
+/*
+ * Set the number of file systems the given add-image process walks at the
+ * same time. Must be called before the process is run.
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param process the add-image process created by initAddImgNat
+ * @param threads the number of file systems to walk at the same time
+ */
+JNIEXPORT void JNICALL
+    Java_org_sleuthkit_datamodel_SleuthkitJNI_setFileSystemWalkThreadsNat(JNIEnv * env,
+    jclass obj, jlong process, jint threads) {
+    TskAutoDbJava *tskAuto = ((TskAutoDbJava *) process);
+    if (!tskAuto || tskAuto->m_tag != TSK_AUTO_TAG) {
+        setThrowTskCoreError(env,
+            "setFileSystemWalkThreadsNat: Invalid TskAutoDbJava object passed in");
+        return;
+    }
+    tskAuto->setFsWalkThreads((int) threads);
+}
+
 /*
  * Cancel the given add-image process.
  * @param env pointer to java environment this was called from
@@ -1978,6 +2048,224 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileNat(JNIEnv * env,
 }
 
 
+/** Get the address to read into for a direct java.nio.ByteBuffer.
+ * @param env JNI env
+ * @param jdst Direct buffer to read into
+ * @param dst_offset Position in the buffer to start writing at
+ * @param len Number of bytes requested, reduced to the space remaining in the buffer
+ * @returns Address to write to or NULL on error (and throws exception)
+ */
+static char *
+getDirectBufferRegion(JNIEnv * env, jobject jdst, jint dst_offset, jlong * len)
+{
+    char *addr = (char *) env->GetDirectBufferAddress(jdst);
+    jlong capacity = env->GetDirectBufferCapacity(jdst);
+    if (addr == NULL || capacity < 0) {
+        setThrowTskCoreError(env, "Buffer to read into is not a direct buffer");
+        return NULL;
+    }
+    if (dst_offset < 0 || dst_offset > capacity) {
+        setThrowTskCoreError(env, "Buffer position is out of range");
+        return NULL;
+    }
+    if (*len > capacity - dst_offset) {
+        *len = capacity - dst_offset;
+    }
+    return addr + dst_offset;
+}
+
+/*
+ * Read bytes from the given image directly into a direct buffer
+ * @return number of bytes read from the image, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the pointer to the image object
+ * @param jdst the direct buffer to write to
+ * @param dst_offset the position in the buffer to start writing at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgDirectNat(JNIEnv * env,
+    jclass obj, jlong a_img_info, jobject jdst, jint dst_offset, jlong offset, jlong len)
+{
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    char *buf = getDirectBufferRegion(env, jdst, dst_offset, &len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread =
+        tsk_img_read(img_info, (TSK_OFF_T) offset, buf, (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+        return -1;
+    }
+    return (jint)bytesread;
+}
+
+/*
+ * Read bytes from the given pool directly into a direct buffer
+ * @return number of bytes read from the pool, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_pool_info the pointer to the pool object
+ * @param jdst the direct buffer to write to
+ * @param dst_offset the position in the buffer to start writing at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readPoolDirectNat(JNIEnv * env,
+    jclass obj, jlong a_pool_info, jobject jdst, jint dst_offset, jlong offset, jlong len)
+{
+    TSK_POOL_INFO *pool_info = castPoolInfo(env, a_pool_info);
+    if (pool_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    char *buf = getDirectBufferRegion(env, jdst, dst_offset, &len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread = tsk_pool_read(pool_info, (TSK_DADDR_T)offset, buf,
+        (size_t)len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+        return -1;
+    }
+    return (jint)bytesread;
+}
+
+/*
+ * Read bytes from the given volume directly into a direct buffer
+ * @return number of bytes read from the volume or -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_vol_info the pointer to the volume object
+ * @param jdst the direct buffer to write to
+ * @param dst_offset the position in the buffer to start writing at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readVolDirectNat(JNIEnv * env,
+    jclass obj, jlong a_vol_info, jobject jdst, jint dst_offset, jlong offset, jlong len)
+{
+    TSK_VS_PART_INFO *vol_part_info = castVsPartInfo(env, a_vol_info);
+    if (vol_part_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    char *buf = getDirectBufferRegion(env, jdst, dst_offset, &len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread =
+        tsk_vs_part_read(vol_part_info, (TSK_OFF_T) offset, buf,
+        (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+        return -1;
+    }
+    return (jint)bytesread;
+}
+
+/*
+ * Read bytes from the given file system directly into a direct buffer
+ * @return number of bytes read from the file system, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_fs_info the pointer to the file system object
+ * @param jdst the direct buffer to write to
+ * @param dst_offset the position in the buffer to start writing at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readFsDirectNat(JNIEnv * env,
+    jclass obj, jlong a_fs_info, jobject jdst, jint dst_offset, jlong offset, jlong len)
+{
+    TSK_FS_INFO *fs_info = castFsInfo(env, a_fs_info);
+    if (fs_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    char *buf = getDirectBufferRegion(env, jdst, dst_offset, &len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread =
+        tsk_fs_read(fs_info, (TSK_OFF_T) offset, buf, (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+        return -1;
+    }
+    return (jint)bytesread;
+}
+
+/*
+ * Read bytes from the given file directly into a direct buffer
+ * @return number of bytes read, or -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_file_handle the pointer to the TSK_JNI_FILEHANDLE object
+ * @param jdst the direct buffer to write to
+ * @param dst_offset the position in the buffer to start writing at
+ * @param offset the offset in bytes to start at
+ * @param offset_type whether the offset is from the start of the file or the slack space
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileDirectNat(JNIEnv * env,
+    jclass obj, jlong a_file_handle, jobject jdst, jint dst_offset, jlong offset, jint offset_type, jlong len)
+{
+    const TSK_JNI_FILEHANDLE *file_handle = castJniFileHandle(env, a_file_handle);
+    if (file_handle == 0) {
+        //exception already set
+        return -1;
+    }
+
+    char *buf = getDirectBufferRegion(env, jdst, dst_offset, &len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    TSK_FS_ATTR * tsk_fs_attr = file_handle->fs_attr;
+
+    TSK_FS_FILE_READ_FLAG_ENUM readFlag = TSK_FS_FILE_READ_FLAG_NONE;
+    TSK_OFF_T readOffset = (TSK_OFF_T) offset;
+    if(offset_type == TSK_FS_FILE_READ_OFFSET_TYPE_START_OF_SLACK){
+        readFlag = TSK_FS_FILE_READ_FLAG_SLACK;
+        readOffset += tsk_fs_attr->nrd.initsize;
+    }
+
+    //read attribute
+    ssize_t bytesread = tsk_fs_attr_read(tsk_fs_attr, readOffset, buf, (size_t) len,
+        readFlag);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+        return -1;
+    }
+    return (jint)bytesread;
+}
+
 /**
  * Runs istat on a given file and saves the output to a temp file.
  *
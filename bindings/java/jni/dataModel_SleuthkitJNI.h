@@ -159,6 +159,14 @@ JNIEXPORT jboolean JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbIsIdx
 JNIEXPORT jboolean JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbLookup
   (JNIEnv *, jclass, jstring, jint);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    hashDbLookupBatch
+ * Signature: (Ljava/nio/ByteBuffer;III)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbLookupBatch
+  (JNIEnv *, jclass, jobject, jint, jint, jint);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    hashDbLookupVerbose
@@ -199,6 +207,14 @@ JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_runOpenAndAddIm
 JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_runAddImgNat
   (JNIEnv *, jclass, jlong, jstring, jlong, jlong, jstring, jstring);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    setFileSystemWalkThreadsNat
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_setFileSystemWalkThreadsNat
+  (JNIEnv *, jclass, jlong, jint);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    stopAddImgNat
@@ -319,6 +335,46 @@ JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFsNat
 JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileNat
   (JNIEnv *, jclass, jlong, jbyteArray, jlong, jint, jlong);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readImgDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readPoolDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readPoolDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readVolDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readVolDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readFsDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFsDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readFileDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJIJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jint, jlong);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    saveFileMetaDataTextNat
@@ -71,7 +71,8 @@ public String getName() {
 	/*
 	 * This base implementation simply walks the hierarchy appending its own
 	 * name to the result of calling its parent's getUniquePath() method (with
-	 * interleaving forward slashes).
+	 * interleaving forward slashes). The walk stops at the first parent with a
+	 * unique path in the unique path cache of the case.
 	 */
 	@Override
 	public String getUniquePath() throws TskCoreException {
@@ -83,9 +84,9 @@ public String getUniquePath() throws TskCoreException {
 				tempUniquePath = "/" + getName();
 			}
 
-			Content myParent = getParent();
-			if (myParent != null) {
-				tempUniquePath = myParent.getUniquePath() + tempUniquePath;
+			String parentPath = getParentUniquePath();
+			if (parentPath != null) {
+				tempUniquePath = parentPath + tempUniquePath;
 			}
 
 			// Don't update uniquePath until it is complete.
@@ -94,6 +95,24 @@ public String getUniquePath() throws TskCoreException {
 		return uniquePath;
 	}
 
+	/**
+	 * Gets the unique path of the parent of this content, from the parent
+	 * object if it has already been loaded or else from the unique path cache
+	 * of the case.
+	 *
+	 * @return The unique path of the parent, or null if there is no parent.
+	 *
+	 * @throws TskCoreException if there was an error querying the case
+	 *                          database.
+	 */
+	String getParentUniquePath() throws TskCoreException {
+		Content myParent = parent;
+		if (myParent != null) {
+			return myParent.getUniquePath();
+		}
+		return db.getParentUniquePath(this);
+	}
+
 	@Override
 	public boolean hasChildren() throws TskCoreException {
 		if (checkedHasChildren == true) {
@@ -21,6 +21,7 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
@@ -1020,6 +1021,58 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 		return 0;
 	}
 
+	@Override
+	public final int read(ByteBuffer dst, long offset) throws TskCoreException {
+		if (localPathSet) {
+			if (dst.hasArray()) {
+				// Read straight into the backing array
+				return ByteBufferReads.advancePosition(dst,
+						readLocal(dst.array(), dst.arrayOffset() + dst.position(), offset, dst.remaining()));
+			}
+			return ByteBufferReads.read(dst, offset, this::readLocal);
+		} else {
+			return readInt(dst, offset);
+		}
+	}
+
+	/**
+	 * Whether read(ByteBuffer, long) fills direct buffers in the SleuthKit
+	 * without copying through a Java array.
+	 *
+	 * @return True if direct buffers are filled without a copy.
+	 */
+	boolean readsIntoDirectBuffers() {
+		return !localPathSet && readIntFillsDirectBuffers();
+	}
+
+	/**
+	 * Whether readInt(ByteBuffer, long) fills direct buffers in the SleuthKit.
+	 * Overridden by the child classes that do.
+	 *
+	 * @return True if direct buffers are filled without a copy.
+	 */
+	boolean readIntFillsDirectBuffers() {
+		return false;
+	}
+
+	/**
+	 * Internal custom read (non-local) method into a buffer. Data is written
+	 * starting at the position of the buffer and the position is advanced by
+	 * the number of bytes read. Child classes backed by the SleuthKit override
+	 * this to read directly into direct buffers; the default implementation
+	 * reads through a byte array using readInt(byte[], long, long).
+	 *
+	 * @param dst    buffer to read into, up to its remaining bytes
+	 * @param offset start reading position in the file
+	 *
+	 * @return number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown when file could not be read
+	 */
+	protected int readInt(ByteBuffer dst, long offset) throws TskCoreException {
+		return ByteBufferReads.read(dst, offset, this::readInt);
+	}
+
 	/**
 	 * Local file path read support
 	 *
@@ -1032,6 +1085,22 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 	 * @throws TskCoreException exception thrown when file could not be read
 	 */
 	protected final int readLocal(byte[] buf, long offset, long len) throws TskCoreException {
+		return readLocal(buf, 0, offset, len);
+	}
+
+	/**
+	 * Local file path read support, into any part of a buffer.
+	 *
+	 * @param buf       buffer to read into
+	 * @param bufOffset index in the buffer to start writing at
+	 * @param offset    start reading position in the file
+	 * @param len       number of bytes to read
+	 *
+	 * @return number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown when file could not be read
+	 */
+	private int readLocal(byte[] buf, int bufOffset, long offset, long len) throws TskCoreException {
 		if (!localPathSet) {
 			throw new TskCoreException(
 					BUNDLE.getString("AbstractFile.readLocal.exception.msg1.text"));
@@ -1078,8 +1147,8 @@ protected final int readLocal(byte[] buf, long offset, long len) throws TskCoreE
 				if (curOffset != encodedOffset) {
 					localFileHandle.seek(encodedOffset);
 				}
-				bytesRead = localFileHandle.read(buf, 0, (int) len);
-				for (int i = 0; i < bytesRead; i++) {
+				bytesRead = localFileHandle.read(buf, bufOffset, (int) len);
+				for (int i = bufOffset; i < bufOffset + bytesRead; i++) {
 					buf[i] = EncodedFileUtil.decodeByte(buf[i], encodingType);
 				}
 				return bytesRead;
@@ -1089,8 +1158,7 @@ protected final int readLocal(byte[] buf, long offset, long len) throws TskCoreE
 				if (curOffset != offset) {
 					localFileHandle.seek(offset);
 				}
-				//note, we are always writing at 0 offset of user buffer
-				return localFileHandle.read(buf, 0, (int) len);
+				return localFileHandle.read(buf, bufOffset, (int) len);
 			}
 		} catch (IOException ex) {
 			final String msg = MessageFormat.format(BUNDLE.getString("AbstractFile.readLocal.exception.msg5.text"), localAbsPath);
@@ -1367,6 +1435,7 @@ public void save(CaseDbTransaction transaction) throws TskCoreException {
 		SleuthkitCase.CaseDbConnection connection = transaction.getConnection();
 		try (Statement statement = connection.createStatement()) {
 			connection.executeUpdate(statement, updateSql);
+			transaction.registerUpdatedContent(getId());
 			md5HashDirty = false;
 			sha256HashDirty = false;
 			mimeTypeDirty = false;
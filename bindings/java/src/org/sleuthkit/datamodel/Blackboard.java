@@ -34,6 +34,7 @@
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbTransaction;
 
@@ -77,7 +78,10 @@ public void postArtifact(BlackboardArtifact artifact, String moduleName) throws
 	 * attributes have been added) before being posted. Posting the artifacts
 	 * includes making any events that may be derived from them, and
 	 * broadcasting notifications that the artifacts are ready for further
-	 * analysis.
+	 * analysis. The timeline events made for the artifacts are broadcast in a
+	 * single TskEvent.TimelineEventsAddedTskEvent (see
+	 * TimelineManager.setArtifactEventAddedEventsEnabled() for the per event
+	 * notifications).
 	 *
 	 *
 	 * @param artifacts  The artifacts to be posted .
@@ -89,15 +93,13 @@ public void postArtifact(BlackboardArtifact artifact, String moduleName) throws
 	 */
 	public void postArtifacts(Collection<BlackboardArtifact> artifacts, String moduleName) throws BlackboardException {
 		/*
-		 * For now this just processes them one by one, but in the future it
-		 * could be smarter and use transactions, etc.
+		 * The timeline events for all of the artifacts are added in one
+		 * transaction.
 		 */
-		for (BlackboardArtifact artifact : artifacts) {
-			try {
-				caseDb.getTimelineManager().addArtifactEvents(artifact);
-			} catch (TskCoreException ex) {
-				throw new BlackboardException("Failed to add events for artifact: " + artifact, ex);
-			}
+		try {
+			caseDb.getTimelineManager().addArtifactEvents(artifacts);
+		} catch (TskCoreException ex) {
+			throw new BlackboardException("Failed to add events for artifacts", ex);
 		}
 
 		caseDb.fireTSKEvent(new ArtifactsPostedEvent(artifacts, moduleName));
@@ -323,6 +325,9 @@ private Score deleteAnalysisResult(AnalysisResult analysisResult, CaseDbTransact
 		try {
 			CaseDbConnection connection = transaction.getConnection();
 
+			// the timeline events of the result are deleted by the cascade below
+			caseDb.getTimelineManager().updateEventCounts(connection, "tsk_event_descriptions.artifact_id", Collections.singletonList(analysisResult.getArtifactID()), true);
+
 			// delete the blackboard artifacts row. This will also delete the tsk_analysis_result row
 			String deleteSQL = "DELETE FROM blackboard_artifacts WHERE artifact_obj_id = ?";
 
@@ -386,6 +391,63 @@ public List<AnalysisResult> getAnalysisResultsByType(int artifactTypeId, long da
 		return getAnalysisResultsWhere(" arts.artifact_type_id = " + artifactTypeId + " AND arts.data_source_obj_id = " + dataSourceObjId);
 	}
 
+	/**
+	 * Get all analysis results of given artifact type, optionally loading the
+	 * attributes of all of them with a few queries. Prefetching is much faster
+	 * than letting getAttributes() query the attributes of each result.
+	 *
+	 * @param artifactTypeId     The artifact type id for which to search.
+	 * @param prefetchAttributes Whether to load the attributes now.
+	 *
+	 * @return The list of analysis results.
+	 *
+	 * @throws TskCoreException Exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public List<AnalysisResult> getAnalysisResultsByType(int artifactTypeId, boolean prefetchAttributes) throws TskCoreException {
+		List<AnalysisResult> results = getAnalysisResultsByType(artifactTypeId);
+		if (prefetchAttributes) {
+			loadAttributes(results);
+		}
+		return results;
+	}
+
+	/**
+	 * Get all analysis results of given artifact type under a data source,
+	 * optionally loading the attributes of all of them with a few queries.
+	 *
+	 * @param artifactTypeId     The artifact type id for which to search.
+	 * @param dataSourceObjId    Object Id of the data source to look under.
+	 * @param prefetchAttributes Whether to load the attributes now.
+	 *
+	 * @return The list of analysis results.
+	 *
+	 * @throws TskCoreException Exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public List<AnalysisResult> getAnalysisResultsByType(int artifactTypeId, long dataSourceObjId, boolean prefetchAttributes) throws TskCoreException {
+		List<AnalysisResult> results = getAnalysisResultsByType(artifactTypeId, dataSourceObjId);
+		if (prefetchAttributes) {
+			loadAttributes(results);
+		}
+		return results;
+	}
+
+	/**
+	 * Loads the attributes of a collection of artifacts from the case database
+	 * with a few queries, instead of one query per artifact. Afterwards,
+	 * getAttributes() on the artifacts returns the loaded attributes without
+	 * querying the case database.
+	 *
+	 * @param artifacts The artifacts.
+	 *
+	 * @throws TskCoreException Exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public void loadAttributes(Collection<? extends BlackboardArtifact> artifacts) throws TskCoreException {
+		caseDb.loadBlackboardAttributes(artifacts);
+	}
+
 	
 	/**
 	 * Get all analysis results for a given object.
@@ -535,6 +597,46 @@ public List<AnalysisResult> getAnalysisResultsWhere(String whereClause) throws T
 		}
 	}
 
+	/**
+	 * Get all analysis results matching the given where sub-clause, as a
+	 * stream that reads the results from the case database as it is consumed
+	 * instead of holding them all in memory.
+	 *
+	 * The stream holds a database connection, and for single-user cases the
+	 * case read lock, until it is closed. Use it in a try-with-resources block
+	 * on one thread and do not write to the case database from that thread
+	 * before closing it. Errors while reading are thrown as
+	 * UncheckedTskCoreException.
+	 *
+	 * @param whereClause Where sub clause, specifies conditions to match.
+	 * @param fetchSize   The number of rows to read per round trip.
+	 *
+	 * @return Stream of analysis results.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public Stream<AnalysisResult> streamAnalysisResultsWhere(String whereClause, int fetchSize) throws TskCoreException {
+		return CaseDbResultStream.create(caseDb, ANALYSIS_RESULT_QUERY_STRING + " AND " + whereClause, fetchSize,
+				(resultSet, connection) -> resultSetRowToAnalysisResult(resultSet));
+	}
+
+	/**
+	 * Get all analysis results matching the given where sub-clause as a
+	 * stream, using the default fetch size. See
+	 * streamAnalysisResultsWhere(String, int).
+	 *
+	 * @param whereClause Where sub clause, specifies conditions to match.
+	 *
+	 * @return Stream of analysis results.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public Stream<AnalysisResult> streamAnalysisResultsWhere(String whereClause) throws TskCoreException {
+		return streamAnalysisResultsWhere(whereClause, CaseDbResultStream.DEFAULT_FETCH_SIZE);
+	}
+
 	/**
 	 * Get all analysis results matching the given where sub-clause. Uses the
 	 * given database connection to execute the query.
@@ -605,18 +707,32 @@ private List<AnalysisResult> resultSetToAnalysisResults(ResultSet resultSet) thr
 		ArrayList<AnalysisResult> analysisResults = new ArrayList<>();
 
 		while (resultSet.next()) {
-			analysisResults.add(new AnalysisResult(caseDb, resultSet.getLong("artifact_id"), resultSet.getLong("obj_id"),
-					resultSet.getLong("artifact_obj_id"),
-					resultSet.getObject("data_source_obj_id") != null ? resultSet.getLong("data_source_obj_id") : null,
-					resultSet.getInt("artifact_type_id"), resultSet.getString("type_name"), resultSet.getString("display_name"),
-					BlackboardArtifact.ReviewStatus.withID(resultSet.getInt("review_status_id")),
-					new Score(Score.Significance.fromID(resultSet.getInt("significance")), Score.Priority.fromID(resultSet.getInt("priority"))),
-					resultSet.getString("conclusion"), resultSet.getString("configuration"), resultSet.getString("justification")));
+			analysisResults.add(resultSetRowToAnalysisResult(resultSet));
 		} //end for each resultSet
 
 		return analysisResults;
 	}
 
+	/**
+	 * Creates an AnalysisResult object for the current row of a result set
+	 * from a query of the form used by resultSetToAnalysisResults().
+	 *
+	 * @param resultSet The result set, positioned on a row.
+	 *
+	 * @return The analysis result.
+	 *
+	 * @throws SQLException Thrown if there is a problem reading the row.
+	 */
+	private AnalysisResult resultSetRowToAnalysisResult(ResultSet resultSet) throws SQLException {
+		return new AnalysisResult(caseDb, resultSet.getLong("artifact_id"), resultSet.getLong("obj_id"),
+				resultSet.getLong("artifact_obj_id"),
+				resultSet.getObject("data_source_obj_id") != null ? resultSet.getLong("data_source_obj_id") : null,
+				resultSet.getInt("artifact_type_id"), resultSet.getString("type_name"), resultSet.getString("display_name"),
+				BlackboardArtifact.ReviewStatus.withID(resultSet.getInt("review_status_id")),
+				new Score(Score.Significance.fromID(resultSet.getInt("significance")), Score.Priority.fromID(resultSet.getInt("priority"))),
+				resultSet.getString("conclusion"), resultSet.getString("configuration"), resultSet.getString("justification"));
+	}
+
 	private final static String DATA_ARTIFACT_QUERY_STRING = "SELECT DISTINCT artifacts.artifact_id AS artifact_id, " //NON-NLS
 			+ "artifacts.obj_id AS obj_id, artifacts.artifact_obj_id AS artifact_obj_id, artifacts.data_source_obj_id AS data_source_obj_id, artifacts.artifact_type_id AS artifact_type_id, " //NON-NLS
 			+ " types.type_name AS type_name, types.display_name AS display_name, types.category_type as category_type,"//NON-NLS
@@ -687,6 +803,48 @@ public List<DataArtifact> getDataArtifacts(int artifactTypeID) throws TskCoreExc
 		}
 	}
 
+	/**
+	 * Get all data artifacts of a given type, optionally loading the
+	 * attributes of all of them with a few queries. Prefetching is much faster
+	 * than letting getAttributes() query the attributes of each artifact.
+	 *
+	 * @param artifactTypeID     Artifact type to get.
+	 * @param prefetchAttributes Whether to load the attributes now.
+	 *
+	 * @return List of data artifacts. May be an empty list.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public List<DataArtifact> getDataArtifacts(int artifactTypeID, boolean prefetchAttributes) throws TskCoreException {
+		List<DataArtifact> artifacts = getDataArtifacts(artifactTypeID);
+		if (prefetchAttributes) {
+			loadAttributes(artifacts);
+		}
+		return artifacts;
+	}
+
+	/**
+	 * Get all data artifacts of a given type for a given data source,
+	 * optionally loading the attributes of all of them with a few queries.
+	 *
+	 * @param artifactTypeID     Artifact type to get.
+	 * @param dataSourceObjId    Data source to look under.
+	 * @param prefetchAttributes Whether to load the attributes now.
+	 *
+	 * @return List of data artifacts. May be an empty list.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core.
+	 */
+	public List<DataArtifact> getDataArtifacts(int artifactTypeID, long dataSourceObjId, boolean prefetchAttributes) throws TskCoreException {
+		List<DataArtifact> artifacts = getDataArtifacts(artifactTypeID, dataSourceObjId);
+		if (prefetchAttributes) {
+			loadAttributes(artifacts);
+		}
+		return artifacts;
+	}
+
 	/**
 	 * Get the data artifact with the given artifact obj id.
 	 *
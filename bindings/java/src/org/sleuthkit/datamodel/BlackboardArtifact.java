@@ -361,6 +361,19 @@ public List<BlackboardAttribute> getAttributes() throws TskCoreException {
 		return attributes;
 	}
 
+	/**
+	 * Sets the attributes of this artifact after they have been loaded from
+	 * the case database together with those of other artifacts, so that
+	 * getAttributes() does not need to query them again.
+	 *
+	 * @param attributes The attributes of this artifact.
+	 */
+	void setAttributesFromDb(List<BlackboardAttribute> attributes) {
+		attrsCache.clear();
+		attrsCache.addAll(attributes);
+		loadedCacheFromDb = true;
+	}
+
 	/**
 	 * Gets the attribute of this artifact that matches a given type.
 	 *
@@ -454,9 +467,10 @@ public String getUniquePath() throws TskCoreException {
 		// simultaneously, but it's worth the potential extra processing to prevent deadlocks.
 		if (uniquePath == null) {
 			String tempUniquePath = "";
-			Content myParent = getParent();
-			if (myParent != null) {
-				tempUniquePath = myParent.getUniquePath();
+			Content myParent = parent;
+			String parentPath = (myParent != null) ? myParent.getUniquePath() : getSleuthkitCase().getParentUniquePath(this);
+			if (parentPath != null) {
+				tempUniquePath = parentPath;
 			}
 
 			// Don't update uniquePath until it is complete.
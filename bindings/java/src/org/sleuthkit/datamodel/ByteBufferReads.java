@@ -0,0 +1,96 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads into a ByteBuffer with a read that can only write to the start of a
+ * byte array, without allocating an array for every read.
+ */
+final class ByteBufferReads {
+
+	// Larger reads get an array of their own rather than growing the
+	// reused one
+	private static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+
+	// Reused by each thread. Taken out while in use, so that a nested read
+	// on the same thread gets an array of its own.
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<>();
+
+	private ByteBufferReads() {
+	}
+
+	/**
+	 * Reads into a buffer using a byte array read. The data is written
+	 * starting at the position of the buffer and the position is advanced by
+	 * the number of bytes read. The backing array of the buffer is used when
+	 * the data can be written to its start, otherwise the data is copied
+	 * through a reused array.
+	 *
+	 * @param dst    The buffer to read to, up to its remaining bytes.
+	 * @param offset The offset to start at.
+	 * @param reader The byte array read.
+	 *
+	 * @return The number of bytes read.
+	 *
+	 * @throws TskCoreException
+	 */
+	static int read(ByteBuffer dst, long offset, ContentReadCache.BlockReader reader) throws TskCoreException {
+		int len = dst.remaining();
+		if (dst.hasArray() && dst.arrayOffset() + dst.position() == 0) {
+			return advancePosition(dst, reader.read(dst.array(), offset, len));
+		}
+		boolean reuse = (len <= MAX_SCRATCH_SIZE);
+		byte[] scratch = null;
+		if (reuse) {
+			scratch = SCRATCH.get();
+			SCRATCH.remove();
+		}
+		if (scratch == null || scratch.length < len) {
+			scratch = new byte[len];
+		}
+		try {
+			int bytesRead = reader.read(scratch, offset, len);
+			if (bytesRead > 0) {
+				dst.put(scratch, 0, bytesRead);
+			}
+			return bytesRead;
+		} finally {
+			if (reuse) {
+				SCRATCH.set(scratch);
+			}
+		}
+	}
+
+	/**
+	 * Advances the position of a buffer past the data just read into it.
+	 *
+	 * @param dst       The buffer.
+	 * @param bytesRead The number of bytes read.
+	 *
+	 * @return The number of bytes read.
+	 */
+	static int advancePosition(ByteBuffer dst, int bytesRead) {
+		if (bytesRead > 0) {
+			dst.position(dst.position() + bytesRead);
+		}
+		return bytesRead;
+	}
+}
@@ -589,6 +589,23 @@ private void createEventTables(Statement stmt) throws SQLException {
 			+ " event_description_id " + dbQueryHelper.getBigIntType() + " NOT NULL REFERENCES tsk_event_descriptions(event_description_id) ON DELETE CASCADE ,"
 			+ " time " + dbQueryHelper.getBigIntType() + " NOT NULL , "
 			+ " UNIQUE (event_type_id, event_description_id, time))");			
+
+		/*
+		* Counts of the events in hour, day, week and 52 week time buckets, by
+		* event type, data source and the hash hit and tagged flags. Maintained
+		* by the TimelineManager as events are added and flags change.
+		*/
+		stmt.execute(
+			"CREATE TABLE tsk_event_counts ("
+			+ " granularity INTEGER NOT NULL, " // bucket size in seconds
+			+ " bucket_start " + dbQueryHelper.getBigIntType() + " NOT NULL, "
+			+ " event_type_id " + dbQueryHelper.getBigIntType() + " NOT NULL REFERENCES tsk_event_types(event_type_id), "
+			+ " data_source_obj_id " + dbQueryHelper.getBigIntType() + " NOT NULL, "
+			+ " hash_hit INTEGER NOT NULL, " //boolean 
+			+ " tagged INTEGER NOT NULL, " //boolean 
+			+ " event_count " + dbQueryHelper.getBigIntType() + " NOT NULL, "
+			+ " FOREIGN KEY(data_source_obj_id) REFERENCES data_source_info(obj_id) ON DELETE CASCADE, "
+			+ " UNIQUE (granularity, bucket_start, event_type_id, data_source_obj_id, hash_hit, tagged))");
 	}
 
 	private void createAttributeTables(Statement stmt) throws SQLException {
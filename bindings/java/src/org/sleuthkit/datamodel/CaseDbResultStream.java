@@ -0,0 +1,214 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+import org.sleuthkit.datamodel.TskData.DbType;
+
+/**
+ * Creates Streams that read the rows of a case database query through an open
+ * cursor, so that only a fetch size worth of rows is held in memory at a time.
+ *
+ * A stream holds a connection and, for single-user cases, the case read lock
+ * until it is closed, so it must be used in a try-with-resources block on the
+ * thread that created it. That thread must not write to the case database
+ * before closing the stream. Errors while reading the rows are thrown as
+ * UncheckedTskCoreException.
+ */
+final class CaseDbResultStream {
+
+	private static final Logger logger = Logger.getLogger(CaseDbResultStream.class.getName());
+
+	/**
+	 * The number of rows fetched per round trip when the caller does not
+	 * specify one.
+	 */
+	static final int DEFAULT_FETCH_SIZE = 1000;
+
+	/**
+	 * Creates an object from the current row of a result set.
+	 *
+	 * @param <T> The type of object.
+	 */
+	interface RowMapper<T> {
+
+		/**
+		 * Create an object from the current row.
+		 *
+		 * @param rs         The result set, positioned on the row.
+		 * @param connection The connection that is reading the result set.
+		 *
+		 * @return The object, or null to skip the row.
+		 *
+		 * @throws SQLException
+		 * @throws TskCoreException
+		 */
+		T map(ResultSet rs, CaseDbConnection connection) throws SQLException, TskCoreException;
+	}
+
+	private CaseDbResultStream() {
+	}
+
+	/**
+	 * Runs a query and returns a stream over the objects created from its
+	 * rows.
+	 *
+	 * @param caseDb    The case database.
+	 * @param query     The query.
+	 * @param fetchSize The number of rows to fetch per round trip.
+	 * @param mapper    Creates the objects from the rows.
+	 *
+	 * @return The stream. Must be closed.
+	 *
+	 * @throws TskCoreException If the query fails.
+	 */
+	static <T> Stream<T> create(SleuthkitCase caseDb, String query, int fetchSize, RowMapper<T> mapper) throws TskCoreException {
+		return create(caseDb, query, Collections.emptyList(), fetchSize, mapper);
+	}
+
+	/**
+	 * Runs a parameterized query and returns a stream over the objects created
+	 * from its rows.
+	 *
+	 * @param caseDb     The case database.
+	 * @param query      The query, with ? placeholders.
+	 * @param parameters The values of the placeholders, in order.
+	 * @param fetchSize  The number of rows to fetch per round trip.
+	 * @param mapper     Creates the objects from the rows.
+	 *
+	 * @return The stream. Must be closed.
+	 *
+	 * @throws TskCoreException If the query fails.
+	 */
+	static <T> Stream<T> create(SleuthkitCase caseDb, String query, List<Object> parameters, int fetchSize, RowMapper<T> mapper) throws TskCoreException {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+		}
+		Cursor<T> cursor = new Cursor<>(caseDb, mapper);
+		try {
+			cursor.open(query, parameters, fetchSize);
+		} catch (SQLException ex) {
+			cursor.close();
+			throw new TskCoreException("Error executing query: " + query, ex);
+		} catch (TskCoreException | RuntimeException ex) {
+			cursor.close();
+			throw ex;
+		}
+		return StreamSupport.stream(cursor, false).onClose(cursor::close);
+	}
+
+	/**
+	 * An open query. Owns the read lock, connection, statement and result set.
+	 */
+	private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+
+		private final SleuthkitCase caseDb;
+		private final RowMapper<T> mapper;
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		private boolean inTransaction = false;
+		private CaseDbConnection connection;
+		private Statement statement;
+		private ResultSet resultSet;
+
+		private Cursor(SleuthkitCase caseDb, RowMapper<T> mapper) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.caseDb = caseDb;
+			this.mapper = mapper;
+			caseDb.acquireSingleUserCaseReadLock();
+		}
+
+		private void open(String query, List<Object> parameters, int fetchSize) throws SQLException, TskCoreException {
+			connection = caseDb.getConnection();
+			if (caseDb.getDatabaseType() == DbType.POSTGRESQL) {
+				// The PostgreSQL driver only uses a cursor, instead of reading
+				// the whole result, when auto commit is off.
+				connection.beginTransaction();
+				inTransaction = true;
+			}
+			if (parameters.isEmpty()) {
+				statement = connection.createStatement();
+				statement.setFetchSize(fetchSize);
+				resultSet = connection.executeQuery(statement, query);
+			} else {
+				PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.NO_GENERATED_KEYS);
+				statement = preparedStatement;
+				preparedStatement.setFetchSize(fetchSize);
+				for (int i = 0; i < parameters.size(); i++) {
+					preparedStatement.setObject(i + 1, parameters.get(i));
+				}
+				resultSet = connection.executeQuery(preparedStatement);
+			}
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (closed.get()) {
+				return false;
+			}
+			try {
+				while (resultSet.next()) {
+					T item = mapper.map(resultSet, connection);
+					if (item != null) {
+						action.accept(item);
+						return true;
+					}
+				}
+				return false;
+			} catch (SQLException ex) {
+				throw new UncheckedTskCoreException(new TskCoreException("Error reading query results", ex));
+			} catch (TskCoreException ex) {
+				throw new UncheckedTskCoreException(ex);
+			}
+		}
+
+		private void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				SleuthkitCase.closeResultSet(resultSet);
+				SleuthkitCase.closeStatement(statement);
+				if (inTransaction) {
+					// Nothing was written, so end the read-only transaction
+					// and restore auto commit before the connection is reused.
+					connection.rollbackTransaction();
+				}
+				SleuthkitCase.closeConnection(connection);
+			} catch (RuntimeException ex) {
+				logger.log(Level.SEVERE, "Error closing query results", ex); //NON-NLS
+			} finally {
+				caseDb.releaseSingleUserCaseReadLock();
+			}
+		}
+	}
+}
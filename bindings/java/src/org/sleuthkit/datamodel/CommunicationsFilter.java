@@ -110,6 +110,15 @@ public RelationshipTypeFilter(Collection<Relationship.Type> relationshipTypes) {
 			this.relationshipTypes = new HashSet<Relationship.Type>(relationshipTypes);
 		}
 
+		/**
+		 * Get the selected relationship types.
+		 *
+		 * @return A Set of Type values
+		 */
+		public Set<Relationship.Type> getRelationshipTypes() {
+			return relationshipTypes;
+		}
+
 		@Override
 		public String getDescription() {
 			return "Filters relationships by relationship type.";
@@ -0,0 +1,440 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+
+/**
+ * An in memory index of the account_relationships table, used by the
+ * CommunicationsManager to answer relationship queries without going to the
+ * case database.
+ *
+ * Each account is a node with a sorted array of the IDs of the accounts it has
+ * relationships with. The relationships between two accounts are kept as
+ * counts per relationship type, data source and hour of the relationship date,
+ * which is enough to evaluate the relationship type, device, account type and
+ * (hour aligned) date range filters. The direction of the relationships is not
+ * kept, since none of the queries use it.
+ */
+final class CommunicationsGraph {
+
+	/**
+	 * The size, in seconds, of the date buckets of the relationship counts.
+	 */
+	static final long DATE_BUCKET_SIZE = 3600;
+
+	/**
+	 * The date bucket of relationships that have no date.
+	 */
+	private static final long NO_DATE_BUCKET = Long.MIN_VALUE;
+
+	private final Map<Long, AccountNode> accountNodes = new HashMap<>();
+
+	/**
+	 * Loads the relationships of a case database into a new graph.
+	 *
+	 * @param db The case database.
+	 *
+	 * @return The graph.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	static CommunicationsGraph load(SleuthkitCase db) throws TskCoreException {
+		String bucketSQL = "CASE WHEN relationships.date_time IS NULL THEN NULL"
+				+ " WHEN relationships.date_time < 0 THEN (relationships.date_time - " + (DATE_BUCKET_SIZE - 1) + ") / " + DATE_BUCKET_SIZE
+				+ " ELSE relationships.date_time / " + DATE_BUCKET_SIZE + " END";
+		String query = "SELECT relationships.account1_id AS account1_id, accounts1.account_type_id AS account1_type_id,"
+				+ " relationships.account2_id AS account2_id, accounts2.account_type_id AS account2_type_id,"
+				+ " relationships.data_source_obj_id AS data_source_obj_id,"
+				+ " relationships.relationship_type AS relationship_type,"
+				+ " " + bucketSQL + " AS date_bucket,"
+				+ " COUNT(*) AS relationship_count"
+				+ " FROM account_relationships AS relationships"
+				+ " JOIN accounts AS accounts1 ON accounts1.account_id = relationships.account1_id"
+				+ " JOIN accounts AS accounts2 ON accounts2.account_id = relationships.account2_id"
+				+ " GROUP BY relationships.account1_id, accounts1.account_type_id, relationships.account2_id, accounts2.account_type_id,"
+				+ " relationships.data_source_obj_id, relationships.relationship_type, " + bucketSQL; //NON-NLS
+
+		CommunicationsGraph graph = new CommunicationsGraph();
+		db.acquireSingleUserCaseReadLock();
+		try (CaseDbConnection connection = db.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet rs = connection.executeQuery(statement, query)) {
+			while (rs.next()) {
+				long dateBucket = rs.getLong("date_bucket");
+				if (rs.wasNull()) {
+					dateBucket = NO_DATE_BUCKET;
+				}
+				graph.addRelationships(rs.getLong("account1_id"), rs.getInt("account1_type_id"),
+						rs.getLong("account2_id"), rs.getInt("account2_type_id"),
+						rs.getLong("data_source_obj_id"), rs.getInt("relationship_type"),
+						dateBucket, rs.getInt("relationship_count"));
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error loading account relationships", ex);
+		} finally {
+			db.releaseSingleUserCaseReadLock();
+		}
+		return graph;
+	}
+
+	/**
+	 * Adds relationships between accounts.
+	 *
+	 * @param relationships The relationships.
+	 */
+	synchronized void addRelationships(Collection<Relationship> relationships) {
+		for (Relationship relationship : relationships) {
+			addRelationship(relationship.account1ID, relationship.account1TypeID, relationship.account2ID, relationship.account2TypeID,
+					relationship.dataSourceObjID, relationship.relationshipTypeID, relationship.dateTime);
+		}
+	}
+
+	/**
+	 * Adds a relationship between two accounts.
+	 *
+	 * @param account1ID         The ID of the first account.
+	 * @param account1TypeID     The account type ID of the first account.
+	 * @param account2ID         The ID of the second account.
+	 * @param account2TypeID     The account type ID of the second account.
+	 * @param dataSourceObjID    The data source of the relationship.
+	 * @param relationshipTypeID The relationship type ID.
+	 * @param dateTime           The date of the relationship (seconds from
+	 *                           UNIX epoch), or null if it has no date.
+	 */
+	synchronized void addRelationship(long account1ID, int account1TypeID, long account2ID, int account2TypeID,
+			long dataSourceObjID, int relationshipTypeID, Long dateTime) {
+		long dateBucket = (dateTime == null) ? NO_DATE_BUCKET : Math.floorDiv(dateTime, DATE_BUCKET_SIZE);
+		addRelationships(account1ID, account1TypeID, account2ID, account2TypeID, dataSourceObjID, relationshipTypeID, dateBucket, 1);
+	}
+
+	private void addRelationships(long account1ID, int account1TypeID, long account2ID, int account2TypeID,
+			long dataSourceObjID, int relationshipTypeID, long dateBucket, int count) {
+		AccountNode node1 = getOrCreateNode(account1ID, account1TypeID);
+		AccountNode node2 = getOrCreateNode(account2ID, account2TypeID);
+		RelationshipCounts counts = node1.getCounts(account2ID);
+		if (counts == null) {
+			counts = new RelationshipCounts();
+			node1.addNeighbor(account2ID, counts);
+			if (account1ID != account2ID) {
+				node2.addNeighbor(account1ID, counts);
+			}
+		}
+		counts.add(relationshipTypeID, dataSourceObjID, dateBucket, count);
+	}
+
+	private AccountNode getOrCreateNode(long accountID, int accountTypeID) {
+		AccountNode node = accountNodes.get(accountID);
+		if (node == null) {
+			node = new AccountNode(accountTypeID);
+			accountNodes.put(accountID, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Gets the accounts that have at least one relationship that passes a
+	 * filter, with the data sources of those relationships.
+	 *
+	 * @param filter The filter.
+	 *
+	 * @return A map of account IDs to data source object IDs.
+	 */
+	synchronized Map<Long, Set<Long>> getAccountDataSources(RelationshipFilter filter) {
+		Map<Long, Set<Long>> accountDataSources = new HashMap<>();
+		for (Map.Entry<Long, AccountNode> entry : accountNodes.entrySet()) {
+			AccountNode node = entry.getValue();
+			if (filter.acceptsAccountType(node.accountTypeID)) {
+				for (int i = 0; i < node.neighborCount; i++) {
+					node.counts[i].addDataSources(filter, entry.getKey(), accountDataSources);
+				}
+			}
+		}
+		return accountDataSources;
+	}
+
+	/**
+	 * Gets the accounts that have at least one relationship that passes a
+	 * filter with a given account, with the data sources of those
+	 * relationships.
+	 *
+	 * @param accountID The ID of the account.
+	 * @param filter    The filter.
+	 *
+	 * @return A map of account IDs to data source object IDs.
+	 */
+	synchronized Map<Long, Set<Long>> getRelatedAccountDataSources(long accountID, RelationshipFilter filter) {
+		Map<Long, Set<Long>> accountDataSources = new HashMap<>();
+		AccountNode node = accountNodes.get(accountID);
+		if (node != null) {
+			for (int i = 0; i < node.neighborCount; i++) {
+				long neighborID = node.neighborIDs[i];
+				if (filter.acceptsAccountType(accountNodes.get(neighborID).accountTypeID)) {
+					node.counts[i].addDataSources(filter, neighborID, accountDataSources);
+				}
+			}
+		}
+		return accountDataSources;
+	}
+
+	/**
+	 * Counts the relationships that pass a filter between each pair of the
+	 * given accounts, per data source.
+	 *
+	 * @param accountIDs The IDs of the accounts.
+	 * @param filter     The filter.
+	 *
+	 * @return The counts, as arrays of the two account IDs, the data source
+	 *         object ID and the count.
+	 */
+	synchronized List<long[]> getRelationshipCounts(Set<Long> accountIDs, RelationshipFilter filter) {
+		List<long[]> results = new ArrayList<>();
+		for (Long accountID : accountIDs) {
+			AccountNode node = accountNodes.get(accountID);
+			if (node == null) {
+				continue;
+			}
+			// Visit each pair once, from the account with the lower ID
+			int start = Arrays.binarySearch(node.neighborIDs, 0, node.neighborCount, accountID);
+			for (int i = (start < 0) ? -start - 1 : start; i < node.neighborCount; i++) {
+				long neighborID = node.neighborIDs[i];
+				if (accountIDs.contains(neighborID)) {
+					Map<Long, Long> dataSourceCounts = node.counts[i].countByDataSource(filter);
+					for (Map.Entry<Long, Long> entry : dataSourceCounts.entrySet()) {
+						results.add(new long[]{accountID, neighborID, entry.getKey(), entry.getValue()});
+					}
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * A relationship between two accounts that has been added to the case
+	 * database.
+	 */
+	static final class Relationship {
+
+		private final long account1ID;
+		private final int account1TypeID;
+		private final long account2ID;
+		private final int account2TypeID;
+		private final long dataSourceObjID;
+		private final int relationshipTypeID;
+		private final Long dateTime;
+
+		/**
+		 * Constructs a relationship.
+		 *
+		 * @param account1ID         The ID of the first account.
+		 * @param account1TypeID     The account type ID of the first account.
+		 * @param account2ID         The ID of the second account.
+		 * @param account2TypeID     The account type ID of the second
+		 *                           account.
+		 * @param dataSourceObjID    The data source of the relationship.
+		 * @param relationshipTypeID The relationship type ID.
+		 * @param dateTime           The date of the relationship (seconds from
+		 *                           UNIX epoch), or null if it has no date.
+		 */
+		Relationship(long account1ID, int account1TypeID, long account2ID, int account2TypeID,
+				long dataSourceObjID, int relationshipTypeID, Long dateTime) {
+			this.account1ID = account1ID;
+			this.account1TypeID = account1TypeID;
+			this.account2ID = account2ID;
+			this.account2TypeID = account2TypeID;
+			this.dataSourceObjID = dataSourceObjID;
+			this.relationshipTypeID = relationshipTypeID;
+			this.dateTime = dateTime;
+		}
+	}
+
+	/**
+	 * An account and the accounts it has relationships with.
+	 */
+	private static final class AccountNode {
+
+		private final int accountTypeID;
+		private long[] neighborIDs = new long[2];
+		private RelationshipCounts[] counts = new RelationshipCounts[2];
+		private int neighborCount = 0;
+
+		private AccountNode(int accountTypeID) {
+			this.accountTypeID = accountTypeID;
+		}
+
+		private RelationshipCounts getCounts(long neighborID) {
+			int index = Arrays.binarySearch(neighborIDs, 0, neighborCount, neighborID);
+			return (index >= 0) ? counts[index] : null;
+		}
+
+		private void addNeighbor(long neighborID, RelationshipCounts neighborCounts) {
+			int index = -Arrays.binarySearch(neighborIDs, 0, neighborCount, neighborID) - 1;
+			if (neighborCount == neighborIDs.length) {
+				neighborIDs = Arrays.copyOf(neighborIDs, neighborCount * 2);
+				counts = Arrays.copyOf(counts, neighborCount * 2);
+			}
+			System.arraycopy(neighborIDs, index, neighborIDs, index + 1, neighborCount - index);
+			System.arraycopy(counts, index, counts, index + 1, neighborCount - index);
+			neighborIDs[index] = neighborID;
+			counts[index] = neighborCounts;
+			neighborCount++;
+		}
+	}
+
+	/**
+	 * The number of relationships between two accounts per relationship type,
+	 * data source and date bucket.
+	 */
+	private static final class RelationshipCounts {
+
+		private int[] relationshipTypeIDs = new int[1];
+		private long[] dataSourceObjIDs = new long[1];
+		private long[] dateBuckets = new long[1];
+		private int[] relationshipCounts = new int[1];
+		private int size = 0;
+
+		private void add(int relationshipTypeID, long dataSourceObjID, long dateBucket, int count) {
+			for (int i = 0; i < size; i++) {
+				if (dateBuckets[i] == dateBucket && dataSourceObjIDs[i] == dataSourceObjID && relationshipTypeIDs[i] == relationshipTypeID) {
+					relationshipCounts[i] += count;
+					return;
+				}
+			}
+			if (size == dateBuckets.length) {
+				int capacity = size * 2;
+				relationshipTypeIDs = Arrays.copyOf(relationshipTypeIDs, capacity);
+				dataSourceObjIDs = Arrays.copyOf(dataSourceObjIDs, capacity);
+				dateBuckets = Arrays.copyOf(dateBuckets, capacity);
+				relationshipCounts = Arrays.copyOf(relationshipCounts, capacity);
+			}
+			relationshipTypeIDs[size] = relationshipTypeID;
+			dataSourceObjIDs[size] = dataSourceObjID;
+			dateBuckets[size] = dateBucket;
+			relationshipCounts[size] = count;
+			size++;
+		}
+
+		private boolean accepts(int index, RelationshipFilter filter) {
+			return filter.accepts(relationshipTypeIDs[index], dataSourceObjIDs[index], dateBuckets[index]);
+		}
+
+		private void addDataSources(RelationshipFilter filter, long accountID, Map<Long, Set<Long>> accountDataSources) {
+			for (int i = 0; i < size; i++) {
+				if (accepts(i, filter)) {
+					accountDataSources.computeIfAbsent(accountID, id -> new HashSet<>()).add(dataSourceObjIDs[i]);
+				}
+			}
+		}
+
+		private Map<Long, Long> countByDataSource(RelationshipFilter filter) {
+			Map<Long, Long> dataSourceCounts = new HashMap<>();
+			for (int i = 0; i < size; i++) {
+				if (accepts(i, filter)) {
+					dataSourceCounts.merge(dataSourceObjIDs[i], (long) relationshipCounts[i], Long::sum);
+				}
+			}
+			return dataSourceCounts;
+		}
+	}
+
+	/**
+	 * The conditions that relationships, and the accounts they are returned
+	 * for, must meet. Each condition is off until it is restricted, and
+	 * restricting a condition more than once keeps what passes all of the
+	 * restrictions.
+	 */
+	static final class RelationshipFilter {
+
+		private Set<Integer> relationshipTypeIDs = null;
+		private Set<Long> dataSourceObjIDs = null;
+		private Set<Integer> accountTypeIDs = null;
+		private long startBucket = Long.MIN_VALUE;
+		private long endBucket = Long.MAX_VALUE;
+
+		/**
+		 * Only accept relationships of the given types.
+		 */
+		void restrictRelationshipTypes(Set<Integer> typeIDs) {
+			relationshipTypeIDs = intersect(relationshipTypeIDs, typeIDs);
+		}
+
+		/**
+		 * Only accept relationships from the given data sources.
+		 */
+		void restrictDataSources(Set<Long> objIDs) {
+			dataSourceObjIDs = intersect(dataSourceObjIDs, objIDs);
+		}
+
+		/**
+		 * Only return accounts of the given types.
+		 */
+		void restrictAccountTypes(Set<Integer> typeIDs) {
+			accountTypeIDs = intersect(accountTypeIDs, typeIDs);
+		}
+
+		/**
+		 * Only accept relationships that have no date or a date at or after
+		 * the given time.
+		 *
+		 * @param time A multiple of DATE_BUCKET_SIZE.
+		 */
+		void restrictStartTime(long time) {
+			startBucket = Math.max(startBucket, Math.floorDiv(time, DATE_BUCKET_SIZE));
+		}
+
+		/**
+		 * Only accept relationships that have no date or a date before the
+		 * given time.
+		 *
+		 * @param time A multiple of DATE_BUCKET_SIZE.
+		 */
+		void restrictEndTime(long time) {
+			endBucket = Math.min(endBucket, Math.floorDiv(time, DATE_BUCKET_SIZE));
+		}
+
+		private boolean accepts(int relationshipTypeID, long dataSourceObjID, long dateBucket) {
+			return (relationshipTypeIDs == null || relationshipTypeIDs.contains(relationshipTypeID))
+					&& (dataSourceObjIDs == null || dataSourceObjIDs.contains(dataSourceObjID))
+					&& (dateBucket == NO_DATE_BUCKET || (dateBucket >= startBucket && dateBucket < endBucket));
+		}
+
+		private boolean acceptsAccountType(int accountTypeID) {
+			return accountTypeIDs == null || accountTypeIDs.contains(accountTypeID);
+		}
+
+		private static <T> Set<T> intersect(Set<T> current, Set<T> restriction) {
+			Set<T> result = new HashSet<>(restriction);
+			if (current != null) {
+				result.retainAll(current);
+			}
+			return result;
+		}
+	}
+}
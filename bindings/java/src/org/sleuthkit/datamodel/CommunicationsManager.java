@@ -18,12 +18,16 @@
  */
 package org.sleuthkit.datamodel;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -64,6 +68,20 @@ public final class CommunicationsManager {
 	));
 	private static final String RELATIONSHIP_ARTIFACT_TYPE_IDS_CSV_STR = StringUtils.buildCSVString(RELATIONSHIP_ARTIFACT_TYPE_IDS);
 
+	// In memory index of the account relationships, loaded on first use when enabled.
+	private final Object graphLock = new Object();
+	private volatile boolean graphIndexEnabled = false;
+	private CommunicationsGraph graph = null;
+	// Changed whenever the loaded graph may be out of date, guarded by graphLock
+	private long graphGeneration = 0;
+
+	// Accounts keyed by account type ID and normalized account ID.
+	private static final int MAX_CACHED_ACCOUNTS = 10000;
+	private final Cache<String, Account> accountCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ACCOUNTS).build();
+
+	// The number of relationship rows written per batch
+	private static final int RELATIONSHIPS_BATCH_SIZE = 1000;
+
 	/**
 	 * Construct a CommunicationsManager for the given SleuthkitCase.
 	 *
@@ -175,6 +193,125 @@ SleuthkitCase getSleuthkitCase() {
 		return this.db;
 	}
 
+	/**
+	 * Sets whether relationship queries are answered from an in memory index
+	 * of the account relationships when their filters allow it. The index is
+	 * loaded from the case database the first time it is needed, and kept up
+	 * to date as relationships are added through this CommunicationsManager.
+	 * It does not see relationships added by other clients of a multi-user
+	 * case after it was loaded.
+	 *
+	 * @param enabled True to use the index, false to query the case database
+	 *                and release the index.
+	 */
+	public void setGraphIndexEnabled(boolean enabled) {
+		synchronized (graphLock) {
+			graphIndexEnabled = enabled;
+			if (!enabled) {
+				graph = null;
+				graphGeneration++;
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether relationship queries are answered from an in memory
+	 * index of the account relationships when their filters allow it.
+	 *
+	 * @return True if the index is enabled.
+	 */
+	public boolean isGraphIndexEnabled() {
+		return graphIndexEnabled;
+	}
+
+	/**
+	 * Discards the cached accounts and the in memory index of the account
+	 * relationships, so that they are reloaded the next time they are needed.
+	 * Called when accounts and relationships are deleted from the case
+	 * database.
+	 */
+	void clearCaches() {
+		accountCache.invalidateAll();
+		synchronized (graphLock) {
+			graph = null;
+			graphGeneration++;
+		}
+	}
+
+	/**
+	 * Gets the in memory index of the account relationships if it is loaded.
+	 *
+	 * @return The index, or null if it is not loaded.
+	 */
+	CommunicationsGraph getLoadedGraph() {
+		synchronized (graphLock) {
+			return graph;
+		}
+	}
+
+	/**
+	 * Updates the in memory index of the account relationships after a
+	 * transaction that added relationships is committed.
+	 *
+	 * @param graphBeforeCommit The index that was loaded before the commit, or
+	 *                          null.
+	 * @param relationships     The relationships that were added.
+	 */
+	void relationshipsCommitted(CommunicationsGraph graphBeforeCommit, List<CommunicationsGraph.Relationship> relationships) {
+		synchronized (graphLock) {
+			graphGeneration++;
+			if (graph != null && graph == graphBeforeCommit) {
+				graph.addRelationships(relationships);
+			} else if (graph != null) {
+				// Loaded while the transaction was open, so it may or may not
+				// have seen the relationships. Load it again when needed.
+				graph = null;
+			}
+		}
+	}
+
+	/**
+	 * Gets the in memory index of the account relationships, loading it if
+	 * needed.
+	 *
+	 * The index is loaded without holding graphLock, because loading takes
+	 * the case database read lock and a committing transaction holds the
+	 * write lock while it calls getLoadedGraph(). The loaded index is only
+	 * kept if nothing that could make it out of date happened during the
+	 * load.
+	 *
+	 * @return The index, or null if it is not enabled.
+	 *
+	 * @throws TskCoreException If there is an error loading the index.
+	 */
+	private CommunicationsGraph getGraph() throws TskCoreException {
+		if (!graphIndexEnabled) {
+			return null;
+		}
+		long generationBeforeLoad;
+		synchronized (graphLock) {
+			if (graph != null) {
+				return graph;
+			}
+			generationBeforeLoad = graphGeneration;
+		}
+
+		CommunicationsGraph loadedGraph = CommunicationsGraph.load(db);
+
+		synchronized (graphLock) {
+			if (!graphIndexEnabled) {
+				return null;
+			}
+			if (graph != null) {
+				return graph;
+			}
+			if (graphGeneration == generationBeforeLoad) {
+				graph = loadedGraph;
+			}
+			return loadedGraph;
+		}
+	}
+
 	/**
 	 * Add a custom account type that is not already defined in Account.Type.
 	 * Will not allow duplicates and will return existing type if the name is
@@ -293,16 +430,24 @@ public AccountFileInstance createAccountFileInstance(org.sleuthkit.datamodel.Acc
 	 */
 	// NOTE: Full name given for Type for doxygen linking
 	public Account getAccount(org.sleuthkit.datamodel.Account.Type accountType, String accountUniqueID) throws TskCoreException, InvalidAccountIDException {
-		Account account = null;
+		int accountTypeID = getAccountTypeId(accountType);
+		String normalizedAccountID = normalizeAccountID(accountType, accountUniqueID);
+		String cacheKey = accountTypeID + ":" + normalizedAccountID;
+		Account account = accountCache.getIfPresent(cacheKey);
+		if (account != null) {
+			return account;
+		}
+
 		db.acquireSingleUserCaseReadLock();
 		try (CaseDbConnection connection = db.getConnection();
 			Statement s = connection.createStatement();
-			ResultSet rs = connection.executeQuery(s, "SELECT * FROM accounts WHERE account_type_id = " + getAccountTypeId(accountType)
-					+ " AND account_unique_identifier = '" + normalizeAccountID(accountType, accountUniqueID) + "'");) { //NON-NLS
+			ResultSet rs = connection.executeQuery(s, "SELECT * FROM accounts WHERE account_type_id = " + accountTypeID
+					+ " AND account_unique_identifier = '" + normalizedAccountID + "'");) { //NON-NLS
 
 			if (rs.next()) {
 				account = new Account(rs.getInt("account_id"), accountType,
 						rs.getString("account_unique_identifier"));
+				accountCache.put(cacheKey, account);
 			}
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting account type id", ex);
@@ -339,6 +484,72 @@ public Account getAccount(org.sleuthkit.datamodel.Account.Type accountType, Stri
 	public void addRelationships(AccountFileInstance sender, List<AccountFileInstance> recipients,
 			BlackboardArtifact sourceArtifact, org.sleuthkit.datamodel.Relationship.Type relationshipType, long dateTime) throws TskCoreException, TskDataException {
 
+		AccountRelationships relationships = new AccountRelationships(sender, recipients, sourceArtifact, relationshipType, dateTime);
+		List<Long> accountIDs = getRelationshipAccountIDs(relationships);
+
+		CaseDbTransaction trans = db.beginTransaction();
+		try {
+			insertRelationships(Collections.singletonList(relationships), Collections.singletonList(accountIDs), trans);
+			trans.commit();
+		} catch (SQLException ex) {
+			trans.rollback();
+			throw new TskCoreException("Error adding accounts relationship", ex);
+		}
+	}
+
+	/**
+	 * Adds the relationships derived from many source artifacts, such as all
+	 * of the messages of a message database, as part of a transaction. For
+	 * each source artifact, relationships are added between the sender and
+	 * each of the recipient account instances and between all recipient
+	 * account instances, as by addRelationships(AccountFileInstance, List,
+	 * BlackboardArtifact, Relationship.Type, long). The relationships are
+	 * written with batched statements.
+	 *
+	 * All of the relationships are checked before any are added.
+	 *
+	 * @param relationships The relationships to add.
+	 * @param transaction   The transaction to add the relationships in. The
+	 *                      caller is responsible for committing or rolling
+	 *                      back the transaction.
+	 *
+	 * @throws TskCoreException If there is an error adding the relationships.
+	 * @throws TskDataException If the accounts and the source artifact of any
+	 *                          of the relationships are not from the same data
+	 *                          source, or if the source artifact and the
+	 *                          relationship type are not compatible.
+	 */
+	public void addRelationships(Collection<AccountRelationships> relationships, CaseDbTransaction transaction) throws TskCoreException, TskDataException {
+		List<AccountRelationships> relationshipsList = new ArrayList<>(relationships);
+		List<List<Long>> accountIDLists = new ArrayList<>();
+		for (AccountRelationships accountRelationships : relationshipsList) {
+			accountIDLists.add(getRelationshipAccountIDs(accountRelationships));
+		}
+		try {
+			insertRelationships(relationshipsList, accountIDLists, transaction);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error adding accounts relationships", ex);
+		}
+	}
+
+	/**
+	 * Checks the relationships derived from a source artifact and gets the
+	 * IDs of their accounts.
+	 *
+	 * @param relationships The relationships.
+	 *
+	 * @return The account IDs, sender first.
+	 *
+	 * @throws TskDataException If the accounts and the relationship are not
+	 *                          from the same data source, or if the
+	 *                          sourceArtifact and relationshipType are not
+	 *                          compatible.
+	 */
+	private List<Long> getRelationshipAccountIDs(AccountRelationships relationships) throws TskCoreException, TskDataException {
+		AccountFileInstance sender = relationships.getSender();
+		BlackboardArtifact sourceArtifact = relationships.getSourceArtifact();
+		Relationship.Type relationshipType = relationships.getRelationshipType();
+
 		if (sourceArtifact.getDataSourceObjectID() == null) {
 			throw new TskDataException("Source Artifact does not have a valid data source.");
 		}
@@ -364,14 +575,29 @@ public void addRelationships(AccountFileInstance sender, List<AccountFileInstanc
 			}
 		}
 
-		for (AccountFileInstance recipient : recipients) {
+		for (AccountFileInstance recipient : relationships.getRecipients()) {
 			accountIDs.add(recipient.getAccount().getAccountID());
 			if (!recipient.getDataSourceObjectID().equals(sourceArtifact.getDataSourceObjectID())) {
 				throw new TskDataException("Recipient and relationship are from different data sources :"
 						+ "Recipient source ID" + recipient.getDataSourceObjectID() + " != relationship source ID" + sourceArtifact.getDataSourceObjectID());
 			}
 		}
+		return accountIDs;
+	}
 
+	/**
+	 * Inserts the rows of the account_relationships table for relationships
+	 * derived from source artifacts, with batched statements.
+	 *
+	 * @param relationshipsList The relationships per source artifact.
+	 * @param accountIDLists    The account IDs of the relationships, as
+	 *                          returned by getRelationshipAccountIDs().
+	 * @param trans             The transaction to use.
+	 *
+	 * @throws SQLException
+	 * @throws TskCoreException
+	 */
+	private void insertRelationships(List<AccountRelationships> relationshipsList, List<List<Long>> accountIDLists, CaseDbTransaction trans) throws SQLException, TskCoreException {
 		// Set up the query for the prepared statement
 		String query = "INTO account_relationships (account1_id, account2_id, relationship_source_obj_id, date_time, relationship_type, data_source_obj_id  ) "
 				+ "VALUES (?,?,?,?,?,?)";
@@ -386,36 +612,120 @@ public void addRelationships(AccountFileInstance sender, List<AccountFileInstanc
 				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
 		}
 
-		CaseDbTransaction trans = db.beginTransaction();
-		try {
-			SleuthkitCase.CaseDbConnection connection = trans.getConnection();
-			PreparedStatement preparedStatement = connection.getPreparedStatement(query, Statement.NO_GENERATED_KEYS);
+		CaseDbConnection connection = trans.getConnection();
+		PreparedStatement preparedStatement = connection.getPreparedStatement(query, Statement.NO_GENERATED_KEYS);
+
+		// Remember the relationships that are added for the in memory index.
+		// Rows that are already in the table are ignored by the insert.
+		Set<List<Long>> existingRows = null;
+		List<CommunicationsGraph.Relationship> addedRelationships = null;
+		if (graphIndexEnabled) {
+			List<Long> sourceObjIDs = new ArrayList<>();
+			for (AccountRelationships relationships : relationshipsList) {
+				sourceObjIDs.add(relationships.getSourceArtifact().getId());
+			}
+			existingRows = getRelationshipRows(connection, sourceObjIDs);
+			addedRelationships = new ArrayList<>();
+		}
+
+		int batchSize = 0;
+		for (int r = 0; r < relationshipsList.size(); r++) {
+			AccountRelationships relationships = relationshipsList.get(r);
+			List<Long> accountIDs = accountIDLists.get(r);
+			long sourceObjID = relationships.getSourceArtifact().getId();
+			long dataSourceObjID = relationships.getSourceArtifact().getDataSourceObjectID();
+			long dateTime = relationships.getDateTime();
+			int relationshipTypeID = relationships.getRelationshipType().getTypeID();
+			Map<Long, Integer> accountTypeIDs = (addedRelationships == null) ? null : getAccountTypeIDs(relationships);
 
 			for (int i = 0; i < accountIDs.size(); i++) {
 				for (int j = i + 1; j < accountIDs.size(); j++) {
 					long account1_id = accountIDs.get(i);
 					long account2_id = accountIDs.get(j);
+					if (existingRows != null && existingRows.add(Arrays.asList(account1_id, account2_id, sourceObjID))) {
+						addedRelationships.add(new CommunicationsGraph.Relationship(account1_id, accountTypeIDs.get(account1_id),
+								account2_id, accountTypeIDs.get(account2_id), dataSourceObjID, relationshipTypeID,
+								dateTime > 0 ? dateTime : null));
+					}
 
 					preparedStatement.clearParameters();
 					preparedStatement.setLong(1, account1_id);
 					preparedStatement.setLong(2, account2_id);
-					preparedStatement.setLong(3, sourceArtifact.getId());
+					preparedStatement.setLong(3, sourceObjID);
 					if (dateTime > 0) {
 						preparedStatement.setLong(4, dateTime);
 					} else {
 						preparedStatement.setNull(4, java.sql.Types.BIGINT);
 					}
-					preparedStatement.setInt(5, relationshipType.getTypeID());
-					preparedStatement.setLong(6, sourceArtifact.getDataSourceObjectID());
+					preparedStatement.setInt(5, relationshipTypeID);
+					preparedStatement.setLong(6, dataSourceObjID);
+					preparedStatement.addBatch();
 
-					connection.executeUpdate(preparedStatement);
+					if (++batchSize >= RELATIONSHIPS_BATCH_SIZE) {
+						connection.executeBatch(preparedStatement);
+						batchSize = 0;
+					}
+				}
+			}
+		}
+		if (batchSize > 0) {
+			connection.executeBatch(preparedStatement);
+		}
+
+		if (addedRelationships != null && !addedRelationships.isEmpty()) {
+			trans.registerAddedAccountRelationships(addedRelationships);
+		}
+	}
+
+	/**
+	 * Gets the account type IDs of the accounts of relationships derived from a
+	 * source artifact.
+	 *
+	 * @param relationships The relationships.
+	 *
+	 * @return The account type IDs keyed by account ID.
+	 *
+	 * @throws TskCoreException
+	 */
+	private Map<Long, Integer> getAccountTypeIDs(AccountRelationships relationships) throws TskCoreException {
+		Map<Long, Integer> accountTypeIDs = new HashMap<>();
+		if (relationships.getSender() != null) {
+			Account account = relationships.getSender().getAccount();
+			accountTypeIDs.put(account.getAccountID(), getAccountTypeId(account.getAccountType()));
+		}
+		for (AccountFileInstance recipient : relationships.getRecipients()) {
+			Account account = recipient.getAccount();
+			accountTypeIDs.put(account.getAccountID(), getAccountTypeId(account.getAccountType()));
+		}
+		return accountTypeIDs;
+	}
+
+	/**
+	 * Gets the account_relationships rows that have the given relationship
+	 * sources.
+	 *
+	 * @param connection   The connection to use.
+	 * @param sourceObjIDs The object IDs of the relationship sources.
+	 *
+	 * @return The rows, as lists of the first account ID, second account ID
+	 *         and relationship source object ID.
+	 *
+	 * @throws SQLException
+	 */
+	private Set<List<Long>> getRelationshipRows(CaseDbConnection connection, Collection<Long> sourceObjIDs) throws SQLException {
+		Set<List<Long>> rows = new HashSet<>();
+		try (Statement statement = connection.createStatement()) {
+			for (List<Long> idBatch : Iterables.partition(sourceObjIDs, SleuthkitCase.MAX_IDS_PER_QUERY)) {
+				try (ResultSet rs = connection.executeQuery(statement, "SELECT account1_id, account2_id, relationship_source_obj_id"
+						+ " FROM account_relationships"
+						+ " WHERE relationship_source_obj_id IN (" + StringUtils.buildCSVString(idBatch) + ")")) { //NON-NLS
+					while (rs.next()) {
+						rows.add(Arrays.asList(rs.getLong("account1_id"), rs.getLong("account2_id"), rs.getLong("relationship_source_obj_id")));
+					}
 				}
 			}
-			trans.commit();
-		} catch (SQLException ex) {
-			trans.rollback();
-			throw new TskCoreException("Error adding accounts relationship", ex);
 		}
+		return rows;
 	}
 
 	/**
@@ -615,6 +925,20 @@ public org.sleuthkit.datamodel.Account.Type getAccountType(String accountTypeNam
 	 */
 	public List<AccountDeviceInstance> getAccountDeviceInstancesWithRelationships(CommunicationsFilter filter) throws TskCoreException {
 
+		CommunicationsGraph communicationsGraph = getGraph();
+		if (communicationsGraph != null) {
+			CommunicationsGraph.RelationshipFilter graphFilter = getGraphFilter(filter, new HashSet<String>(Arrays.asList(
+					CommunicationsFilter.DateRangeFilter.class.getName(),
+					CommunicationsFilter.DeviceFilter.class.getName(),
+					CommunicationsFilter.RelationshipTypeFilter.class.getName(),
+					CommunicationsFilter.AccountTypeFilter.class.getName(),
+					CommunicationsFilter.MostRecentFilter.class.getName()
+			)));
+			if (graphFilter != null) {
+				return getAccountDeviceInstances(communicationsGraph.getAccountDataSources(graphFilter));
+			}
+		}
+
 		//set up applicable filters 
 		Set<String> applicableInnerQueryFilters = new HashSet<String>(Arrays.asList(
 				CommunicationsFilter.DateRangeFilter.class.getName(),
@@ -725,6 +1049,18 @@ public List<AccountDeviceInstance> getAccountDeviceInstancesWithRelationships(Co
 	 */
 	public Map<AccountPair, Long> getRelationshipCountsPairwise(Set<AccountDeviceInstance> accounts, CommunicationsFilter filter) throws TskCoreException {
 
+		CommunicationsGraph communicationsGraph = getGraph();
+		if (communicationsGraph != null) {
+			CommunicationsGraph.RelationshipFilter graphFilter = getGraphFilter(filter, new HashSet<String>(Arrays.asList(
+					CommunicationsFilter.DateRangeFilter.class.getName(),
+					CommunicationsFilter.DeviceFilter.class.getName(),
+					CommunicationsFilter.RelationshipTypeFilter.class.getName()
+			)));
+			if (graphFilter != null) {
+				return getRelationshipCountsPairwise(communicationsGraph, accounts, graphFilter);
+			}
+		}
+
 		Set<Long> accountIDs = new HashSet<Long>();
 		Set<String> accountDeviceIDs = new HashSet<String>();
 		for (AccountDeviceInstance adi : accounts) {
@@ -997,6 +1333,21 @@ public List<AccountDeviceInstance> getRelatedAccountDeviceInstances(AccountDevic
 		final List<Long> dataSourceObjIds
 				= getSleuthkitCase().getDataSourceObjIds(accountDeviceInstance.getDeviceId());
 
+		CommunicationsGraph communicationsGraph = getGraph();
+		if (communicationsGraph != null) {
+			CommunicationsGraph.RelationshipFilter graphFilter = getGraphFilter(filter, new HashSet<String>(Arrays.asList(
+					CommunicationsFilter.DateRangeFilter.class.getName(),
+					CommunicationsFilter.DeviceFilter.class.getName(),
+					CommunicationsFilter.RelationshipTypeFilter.class.getName(),
+					CommunicationsFilter.AccountTypeFilter.class.getName()
+			)));
+			if (graphFilter != null) {
+				graphFilter.restrictDataSources(new HashSet<Long>(dataSourceObjIds));
+				return getAccountDeviceInstances(communicationsGraph.getRelatedAccountDataSources(
+						accountDeviceInstance.getAccount().getAccountID(), graphFilter));
+			}
+		}
+
 		//set up applicable filters 
 		Set<String> applicableInnerQueryFilters = new HashSet<String>(Arrays.asList(
 				CommunicationsFilter.DateRangeFilter.class.getName(),
@@ -1362,6 +1713,217 @@ private String getCommunicationsFilterSQL(CommunicationsFilter commFilter, Set<S
 		return sqlStr;
 	}
 
+	/**
+	 * Builds the filter for the in memory index of the account relationships
+	 * from the given CommunicationsFilter, the same way as
+	 * getCommunicationsFilterSQL() and getMostRecentFilterLimitSQL() build the
+	 * SQL for it.
+	 *
+	 * @param commFilter        The CommunicationsFilter to get the filter for.
+	 * @param applicableFilters A Set of names of classes of subfilters that are
+	 *                          applicable. SubFilters not in this list will be
+	 *                          ignored.
+	 *
+	 * @return The filter, or null if one of the applicable subfilters can not
+	 *         be evaluated with the index: a MostRecentFilter with a limit, or
+	 *         a DateRangeFilter with times that are not on the hour.
+	 */
+	private CommunicationsGraph.RelationshipFilter getGraphFilter(CommunicationsFilter commFilter, Set<String> applicableFilters) {
+		CommunicationsGraph.RelationshipFilter graphFilter = new CommunicationsGraph.RelationshipFilter();
+		if (null == commFilter) {
+			return graphFilter;
+		}
+
+		for (CommunicationsFilter.SubFilter subFilter : commFilter.getAndFilters()) {
+			if (!applicableFilters.contains(subFilter.getClass().getName())) {
+				continue;
+			}
+			if (subFilter instanceof CommunicationsFilter.RelationshipTypeFilter) {
+				Set<Integer> typeIDs = new HashSet<Integer>();
+				for (Relationship.Type relType : ((CommunicationsFilter.RelationshipTypeFilter) subFilter).getRelationshipTypes()) {
+					typeIDs.add(relType.getTypeID());
+				}
+				if (!typeIDs.isEmpty()) {
+					graphFilter.restrictRelationshipTypes(typeIDs);
+				}
+			} else if (subFilter instanceof CommunicationsFilter.DateRangeFilter) {
+				CommunicationsFilter.DateRangeFilter dateRangeFilter = (CommunicationsFilter.DateRangeFilter) subFilter;
+				long startDate = dateRangeFilter.getStartDate();
+				long endDate = dateRangeFilter.getEndDate();
+				if (startDate % CommunicationsGraph.DATE_BUCKET_SIZE != 0 || endDate % CommunicationsGraph.DATE_BUCKET_SIZE != 0) {
+					return null;
+				}
+				if (startDate > 0) {
+					graphFilter.restrictStartTime(startDate);
+				}
+				if (endDate > 0) {
+					graphFilter.restrictEndTime(endDate);
+				}
+			} else if (subFilter instanceof CommunicationsFilter.AccountTypeFilter) {
+				Set<Integer> typeIDs = new HashSet<Integer>();
+				for (Account.Type accountType : ((CommunicationsFilter.AccountTypeFilter) subFilter).getAccountTypes()) {
+					typeIDs.add(getAccountTypeId(accountType));
+				}
+				if (!typeIDs.isEmpty()) {
+					graphFilter.restrictAccountTypes(typeIDs);
+				}
+			} else if (subFilter instanceof CommunicationsFilter.DeviceFilter) {
+				Set<Long> dataSourceObjIDs = new HashSet<Long>();
+				for (String deviceId : ((CommunicationsFilter.DeviceFilter) subFilter).getDevices()) {
+					try {
+						dataSourceObjIDs.addAll(db.getDataSourceObjIds(deviceId));
+					} catch (TskCoreException ex) {
+						LOGGER.log(Level.WARNING, "failed to get datasource object ids for deviceId", ex);
+					}
+				}
+				if (!dataSourceObjIDs.isEmpty()) {
+					graphFilter.restrictDataSources(dataSourceObjIDs);
+				}
+			} else if (subFilter instanceof CommunicationsFilter.MostRecentFilter) {
+				if (((CommunicationsFilter.MostRecentFilter) subFilter).getLimit() > 0) {
+					return null;
+				}
+			} else {
+				return null;
+			}
+		}
+		return graphFilter;
+	}
+
+	/**
+	 * Counts the relationships between all pairs of the given accounts with
+	 * the in memory index of the account relationships.
+	 *
+	 * @param communicationsGraph The index.
+	 * @param accounts            The accounts.
+	 * @param graphFilter         The filter that the relationships must pass.
+	 *
+	 * @return The relationship counts, as returned by
+	 *         getRelationshipCountsPairwise().
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	private Map<AccountPair, Long> getRelationshipCountsPairwise(CommunicationsGraph communicationsGraph, Set<AccountDeviceInstance> accounts,
+			CommunicationsGraph.RelationshipFilter graphFilter) throws TskCoreException {
+		Map<Long, Account> accountsByID = new HashMap<Long, Account>();
+		Set<Long> dataSourceObjIDs = new HashSet<Long>();
+		for (AccountDeviceInstance adi : accounts) {
+			accountsByID.put(adi.getAccount().getAccountID(), adi.getAccount());
+			dataSourceObjIDs.addAll(db.getDataSourceObjIds(adi.getDeviceId()));
+		}
+		graphFilter.restrictDataSources(dataSourceObjIDs);
+
+		Map<Long, String> deviceIDs = getDataSourceDeviceIds();
+		Map<AccountPair, Long> results = new HashMap<AccountPair, Long>();
+		for (long[] counts : communicationsGraph.getRelationshipCounts(accountsByID.keySet(), graphFilter)) {
+			String deviceID = deviceIDs.get(counts[2]);
+			if (deviceID != null) {
+				AccountPair relationshipKey = new AccountPair(
+						new AccountDeviceInstance(accountsByID.get(counts[0]), deviceID),
+						new AccountDeviceInstance(accountsByID.get(counts[1]), deviceID));
+				results.merge(relationshipKey, counts[3], Long::sum);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Gets the account device instances for accounts and the data sources of
+	 * their relationships, as returned by the in memory index of the account
+	 * relationships.
+	 *
+	 * @param accountDataSources A map of account IDs to data source object
+	 *                           IDs.
+	 *
+	 * @return The account device instances, one per account and device.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	private List<AccountDeviceInstance> getAccountDeviceInstances(Map<Long, Set<Long>> accountDataSources) throws TskCoreException {
+		Map<Long, String> deviceIDs = getDataSourceDeviceIds();
+		Map<Long, Account> accounts = getAccounts(accountDataSources.keySet());
+		List<AccountDeviceInstance> accountDeviceInstances = new ArrayList<AccountDeviceInstance>();
+		for (Map.Entry<Long, Set<Long>> entry : accountDataSources.entrySet()) {
+			Account account = accounts.get(entry.getKey());
+			if (account == null) {
+				continue;
+			}
+			Set<String> accountDeviceIDs = new HashSet<String>();
+			for (Long dataSourceObjID : entry.getValue()) {
+				String deviceID = deviceIDs.get(dataSourceObjID);
+				if (deviceID != null && accountDeviceIDs.add(deviceID)) {
+					accountDeviceInstances.add(new AccountDeviceInstance(account, deviceID));
+				}
+			}
+		}
+		return accountDeviceInstances;
+	}
+
+	/**
+	 * Gets the accounts with the given IDs.
+	 *
+	 * @param accountIDs The account IDs.
+	 *
+	 * @return A map of account IDs to accounts.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	private Map<Long, Account> getAccounts(Collection<Long> accountIDs) throws TskCoreException {
+		Map<Long, Account> accounts = new HashMap<Long, Account>();
+		if (accountIDs.isEmpty()) {
+			return accounts;
+		}
+		db.acquireSingleUserCaseReadLock();
+		try (CaseDbConnection connection = db.getConnection();
+				Statement s = connection.createStatement()) {
+			for (List<Long> idBatch : Iterables.partition(accountIDs, SleuthkitCase.MAX_IDS_PER_QUERY)) {
+				String queryStr = "SELECT accounts.account_id AS account_id,"
+						+ " accounts.account_unique_identifier AS account_unique_identifier,"
+						+ " account_types.type_name AS type_name"
+						+ " FROM accounts AS accounts"
+						+ " JOIN account_types AS account_types"
+						+ "		ON accounts.account_type_id = account_types.account_type_id"
+						+ " WHERE accounts.account_id IN (" + StringUtils.buildCSVString(idBatch) + ")"; //NON-NLS
+				try (ResultSet rs = connection.executeQuery(s, queryStr)) {
+					while (rs.next()) {
+						long accountID = rs.getLong("account_id");
+						Account.Type accountType = typeNameToAccountTypeMap.get(rs.getString("type_name"));
+						accounts.put(accountID, new Account(accountID, accountType, rs.getString("account_unique_identifier")));
+					}
+				}
+			}
+			return accounts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting accounts. " + ex.getMessage(), ex);
+		} finally {
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets the device IDs of all of the data sources.
+	 *
+	 * @return A map of data source object IDs to device IDs.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	private Map<Long, String> getDataSourceDeviceIds() throws TskCoreException {
+		Map<Long, String> deviceIDs = new HashMap<Long, String>();
+		db.acquireSingleUserCaseReadLock();
+		try (CaseDbConnection connection = db.getConnection();
+				Statement s = connection.createStatement();
+				ResultSet rs = connection.executeQuery(s, "SELECT obj_id, device_id FROM data_source_info")) { //NON-NLS
+			while (rs.next()) {
+				deviceIDs.put(rs.getLong("obj_id"), rs.getString("device_id"));
+			}
+			return deviceIDs;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting data source device IDs. " + ex.getMessage(), ex);
+		} finally {
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
 	/**
 	 * Builds the SQL for the MostRecentFilter.
 	 *
@@ -1385,4 +1947,84 @@ private String getMostRecentFilterLimitSQL(CommunicationsFilter filter) {
 
 		return limitStr;
 	}
+
+	/**
+	 * The relationships derived from a source artifact, such as a message,
+	 * between a sender and recipients. Used to add the relationships of many
+	 * source artifacts at once.
+	 */
+	public static final class AccountRelationships {
+
+		private final AccountFileInstance sender;
+		private final List<AccountFileInstance> recipients;
+		private final BlackboardArtifact sourceArtifact;
+		private final Relationship.Type relationshipType;
+		private final long dateTime;
+
+		/**
+		 * Constructs the relationships derived from a source artifact.
+		 *
+		 * @param sender           Sender account, may be null.
+		 * @param recipients       List of recipients, may be empty.
+		 * @param sourceArtifact   Artifact that relationships were derived
+		 *                         from.
+		 * @param relationshipType The type of relationships to be created.
+		 * @param dateTime         Date of communications/relationship, as
+		 *                         epoch seconds.
+		 */
+		// NOTE: Full name given for Type for doxygen linking
+		public AccountRelationships(AccountFileInstance sender, List<AccountFileInstance> recipients,
+				BlackboardArtifact sourceArtifact, org.sleuthkit.datamodel.Relationship.Type relationshipType, long dateTime) {
+			this.sender = sender;
+			this.recipients = (recipients == null) ? Collections.emptyList() : new ArrayList<>(recipients);
+			this.sourceArtifact = sourceArtifact;
+			this.relationshipType = relationshipType;
+			this.dateTime = dateTime;
+		}
+
+		/**
+		 * Gets the sender account.
+		 *
+		 * @return The sender, may be null.
+		 */
+		public AccountFileInstance getSender() {
+			return sender;
+		}
+
+		/**
+		 * Gets the recipient accounts.
+		 *
+		 * @return The recipients, may be empty.
+		 */
+		public List<AccountFileInstance> getRecipients() {
+			return Collections.unmodifiableList(recipients);
+		}
+
+		/**
+		 * Gets the artifact that the relationships were derived from.
+		 *
+		 * @return The source artifact.
+		 */
+		public BlackboardArtifact getSourceArtifact() {
+			return sourceArtifact;
+		}
+
+		/**
+		 * Gets the type of the relationships.
+		 *
+		 * @return The relationship type.
+		 */
+		public Relationship.Type getRelationshipType() {
+			return relationshipType;
+		}
+
+		/**
+		 * Gets the date of the communications/relationships.
+		 *
+		 * @return The date, as epoch seconds.
+		 */
+		public long getDateTime() {
+			return dateTime;
+		}
+	}
 }
@@ -0,0 +1,127 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bit set indexed by non-negative longs (object IDs) that can be read and
+ * updated by many threads without locking. The bits are kept in fixed size
+ * segments that are only allocated when a bit in them is set. Reads are a map
+ * lookup and a volatile read, and bits are set with a compare and set on the
+ * word that holds them.
+ */
+final class ConcurrentBitSet {
+
+	static final int WORDS_PER_SEGMENT = 1024;
+	private static final int SEGMENT_SHIFT = 16; // 64 bits per word * WORDS_PER_SEGMENT
+
+	private final ConcurrentMap<Long, AtomicLongArray> segments = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the value of a bit.
+	 *
+	 * @param index The index of the bit.
+	 *
+	 * @return True if the bit is set.
+	 */
+	boolean get(long index) {
+		AtomicLongArray segment = segments.get(index >>> SEGMENT_SHIFT);
+		if (segment == null) {
+			return false;
+		}
+		return (segment.get(getWordIndex(index)) & (1L << index)) != 0;
+	}
+
+	/**
+	 * Sets a bit.
+	 *
+	 * @param index The index of the bit.
+	 */
+	void set(long index) {
+		setWord(index >>> SEGMENT_SHIFT, getWordIndex(index), 1L << index);
+	}
+
+	/**
+	 * Sets the bits of a word of a segment that are set in the given word.
+	 *
+	 * @param segmentIndex The index of the segment.
+	 * @param wordIndex    The index of the word in the segment.
+	 * @param word         The bits to set.
+	 */
+	void setWord(long segmentIndex, int wordIndex, long word) {
+		if (word == 0) {
+			return;
+		}
+		AtomicLongArray segment = segments.get(segmentIndex);
+		if (segment == null) {
+			segment = segments.computeIfAbsent(segmentIndex, key -> new AtomicLongArray(WORDS_PER_SEGMENT));
+		}
+		long current = segment.get(wordIndex);
+		while ((current & word) != word) {
+			if (segment.compareAndSet(wordIndex, current, current | word)) {
+				return;
+			}
+			current = segment.get(wordIndex);
+		}
+	}
+
+	/**
+	 * Gets a word of a segment.
+	 *
+	 * @param segmentIndex The index of the segment.
+	 * @param wordIndex    The index of the word in the segment.
+	 *
+	 * @return The word, zero if the segment has no bits set.
+	 */
+	long getWord(long segmentIndex, int wordIndex) {
+		AtomicLongArray segment = segments.get(segmentIndex);
+		return segment == null ? 0 : segment.get(wordIndex);
+	}
+
+	/**
+	 * Gets the indexes of the segments that may have bits set.
+	 *
+	 * @return An unmodifiable view of the segment indexes.
+	 */
+	Set<Long> getSegmentIndexes() {
+		return Collections.unmodifiableSet(segments.keySet());
+	}
+
+	/**
+	 * Sets all of the bits that are set in another bit set.
+	 *
+	 * @param other The other bit set.
+	 */
+	void or(ConcurrentBitSet other) {
+		for (Long segmentIndex : other.getSegmentIndexes()) {
+			for (int wordIndex = 0; wordIndex < WORDS_PER_SEGMENT; wordIndex++) {
+				setWord(segmentIndex, wordIndex, other.getWord(segmentIndex, wordIndex));
+			}
+		}
+	}
+
+	private static int getWordIndex(long index) {
+		return (int) (index >>> 6) & (WORDS_PER_SEGMENT - 1);
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -47,6 +48,25 @@ public interface Content extends SleuthkitVisitableItem {
 	 */
 	public int read(byte[] buf, long offset, long len) throws TskCoreException;
 
+	/**
+	 * Reads data that this content object is associated with into a buffer.
+	 * Up to the remaining number of bytes in the buffer are written starting
+	 * at its position, and the position is advanced by the number of bytes
+	 * read. Content backed by the SleuthKit writes directly into direct
+	 * buffers, avoiding the copy through a Java array.
+	 *
+	 * @param dst    the buffer to copy read data to
+	 * @param offset byte offset in the content to start reading from
+	 *
+	 * @return num of bytes read, or -1 on error
+	 *
+	 * @throws TskCoreException if critical error occurred during read in the
+	 *                          tsk core
+	 */
+	default int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return ByteBufferReads.read(dst, offset, this::read);
+	}
+
 	/**
 	 * Free native resources after read is done on the Content object. After
 	 * closing, read can be called again on the same Content object, which
@@ -0,0 +1,292 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded cache of fixed size blocks read through the JNI layer from
+ * image and file handles. Many callers read content sequentially in small
+ * chunks, and each of those reads would otherwise go back into the SleuthKit
+ * (and possibly decompress the same E01 or VMDK chunk again). Blocks are
+ * stored in direct buffers of their own so the cache does not add to the Java
+ * heap and each block can be evicted on its own, and least recently used
+ * blocks are evicted first.
+ *
+ * When a handle is read sequentially, the cache reads ahead a growing number
+ * of blocks in a single call into the SleuthKit.
+ *
+ * The cache is disabled (size zero) until setMaxSize() is called.
+ */
+final class ContentReadCache {
+
+	/**
+	 * Reads data from a handle through the JNI layer.
+	 */
+	interface BlockReader {
+
+		/**
+		 * Read data from the handle into the start of the buffer.
+		 *
+		 * @param readBuffer The buffer to read into.
+		 * @param offset     The offset to read from.
+		 * @param len        The number of bytes to read.
+		 *
+		 * @return The number of bytes read.
+		 *
+		 * @throws TskCoreException
+		 */
+		int read(byte[] readBuffer, long offset, long len) throws TskCoreException;
+	}
+
+	static final int BLOCK_SIZE = 64 * 1024;
+	static final int MAX_READ_AHEAD_BLOCKS = 16;
+
+	// Reused by each thread to read the blocks before they are copied into
+	// their direct buffers
+	private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[BLOCK_SIZE * MAX_READ_AHEAD_BLOCKS]);
+
+	private final AtomicLong nextHandleId = new AtomicLong(0);
+	private final AtomicLong readAheadBlocks = new AtomicLong(0);
+	private final Map<Long, HandleState> handleStates = new ConcurrentHashMap<>();
+	private volatile long maxSize = 0;
+	private volatile Cache<BlockKey, ByteBuffer> blocks = null;
+
+	/**
+	 * Set the maximum number of bytes held by the cache. Changing the size
+	 * discards the current contents and statistics.
+	 *
+	 * @param maxSizeInBytes The maximum size, or zero to disable the cache.
+	 */
+	synchronized void setMaxSize(long maxSizeInBytes) {
+		if (maxSizeInBytes < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative: " + maxSizeInBytes);
+		}
+		if (maxSizeInBytes == maxSize) {
+			return;
+		}
+		if (blocks != null) {
+			blocks.invalidateAll();
+		}
+		maxSize = maxSizeInBytes;
+		readAheadBlocks.set(0);
+		if (maxSizeInBytes < BLOCK_SIZE) {
+			blocks = null;
+		} else {
+			blocks = CacheBuilder.newBuilder()
+					.maximumWeight(maxSizeInBytes)
+					.weigher((BlockKey key, ByteBuffer block) -> block.capacity())
+					.recordStats()
+					.build();
+		}
+	}
+
+	/**
+	 * Get the maximum number of bytes held by the cache.
+	 *
+	 * @return The maximum size, zero if the cache is disabled.
+	 */
+	long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Get the hit and miss counts of the cache since it was last resized.
+	 *
+	 * @return The statistics.
+	 */
+	SleuthkitJNI.ReadCacheStatistics getStatistics() {
+		Cache<BlockKey, ByteBuffer> currentBlocks = blocks;
+		if (currentBlocks == null) {
+			return new SleuthkitJNI.ReadCacheStatistics(0, 0, 0, 0, 0, 0);
+		}
+		CacheStats stats = currentBlocks.stats();
+		long sizeInBytes = 0;
+		for (ByteBuffer block : currentBlocks.asMap().values()) {
+			sizeInBytes += block.capacity();
+		}
+		return new SleuthkitJNI.ReadCacheStatistics(stats.hitCount(), stats.missCount(),
+				readAheadBlocks.get(), stats.evictionCount(), currentBlocks.size(), sizeInBytes);
+	}
+
+	/**
+	 * Forget everything cached for a handle. Must be called when a handle is
+	 * closed, since the SleuthKit may reuse the handle value.
+	 *
+	 * @param handle The handle.
+	 */
+	void invalidate(long handle) {
+		// The blocks are keyed by the handle state ID, so they become
+		// unreachable and age out of the cache.
+		handleStates.remove(handle);
+	}
+
+	/**
+	 * Read data for a handle, using cached blocks where possible.
+	 *
+	 * @param handle     The handle.
+	 * @param readBuffer The buffer to read into, starting at index 0.
+	 * @param offset     The offset to read from.
+	 * @param len        The number of bytes to read.
+	 * @param reader     Reads uncached data from the handle.
+	 *
+	 * @return The number of bytes read, or the value returned by the reader
+	 *         if nothing could be read.
+	 *
+	 * @throws TskCoreException
+	 */
+	int read(long handle, byte[] readBuffer, long offset, long len, BlockReader reader) throws TskCoreException {
+		Cache<BlockKey, ByteBuffer> currentBlocks = blocks;
+		long toRead = Math.min(len, readBuffer.length);
+		if (currentBlocks == null || toRead <= 0 || offset < 0
+				|| toRead >= (long) BLOCK_SIZE * MAX_READ_AHEAD_BLOCKS) {
+			// Large reads gain nothing from the cache
+			return reader.read(readBuffer, offset, len);
+		}
+
+		HandleState state = handleStates.computeIfAbsent(handle, h -> new HandleState(nextHandleId.incrementAndGet()));
+		boolean sequential = (offset == state.nextOffset);
+		state.nextOffset = offset + toRead;
+		if (!sequential) {
+			state.readAheadBlocks = 1;
+		}
+
+		int bytesCopied = 0;
+		long position = offset;
+		while (bytesCopied < toRead) {
+			if (position >= state.endOffset) {
+				// Let the reader report reads at or beyond the end as it normally would
+				return (bytesCopied > 0) ? bytesCopied : reader.read(readBuffer, offset, len);
+			}
+			long blockIndex = position / BLOCK_SIZE;
+			int offsetInBlock = (int) (position % BLOCK_SIZE);
+			ByteBuffer block = currentBlocks.getIfPresent(new BlockKey(state.id, blockIndex));
+			if (block == null) {
+				int lastNeededBlock = (int) ((offset + toRead - 1) / BLOCK_SIZE - blockIndex) + 1;
+				int blockCount = Math.min(Math.max(lastNeededBlock, sequential ? state.readAheadBlocks : 1), MAX_READ_AHEAD_BLOCKS);
+				byte[] data = READ_BUFFER.get();
+				int bytesRead = reader.read(data, blockIndex * BLOCK_SIZE, blockCount * BLOCK_SIZE);
+				if (bytesRead < blockCount * BLOCK_SIZE) {
+					state.endOffset = blockIndex * BLOCK_SIZE + Math.max(bytesRead, 0);
+				}
+				if (blockCount > lastNeededBlock) {
+					readAheadBlocks.addAndGet(blockCount - lastNeededBlock);
+				}
+				if (sequential) {
+					state.readAheadBlocks = Math.min(state.readAheadBlocks * 2, MAX_READ_AHEAD_BLOCKS);
+				}
+				if (bytesRead <= 0) {
+					return (bytesCopied > 0) ? bytesCopied : bytesRead;
+				}
+				block = cacheBlocks(currentBlocks, state, blockIndex, data, bytesRead);
+			}
+
+			int available = block.limit() - offsetInBlock;
+			if (available <= 0) {
+				break;
+			}
+			int count = (int) Math.min(available, toRead - bytesCopied);
+			ByteBuffer view = block.duplicate();
+			view.position(offsetInBlock);
+			view.get(readBuffer, bytesCopied, count);
+			bytesCopied += count;
+			position += count;
+			if (block.limit() < BLOCK_SIZE) {
+				// Short block, nothing beyond it
+				break;
+			}
+		}
+		return bytesCopied;
+	}
+
+	/**
+	 * Add consecutive blocks read with one call to the reader to the cache.
+	 * Each block is copied into its own direct buffer, so that the weight of
+	 * a block is the memory it holds.
+	 *
+	 * @return The first block.
+	 */
+	private static ByteBuffer cacheBlocks(Cache<BlockKey, ByteBuffer> currentBlocks, HandleState state, long firstBlockIndex, byte[] data, int bytesRead) {
+		ByteBuffer firstBlock = null;
+		for (int start = 0; start < bytesRead; start += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, bytesRead - start);
+			ByteBuffer block = ByteBuffer.allocateDirect(length);
+			block.put(data, start, length);
+			block.flip();
+			currentBlocks.put(new BlockKey(state.id, firstBlockIndex + start / BLOCK_SIZE), block);
+			if (firstBlock == null) {
+				firstBlock = block;
+			}
+		}
+		return firstBlock;
+	}
+
+	/**
+	 * Per handle state. The ID keeps the blocks of a closed handle from being
+	 * returned for a new handle with the same value.
+	 */
+	private static final class HandleState {
+
+		private final long id;
+		private volatile long nextOffset = -1;
+		private volatile int readAheadBlocks = 1;
+		private volatile long endOffset = Long.MAX_VALUE;
+
+		private HandleState(long id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * Key of a cached block.
+	 */
+	private static final class BlockKey {
+
+		private final long handleId;
+		private final long blockIndex;
+
+		private BlockKey(long handleId, long blockIndex) {
+			this.handleId = handleId;
+			this.blockIndex = blockIndex;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return handleId == other.handleId && blockIndex == other.blockIndex;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 31 * hash + (int) (handleId ^ (handleId >>> 32));
+			hash = 31 * hash + (int) (blockIndex ^ (blockIndex >>> 32));
+			return hash;
+		}
+	}
+}
@@ -22,6 +22,7 @@
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
@@ -41,6 +42,22 @@ public class FileManager {
 		this.skCase = Objects.requireNonNull(skCase, "Cannot create Blackboard for null SleuthkitCase");
 	}
 	
+	/**
+	 * Get the files with the given object IDs. The files are loaded with a few
+	 * queries that each cover many IDs, which is much faster than looking them
+	 * up one at a time.
+	 *
+	 * @param objIds The object IDs of the files.
+	 *
+	 * @return The files, in the order of the given IDs. IDs that are not files
+	 *         are skipped.
+	 *
+	 * @throws TskCoreException
+	 */
+	public List<AbstractFile> getFilesByIds(Collection<Long> objIds) throws TskCoreException {
+		return skCase.getAbstractFilesByIds(objIds);
+	}
+
 	/**
      * Find all files with the exact given name and parentId.
      * 
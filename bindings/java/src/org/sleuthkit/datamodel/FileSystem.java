@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -72,6 +73,11 @@ public int read(byte[] buf, long offset, long len) throws TskCoreException {
 		return SleuthkitJNI.readFs(getFileSystemHandle(), buf, offset, len);
 	}
 
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return SleuthkitJNI.readFs(getFileSystemHandle(), dst, offset);
+	}
+
 	@Override
 	public long getSize() {
 		return blockSize * blockCount;
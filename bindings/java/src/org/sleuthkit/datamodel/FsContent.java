@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -222,6 +223,32 @@ protected synchronized int readInt(byte[] buf, long offset, long len) throws Tsk
 		return SleuthkitJNI.readFile(fileHandle, buf, offset, len);
 	}
 
+	/**
+	 * Reads bytes from this file or directory into a buffer.
+	 *
+	 * @param dst    Buffer to read into, up to its remaining bytes.
+	 * @param offset Start position in the file.
+	 *
+	 * @return Number of bytes read.
+	 *
+	 * @throws TskCoreException if there is a problem reading the file.
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	protected synchronized int readInt(ByteBuffer dst, long offset) throws TskCoreException {
+		if (offset == 0 && size == 0) {
+			//special case for 0-size file
+			return 0;
+		}
+		loadFileHandle();
+		return SleuthkitJNI.readFile(fileHandle, dst, offset);
+	}
+
+	@Override
+	boolean readIntFillsDirectBuffers() {
+		return true;
+	}
+
 	@Override
 	public boolean isRoot() {
 		try {
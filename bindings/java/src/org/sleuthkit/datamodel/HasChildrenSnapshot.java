@@ -0,0 +1,178 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An on disk copy of the has children map of a case, written next to the case
+ * database when the case is closed so that the next open only has to query
+ * tsk_objects for the objects added after it was written.
+ *
+ * The snapshot records the last object it covers (its ID, parent ID and type)
+ * so that a snapshot that no longer matches the database can be detected and
+ * ignored. The file holds a header followed by the non-zero 64 bit words of
+ * each segment of the bit set:
+ *
+ * magic, version, last object ID, last object parent ID, last object type,
+ * segment count, and then for each segment its index, word count and (word
+ * index, word) pairs.
+ */
+final class HasChildrenSnapshot {
+
+	static final String FILE_SUFFIX = ".haschildren"; //NON-NLS
+	private static final int MAGIC = 0x54534b43;
+	private static final int VERSION = 2;
+
+	private final long lastObjId;
+	private final long lastParentObjId;
+	private final int lastObjType;
+	private final ConcurrentBitSet bitSet;
+
+	/**
+	 * Constructs a snapshot of a has children map.
+	 *
+	 * @param lastObjId       The ID of the last object covered by the map.
+	 * @param lastParentObjId The parent ID of the last object, or 0 if it has
+	 *                        no parent.
+	 * @param lastObjType     The type of the last object.
+	 * @param bitSet          The has children bit set.
+	 */
+	HasChildrenSnapshot(long lastObjId, long lastParentObjId, int lastObjType, ConcurrentBitSet bitSet) {
+		this.lastObjId = lastObjId;
+		this.lastParentObjId = lastParentObjId;
+		this.lastObjType = lastObjType;
+		this.bitSet = bitSet;
+	}
+
+	long getLastObjId() {
+		return lastObjId;
+	}
+
+	long getLastParentObjId() {
+		return lastParentObjId;
+	}
+
+	int getLastObjType() {
+		return lastObjType;
+	}
+
+	ConcurrentBitSet getBitSet() {
+		return bitSet;
+	}
+
+	/**
+	 * Reads a snapshot. The file is read into memory rather than mapped, since
+	 * a mapped file can not be replaced on Windows until the mapping is
+	 * garbage collected.
+	 *
+	 * @param path The snapshot file.
+	 *
+	 * @return The snapshot, or null if there is no snapshot file.
+	 *
+	 * @throws IOException If the file can not be read or is not a valid
+	 *                     snapshot.
+	 */
+	static HasChildrenSnapshot read(Path path) throws IOException {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Unsupported has children snapshot: " + path);
+			}
+			long lastObjId = buffer.getLong();
+			long lastParentObjId = buffer.getLong();
+			int lastObjType = buffer.getInt();
+			int segmentCount = buffer.getInt();
+
+			ConcurrentBitSet bitSet = new ConcurrentBitSet();
+			for (int i = 0; i < segmentCount; i++) {
+				long segmentIndex = buffer.getLong();
+				int wordCount = buffer.getInt();
+				for (int j = 0; j < wordCount; j++) {
+					bitSet.setWord(segmentIndex, buffer.getShort(), buffer.getLong());
+				}
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException("Unexpected data at end of has children snapshot: " + path);
+			}
+			return new HasChildrenSnapshot(lastObjId, lastParentObjId, lastObjType, bitSet);
+		} catch (NoSuchFileException ex) {
+			return null;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+			throw new IOException("Truncated has children snapshot: " + path, ex);
+		}
+	}
+
+	/**
+	 * Writes the snapshot. The snapshot is written to a temporary file that
+	 * then replaces any existing snapshot, so a partially written file is
+	 * never read.
+	 *
+	 * @param path The snapshot file.
+	 *
+	 * @throws IOException If the file can not be written.
+	 */
+	void write(Path path) throws IOException {
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp"); //NON-NLS
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(lastObjId);
+			out.writeLong(lastParentObjId);
+			out.writeInt(lastObjType);
+			List<Long> segmentIndexes = new ArrayList<>(bitSet.getSegmentIndexes());
+			out.writeInt(segmentIndexes.size());
+			long[] words = new long[ConcurrentBitSet.WORDS_PER_SEGMENT];
+			for (long segmentIndex : segmentIndexes) {
+				int wordCount = 0;
+				for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+					words[wordIndex] = bitSet.getWord(segmentIndex, wordIndex);
+					if (words[wordIndex] != 0) {
+						wordCount++;
+					}
+				}
+				out.writeLong(segmentIndex);
+				out.writeInt(wordCount);
+				for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+					if (words[wordIndex] != 0) {
+						out.writeShort(wordIndex);
+						out.writeLong(words[wordIndex]);
+					}
+				}
+			}
+		}
+
+		try {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -19,27 +19,70 @@
 package org.sleuthkit.datamodel;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Utility to calculate a hash for FsContent and store in TSK database
  */
 public class HashUtility {
 
-	private final static int BUFFER_SIZE = 16 * 1024;
+	private static final Logger logger = Logger.getLogger(HashUtility.class.getName());
+
+	private final static int BUFFER_SIZE = 1024 * 1024;
+
+	// Each thread that calculates hashes reuses a pair of buffers, so that one
+	// can be read into while the digests are updated from the other.
+	private static final ThreadLocal<byte[][]> BUFFERS = ThreadLocal.withInitial(() -> new byte[][]{new byte[BUFFER_SIZE], new byte[BUFFER_SIZE]});
+
+	// Updates the digests of a chunk, one task per hash type. The tasks never
+	// wait on other tasks.
+	private static final ExecutorService DIGEST_EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+		Thread thread = new Thread(runnable, "HashUtility digest"); //NON-NLS
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Reads data to be hashed.
+	 */
+	interface HashDataReader {
+
+		/**
+		 * Read data into the start of the buffer.
+		 *
+		 * @param buffer The buffer to read into.
+		 * @param offset The offset to read from.
+		 * @param len    The number of bytes to read.
+		 *
+		 * @return The number of bytes read, -1 at the end of the data.
+		 *
+		 * @throws TskCoreException
+		 */
+		int read(byte[] buffer, long offset, long len) throws TskCoreException;
+	}
 
 	/**
 	 * Calculate hashes of the content object.
 	 *
+	 * The content is read in large chunks. Content larger than one chunk is
+	 * read ahead while the digests of the previous chunk are updated, with
+	 * each digest updated on its own thread.
+	 *
 	 * @param content   The content object to hash
 	 * @param hashTypes The types of hash to compute
 	 *
@@ -48,57 +91,186 @@ public class HashUtility {
 	 * @throws TskCoreException
 	 */
 	static public List<HashResult> calculateHashes(Content content, Collection<HashType> hashTypes) throws TskCoreException {
-		Map<HashType, MessageDigest> digests = new HashMap<>();
+		return calculateHashes(content::read, content.getSize(), content.getId(), hashTypes);
+	}
 
-		for (HashType type : hashTypes) {
+	/**
+	 * Calculate hashes of data.
+	 *
+	 * @param reader    Reads the data.
+	 * @param size      The size of the data.
+	 * @param id        The ID of the content the data is from, for error
+	 *                  messages.
+	 * @param hashTypes The types of hash to compute
+	 *
+	 * @return A list of the hash results
+	 *
+	 * @throws TskCoreException
+	 */
+	static List<HashResult> calculateHashes(HashDataReader reader, long size, long id, Collection<HashType> hashTypes) throws TskCoreException {
+		List<HashType> types = new ArrayList<>(new LinkedHashSet<>(hashTypes));
+		MessageDigest[] digests = new MessageDigest[types.size()];
+		for (int i = 0; i < types.size(); i++) {
 			try {
-				digests.put(type, MessageDigest.getInstance(type.getName()));
+				digests[i] = MessageDigest.getInstance(types.get(i).getName());
 			} catch (NoSuchAlgorithmException ex) {
-				throw new TskCoreException("No algorithm found matching name " + type.getName(), ex);
+				throw new TskCoreException("No algorithm found matching name " + types.get(i).getName(), ex);
 			}
 		}
 
-		// Read in byte size chunks and update the hash value with the data.
-		byte[] data = new byte[BUFFER_SIZE];
-		int totalChunks = (int) Math.ceil((double) content.getSize() / (double) BUFFER_SIZE);
-		int read;
-		for (long i = 0; i < totalChunks; i++) {
-			try {
-				read = content.read(data, i * BUFFER_SIZE, BUFFER_SIZE);
-			} catch (TskCoreException ex) {
-				throw new TskCoreException("Error reading data at address " + i * BUFFER_SIZE + " from content with ID: " + content.getId(), ex);
+		byte[][] buffers = BUFFERS.get();
+		if (size <= BUFFER_SIZE || digests.length == 0) {
+			// Nothing to overlap for content that fits in one chunk
+			long offset = 0;
+			while (offset < size) {
+				int read = readChunk(reader, buffers[0], offset, size, id);
+				if (read <= 0) {
+					break;
+				}
+				for (MessageDigest digest : digests) {
+					digest.update(buffers[0], 0, read);
+				}
+				offset += read;
 			}
-			
-			// Check for EOF
-			if (read == -1) {
-				break;
+		} else {
+			// Views of each buffer for each digest, so the digests can be
+			// updated concurrently without allocating per chunk.
+			ByteBuffer[][] views = new ByteBuffer[buffers.length][digests.length];
+			for (int b = 0; b < buffers.length; b++) {
+				for (int d = 0; d < digests.length; d++) {
+					views[b][d] = ByteBuffer.wrap(buffers[b]);
+				}
 			}
+			List<Future<?>> updates = new ArrayList<>(digests.length);
+			try {
+				int current = 0;
+				long offset = 0;
+				int read = readChunk(reader, buffers[current], offset, size, id);
+				while (read > 0) {
+					for (int d = 0; d < digests.length; d++) {
+						MessageDigest digest = digests[d];
+						ByteBuffer view = views[current][d];
+						view.clear();
+						view.limit(read);
+						updates.add(DIGEST_EXECUTOR.submit(() -> digest.update(view)));
+					}
+					offset += read;
 
-			// Only update with the read bytes.
-			if (read == BUFFER_SIZE) {
-				for (HashType type : hashTypes) {
-					digests.get(type).update(data);
+					// Read the next chunk into the other buffer while the digests are updated
+					int next = 1 - current;
+					int nextRead = (offset < size) ? readChunk(reader, buffers[next], offset, size, id) : -1;
+
+					for (Future<?> update : updates) {
+						update.get();
+					}
+					updates.clear();
+					current = next;
+					read = nextRead;
 				}
-			} else {
-				byte[] subData = Arrays.copyOfRange(data, 0, read);
-				for (HashType type : hashTypes) {
-					digests.get(type).update(subData);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new TskCoreException("Interrupted while calculating hashes of content with ID: " + id, ex);
+			} catch (ExecutionException ex) {
+				throw new TskCoreException("Error calculating hashes of content with ID: " + id, ex);
+			} finally {
+				if (!updates.isEmpty()) {
+					// A digest may still be reading the buffers, so stop using them
+					for (Future<?> update : updates) {
+						update.cancel(false);
+					}
+					BUFFERS.remove();
 				}
 			}
 		}
 
 		List<HashResult> results = new ArrayList<>();
-		for (HashType type : hashTypes) {
-			byte hashData[] = digests.get(type).digest();
+		for (int i = 0; i < types.size(); i++) {
+			byte hashData[] = digests[i].digest();
 			StringBuilder sb = new StringBuilder();
 			for (byte b : hashData) {
 				sb.append(String.format("%02x", b));
 			}
-			results.add(new HashResult(type, sb.toString()));
+			results.add(new HashResult(types.get(i), sb.toString()));
 		}
 		return results;
 	}
 
+	/**
+	 * Read the chunk of data at the given offset.
+	 *
+	 * @return The number of bytes read, -1 at the end of the data.
+	 */
+	private static int readChunk(HashDataReader reader, byte[] buffer, long offset, long size, long id) throws TskCoreException {
+		try {
+			return reader.read(buffer, offset, Math.min(buffer.length, size - offset));
+		} catch (TskCoreException ex) {
+			throw new TskCoreException("Error reading data at address " + offset + " from content with ID: " + id, ex);
+		}
+	}
+
+	/**
+	 * Calculate hashes of many files, using a pool of threads, and save the
+	 * MD5 and SHA-256 hashes to the case database with one batched update.
+	 * Hashes of other types are calculated but not saved.
+	 *
+	 * The hashes of the files that could be read are saved even if others
+	 * could not be.
+	 *
+	 * @param files       The files to hash.
+	 * @param hashTypes   The types of hash to compute.
+	 * @param threadCount The number of files to hash at a time.
+	 *
+	 * @return The hash results of each file, keyed by file object ID.
+	 *
+	 * @throws TskCoreException If there is an error saving the hashes, or if
+	 *                          any of the files could not be hashed.
+	 */
+	public static Map<Long, List<HashResult>> calculateAndSaveHashes(Collection<AbstractFile> files, Collection<HashType> hashTypes, int threadCount) throws TskCoreException {
+		Map<AbstractFile, List<HashResult>> results = new LinkedHashMap<>();
+		if (files.isEmpty()) {
+			return new LinkedHashMap<>();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, files.size())));
+		TskCoreException firstError = null;
+		int errorCount = 0;
+		try {
+			Map<AbstractFile, Future<List<HashResult>>> futures = new LinkedHashMap<>();
+			for (AbstractFile file : files) {
+				futures.put(file, executor.submit(() -> calculateHashes(file, hashTypes)));
+			}
+			for (Map.Entry<AbstractFile, Future<List<HashResult>>> entry : futures.entrySet()) {
+				try {
+					results.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException ex) {
+					logger.log(Level.WARNING, "Error calculating hashes of file with ID: " + entry.getKey().getId(), ex.getCause()); //NON-NLS
+					errorCount++;
+					if (firstError == null) {
+						firstError = new TskCoreException("Error calculating hashes of file with ID: " + entry.getKey().getId(), ex);
+					}
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while calculating hashes", ex);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (!results.isEmpty()) {
+			results.keySet().iterator().next().getSleuthkitCase().setFileHashes(results);
+		}
+		if (firstError != null) {
+			throw new TskCoreException(String.format("Error calculating hashes of %d of %d files", errorCount, files.size()), firstError);
+		}
+
+		Map<Long, List<HashResult>> resultsById = new LinkedHashMap<>();
+		for (Map.Entry<AbstractFile, List<HashResult>> entry : results.entrySet()) {
+			resultsById.put(entry.getKey().getId(), entry.getValue());
+		}
+		return resultsById;
+	}
+
 	/**
 	 * Determines whether a string representation of an MD5 hash is valid.
 	 *
@@ -172,6 +344,7 @@ public String getValue() {
 	 */
 	public enum HashType {
 		MD5("MD5"),
+		SHA1("SHA-1"),
 		SHA256("SHA-256");
 
 		private final String name; // This should be the string expected by MessageDigest
@@ -199,7 +372,6 @@ String getName() {
 	 */
 	@Deprecated
 	static public String calculateMd5(AbstractFile file) throws IOException {
-		Logger logger = Logger.getLogger(HashUtility.class.getName());
 		String md5Hash = calculateMd5Hash(file);
 		try {
 			file.getSleuthkitCase().setMd5Hash(file, md5Hash);
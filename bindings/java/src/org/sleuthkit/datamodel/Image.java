@@ -26,6 +26,7 @@
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -168,6 +169,17 @@ public int read(byte[] buf, long offset, long len) throws TskCoreException {
 		return SleuthkitJNI.readImg(getImageHandle(), buf, offset, len);
 	}
 
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		// If there are no paths, don't attempt to read the image
+		if (paths.length == 0) {
+			return 0;
+		}
+
+		// read from the image
+		return SleuthkitJNI.readImg(getImageHandle(), dst, offset);
+	}
+
 	@Override
 	public long getSize() {
 		if (size == 0) {
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -159,15 +160,7 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 		if (offset + readLen > size) 
 			readLen = size - offset;
 
-		if (imageHandle == -1) {
-			Content dataSource = getDataSource();
-			if ((dataSource != null) && (dataSource instanceof Image)) {
-				Image image = (Image) dataSource;
-				imageHandle = image.getImageHandle();
-			} else {
-				throw new TskCoreException("Data Source of LayoutFile is not Image");
-			}
-		}
+		loadImageHandle();
 
 		for (TskFileRange range : getRanges()) {
 			if (bytesRead < readLen) { // we haven't read enough yet
@@ -192,6 +185,80 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 		return bytesRead;
 	}
 
+	/**
+	 * Reads bytes from the layout ranges associated with this file into a
+	 * buffer.
+	 *
+	 * @param dst    Buffer to read into, up to its remaining bytes.
+	 * @param offset Start position in the file.
+	 *
+	 * @return Number of bytes read.
+	 *
+	 * @throws TskCoreException if there is a problem reading the file.
+	 */
+	@Override
+	protected int readInt(ByteBuffer dst, long offset) throws TskCoreException {
+		long offsetInThisLayoutContent = 0; // current offset in this LayoutContent
+		int bytesRead = 0; // Bytes read so far
+
+		// if the caller has requested more data than we have in the file
+		// then make sure we don't go beyond the end of the file
+		long readLen = dst.remaining();
+		if (offset + readLen > size) 
+			readLen = size - offset;
+
+		loadImageHandle();
+
+		for (TskFileRange range : getRanges()) {
+			if (bytesRead < readLen) { // we haven't read enough yet
+				if (offset < offsetInThisLayoutContent + range.getByteLen()) { // if we are in a range object we want to read from
+					long offsetInRange = 0; // how far into the current range object to start reading
+					if (bytesRead == 0) { // we haven't read anything yet so we want to read from the correct offset in this range object
+						offsetInRange = offset - offsetInThisLayoutContent; // start reading from the correct offset
+					}
+					long offsetInImage = range.getByteStart() + offsetInRange; // how far into the image to start reading
+					long lenToReadInRange = Math.min(range.getByteLen() - offsetInRange, readLen - bytesRead); // how much we can read this time
+					ByteBuffer rangeBuffer = dst.duplicate(); // limit the read to this range
+					rangeBuffer.limit(rangeBuffer.position() + (int) lenToReadInRange);
+					int lenRead = SleuthkitJNI.readImg(imageHandle, rangeBuffer, offsetInImage);
+					dst.position(rangeBuffer.position());
+					if (lenRead > 0) {
+						bytesRead += lenRead;
+					}
+					if (lenToReadInRange != lenRead) { // If image read failed or was cut short
+						break;
+					}
+				}
+				offsetInThisLayoutContent += range.getByteLen();
+			} else { // we're done reading
+				break;
+			}
+		}
+		return bytesRead;
+	}
+
+	@Override
+	boolean readIntFillsDirectBuffers() {
+		return true;
+	}
+
+	/**
+	 * Loads the handle of the image containing the layout ranges.
+	 *
+	 * @throws TskCoreException if the data source is not an image.
+	 */
+	private void loadImageHandle() throws TskCoreException {
+		if (imageHandle == -1) {
+			Content dataSource = getDataSource();
+			if ((dataSource != null) && (dataSource instanceof Image)) {
+				Image image = (Image) dataSource;
+				imageHandle = image.getImageHandle();
+			} else {
+				throw new TskCoreException("Data Source of LayoutFile is not Image");
+			}
+		}
+	}
+
 	/**
 	 * Reads bytes from an image into a buffer, starting at given position in
 	 * buffer.
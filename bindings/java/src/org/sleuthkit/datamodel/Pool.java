@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,6 +56,16 @@ public int read(byte[] readBuffer, long offset, long len) throws TskCoreExceptio
 		return SleuthkitJNI.readPool(poolHandle, readBuffer, offset, len);
 	}
 
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		synchronized (this) {
+			if (poolHandle == 0) {
+				getPoolHandle();
+			}
+		}
+		return SleuthkitJNI.readPool(poolHandle, dst, offset);
+	}
+
 	@Override
 	public long getSize() {
 		try {
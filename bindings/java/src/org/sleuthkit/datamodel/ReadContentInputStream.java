@@ -20,6 +20,7 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * InputStream to read bytes from a Content object's data
@@ -29,6 +30,7 @@ public final class ReadContentInputStream extends InputStream {
 	private long currentOffset;
 	private final long contentSize;
 	private final Content content;
+	private ByteBuffer scratchBuffer; // reused for reads into an offset of the user buffer from native content
 
 	public ReadContentInputStream(Content content) {
 		this.content = content;
@@ -77,28 +79,33 @@ public int read(byte[] b, int off, int len) throws ReadContentInputStreamExcepti
 		// is the buffer big enough?
 		lenToRead = Math.min(lenToRead, buffLen - off);
 
-		byte[] retBuf;
-		if (off == 0) {
-			//write directly to user buffer
-			retBuf = b;
-		} else {
-			//write to a temp buffer, then copy to user buffer
-			retBuf = new byte[lenToRead];
-		}
 		try {
-			final int lenRead = content.read(retBuf, currentOffset, lenToRead);
+			final int lenRead;
+			if (off == 0) {
+				//write directly to user buffer
+				lenRead = content.read(b, currentOffset, lenToRead);
+			} else if (!readsIntoDirectBuffers()) {
+				//write to the user buffer through a view of it
+				lenRead = content.read(ByteBuffer.wrap(b, off, lenToRead), currentOffset);
+			} else {
+				//write to the reusable direct buffer, then copy to user buffer
+				if (scratchBuffer == null || scratchBuffer.capacity() < lenToRead) {
+					scratchBuffer = ByteBuffer.allocateDirect(lenToRead);
+				}
+				scratchBuffer.clear();
+				scratchBuffer.limit(lenToRead);
+				lenRead = content.read(scratchBuffer, currentOffset);
+				if (lenRead > 0) {
+					scratchBuffer.flip();
+					scratchBuffer.get(b, off, lenRead);
+				}
+			}
 
 			if (lenRead == 0 || lenRead == -1) {
 				//error or no more bytes to read, report EOF
 				return -1;
 			} else {
 				currentOffset += lenRead;
-
-				//if read into user-specified offset, copy back from temp buffer to user
-				if (off != 0) {
-					System.arraycopy(retBuf, 0, b, off, lenRead);
-				}
-
 				return lenRead;
 			}
 		} catch (TskCoreException ex) {
@@ -107,6 +114,67 @@ public int read(byte[] b, int off, int len) throws ReadContentInputStreamExcepti
 
 	}
 
+	/**
+	 * Whether the content is read by the SleuthKit straight into direct
+	 * buffers. Other content is read through a Java array, so a direct buffer
+	 * would only add a copy.
+	 *
+	 * @return True if the content fills direct buffers without a copy.
+	 */
+	private boolean readsIntoDirectBuffers() {
+		if (content instanceof AbstractFile) {
+			return ((AbstractFile) content).readsIntoDirectBuffers();
+		}
+		return content instanceof Image || content instanceof Volume
+				|| content instanceof Pool || content instanceof FileSystem;
+	}
+
+	/**
+	 * Reads from the current position into a buffer. Up to the remaining
+	 * number of bytes in the buffer are written starting at its position, and
+	 * the position is advanced by the number of bytes read. Reads into direct
+	 * buffers avoid copying the data through a Java array.
+	 *
+	 * @param dst the buffer to read into
+	 *
+	 * @return the number of bytes read, or -1 at the end of the content
+	 *
+	 * @throws ReadContentInputStreamException if the content could not be read
+	 */
+	public int read(ByteBuffer dst) throws ReadContentInputStreamException {
+		if (!dst.hasRemaining()) {
+			return 0;
+		}
+
+		//would get an error from TSK if we try to read an empty file
+		//eof, no data remains to be read
+		if (contentSize == 0 || currentOffset >= contentSize) {
+			return -1;
+		}
+
+		// Is the file big enough for the full request?
+		int lenToRead = (int) Math.min(contentSize - currentOffset, dst.remaining());
+		ByteBuffer readBuffer = dst;
+		if (lenToRead < dst.remaining()) {
+			readBuffer = dst.duplicate();
+			readBuffer.limit(readBuffer.position() + lenToRead);
+		}
+		try {
+			final int lenRead = content.read(readBuffer, currentOffset);
+			if (lenRead == 0 || lenRead == -1) {
+				//error or no more bytes to read, report EOF
+				return -1;
+			}
+			if (readBuffer != dst) {
+				dst.position(readBuffer.position());
+			}
+			currentOffset += lenRead;
+			return lenRead;
+		} catch (TskCoreException ex) {
+			throw new ReadContentInputStreamException(String.format("Error reading file '%s' (id=%d) at offset %d.", content.getName(), content.getId(), currentOffset), ex);
+		}
+	}
+
 	@Override
 	public int available() throws IOException {
 		long len = contentSize - currentOffset;
@@ -18,32 +18,51 @@
  */
 package org.sleuthkit.datamodel;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.sleuthkit.datamodel.Score.Priority;
 import org.sleuthkit.datamodel.Score.Significance;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbTransaction;
+import static org.sleuthkit.datamodel.TskData.DbType.POSTGRESQL;
 
 /**
  * The scoring manager is responsible for updating and querying the score of
  * objects.
  *
+ * Aggregate scores are cached in memory as they are read and committed. For a
+ * multi-user case, cached scores expire after a short time, since other
+ * clients may change them.
  */
 public class ScoringManager {
 
 	private static final Logger LOGGER = Logger.getLogger(ScoringManager.class.getName());
 
+	private static final int MAX_CACHED_SCORES = 100000;
+	private static final long MULTI_USER_CACHE_EXPIRATION_SECONDS = 60;
+
+	private static final String INSERT_OR_UPDATE_SCORE_SQL = "INSERT INTO tsk_aggregate_score (obj_id, data_source_obj_id, significance , priority) VALUES (?, ?, ?, ?)"
+			+ " ON CONFLICT (obj_id) DO UPDATE SET significance = ?, priority = ?";
+
 	private final SleuthkitCase db;
+	private final Cache<Long, Score> aggregateScoreCache;
+	private volatile boolean batchedScoreUpdatesEnabled = false;
 
 	/**
 	 * Construct a ScoringManager for the given SleuthkitCase.
@@ -53,6 +72,42 @@ public class ScoringManager {
 	 */
 	ScoringManager(SleuthkitCase skCase) {
 		this.db = skCase;
+		CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SCORES);
+		if (skCase.getDatabaseType() == POSTGRESQL) {
+			cacheBuilder.expireAfterWrite(MULTI_USER_CACHE_EXPIRATION_SECONDS, TimeUnit.SECONDS);
+		}
+		this.aggregateScoreCache = cacheBuilder.build();
+	}
+
+	/**
+	 * Sets whether aggregate score updates for added analysis results and
+	 * tags are batched. When enabled, the aggregate scores changed in a
+	 * transaction are written when the transaction is committed, with one
+	 * batched statement, and an object whose score changes many times in the
+	 * transaction is written once. This shortens the time the aggregate score
+	 * table is locked for a multi-user case.
+	 *
+	 * With batching, the aggregate score returned for a newly added analysis
+	 * result is calculated without locking the aggregate score table. For a
+	 * multi-user case, it may not include the results concurrently added by
+	 * other clients. The scores written when the transaction is committed
+	 * always do.
+	 *
+	 * @param enabled True to batch the updates, false to write each update
+	 *                as it is made.
+	 */
+	public void setBatchedScoreUpdatesEnabled(boolean enabled) {
+		batchedScoreUpdatesEnabled = enabled;
+	}
+
+	/**
+	 * Indicates whether aggregate score updates for added analysis results
+	 * and tags are batched.
+	 *
+	 * @return True if the updates are batched.
+	 */
+	public boolean isBatchedScoreUpdatesEnabled() {
+		return batchedScoreUpdatesEnabled;
 	}
 
 	/**
@@ -65,12 +120,19 @@ public class ScoringManager {
 	 * @throws TskCoreException
 	 */
 	public Score getAggregateScore(long objId) throws TskCoreException {
+		Score score = aggregateScoreCache.getIfPresent(objId);
+		if (score != null) {
+			return score;
+		}
 		db.acquireSingleUserCaseReadLock();
 		try (CaseDbConnection connection = db.getConnection()) {
-			return getAggregateScore(objId, connection);
+			score = getAggregateScore(objId, connection);
 		} finally {
 			db.releaseSingleUserCaseReadLock();
 		}
+		// Do not replace a score put in the cache by a commit since the read
+		aggregateScoreCache.asMap().putIfAbsent(objId, score);
+		return score;
 	}
 
 	/**
@@ -89,24 +151,62 @@ public Map<Long, Score> getAggregateScores(List<Long> objIds) throws TskCoreExce
 			return Collections.emptyMap();
 		}
 
-		String queryString = "SELECT obj_id, significance, priority FROM tsk_aggregate_score WHERE obj_id in "
-				+ objIds.stream().map(l -> l.toString()).collect(Collectors.joining(",", "(", ")"));
+		Map<Long, Score> results = new HashMap<>();
+		List<Long> uncachedObjIds = new ArrayList<>();
+		for (Long objId : objIds) {
+			Score score = aggregateScoreCache.getIfPresent(objId);
+			if (score != null) {
+				results.put(objId, score);
+			} else {
+				uncachedObjIds.add(objId);
+			}
+		}
+		if (uncachedObjIds.isEmpty()) {
+			return results;
+		}
 
-		Map<Long, Score> results = objIds.stream().collect(Collectors.toMap( key -> key, key -> Score.SCORE_UNKNOWN));
+		Map<Long, Score> storedScores;
 		db.acquireSingleUserCaseReadLock();
 		try (CaseDbConnection connection = db.getConnection()) {
-			try (Statement s = connection.createStatement(); ResultSet rs = connection.executeQuery(s, queryString)) {
-				while (rs.next()) {
-					Long objId = rs.getLong("obj_id");
-					Score score = new Score(Significance.fromID(rs.getInt("significance")), Priority.fromID(rs.getInt("priority")));
-					results.put(objId, score);
-				}
-			} catch (SQLException ex) {
-				throw new TskCoreException("SQLException thrown while running query: " + queryString, ex);
-			}
+			storedScores = getAggregateScores(uncachedObjIds, connection);
 		} finally {
 			db.releaseSingleUserCaseReadLock();
 		}
+		for (Long objId : uncachedObjIds) {
+			Score score = storedScores.getOrDefault(objId, Score.SCORE_UNKNOWN);
+			results.put(objId, score);
+			aggregateScoreCache.asMap().putIfAbsent(objId, score);
+		}
+		return results;
+	}
+
+	/**
+	 * Get the stored aggregate scores for the given objects.
+	 *
+	 * @param objIds     Object ids.
+	 * @param connection Connection to use for the queries.
+	 *
+	 * @return The scores of the objects that have one.
+	 *
+	 * @throws TskCoreException
+	 */
+	private Map<Long, Score> getAggregateScores(Collection<Long> objIds, CaseDbConnection connection) throws TskCoreException {
+		Map<Long, Score> results = new HashMap<>();
+		try (Statement s = connection.createStatement()) {
+			for (List<Long> idBatch : Iterables.partition(objIds, SleuthkitCase.MAX_IDS_PER_QUERY)) {
+				String queryString = "SELECT obj_id, significance, priority FROM tsk_aggregate_score WHERE obj_id in "
+						+ idBatch.stream().map(l -> l.toString()).collect(Collectors.joining(",", "(", ")"));
+				try (ResultSet rs = connection.executeQuery(s, queryString)) {
+					while (rs.next()) {
+						Long objId = rs.getLong("obj_id");
+						Score score = new Score(Significance.fromID(rs.getInt("significance")), Priority.fromID(rs.getInt("priority")));
+						results.put(objId, score);
+					}
+				}
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("SQLException thrown while getting aggregate scores", ex);
+		}
 		return results;
 	}
 
@@ -123,6 +223,21 @@ public Map<Long, Score> getAggregateScores(List<Long> objIds) throws TskCoreExce
 	 * @throws TskCoreException
 	 */
 	private Score getAggregateScore(long objId, CaseDbTransaction transaction) throws TskCoreException {
+		// A score changed in the transaction may not be written yet
+		ScoreChange scoreChange = transaction.getRegisteredScoreChange(objId);
+		if (scoreChange != null) {
+			return scoreChange.getNewScore();
+		}
+
+		// This client is the only writer of a single-user case, and the cache
+		// holds committed scores.
+		if (db.getDatabaseType() != POSTGRESQL) {
+			Score score = aggregateScoreCache.getIfPresent(objId);
+			if (score != null) {
+				return score;
+			}
+		}
+
 		CaseDbConnection connection = transaction.getConnection();
 		return getAggregateScore(objId, connection);
 	}
@@ -163,33 +278,60 @@ private Score getAggregateScore(long objId, CaseDbConnection connection) throws
 	 */
 	private void setAggregateScore(long objId, Long dataSourceObjectId, Score score, CaseDbTransaction transaction) throws TskCoreException {
 
-		String insertSQLString = "INSERT INTO tsk_aggregate_score (obj_id, data_source_obj_id, significance , priority) VALUES (?, ?, ?, ?)"
-				+ " ON CONFLICT (obj_id) DO UPDATE SET significance = ?, priority = ?";
-
 		CaseDbConnection connection = transaction.getConnection();
 		try {
-			PreparedStatement preparedStatement = connection.getPreparedStatement(insertSQLString, Statement.NO_GENERATED_KEYS);
-			preparedStatement.clearParameters();
-
-			preparedStatement.setLong(1, objId);
-			if (dataSourceObjectId != null) {
-				preparedStatement.setLong(2, dataSourceObjectId);
-			} else {
-				preparedStatement.setNull(2, java.sql.Types.NULL);
-			}
-			preparedStatement.setInt(3, score.getSignificance().getId());
-			preparedStatement.setInt(4, score.getPriority().getId());
-
-			preparedStatement.setInt(5, score.getSignificance().getId());
-			preparedStatement.setInt(6, score.getPriority().getId());
-
+			PreparedStatement preparedStatement = connection.getPreparedStatement(INSERT_OR_UPDATE_SCORE_SQL, Statement.NO_GENERATED_KEYS);
+			setAggregateScoreParameters(preparedStatement, objId, dataSourceObjectId, score);
 			connection.executeUpdate(preparedStatement);
 		} catch (SQLException ex) {
-			throw new TskCoreException(String.format("Error updating aggregate score, query: %s for objId = %d", insertSQLString, objId), ex);//NON-NLS
+			throw new TskCoreException(String.format("Error updating aggregate score, query: %s for objId = %d", INSERT_OR_UPDATE_SCORE_SQL, objId), ex);//NON-NLS
 		}  
 
 	}
 
+	/**
+	 * Sets the parameters of the statement that inserts or updates the score
+	 * for an object.
+	 *
+	 * @param preparedStatement  The statement.
+	 * @param objId              Object id of the object.
+	 * @param dataSourceObjectId Data source object id, may be null.
+	 * @param score              Score to be inserted/updated.
+	 *
+	 * @throws SQLException
+	 */
+	private static void setAggregateScoreParameters(PreparedStatement preparedStatement, long objId, Long dataSourceObjectId, Score score) throws SQLException {
+		preparedStatement.clearParameters();
+
+		preparedStatement.setLong(1, objId);
+		if (dataSourceObjectId != null) {
+			preparedStatement.setLong(2, dataSourceObjectId);
+		} else {
+			preparedStatement.setNull(2, java.sql.Types.NULL);
+		}
+		preparedStatement.setInt(3, score.getSignificance().getId());
+		preparedStatement.setInt(4, score.getPriority().getId());
+
+		preparedStatement.setInt(5, score.getSignificance().getId());
+		preparedStatement.setInt(6, score.getPriority().getId());
+	}
+
+	/**
+	 * Indicates whether the score of a newly added result or tag replaces the
+	 * current aggregate score.
+	 *
+	 * @param newScore     The new score.
+	 * @param currentScore The current aggregate score.
+	 *
+	 * @return True if the new score replaces the current score.
+	 */
+	private static boolean replacesAggregateScore(Score newScore, Score currentScore) {
+		// If current score is Unknown And newscore is not Unknown - allow None (good) to be recorded
+		// or if the new score is higher than the current score
+		return (currentScore.compareTo(Score.SCORE_UNKNOWN) == 0 && newScore.compareTo(Score.SCORE_UNKNOWN) != 0)
+				|| (Score.getScoreComparator().compare(newScore, currentScore) > 0);
+	}
+
 
 
 	/**
@@ -208,6 +350,18 @@ private void setAggregateScore(long objId, Long dataSourceObjectId, Score score,
 	 */
 	Score updateAggregateScoreAfterAddition(long objId, Long dataSourceObjectId, Score newResultScore, CaseDbTransaction transaction) throws TskCoreException {
 
+		if (batchedScoreUpdatesEnabled) {
+			// The score is written, under the table lock, when the transaction is committed.
+			Score currentAggregateScore = getAggregateScore(objId, transaction);
+			if (replacesAggregateScore(newResultScore, currentAggregateScore)) {
+				transaction.registerScoreChange(new ScoreChange(objId, dataSourceObjectId, currentAggregateScore, newResultScore));
+				transaction.registerUnwrittenScore(objId);
+				return newResultScore;
+			} else {
+				return currentAggregateScore;
+			}
+		}
+
 		/* get an exclusive write lock on the DB before we read anything so that we know we are
 		 * the only one reading existing scores and updating.  The risk is that two computers
 		 * could update the score and the aggregate score ends up being incorrect. 
@@ -228,10 +382,7 @@ Score updateAggregateScoreAfterAddition(long objId, Long dataSourceObjectId, Sco
 		// Get the current score 
 		Score currentAggregateScore = ScoringManager.this.getAggregateScore(objId, transaction);
 
-		// If current score is Unknown And newscore is not Unknown - allow None (good) to be recorded
-		// or if the new score is higher than the current score
-		if  ( (currentAggregateScore.compareTo(Score.SCORE_UNKNOWN) == 0 && newResultScore.compareTo(Score.SCORE_UNKNOWN) != 0)
-			  || (Score.getScoreComparator().compare(newResultScore, currentAggregateScore) > 0)) {
+		if (replacesAggregateScore(newResultScore, currentAggregateScore)) {
 			setAggregateScore(objId, dataSourceObjectId, newResultScore, transaction);
 			
 			// register score change in the transaction.
@@ -272,8 +423,8 @@ Score updateAggregateScoreAfterDeletion(long objId, Long dataSourceObjectId, Cas
 			throw new TskCoreException("Error getting exclusive write lock on aggregate score table", ex);//NON-NLS
 		}
 			
-		// Get the current score 
-		Score currentScore = ScoringManager.this.getAggregateScore(objId, transaction);
+		// Get the current stored score 
+		Score currentScore = ScoringManager.this.getAggregateScore(objId, connection);
 
 		// Calculate the score from scratch by getting all of them and getting the highest
 		List<AnalysisResult> analysisResults = db.getBlackboard().getAnalysisResults(objId, connection);
@@ -294,15 +445,91 @@ Score updateAggregateScoreAfterDeletion(long objId, Long dataSourceObjectId, Cas
 			newScore = tagScore.get();
 		}
 		
+		// The calculated score replaces any batched score that is not written yet
+		boolean hadUnwrittenScore = transaction.removeUnwrittenScore(objId);
+
 		// only change the DB if we got a new score. 
 		if (newScore.compareTo(currentScore) != 0) {
 			setAggregateScore(objId, dataSourceObjectId, newScore, transaction);
 
 			// register the score change with the transaction so an event can be fired for it. 
 			transaction.registerScoreChange(new ScoreChange(objId, dataSourceObjectId, currentScore, newScore));
+		} else if (hadUnwrittenScore) {
+			transaction.registerScoreChange(new ScoreChange(objId, dataSourceObjectId, currentScore, newScore));
 		}
 		return newScore;
 	}
+
+	/**
+	 * Writes the batched aggregate score updates of a transaction. Called
+	 * when the transaction is being committed. The stored scores are read
+	 * again under the table lock, so that scores written by other clients
+	 * since the updates were made are not lowered.
+	 *
+	 * @param transaction The transaction.
+	 *
+	 * @throws TskCoreException
+	 */
+	void writeUnwrittenScores(CaseDbTransaction transaction) throws TskCoreException {
+		Set<Long> objIds = transaction.getUnwrittenScores();
+		if (objIds.isEmpty()) {
+			return;
+		}
+
+		CaseDbConnection connection = transaction.getConnection();
+		try {
+			connection.getAggregateScoreTableWriteLock();
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting exclusive write lock on aggregate score table", ex);//NON-NLS
+		}
+
+		Map<Long, Score> storedScores = getAggregateScores(objIds, connection);
+		try {
+			PreparedStatement preparedStatement = connection.getPreparedStatement(INSERT_OR_UPDATE_SCORE_SQL, Statement.NO_GENERATED_KEYS);
+			boolean batchEmpty = true;
+			for (Long objId : objIds) {
+				ScoreChange scoreChange = transaction.getRegisteredScoreChange(objId);
+				Score storedScore = storedScores.getOrDefault(objId, Score.SCORE_UNKNOWN);
+				if (replacesAggregateScore(scoreChange.getNewScore(), storedScore)) {
+					setAggregateScoreParameters(preparedStatement, objId, scoreChange.getDataSourceObjectId(), scoreChange.getNewScore());
+					preparedStatement.addBatch();
+					batchEmpty = false;
+					transaction.registerScoreChange(new ScoreChange(objId, scoreChange.getDataSourceObjectId(), storedScore, scoreChange.getNewScore()));
+				} else {
+					// Another client added a higher score
+					transaction.unregisterScoreChange(objId);
+				}
+			}
+			if (!batchEmpty) {
+				connection.executeBatch(preparedStatement);
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error updating aggregate scores", ex);//NON-NLS
+		}
+		for (Long objId : objIds) {
+			transaction.removeUnwrittenScore(objId);
+		}
+	}
+
+	/**
+	 * Updates the cached aggregate scores after a transaction that changed
+	 * them is committed.
+	 *
+	 * @param scoreChanges The score changes of the transaction.
+	 */
+	void scoresCommitted(Collection<ScoreChange> scoreChanges) {
+		for (ScoreChange scoreChange : scoreChanges) {
+			aggregateScoreCache.put(scoreChange.getObjectId(), scoreChange.getNewScore());
+		}
+	}
+
+	/**
+	 * Discards the cached aggregate scores. Called when objects are deleted
+	 * from the case database.
+	 */
+	void clearAggregateScoreCache() {
+		aggregateScoreCache.invalidateAll();
+	}
 	
 	/**
 	 * Get the count of contents within the specified data source
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import org.sleuthkit.datamodel.TskData.FileKnown;
 import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
@@ -124,6 +125,28 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 		return SleuthkitJNI.readFileSlack(fileHandle, buf, offset, len);
 	}
 
+	/**
+	 * Reads bytes from the slack space into a buffer
+	 *
+	 * @param dst    Buffer to read into, up to its remaining bytes.
+	 * @param offset Start position in the slack space.
+	 *
+	 * @return Number of bytes read.
+	 *
+	 * @throws TskCoreException if there is a problem reading the file.
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	protected int readInt(ByteBuffer dst, long offset) throws TskCoreException {
+		if (offset == 0 && size == 0) {
+			//special case for 0-size file
+			return 0;
+		}
+		loadFileHandle();
+
+		return SleuthkitJNI.readFileSlack(fileHandle, dst, offset);
+	}
+
 	/**
 	 * Accepts a content visitor (Visitor design pattern).
 	 *
@@ -20,12 +20,13 @@
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.eventbus.EventBus;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import com.mchange.v2.c3p0.DataSources;
 import com.mchange.v2.c3p0.PooledDataSource;
-import com.zaxxer.sparsebits.SparseBitSet;
 import java.beans.PropertyVetoException;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -39,6 +40,8 @@
 import java.net.InetAddress;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -56,6 +59,7 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
@@ -65,11 +69,14 @@
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.postgresql.util.PSQLState;
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
@@ -105,7 +112,7 @@ public class SleuthkitCase {
 	 * tsk/auto/tsk_db.h.
 	 */
 	static final CaseDbSchemaVersionNumber CURRENT_DB_SCHEMA_VERSION
-			= new CaseDbSchemaVersionNumber(9, 1);
+			= new CaseDbSchemaVersionNumber(9, 2);
 
 	private static final long BASE_ARTIFACT_ID = Long.MIN_VALUE; // Artifact ids will start at the lowest negative value
 	private static final Logger logger = Logger.getLogger(SleuthkitCase.class.getName());
@@ -207,10 +214,30 @@ public class SleuthkitCase {
 			= CacheBuilder.newBuilder().maximumSize(200000).expireAfterAccess(5, TimeUnit.MINUTES).build();
 
 	/*
-	 * First parameter is used to specify the SparseBitSet to use, as object IDs
-	 * can be larger than the max size of a SparseBitSet
+	 * The IDs of the objects that have children. Read by tree views and set by
+	 * ingest threads without locking.
 	 */
-	private final Map<Long, SparseBitSet> hasChildrenBitSetMap = new HashMap<>();
+	private final ConcurrentBitSet hasChildrenBitSet = new ConcurrentBitSet();
+
+	/*
+	 * The last object covered by hasChildrenBitSet, i.e., the parents of all
+	 * objects with IDs up to and including this one are in the bit set. The
+	 * parent ID and type of the object are kept to check a has children
+	 * snapshot against the database. Guarded by hasChildrenLock.
+	 */
+	private final Object hasChildrenLock = new Object();
+	private long hasChildrenLastObjId = 0;
+	private long hasChildrenLastParentObjId = 0;
+	private int hasChildrenLastObjType = 0;
+	// Set when objects are deleted, since their bits can not be cleared
+	private boolean hasChildrenSnapshotDiscarded = false;
+
+	/*
+	 * The number of children of each object type (indexed by ObjectType
+	 * ordinal) of recently counted parent objects, for SQLite cases. An entry
+	 * is invalidated when a child is added to its parent.
+	 */
+	private final Cache<Long, int[]> childCountsCache = CacheBuilder.newBuilder().maximumSize(10000).build();
 
 	private long nextArtifactId; // Used to ensure artifact ids come from the desired range.
 	// This read/write lock is used to implement a layer of locking on top of
@@ -249,7 +276,26 @@ void fireTSKEvent(Object event) {
 	}
 
 	// Cache of frequently used content objects (e.g. data source, file system).
-	private final Map<Long, Content> frequentlyUsedContentMap = new HashMap<>();
+	private final Map<Long, Content> frequentlyUsedContentMap = new ConcurrentHashMap<>();
+
+	// Bounded cache of the other content objects returned by getContentById().
+	// Replaced when the size is changed. Off by default because the cached
+	// objects are shared between callers and are not invalidated by changes
+	// made by other clients of a multi-user case.
+	private static final long DEFAULT_CONTENT_CACHE_SIZE = 0;
+	// Maximum number of object IDs in the IN list of one query in the bulk
+	// object loading methods.
+	static final int MAX_IDS_PER_QUERY = 500;
+	private volatile Cache<Long, Content> contentCache = buildContentCache(DEFAULT_CONTENT_CACHE_SIZE);
+	// Incremented each time cached content is invalidated, so that an object
+	// read from the database before an update is not kept in the cache.
+	private final AtomicLong contentCacheInvalidations = new AtomicLong(0);
+	// Bounded cache of the unique paths of parent objects, so that the unique
+	// path of a child does not require a walk up to the data source.
+	private static final long UNIQUE_PATH_CACHE_SIZE = 100000;
+	private final Cache<Long, String> uniquePathCache = CacheBuilder.newBuilder().maximumSize(UNIQUE_PATH_CACHE_SIZE).build();
+	// Incremented each time the cached unique paths are invalidated.
+	private final AtomicLong uniquePathCacheInvalidations = new AtomicLong(0);
 
 	private Examiner cachedCurrentExaminer = null;
 
@@ -399,7 +445,7 @@ private void init() throws Exception {
 			initIngestStatusTypes(connection);
 			initReviewStatuses(connection);
 			initEncodingTypes(connection);
-			populateHasChildrenMap(connection);
+			initHasChildrenMap(connection);
 			updateExaminers(connection);
 			initDBSchemaCreationVersion(connection);
 		}
@@ -437,24 +483,15 @@ static Set<String> getCoreIndexNames() {
 	}
 
 	/**
-	 * Use the internal map to determine whether the content object has children
-	 * (of any type).
+	 * Use the internal bit set to determine whether the content object has
+	 * children (of any type).
 	 *
 	 * @param content
 	 *
 	 * @return true if the content has children, false otherwise
 	 */
 	boolean getHasChildren(Content content) {
-		long objId = content.getId();
-		long mapIndex = objId / Integer.MAX_VALUE;
-		int mapValue = (int) (objId % Integer.MAX_VALUE);
-
-		synchronized (hasChildrenBitSetMap) {
-			if (hasChildrenBitSetMap.containsKey(mapIndex)) {
-				return hasChildrenBitSetMap.get(mapIndex).get(mapValue);
-			}
-			return false;
-		}
+		return hasChildrenBitSet.get(content.getId());
 	}
 
 	/**
@@ -462,19 +499,21 @@ boolean getHasChildren(Content content) {
 	 *
 	 * @param objId
 	 */
-	private void setHasChildren(Long objId) {
-		long mapIndex = objId / Integer.MAX_VALUE;
-		int mapValue = (int) (objId % Integer.MAX_VALUE);
+	private void setHasChildren(long objId) {
+		hasChildrenBitSet.set(objId);
+	}
 
-		synchronized (hasChildrenBitSetMap) {
-			if (hasChildrenBitSetMap.containsKey(mapIndex)) {
-				hasChildrenBitSetMap.get(mapIndex).set(mapValue);
-			} else {
-				SparseBitSet bitSet = new SparseBitSet();
-				bitSet.set(mapValue);
-				hasChildrenBitSetMap.put(mapIndex, bitSet);
-			}
-		}
+	/**
+	 * Records that a child object was added to a parent object. Must be called
+	 * with the single user case write lock held, so that the cached child
+	 * counts of the parent are not reloaded before the new child is in the
+	 * database.
+	 *
+	 * @param parentId The ID of the parent object.
+	 */
+	private void childObjectAdded(long parentId) {
+		setHasChildren(parentId);
+		childCountsCache.invalidate(parentId);
 	}
 
 	/**
@@ -873,7 +912,127 @@ private void updateExaminers(CaseDbConnection connection) throws SQLException, T
 	}
 
 	/**
-	 * Set up or update the hasChildren map using the tsk_objects table.
+	 * Set up the hasChildren map. For SQLite cases, the map is loaded from the
+	 * snapshot written when the case was last closed, if there is one that
+	 * matches the database, and only the objects added after the snapshot are
+	 * queried.
+	 *
+	 * @param connection
+	 *
+	 * @throws TskCoreException
+	 */
+	private void initHasChildrenMap(CaseDbConnection connection) throws TskCoreException {
+		if (dbType == DbType.SQLITE) {
+			long timestamp = System.currentTimeMillis();
+			Path snapshotPath = getHasChildrenSnapshotPath();
+			try {
+				HasChildrenSnapshot snapshot = HasChildrenSnapshot.read(snapshotPath);
+				if (snapshot != null && isHasChildrenSnapshotCurrent(snapshot, connection)) {
+					synchronized (hasChildrenLock) {
+						hasChildrenBitSet.or(snapshot.getBitSet());
+						hasChildrenLastObjId = snapshot.getLastObjId();
+						hasChildrenLastParentObjId = snapshot.getLastParentObjId();
+						hasChildrenLastObjType = snapshot.getLastObjType();
+					}
+					long delay = System.currentTimeMillis() - timestamp;
+					logger.log(Level.INFO, "Time to load parent node cache snapshot: {0} ms", delay); //NON-NLS
+				} else if (snapshot != null) {
+					logger.log(Level.INFO, "Ignoring out of date parent node cache snapshot {0}", snapshotPath); //NON-NLS
+				}
+			} catch (IOException ex) {
+				logger.log(Level.WARNING, "Error reading parent node cache snapshot " + snapshotPath, ex); //NON-NLS
+			}
+		}
+		populateHasChildrenMap(connection);
+	}
+
+	/**
+	 * Checks that the last object covered by a has children snapshot is still
+	 * in the database, unchanged.
+	 *
+	 * @param snapshot   The snapshot.
+	 * @param connection
+	 *
+	 * @return True if the snapshot can be used.
+	 *
+	 * @throws TskCoreException
+	 */
+	private boolean isHasChildrenSnapshotCurrent(HasChildrenSnapshot snapshot, CaseDbConnection connection) throws TskCoreException {
+		acquireSingleUserCaseReadLock();
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = connection.executeQuery(statement,
+						"SELECT par_obj_id, type FROM tsk_objects WHERE obj_id = " + snapshot.getLastObjId())) { //NON-NLS
+			return resultSet.next()
+					&& resultSet.getLong("par_obj_id") == snapshot.getLastParentObjId()
+					&& resultSet.getInt("type") == snapshot.getLastObjType();
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error checking parent node cache snapshot", ex);
+		} finally {
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets the path of the has children snapshot of a SQLite case.
+	 *
+	 * @return The path of the snapshot, next to the case database.
+	 */
+	private Path getHasChildrenSnapshotPath() {
+		return Paths.get(dbPath + HasChildrenSnapshot.FILE_SUFFIX);
+	}
+
+	/**
+	 * Writes the hasChildren map of a SQLite case to its snapshot, so that the
+	 * next open of the case does not have to rebuild it from the tsk_objects
+	 * table.
+	 */
+	private void writeHasChildrenSnapshot() {
+		if (dbType != DbType.SQLITE) {
+			return;
+		}
+		long timestamp = System.currentTimeMillis();
+		Path snapshotPath = getHasChildrenSnapshotPath();
+		try {
+			synchronized (hasChildrenLock) {
+				if (hasChildrenLastObjId == 0 || hasChildrenSnapshotDiscarded) {
+					return;
+				}
+				new HasChildrenSnapshot(hasChildrenLastObjId, hasChildrenLastParentObjId, hasChildrenLastObjType, hasChildrenBitSet).write(snapshotPath);
+			}
+			long delay = System.currentTimeMillis() - timestamp;
+			logger.log(Level.INFO, "Time to write parent node cache snapshot: {0} ms", delay); //NON-NLS
+		} catch (IOException ex) {
+			logger.log(Level.WARNING, "Error writing parent node cache snapshot " + snapshotPath, ex); //NON-NLS
+		}
+	}
+
+	/**
+	 * Deletes the has children snapshot of a SQLite case after objects were
+	 * deleted, and stops it from being written when the case is closed. The
+	 * bits of the deleted objects can not be cleared from the hasChildren map,
+	 * and SQLite may give their IDs to new objects, so the next open of the
+	 * case has to rebuild the map from the tsk_objects table.
+	 */
+	private void discardHasChildrenSnapshot() {
+		if (dbType != DbType.SQLITE) {
+			return;
+		}
+		synchronized (hasChildrenLock) {
+			hasChildrenSnapshotDiscarded = true;
+		}
+		Path snapshotPath = getHasChildrenSnapshotPath();
+		try {
+			Files.deleteIfExists(snapshotPath);
+		} catch (IOException ex) {
+			logger.log(Level.WARNING, "Error deleting parent node cache snapshot " + snapshotPath, ex); //NON-NLS
+		}
+	}
+
+	/**
+	 * Set up or update the hasChildren map using the tsk_objects table. For
+	 * SQLite cases, only the objects added after the last object covered by
+	 * the map are queried. PostgreSQL cases may have objects added by other
+	 * clients in any order, so the entire table is queried.
 	 *
 	 * @param connection
 	 *
@@ -887,12 +1046,29 @@ private void populateHasChildrenMap(CaseDbConnection connection) throws TskCoreE
 		acquireSingleUserCaseWriteLock();
 		try {
 			statement = connection.createStatement();
-			resultSet = statement.executeQuery("select distinct par_obj_id from tsk_objects"); //NON-NLS
+			synchronized (hasChildrenLock) {
+				// Find the last object first, any objects added after it are
+				// also picked up by the query below.
+				long lastObjId = 0;
+				long lastParentObjId = 0;
+				int lastObjType = 0;
+				resultSet = statement.executeQuery("SELECT obj_id, par_obj_id, type FROM tsk_objects ORDER BY obj_id DESC LIMIT 1"); //NON-NLS
+				if (resultSet.next()) {
+					lastObjId = resultSet.getLong("obj_id");
+					lastParentObjId = resultSet.getLong("par_obj_id");
+					lastObjType = resultSet.getInt("type");
+				}
+				resultSet.close();
 
-			synchronized (hasChildrenBitSetMap) {
+				long firstObjId = (dbType == DbType.SQLITE) ? hasChildrenLastObjId + 1 : 0;
+				resultSet = statement.executeQuery("select distinct par_obj_id from tsk_objects where obj_id >= " + firstObjId); //NON-NLS
 				while (resultSet.next()) {
 					setHasChildren(resultSet.getLong("par_obj_id"));
 				}
+
+				hasChildrenLastObjId = lastObjId;
+				hasChildrenLastParentObjId = lastParentObjId;
+				hasChildrenLastObjType = lastObjType;
 			}
 			long delay = System.currentTimeMillis() - timestamp;
 			logger.log(Level.INFO, "Time to initialize parent node cache: {0} ms", delay); //NON-NLS
@@ -906,8 +1082,34 @@ private void populateHasChildrenMap(CaseDbConnection connection) throws TskCoreE
 	}
 
 	/**
-	 * Add the object IDs for a new data source to the has children map. At
-	 * present, we simply reload the entire table.
+	 * Moves the last object covered by the hasChildren map back to the last
+	 * object in the tsk_objects table if the objects after it were deleted.
+	 * SQLite may reuse the IDs of the deleted objects, so the new objects need
+	 * to be picked up the next time the map is updated.
+	 *
+	 * @param connection
+	 *
+	 * @throws SQLException
+	 */
+	private void resetHasChildrenLastObject(CaseDbConnection connection) throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = connection.executeQuery(statement,
+						"SELECT obj_id, par_obj_id, type FROM tsk_objects ORDER BY obj_id DESC LIMIT 1")) { //NON-NLS
+			synchronized (hasChildrenLock) {
+				long lastObjId = resultSet.next() ? resultSet.getLong("obj_id") : 0;
+				if (lastObjId < hasChildrenLastObjId) {
+					hasChildrenLastObjId = lastObjId;
+					hasChildrenLastParentObjId = lastObjId != 0 ? resultSet.getLong("par_obj_id") : 0;
+					hasChildrenLastObjType = lastObjId != 0 ? resultSet.getInt("type") : 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the object IDs for a new data source to the has children map. For
+	 * SQLite cases only the new objects are queried, for PostgreSQL cases the
+	 * entire table is reloaded.
 	 *
 	 * @throws TskCoreException
 	 */
@@ -916,6 +1118,7 @@ void addDataSourceToHasChildrenMap() throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		try {
 			populateHasChildrenMap(connection);
+			childCountsCache.invalidateAll();
 		} finally {
 			closeConnection(connection);
 		}
@@ -1006,6 +1209,7 @@ private void updateDatabaseSchema(String dbPath) throws Exception {
 				dbSchemaVersion = updateFromSchema8dot5toSchema8dot6(dbSchemaVersion, connection);
 				dbSchemaVersion = updateFromSchema8dot6toSchema9dot0(dbSchemaVersion, connection);
 				dbSchemaVersion = updateFromSchema9dot0toSchema9dot1(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema9dot1toSchema9dot2(dbSchemaVersion, connection);
 
 				statement = connection.createStatement();
 				connection.executeUpdate(statement, "UPDATE tsk_db_info SET schema_ver = " + dbSchemaVersion.getMajor() + ", schema_minor_ver = " + dbSchemaVersion.getMinor()); //NON-NLS
@@ -2686,6 +2890,43 @@ private CaseDbSchemaVersionNumber updateFromSchema9dot0toSchema9dot1(CaseDbSchem
 		}
 	}
 
+	private CaseDbSchemaVersionNumber updateFromSchema9dot1toSchema9dot2(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 9) {
+			return schemaVersion;
+		}
+
+		if (schemaVersion.getMinor() != 1) {
+			return schemaVersion;
+		}
+
+		String bigIntDataType = "BIGINT";
+		if (getDatabaseType() == DbType.SQLITE) {
+			bigIntDataType = "INTEGER";
+		}
+
+		Statement statement = connection.createStatement();
+		acquireSingleUserCaseWriteLock();
+		try {
+			// Add the timeline event counts table and fill it from the existing events
+			statement.execute("CREATE TABLE tsk_event_counts ("
+					+ " granularity INTEGER NOT NULL, "
+					+ " bucket_start " + bigIntDataType + " NOT NULL, "
+					+ " event_type_id " + bigIntDataType + " NOT NULL REFERENCES tsk_event_types(event_type_id), "
+					+ " data_source_obj_id " + bigIntDataType + " NOT NULL, "
+					+ " hash_hit INTEGER NOT NULL, "
+					+ " tagged INTEGER NOT NULL, "
+					+ " event_count " + bigIntDataType + " NOT NULL, "
+					+ " FOREIGN KEY(data_source_obj_id) REFERENCES data_source_info(obj_id) ON DELETE CASCADE, "
+					+ " UNIQUE (granularity, bucket_start, event_type_id, data_source_obj_id, hash_hit, tagged))");
+			statement.execute(TimelineManager.getEventCountsUpdateSql("1 = 1", false));
+
+			return new CaseDbSchemaVersionNumber(9, 2);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
 	/**
 	 * Inserts a row for the given account type in account_types table, if one
 	 * doesn't exist.
@@ -4981,40 +5222,10 @@ public ArrayList<BlackboardAttribute> getBlackboardAttributes(final BlackboardAr
 		try {
 			connection = connections.getConnection();	
 			statement = connection.createStatement();
-			rs = connection.executeQuery(statement, "SELECT attrs.artifact_id AS artifact_id, "
-					+ "attrs.source AS source, attrs.context AS context, attrs.attribute_type_id AS attribute_type_id, "
-					+ "attrs.value_type AS value_type, attrs.value_byte AS value_byte, "
-					+ "attrs.value_text AS value_text, attrs.value_int32 AS value_int32, "
-					+ "attrs.value_int64 AS value_int64, attrs.value_double AS value_double, "
-					+ "types.type_name AS type_name, types.display_name AS display_name "
-					+ "FROM blackboard_attributes AS attrs, blackboard_attribute_types AS types WHERE attrs.artifact_id = " + artifact.getArtifactID()
-					+ " AND attrs.attribute_type_id = types.attribute_type_id");
+			rs = connection.executeQuery(statement, BLACKBOARD_ATTRIBUTES_QUERY + "attrs.artifact_id = " + artifact.getArtifactID());
 			ArrayList<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
 			while (rs.next()) {
-				int attributeTypeId = rs.getInt("attribute_type_id");
-				String attributeTypeName = rs.getString("type_name");
-				BlackboardAttribute.Type attributeType;
-				if (this.typeIdToAttributeTypeMap.containsKey(attributeTypeId)) {
-					attributeType = this.typeIdToAttributeTypeMap.get(attributeTypeId);
-				} else {
-					attributeType = new BlackboardAttribute.Type(attributeTypeId, attributeTypeName,
-							rs.getString("display_name"),
-							BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getInt("value_type")));
-					this.typeIdToAttributeTypeMap.put(attributeTypeId, attributeType);
-					this.typeNameToAttributeTypeMap.put(attributeTypeName, attributeType);
-				}
-
-				final BlackboardAttribute attr = new BlackboardAttribute(
-						rs.getLong("artifact_id"),
-						attributeType,
-						rs.getString("source"),
-						rs.getString("context"),
-						rs.getInt("value_int32"),
-						rs.getLong("value_int64"),
-						rs.getDouble("value_double"),
-						rs.getString("value_text"),
-						rs.getBytes("value_byte"), this
-				);
+				final BlackboardAttribute attr = resultSetRowToBlackboardAttribute(rs);
 				attr.setParentDataSourceID(artifact.getDataSourceObjectID());
 				attributes.add(attr);
 			}
@@ -5029,6 +5240,103 @@ public ArrayList<BlackboardAttribute> getBlackboardAttributes(final BlackboardAr
 		}
 	}
 
+	/**
+	 * Loads the attributes of many artifacts with one query per
+	 * MAX_IDS_PER_QUERY artifacts, and stores them in the attribute cache of
+	 * each artifact so that getAttributes() does not query them again.
+	 *
+	 * @param artifacts The artifacts.
+	 *
+	 * @throws TskCoreException If there is an error querying the case
+	 *                          database.
+	 */
+	void loadBlackboardAttributes(Collection<? extends BlackboardArtifact> artifacts) throws TskCoreException {
+		// The same artifact may be represented by more than one object
+		Map<Long, List<BlackboardArtifact>> artifactsById = new LinkedHashMap<>();
+		for (BlackboardArtifact artifact : artifacts) {
+			artifactsById.computeIfAbsent(artifact.getArtifactID(), id -> new ArrayList<>()).add(artifact);
+		}
+		if (artifactsById.isEmpty()) {
+			return;
+		}
+
+		Map<Long, List<BlackboardAttribute>> attributesById = new HashMap<>();
+		acquireSingleUserCaseReadLock();
+		try (CaseDbConnection connection = connections.getConnection();
+				Statement statement = connection.createStatement()) {
+			for (List<Long> idBatch : Iterables.partition(artifactsById.keySet(), MAX_IDS_PER_QUERY)) {
+				String query = BLACKBOARD_ATTRIBUTES_QUERY + "attrs.artifact_id IN (" //NON-NLS
+						+ idBatch.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")"; //NON-NLS
+				try (ResultSet rs = connection.executeQuery(statement, query)) {
+					while (rs.next()) {
+						BlackboardAttribute attr = resultSetRowToBlackboardAttribute(rs);
+						attributesById.computeIfAbsent(attr.getArtifactID(), id -> new ArrayList<>()).add(attr);
+					}
+				}
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting attributes for " + artifactsById.size() + " artifacts", ex);
+		} finally {
+			releaseSingleUserCaseReadLock();
+		}
+
+		for (Map.Entry<Long, List<BlackboardArtifact>> entry : artifactsById.entrySet()) {
+			List<BlackboardAttribute> attributes = attributesById.getOrDefault(entry.getKey(), Collections.emptyList());
+			for (BlackboardArtifact artifact : entry.getValue()) {
+				for (BlackboardAttribute attr : attributes) {
+					attr.setParentDataSourceID(artifact.getDataSourceObjectID());
+				}
+				artifact.setAttributesFromDb(attributes);
+			}
+		}
+	}
+
+	private static final String BLACKBOARD_ATTRIBUTES_QUERY = "SELECT attrs.artifact_id AS artifact_id, " //NON-NLS
+			+ "attrs.source AS source, attrs.context AS context, attrs.attribute_type_id AS attribute_type_id, " //NON-NLS
+			+ "attrs.value_type AS value_type, attrs.value_byte AS value_byte, " //NON-NLS
+			+ "attrs.value_text AS value_text, attrs.value_int32 AS value_int32, " //NON-NLS
+			+ "attrs.value_int64 AS value_int64, attrs.value_double AS value_double, " //NON-NLS
+			+ "types.type_name AS type_name, types.display_name AS display_name " //NON-NLS
+			+ "FROM blackboard_attributes AS attrs JOIN blackboard_attribute_types AS types " //NON-NLS
+			+ "ON attrs.attribute_type_id = types.attribute_type_id WHERE "; //NON-NLS
+
+	/**
+	 * Creates a BlackboardAttribute for the current row of a result set from
+	 * BLACKBOARD_ATTRIBUTES_QUERY. The parent data source is not set.
+	 *
+	 * @param rs The result set.
+	 *
+	 * @return The attribute.
+	 *
+	 * @throws SQLException
+	 */
+	private BlackboardAttribute resultSetRowToBlackboardAttribute(ResultSet rs) throws SQLException {
+		int attributeTypeId = rs.getInt("attribute_type_id");
+		String attributeTypeName = rs.getString("type_name");
+		BlackboardAttribute.Type attributeType;
+		if (this.typeIdToAttributeTypeMap.containsKey(attributeTypeId)) {
+			attributeType = this.typeIdToAttributeTypeMap.get(attributeTypeId);
+		} else {
+			attributeType = new BlackboardAttribute.Type(attributeTypeId, attributeTypeName,
+					rs.getString("display_name"),
+					BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getInt("value_type")));
+			this.typeIdToAttributeTypeMap.put(attributeTypeId, attributeType);
+			this.typeNameToAttributeTypeMap.put(attributeTypeName, attributeType);
+		}
+
+		return new BlackboardAttribute(
+				rs.getLong("artifact_id"),
+				attributeType,
+				rs.getString("source"),
+				rs.getString("context"),
+				rs.getInt("value_int32"),
+				rs.getLong("value_int64"),
+				rs.getDouble("value_double"),
+				rs.getString("value_text"),
+				rs.getBytes("value_byte"), this
+		);
+	}
+
 	/**
 	 * Get the attributes associated with the given file.
 	 *
@@ -5151,6 +5459,11 @@ public ArrayList<BlackboardAttribute> getMatchingAttributes(String whereClause)
 		}
 	}
 
+	private static final String MATCHING_ARTIFACTS_QUERY = "SELECT blackboard_artifacts.artifact_id AS artifact_id, " //NON-NLS
+			+ "blackboard_artifacts.obj_id AS obj_id, blackboard_artifacts.artifact_obj_id AS artifact_obj_id, blackboard_artifacts.data_source_obj_id AS data_source_obj_id, blackboard_artifacts.artifact_type_id AS artifact_type_id, " //NON-NLS
+			+ "blackboard_artifacts.review_status_id AS review_status_id  " //NON-NLS
+			+ "FROM blackboard_artifacts "; //NON-NLS
+
 	/**
 	 * Get all artifacts that match a where clause. The clause should begin with
 	 * "WHERE" or "JOIN". To use this method you must know the database tables
@@ -5170,20 +5483,10 @@ public ArrayList<BlackboardArtifact> getMatchingArtifacts(String whereClause) th
 		try {
 			connection = connections.getConnection();
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT blackboard_artifacts.artifact_id AS artifact_id, "
-					+ "blackboard_artifacts.obj_id AS obj_id, blackboard_artifacts.artifact_obj_id AS artifact_obj_id, blackboard_artifacts.data_source_obj_id AS data_source_obj_id, blackboard_artifacts.artifact_type_id AS artifact_type_id, "
-					+ "blackboard_artifacts.review_status_id AS review_status_id  "
-					+ "FROM blackboard_artifacts " + whereClause); //NON-NLS
+			rs = connection.executeQuery(s, MATCHING_ARTIFACTS_QUERY + whereClause); //NON-NLS
 			ArrayList<BlackboardArtifact> matches = new ArrayList<BlackboardArtifact>();
 			while (rs.next()) {
-				BlackboardArtifact.Type type;
-				// artifact type is cached, so this does not necessarily call to the db
-				type = this.getArtifactType(rs.getInt("artifact_type_id"));
-				BlackboardArtifact artifact = new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"),
-						rs.getObject("data_source_obj_id") != null ? rs.getLong("data_source_obj_id") : null,
-						type.getTypeID(), type.getTypeName(), type.getDisplayName(),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id")));
-				matches.add(artifact);
+				matches.add(resultSetRowToMatchingArtifact(rs));
 			}
 			return matches;
 		} catch (SQLException ex) {
@@ -5196,6 +5499,65 @@ public ArrayList<BlackboardArtifact> getMatchingArtifacts(String whereClause) th
 		}
 	}
 
+	/**
+	 * Get all artifacts that match a where clause as a stream that reads the
+	 * matches from the case database as it is consumed, instead of holding
+	 * them all in memory. The clause should begin with "WHERE" or "JOIN".
+	 *
+	 * The stream holds a database connection, and for single-user cases the
+	 * case read lock, until it is closed. Use it in a try-with-resources block
+	 * on one thread and do not write to the case database from that thread
+	 * before closing it. Errors while reading are thrown as
+	 * UncheckedTskCoreException.
+	 *
+	 * @param whereClause a sqlite where clause
+	 * @param fetchSize   the number of rows to read per round trip
+	 *
+	 * @return a stream of matching artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core \ref query_database_page
+	 */
+	public Stream<BlackboardArtifact> streamMatchingArtifacts(String whereClause, int fetchSize) throws TskCoreException {
+		return CaseDbResultStream.create(this, MATCHING_ARTIFACTS_QUERY + whereClause, fetchSize,
+				(rs, connection) -> resultSetRowToMatchingArtifact(rs));
+	}
+
+	/**
+	 * Get all artifacts that match a where clause as a stream, using the
+	 * default fetch size. See streamMatchingArtifacts(String, int).
+	 *
+	 * @param whereClause a sqlite where clause
+	 *
+	 * @return a stream of matching artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core \ref query_database_page
+	 */
+	public Stream<BlackboardArtifact> streamMatchingArtifacts(String whereClause) throws TskCoreException {
+		return streamMatchingArtifacts(whereClause, CaseDbResultStream.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Creates an artifact for the current row of a result set from the query
+	 * used by getMatchingArtifacts().
+	 *
+	 * @param rs The result set.
+	 *
+	 * @return The artifact.
+	 *
+	 * @throws SQLException
+	 * @throws TskCoreException
+	 */
+	private BlackboardArtifact resultSetRowToMatchingArtifact(ResultSet rs) throws SQLException, TskCoreException {
+		// artifact type is cached, so this does not necessarily call to the db
+		BlackboardArtifact.Type type = this.getArtifactType(rs.getInt("artifact_type_id"));
+		return new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"),
+				rs.getObject("data_source_obj_id") != null ? rs.getLong("data_source_obj_id") : null,
+				type.getTypeID(), type.getTypeName(), type.getDisplayName(),
+				BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id")));
+	}
+
 	/**
 	 * Add a new blackboard artifact with the given type. If that artifact type
 	 * does not exist an error will be thrown. The artifact type name can be
@@ -5468,6 +5830,14 @@ int getContentChildrenCount(Content content) throws TskCoreException {
 			return 0;
 		}
 
+		if (dbType == DbType.SQLITE) {
+			int countChildren = 0;
+			for (int count : getChildCounts(content)) {
+				countChildren += count;
+			}
+			return countChildren;
+		}
+
 		CaseDbConnection connection = null;
 		ResultSet rs = null;
 		acquireSingleUserCaseReadLock();
@@ -5493,6 +5863,61 @@ int getContentChildrenCount(Content content) throws TskCoreException {
 		}
 	}
 
+	/**
+	 * Gets the number of children of each object type of a content object of
+	 * a SQLite case, from the child counts cache if possible. The single user
+	 * case read lock is held while the counts are loaded and cached, so a
+	 * child can not be added (and the entry invalidated) in between.
+	 *
+	 * @param content content object to count the children of
+	 *
+	 * @return The counts, indexed by ObjectType ordinal. Must not be modified.
+	 *
+	 * @throws TskCoreException
+	 */
+	private int[] getChildCounts(Content content) throws TskCoreException {
+		acquireSingleUserCaseReadLock();
+		try {
+			return childCountsCache.get(content.getId(), () -> {
+				try (CaseDbConnection connection = connections.getConnection()) {
+					return queryChildCounts(content.getId(), connection);
+				}
+			});
+		} catch (ExecutionException ex) {
+			throw new TskCoreException("Error checking for children of parent " + content, ex);
+		} finally {
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Queries the number of children of each object type of an object.
+	 *
+	 * @param parentId   The ID of the parent object.
+	 * @param connection
+	 *
+	 * @return The counts, indexed by ObjectType ordinal.
+	 *
+	 * @throws TskCoreException
+	 */
+	private int[] queryChildCounts(long parentId, CaseDbConnection connection) throws TskCoreException {
+		int[] counts = new int[TskData.ObjectType.values().length];
+		try {
+			// SELECT type, COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ? GROUP BY type
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_CHILD_OBJECTS_BY_PARENT_AND_TYPE);
+			statement.clearParameters();
+			statement.setLong(1, parentId);
+			try (ResultSet rs = connection.executeQuery(statement)) {
+				while (rs.next()) {
+					counts[TskData.ObjectType.valueOf(rs.getShort("type")).ordinal()] += rs.getInt("count");
+				}
+			}
+			return counts;
+		} catch (SQLException e) {
+			throw new TskCoreException("Error checking for children of parent " + parentId, e);
+		}
+	}
+
 	/**
 	 * Returns the list of AbstractFile Children of a given type for a given
 	 * AbstractFileParent
@@ -5770,6 +6195,71 @@ ObjectInfo getParentInfo(long contentId) throws TskCoreException {
 		}
 	}
 
+	/**
+	 * Gets the unique path of the parent of a content object. The unique paths
+	 * of parents are cached, so the path of each child of a directory (or
+	 * other parent) only needs a lookup of its parent ID rather than a walk up
+	 * to the data source.
+	 *
+	 * @param content The content object.
+	 *
+	 * @return The unique path of the parent, or null if the content object
+	 *         has no parent.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core
+	 */
+	String getParentUniquePath(Content content) throws TskCoreException {
+		ObjectInfo parentInfo = getParentInfo(content);
+		if (parentInfo == null) {
+			return null;
+		}
+		String parentPath = uniquePathCache.getIfPresent(parentInfo.getId());
+		if (parentPath == null) {
+			Content parent = getContentById(parentInfo.getId());
+			if (parent == null) {
+				return null;
+			}
+			parentPath = cacheUniquePath(parent);
+		}
+		return parentPath;
+	}
+
+	/**
+	 * Gets the unique path of a content object and adds it to the unique path
+	 * cache, unless the cached paths were invalidated while it was computed.
+	 *
+	 * @param content The content object, usually a parent of other objects.
+	 *
+	 * @return The unique path.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core
+	 */
+	private String cacheUniquePath(Content content) throws TskCoreException {
+		long invalidations = uniquePathCacheInvalidations.get();
+		String uniquePath = content.getUniquePath();
+		if (uniquePathCacheInvalidations.get() == invalidations) {
+			uniquePathCache.put(content.getId(), uniquePath);
+			if (uniquePathCacheInvalidations.get() != invalidations) {
+				// A rename raced with the put
+				uniquePathCache.invalidate(content.getId());
+			}
+		}
+		return uniquePath;
+	}
+
+	/**
+	 * Removes all unique paths from the unique path cache. Must be called when
+	 * an object is renamed, since that changes the paths of all of its
+	 * descendants, and when objects are deleted, since their IDs may be
+	 * reused.
+	 */
+	private void invalidateUniquePaths() {
+		uniquePathCacheInvalidations.incrementAndGet();
+		uniquePathCache.invalidateAll();
+	}
+
 	/**
 	 * Gets parent directory for FsContent object
 	 *
@@ -5785,6 +6275,27 @@ Directory getParentDirectory(FsContent fsc) throws TskCoreException {
 			// Given FsContent is a root object and can't have parent directory
 			return null;
 		} else {
+			// Look the parent directory up with a single query in the usual
+			// case, and fall back to checking the parent type otherwise.
+			acquireSingleUserCaseReadLock();
+			try (CaseDbConnection connection = connections.getConnection()) {
+				// SELECT tsk_files.* FROM tsk_objects INNER JOIN tsk_files ON tsk_files.obj_id = tsk_objects.par_obj_id WHERE tsk_objects.obj_id = ?
+				PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_PARENT_FILE);
+				statement.clearParameters();
+				statement.setLong(1, fsc.getId());
+				try (ResultSet rs = connection.executeQuery(statement)) {
+					if (rs.next() && rs.getShort("type") == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()
+							&& (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()
+							|| rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) {
+						return directory(rs, fsc.getFileSystem());
+					}
+				}
+			} catch (SQLException ex) {
+				throw new TskCoreException("Error getting parent directory of FsContent (id: " + fsc.getId() + ")", ex);
+			} finally {
+				releaseSingleUserCaseReadLock();
+			}
+
 			ObjectInfo parentInfo = getParentInfo(fsc);
 			if (parentInfo == null) {
 				return null;
@@ -5816,6 +6327,12 @@ public Content getContentById(long id) throws TskCoreException {
 		if (null != content) {
 			return content;
 		}
+		Cache<Long, Content> currentContentCache = contentCache;
+		content = currentContentCache.getIfPresent(id);
+		if (null != content) {
+			return content;
+		}
+		long invalidations = contentCacheInvalidations.get();
 
 		long parentId;
 		TskData.ObjectType type;
@@ -5842,55 +6359,289 @@ public Content getContentById(long id) throws TskCoreException {
 			releaseSingleUserCaseReadLock();
 		}
 
-		// Construct the object
-		switch (type) {
-			case IMG:
-				content = getImageById(id);
-				frequentlyUsedContentMap.put(id, content);
-				break;
-			case VS:
-				content = getVolumeSystemById(id, parentId);
-				break;
-			case VOL:
-				content = getVolumeById(id, parentId);
-				frequentlyUsedContentMap.put(id, content);
-				break;
-			case POOL:
-				content = getPoolById(id, parentId);
-				break;
-			case FS:
-				content = getFileSystemById(id, parentId);
-				frequentlyUsedContentMap.put(id, content);
-				break;
-			case ABSTRACTFILE:
-				content = getAbstractFileById(id);
-
-				// Add virtual and root directories to frequently used map.
-				// Calling isRoot() on local directories goes up the entire directory structure
-				// and they can only be the root of portable cases, so skip trying to add
-				// them to the cache.
-				if (((AbstractFile) content).isVirtual()
-						|| ((!(content instanceof LocalDirectory)) && ((AbstractFile) content).isRoot())) {
-					frequentlyUsedContentMap.put(id, content);
-				}
-				break;
-			case ARTIFACT:
-				content = getArtifactById(id);
-				break;
-			case REPORT:
-				content = getReportById(id);
-				break;
-			case OS_ACCOUNT:
-				content = this.osAccountManager.getOsAccountByObjectId(id);
-				break;
-			case HOST_ADDRESS:
-				content = hostAddressManager.getHostAddress(id);
-				break;
-			default:
-				content = new UnsupportedContent(this, id);
+		// Construct the object
+		switch (type) {
+			case IMG:
+				content = getImageById(id);
+				frequentlyUsedContentMap.put(id, content);
+				break;
+			case VS:
+				content = getVolumeSystemById(id, parentId);
+				cacheContent(currentContentCache, id, content, invalidations);
+				break;
+			case VOL:
+				content = getVolumeById(id, parentId);
+				frequentlyUsedContentMap.put(id, content);
+				break;
+			case POOL:
+				content = getPoolById(id, parentId);
+				cacheContent(currentContentCache, id, content, invalidations);
+				break;
+			case FS:
+				content = getFileSystemById(id, parentId);
+				frequentlyUsedContentMap.put(id, content);
+				break;
+			case ABSTRACTFILE:
+				content = getAbstractFileById(id);
+
+				// Add virtual and root directories to frequently used map.
+				// Calling isRoot() on local directories goes up the entire directory structure
+				// and they can only be the root of portable cases, so skip trying to add
+				// them to the cache.
+				if (((AbstractFile) content).isVirtual()
+						|| ((!(content instanceof LocalDirectory)) && ((AbstractFile) content).isRoot())) {
+					frequentlyUsedContentMap.put(id, content);
+				} else {
+					cacheContent(currentContentCache, id, content, invalidations);
+				}
+				break;
+			case ARTIFACT:
+				content = getArtifactById(id);
+				break;
+			case REPORT:
+				content = getReportById(id);
+				break;
+			case OS_ACCOUNT:
+				content = this.osAccountManager.getOsAccountByObjectId(id);
+				break;
+			case HOST_ADDRESS:
+				content = hostAddressManager.getHostAddress(id);
+				break;
+			default:
+				content = new UnsupportedContent(this, id);
+		}
+
+		return content;
+	}
+
+	/**
+	 * Gets the content objects with the given object IDs. Files are loaded
+	 * with a few queries that each cover many IDs, so this is much faster than
+	 * calling getContentById() for each ID.
+	 *
+	 * @param ids The object IDs.
+	 *
+	 * @return The content objects, in the order of the given IDs. IDs with no
+	 *         matching object are skipped.
+	 *
+	 * @throws TskCoreException thrown if critical error occurred within tsk
+	 *                          core
+	 */
+	public List<Content> getContentByIds(Collection<Long> ids) throws TskCoreException {
+		Map<Long, Content> contentById = new HashMap<>();
+		Set<Long> uncachedIds = new LinkedHashSet<>();
+		Cache<Long, Content> currentContentCache = contentCache;
+		for (Long id : ids) {
+			Content content = frequentlyUsedContentMap.get(id);
+			if (content == null) {
+				content = currentContentCache.getIfPresent(id);
+			}
+			if (content != null) {
+				contentById.put(id, content);
+			} else {
+				uncachedIds.add(id);
+			}
+		}
+
+		if (!uncachedIds.isEmpty()) {
+			long invalidations = contentCacheInvalidations.get();
+			List<Long> fileIds = new ArrayList<>();
+			List<Long> otherIds = new ArrayList<>();
+			acquireSingleUserCaseReadLock();
+			try (CaseDbConnection connection = connections.getConnection();
+					Statement statement = connection.createStatement()) {
+				for (List<Long> idBatch : Iterables.partition(uncachedIds, MAX_IDS_PER_QUERY)) {
+					String query = "SELECT obj_id, type FROM tsk_objects WHERE obj_id IN (" //NON-NLS
+							+ idBatch.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")"; //NON-NLS
+					try (ResultSet rs = connection.executeQuery(statement, query)) {
+						while (rs.next()) {
+							long id = rs.getLong("obj_id"); //NON-NLS
+							if (TskData.ObjectType.valueOf(rs.getShort("type")) == TskData.ObjectType.ABSTRACTFILE) { //NON-NLS
+								fileIds.add(id);
+							} else {
+								otherIds.add(id);
+							}
+						}
+					}
+				}
+			} catch (SQLException ex) {
+				throw new TskCoreException("Error getting content by IDs.", ex);
+			} finally {
+				releaseSingleUserCaseReadLock();
+			}
+
+			for (AbstractFile file : getAbstractFilesByIds(fileIds)) {
+				contentById.put(file.getId(), file);
+				cacheContent(currentContentCache, file.getId(), file, invalidations);
+			}
+			// Data sources, volumes, artifacts etc. are rarely requested in
+			// bulk and each need their own queries.
+			for (Long id : otherIds) {
+				Content content = getContentById(id);
+				if (content != null) {
+					contentById.put(id, content);
+				}
+			}
+		}
+
+		List<Content> contents = new ArrayList<>();
+		for (Long id : new LinkedHashSet<>(ids)) {
+			Content content = contentById.get(id);
+			if (content != null) {
+				contents.add(content);
+			}
+		}
+		return contents;
+	}
+
+	/**
+	 * Adds a content object read from the database to the content cache,
+	 * unless cached content was invalidated while it was being read.
+	 *
+	 * @param cache         The content cache in use when the read started.
+	 * @param id            The object ID.
+	 * @param content       The content object.
+	 * @param invalidations The invalidation count when the read started.
+	 */
+	private void cacheContent(Cache<Long, Content> cache, long id, Content content, long invalidations) {
+		if (content == null || contentCacheInvalidations.get() != invalidations) {
+			return;
+		}
+		cache.put(id, content);
+		if (contentCacheInvalidations.get() != invalidations) {
+			// An update raced with the put
+			cache.invalidate(id);
+		}
+	}
+
+	/**
+	 * Removes a content object from the content cache. Must be called when
+	 * the database row of a cached object is updated so that later calls to
+	 * getContentById() do not return stale data.
+	 *
+	 * @param objId The object ID.
+	 */
+	void invalidateCachedContent(long objId) {
+		contentCacheInvalidations.incrementAndGet();
+		contentCache.invalidate(objId);
+	}
+
+	/**
+	 * Removes all content objects from the content cache. The frequently used
+	 * content (images, volumes, file systems and root directories) is not
+	 * affected.
+	 */
+	public void clearContentCache() {
+		contentCacheInvalidations.incrementAndGet();
+		contentCache.invalidateAll();
+	}
+
+	/**
+	 * Sets the maximum number of content objects kept in the cache used by
+	 * getContentById(). Changing the size discards the current contents and
+	 * statistics. The cache is disabled by default.
+	 *
+	 * Cached objects are shared by all callers, and changes made to a
+	 * multi-user case by other clients are not seen until the objects are
+	 * evicted. Only enable the cache for single-user cases, or when stale
+	 * objects are acceptable.
+	 *
+	 * @param maxSize The maximum number of objects, or zero to disable the
+	 *                cache.
+	 */
+	public synchronized void setContentCacheSize(long maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative: " + maxSize);
+		}
+		Cache<Long, Content> oldCache = contentCache;
+		contentCacheInvalidations.incrementAndGet();
+		contentCache = buildContentCache(maxSize);
+		oldCache.invalidateAll();
+	}
+
+	/**
+	 * Gets the hit and miss counts of the cache used by getContentById()
+	 * since it was last resized.
+	 *
+	 * @return The statistics.
+	 */
+	public ContentCacheStatistics getContentCacheStatistics() {
+		Cache<Long, Content> currentContentCache = contentCache;
+		CacheStats stats = currentContentCache.stats();
+		return new ContentCacheStatistics(stats.hitCount(), stats.missCount(),
+				stats.evictionCount(), currentContentCache.size());
+	}
+
+	private static Cache<Long, Content> buildContentCache(long maxSize) {
+		return CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Hit and miss counts of the content cache used by getContentById().
+	 */
+	public static final class ContentCacheStatistics {
+
+		private final long hitCount;
+		private final long missCount;
+		private final long evictionCount;
+		private final long size;
+
+		private ContentCacheStatistics(long hitCount, long missCount, long evictionCount, long size) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.size = size;
+		}
+
+		/**
+		 * Gets the number of lookups answered from the cache.
+		 *
+		 * @return The hit count.
+		 */
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		/**
+		 * Gets the number of lookups that went to the case database.
+		 *
+		 * @return The miss count.
+		 */
+		public long getMissCount() {
+			return missCount;
+		}
+
+		/**
+		 * Gets the fraction of lookups answered from the cache.
+		 *
+		 * @return The hit rate, 1.0 if there have been no lookups.
+		 */
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return (total == 0) ? 1.0 : (double) hitCount / total;
+		}
+
+		/**
+		 * Gets the number of objects evicted to keep the cache within its
+		 * maximum size.
+		 *
+		 * @return The eviction count.
+		 */
+		public long getEvictionCount() {
+			return evictionCount;
 		}
 
-		return content;
+		/**
+		 * Gets the number of objects currently in the cache.
+		 *
+		 * @return The number of objects.
+		 */
+		public long getSize() {
+			return size;
+		}
 	}
 
 	/**
@@ -6118,6 +6869,53 @@ AbstractFile getAbstractFileById(long objectId, CaseDbConnection connection) thr
 		}
 	}
 
+	/**
+	 * Get the abstract file objects from the tsk_files table with the given
+	 * ids. The files are loaded with one query per MAX_IDS_PER_QUERY ids, so
+	 * this is much faster than calling getAbstractFileById() for each id.
+	 *
+	 * @param ids The ids of the file objects in the tsk_files table.
+	 *
+	 * @return The AbstractFile objects, in the order of the given ids. Ids
+	 *         with no matching file are skipped.
+	 *
+	 * @throws TskCoreException thrown if critical error occurred within tsk
+	 *                          core and the files could not be queried
+	 */
+	public List<AbstractFile> getAbstractFilesByIds(Collection<Long> ids) throws TskCoreException {
+		Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+		if (uniqueIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Map<Long, AbstractFile> filesById = new HashMap<>();
+		acquireSingleUserCaseReadLock();
+		try (CaseDbConnection connection = connections.getConnection();
+				Statement statement = connection.createStatement()) {
+			for (List<Long> idBatch : Iterables.partition(uniqueIds, MAX_IDS_PER_QUERY)) {
+				String query = "SELECT * FROM tsk_files WHERE obj_id IN (" //NON-NLS
+						+ idBatch.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")"; //NON-NLS
+				try (ResultSet rs = connection.executeQuery(statement, query)) {
+					for (AbstractFile file : resultSetToAbstractFiles(rs, connection)) {
+						filesById.put(file.getId(), file);
+					}
+				}
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting files by ids", ex);
+		} finally {
+			releaseSingleUserCaseReadLock();
+		}
+
+		List<AbstractFile> files = new ArrayList<>(filesById.size());
+		for (Long id : uniqueIds) {
+			AbstractFile file = filesById.get(id);
+			if (file != null) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
 	/**
 	 * Get artifact from blackboard_artifacts table by its artifact_obj_id
 	 *
@@ -6450,7 +7248,7 @@ long addObject(long parentId, int objectType, CaseDbConnection connection) throw
 
 			if (resultSet.next()) {
 				if (parentId != 0) {
-					setHasChildren(parentId);
+					childObjectAdded(parentId);
 				}
 				return resultSet.getLong(1); //last_insert_rowid()
 			} else {
@@ -6462,6 +7260,115 @@ long addObject(long parentId, int objectType, CaseDbConnection connection) throw
 		}
 	}
 
+	/**
+	 * Reserves a block of row IDs for a table with a generated primary key so
+	 * that the rows can be inserted with explicit IDs using JDBC batching
+	 * instead of one INSERT and generated key lookup per row.
+	 *
+	 * For SQLite the IDs follow the current maximum ID in the table, so the
+	 * connection must have an open transaction and the single user case write
+	 * lock must be held until the reserved rows are inserted. For PostgreSQL
+	 * the IDs are drawn from the sequence backing the column and may not be
+	 * contiguous. Reserved IDs that are not used are simply skipped.
+	 *
+	 * @param tableName  The name of the table.
+	 * @param idColumn   The name of the generated primary key column.
+	 * @param count      The number of IDs to reserve.
+	 * @param connection The case database connection.
+	 *
+	 * @return The reserved IDs, in ascending order.
+	 *
+	 * @throws SQLException
+	 */
+	long[] reserveRowIds(String tableName, String idColumn, int count, CaseDbConnection connection) throws SQLException {
+		long[] ids = new long[count];
+		if (count == 0) {
+			return ids;
+		}
+		acquireSingleUserCaseWriteLock();
+		try (Statement statement = connection.createStatement()) {
+			switch (getDatabaseType()) {
+				case POSTGRESQL:
+					try (ResultSet resultSet = connection.executeQuery(statement,
+							"SELECT nextval(pg_get_serial_sequence('" + tableName + "', '" + idColumn + "')) AS id " //NON-NLS
+							+ "FROM generate_series(1, " + count + ")")) { //NON-NLS
+						int i = 0;
+						while (resultSet.next() && i < count) {
+							ids[i++] = resultSet.getLong("id");
+						}
+						if (i != count) {
+							throw new SQLException("Failed to reserve " + count + " IDs for " + tableName);
+						}
+					}
+					Arrays.sort(ids);
+					break;
+				case SQLITE:
+					try (ResultSet resultSet = connection.executeQuery(statement,
+							"SELECT MAX(" + idColumn + ") AS max_id FROM " + tableName)) { //NON-NLS
+						long maxId = resultSet.next() ? resultSet.getLong("max_id") : 0;
+						for (int i = 0; i < count; i++) {
+							ids[i] = maxId + i + 1;
+						}
+					}
+					break;
+				default:
+					throw new SQLException("Unknown DB Type: " + getDatabaseType().name());
+			}
+			return ids;
+		} finally {
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Add a batch of objects with previously reserved object IDs (see
+	 * reserveRowIds()) to the tsk_objects table using a single JDBC batch.
+	 * Parents must precede their children in the lists.
+	 *
+	 * @param objIds     The reserved object IDs of the new objects.
+	 * @param parentIds  The parent object IDs of the new objects, or 0 if
+	 *                   NULL.
+	 * @param objectType Type of the new objects.
+	 * @param connection Case connection, with an open transaction.
+	 *
+	 * @throws SQLException
+	 */
+	void addObjects(List<Long> objIds, List<Long> parentIds, int objectType, CaseDbConnection connection) throws SQLException {
+		if (objIds.size() != parentIds.size()) {
+			throw new SQLException("Object ID and parent ID lists differ in size");
+		}
+		if (objIds.isEmpty()) {
+			return;
+		}
+		acquireSingleUserCaseWriteLock();
+		try {
+			// INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (?, ?, ?)
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_OBJECT_WITH_ID);
+			statement.clearBatch();
+			for (int i = 0; i < objIds.size(); i++) {
+				long parentId = parentIds.get(i);
+				statement.clearParameters();
+				statement.setLong(1, objIds.get(i));
+				if (parentId != 0) {
+					statement.setLong(2, parentId);
+				} else {
+					statement.setNull(2, java.sql.Types.BIGINT);
+				}
+				statement.setInt(3, objectType);
+				statement.addBatch();
+			}
+			connection.executeBatch(statement);
+
+			for (Long parentId : parentIds) {
+				if (parentId != 0) {
+					childObjectAdded(parentId);
+				}
+			}
+		} finally {
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
 	/**
 	 * Adds a virtual directory to the database and returns a VirtualDirectory
 	 * object representing it.
@@ -7960,6 +8867,7 @@ public DerivedFile updateDerivedFile(DerivedFile derivedFile, String localPath,
 
 			//add localPath
 			updateFilePath(trans.getConnection(), derivedFile.getId(), localPath, encodingType);
+			trans.registerUpdatedContent(derivedFile.getId());
 
 			long dataSourceObjId = getDataSourceObjectId(trans.getConnection(), parentObj);
 			final String extension = extractExtension(derivedFile.getName());
@@ -8736,6 +9644,51 @@ public List<AbstractFile> findAllFilesWhere(String sqlWhereClause) throws TskCor
 		}
 	}
 
+	/**
+	 * Find all (abstract) files matching the specific Where clause, as a
+	 * stream that reads the files from the case database as it is consumed
+	 * instead of holding them all in memory. See findAllFilesWhere() for the
+	 * form of the clause.
+	 *
+	 * The stream holds a database connection, and for single-user cases the
+	 * case read lock, until it is closed. Use it in a try-with-resources block
+	 * on one thread and do not write to the case database from that thread
+	 * before closing it. Errors while reading are thrown as
+	 * UncheckedTskCoreException.
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 *                       files (do not begin the WHERE clause with the word
+	 *                       WHERE!)
+	 * @param fetchSize      the number of rows to read per round trip
+	 *
+	 * @return a stream of the AbstractFiles that satisfy the given WHERE
+	 *         clause
+	 *
+	 * @throws TskCoreException \ref query_database_page
+	 */
+	public Stream<AbstractFile> streamAllFilesWhere(String sqlWhereClause, int fetchSize) throws TskCoreException {
+		return CaseDbResultStream.create(this, "SELECT * FROM tsk_files WHERE " + sqlWhereClause, fetchSize, //NON-NLS
+				this::resultSetRowToAbstractFile);
+	}
+
+	/**
+	 * Find all (abstract) files matching the specific Where clause as a
+	 * stream, using the default fetch size. See streamAllFilesWhere(String,
+	 * int).
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 *                       files (do not begin the WHERE clause with the word
+	 *                       WHERE!)
+	 *
+	 * @return a stream of the AbstractFiles that satisfy the given WHERE
+	 *         clause
+	 *
+	 * @throws TskCoreException \ref query_database_page
+	 */
+	public Stream<AbstractFile> streamAllFilesWhere(String sqlWhereClause) throws TskCoreException {
+		return streamAllFilesWhere(sqlWhereClause, CaseDbResultStream.DEFAULT_FETCH_SIZE);
+	}
+
 	/**
 	 * Find and return list of all (abstract) files matching the specific Where
 	 * clause with the give parentId. You need to know the database schema to
@@ -9828,6 +10781,14 @@ void deleteDataSource(long dataSourceObjectId) throws TskCoreException {
 			}
 			
 			connection.commitTransaction();
+			resetHasChildrenLastObject(connection);
+			discardHasChildrenSnapshot();
+			childCountsCache.invalidateAll();
+			invalidateUniquePaths();
+			frequentlyUsedContentMap.remove(dataSourceObjectId);
+			clearContentCache();
+			communicationsMgr.clearCaches();
+			scoringManager.clearAggregateScoreCache();
 		} catch (SQLException ex) {
 			rollbackTransaction(connection);
 			throw new TskCoreException("Error deleting data source.", ex);
@@ -9866,62 +10827,9 @@ List<AbstractFile> resultSetToAbstractFiles(ResultSet rs, CaseDbConnection conne
 		ArrayList<AbstractFile> results = new ArrayList<AbstractFile>();
 		try {
 			while (rs.next()) {
-				final short type = rs.getShort("type"); //NON-NLS
-				if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()
-						&& (rs.getShort("meta_type") != TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) {
-					FsContent result;
-					if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) { //NON-NLS
-						result = directory(rs, null);
-					} else {
-						result = file(rs, null);
-					}
+				AbstractFile result = resultSetRowToAbstractFile(rs, connection);
+				if (result != null) {
 					results.add(result);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()
-						|| (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) { //NON-NLS
-					final VirtualDirectory virtDir = virtualDirectory(rs, connection);
-					results.add(virtDir);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL_DIR.getFileType()) {
-					final LocalDirectory localDir = localDirectory(rs);
-					results.add(localDir);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType()
-						|| type == TSK_DB_FILES_TYPE_ENUM.UNUSED_BLOCKS.getFileType()
-						|| type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()
-						|| type == TSK_DB_FILES_TYPE_ENUM.LAYOUT_FILE.getFileType()) {
-					TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
-					String parentPath = rs.getString("parent_path"); //NON-NLS
-					if (parentPath == null) {
-						parentPath = "/"; //NON-NLS
-					}
-
-					Long osAccountObjId = rs.getLong("os_account_obj_id");
-					if (rs.wasNull()) {
-						osAccountObjId = null;
-					}
-
-					LayoutFile lf = new LayoutFile(this,
-							rs.getLong("obj_id"), //NON-NLS
-							rs.getLong("data_source_obj_id"),
-							rs.getString("name"), //NON-NLS
-							atype,
-							TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-							TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
-							rs.getLong("size"), //NON-NLS
-							rs.getLong("ctime"), rs.getLong("crtime"), rs.getLong("atime"), rs.getLong("mtime"), //NON-NLS
-							rs.getString("md5"), rs.getString("sha256"), FileKnown.valueOf(rs.getByte("known")), parentPath,
-							rs.getString("mime_type"),
-							rs.getString("owner_uid"), osAccountObjId); //NON-NLS
-					results.add(lf);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
-					final DerivedFile df;
-					df = derivedFile(rs, connection, AbstractContent.UNKNOWN_ID);
-					results.add(df);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
-					final LocalFile lf;
-					lf = localFile(rs, connection, AbstractContent.UNKNOWN_ID);
-					results.add(lf);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.SLACK.getFileType()) {
-					final SlackFile sf = slackFile(rs, null);
-					results.add(sf);
 				}
 			} //end for each resultSet
 		} catch (SQLException e) {
@@ -9931,6 +10839,69 @@ List<AbstractFile> resultSetToAbstractFiles(ResultSet rs, CaseDbConnection conne
 		return results;
 	}
 
+	/**
+	 * Creates an AbstractFile object for the current row of a result set from
+	 * a query of the tsk_files table.
+	 *
+	 * @param rs         A result set positioned on a row of the tsk_files
+	 *                   table.
+	 * @param connection The connection the result set is read on.
+	 *
+	 * @return The file, or null if the row has an unsupported file type.
+	 *
+	 * @throws SQLException
+	 */
+	private AbstractFile resultSetRowToAbstractFile(ResultSet rs, CaseDbConnection connection) throws SQLException {
+		final short type = rs.getShort("type"); //NON-NLS
+		if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()
+				&& (rs.getShort("meta_type") != TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) {
+			if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) { //NON-NLS
+				return directory(rs, null);
+			} else {
+				return file(rs, null);
+			}
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()
+				|| (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) { //NON-NLS
+			return virtualDirectory(rs, connection);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL_DIR.getFileType()) {
+			return localDirectory(rs);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType()
+				|| type == TSK_DB_FILES_TYPE_ENUM.UNUSED_BLOCKS.getFileType()
+				|| type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()
+				|| type == TSK_DB_FILES_TYPE_ENUM.LAYOUT_FILE.getFileType()) {
+			TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
+			String parentPath = rs.getString("parent_path"); //NON-NLS
+			if (parentPath == null) {
+				parentPath = "/"; //NON-NLS
+			}
+
+			Long osAccountObjId = rs.getLong("os_account_obj_id");
+			if (rs.wasNull()) {
+				osAccountObjId = null;
+			}
+
+			return new LayoutFile(this,
+					rs.getLong("obj_id"), //NON-NLS
+					rs.getLong("data_source_obj_id"),
+					rs.getString("name"), //NON-NLS
+					atype,
+					TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
+					TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
+					rs.getLong("size"), //NON-NLS
+					rs.getLong("ctime"), rs.getLong("crtime"), rs.getLong("atime"), rs.getLong("mtime"), //NON-NLS
+					rs.getString("md5"), rs.getString("sha256"), FileKnown.valueOf(rs.getByte("known")), parentPath,
+					rs.getString("mime_type"),
+					rs.getString("owner_uid"), osAccountObjId); //NON-NLS
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
+			return derivedFile(rs, connection, AbstractContent.UNKNOWN_ID);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
+			return localFile(rs, connection, AbstractContent.UNKNOWN_ID);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.SLACK.getFileType()) {
+			return slackFile(rs, null);
+		}
+		return null;
+	}
+
 	// This following methods generate AbstractFile objects from a ResultSet
 	/**
 	 * Create a File object from the result set containing query results on
@@ -10451,6 +11422,7 @@ protected void finalize() throws Throwable {
 	public synchronized void close() {
 		acquireSingleUserCaseWriteLock();
 
+		writeHasChildrenSnapshot();
 		try {
 			connections.close();
 		} catch (TskCoreException ex) {
@@ -10497,6 +11469,7 @@ public boolean setKnown(AbstractFile file, FileKnown fileKnown) throws TskCoreEx
 					+ "WHERE obj_id=" + id); //NON-NLS
 
 			file.setKnown(fileKnown);
+			invalidateCachedContent(id);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting Known status.", ex);
 		} finally {
@@ -10521,6 +11494,8 @@ void setFileName(String name, long objId) throws TskCoreException {
 			preparedStatement.setString(1, name);
 			preparedStatement.setLong(2, objId);
 			connection.executeUpdate(preparedStatement);
+			invalidateCachedContent(objId);
+			invalidateUniquePaths();
 		} catch (SQLException ex) {
 			throw new TskCoreException(String.format("Error updating while the name for object ID %d to %s", objId, name), ex);
 		} finally {
@@ -10544,6 +11519,7 @@ void setImageName(String name, long objId) throws TskCoreException {
 			preparedStatement.setString(1, name);
 			preparedStatement.setLong(2, objId);
 			connection.executeUpdate(preparedStatement);
+			invalidateUniquePaths();
 		} catch (SQLException ex) {
 			throw new TskCoreException(String.format("Error updating while the name for object ID %d to %s", objId, name), ex);
 		} finally {
@@ -10597,6 +11573,7 @@ public void setFileMIMEType(AbstractFile file, String mimeType) throws TskCoreEx
 				Statement statement = connection.createStatement()) {
 			connection.executeUpdate(statement, String.format("UPDATE tsk_files SET mime_type = '%s' WHERE obj_id = %d", mimeType, file.getId()));
 			file.setMIMEType(mimeType);
+			invalidateCachedContent(file.getId());
 		} catch (SQLException ex) {
 			throw new TskCoreException(String.format("Error setting MIME type for file (obj_id = %s)", file.getId()), ex);
 		} finally {
@@ -10634,6 +11611,7 @@ public void setFileUnalloc(AbstractFile file) throws TskCoreException {
 			file.setMetaFlag(TSK_FS_META_FLAG_ENUM.UNALLOC);
 
 			file.setDirFlag(TSK_FS_NAME_FLAG_ENUM.UNALLOC);
+			invalidateCachedContent(file.getId());
 
 		} catch (SQLException ex) {
 			throw new TskCoreException(String.format("Error setting unalloc meta flag for file (obj_id = %s)", file.getId()), ex);
@@ -10664,6 +11642,7 @@ void setMd5Hash(AbstractFile file, String md5Hash) throws TskCoreException {
 			statement.setLong(2, id);
 			connection.executeUpdate(statement);
 			file.setMd5Hash(md5Hash.toLowerCase());
+			invalidateCachedContent(id);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting MD5 hash", ex);
 		} finally {
@@ -10671,6 +11650,66 @@ void setMd5Hash(AbstractFile file, String md5Hash) throws TskCoreException {
 		}
 	}
 
+	/**
+	 * Store the MD5 and SHA-256 hashes of many files in the database, with
+	 * one batched update. Hashes of other types are ignored.
+	 *
+	 * @param hashes The hash results of each file.
+	 *
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 *                          core
+	 */
+	void setFileHashes(Map<AbstractFile, List<HashUtility.HashResult>> hashes) throws TskCoreException {
+		CaseDbTransaction transaction = beginTransaction();
+		try {
+			PreparedStatement statement = transaction.getConnection().getPreparedStatement(PREPARED_STATEMENT.UPDATE_FILE_HASHES);
+			for (Map.Entry<AbstractFile, List<HashUtility.HashResult>> entry : hashes.entrySet()) {
+				String md5Hash = null;
+				String sha256Hash = null;
+				for (HashUtility.HashResult result : entry.getValue()) {
+					if (result.getType() == HashUtility.HashType.MD5) {
+						md5Hash = result.getValue().toLowerCase();
+					} else if (result.getType() == HashUtility.HashType.SHA256) {
+						sha256Hash = result.getValue().toLowerCase();
+					}
+				}
+				if (md5Hash == null && sha256Hash == null) {
+					continue;
+				}
+				statement.clearParameters();
+				if (md5Hash != null) {
+					statement.setString(1, md5Hash);
+				} else {
+					statement.setNull(1, java.sql.Types.VARCHAR);
+				}
+				if (sha256Hash != null) {
+					statement.setString(2, sha256Hash);
+				} else {
+					statement.setNull(2, java.sql.Types.VARCHAR);
+				}
+				statement.setLong(3, entry.getKey().getId());
+				statement.addBatch();
+			}
+			transaction.getConnection().executeBatch(statement);
+			transaction.commit();
+		} catch (SQLException ex) {
+			transaction.rollback();
+			throw new TskCoreException("Error setting file hashes", ex);
+		}
+
+		for (Map.Entry<AbstractFile, List<HashUtility.HashResult>> entry : hashes.entrySet()) {
+			AbstractFile file = entry.getKey();
+			for (HashUtility.HashResult result : entry.getValue()) {
+				if (result.getType() == HashUtility.HashType.MD5) {
+					file.setMd5Hash(result.getValue().toLowerCase());
+				} else if (result.getType() == HashUtility.HashType.SHA256) {
+					file.setSha256Hash(result.getValue().toLowerCase());
+				}
+			}
+			invalidateCachedContent(file.getId());
+		}
+	}
+
 	/**
 	 * Store the MD5 hash for the image in the database
 	 *
@@ -12409,6 +13448,8 @@ public Report getReportById(long id) throws TskCoreException {
 	public void deleteReport(Report report) throws TskCoreException {
 		acquireSingleUserCaseWriteLock();
 		try (CaseDbConnection connection = connections.getConnection();) {
+			// The timeline events of the report are deleted by the cascade
+			getTimelineManager().updateEventCounts(connection, "tsk_event_descriptions.content_obj_id", Collections.singletonList(report.getId()), true);
 			// DELETE FROM reports WHERE reports.obj_id = ?
 			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_REPORT);
 			statement.setLong(1, report.getId());
@@ -12418,6 +13459,10 @@ public void deleteReport(Report report) throws TskCoreException {
 			statement.setLong(1, report.getId());
 			statement.setLong(2, TskData.ObjectType.REPORT.getObjectType());
 			connection.executeUpdate(statement);
+			childCountsCache.invalidateAll();
+			invalidateUniquePaths();
+			resetHasChildrenLastObject(connection);
+			discardHasChildrenSnapshot();
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error querying reports table", ex);
 		} finally {
@@ -12796,6 +13841,7 @@ private enum PREPARED_STATEMENT {
 		SELECT_FILES_BY_DATA_SOURCE_AND_PARENT_PATH_AND_NAME("SELECT * FROM tsk_files WHERE LOWER(name) LIKE LOWER(?) AND LOWER(name) NOT LIKE LOWER('%journal%') AND LOWER(parent_path) LIKE LOWER(?) AND data_source_obj_id = ?"), //NON-NLS
 		SELECT_FILES_BY_EXTENSION_AND_DATA_SOURCE_AND_PARENT_PATH_AND_NAME("SELECT * FROM tsk_files WHERE extension = ? AND LOWER(name) LIKE LOWER(?) AND LOWER(name) NOT LIKE LOWER('%journal%') AND LOWER(parent_path) LIKE LOWER(?) AND data_source_obj_id = ?"), //NON-NLS
 		UPDATE_FILE_MD5("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?"), //NON-NLS
+		UPDATE_FILE_HASHES("UPDATE tsk_files SET md5 = COALESCE(?, md5), sha256 = COALESCE(?, sha256) WHERE obj_id = ?"), //NON-NLS
 		UPDATE_IMAGE_MD5("UPDATE tsk_image_info SET md5 = ? WHERE obj_id = ?"), //NON-NLS
 		UPDATE_IMAGE_SHA1("UPDATE tsk_image_info SET sha1 = ? WHERE obj_id = ?"), //NON-NLS
 		UPDATE_IMAGE_SHA256("UPDATE tsk_image_info SET sha256 = ? WHERE obj_id = ?"), //NON-NLS
@@ -12815,6 +13861,7 @@ private enum PREPARED_STATEMENT {
 		SELECT_FILE_DERIVATION_METHOD("SELECT tool_name, tool_version, other FROM tsk_files_derived_method WHERE derived_id = ?"), //NON-NLS
 		SELECT_MAX_OBJECT_ID("SELECT MAX(obj_id) AS max_obj_id FROM tsk_objects"), //NON-NLS
 		INSERT_OBJECT("INSERT INTO tsk_objects (par_obj_id, type) VALUES (?, ?)"), //NON-NLS
+		INSERT_OBJECT_WITH_ID("INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (?, ?, ?)"), //NON-NLS
 		INSERT_FILE("INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type, dir_flags, meta_flags, size, ctime, crtime, atime, mtime, md5, sha256, known, mime_type, parent_path, data_source_obj_id, extension, owner_uid, os_account_obj_id  ) " //NON-NLS
 				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"), //NON-NLS
 		INSERT_FILE_SYSTEM_FILE("INSERT INTO tsk_files(obj_id, fs_obj_id, data_source_obj_id, attr_type, attr_id, name, meta_addr, meta_seq, type, has_path, dir_type, meta_type, dir_flags, meta_flags, size, ctime, crtime, atime, mtime, md5, sha256, mime_type, parent_path, extension, owner_uid, os_account_obj_id )"
@@ -12826,6 +13873,8 @@ private enum PREPARED_STATEMENT {
 		INSERT_LOCAL_PATH("INSERT INTO tsk_files_path (obj_id, path, encoding_type) VALUES (?, ?, ?)"), //NON-NLS
 		UPDATE_LOCAL_PATH("UPDATE tsk_files_path SET path = ?, encoding_type = ? WHERE obj_id = ?"), //NON-NLS
 		COUNT_CHILD_OBJECTS_BY_PARENT("SELECT COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ?"), //NON-NLS
+		SELECT_PARENT_FILE("SELECT tsk_files.* FROM tsk_objects INNER JOIN tsk_files ON tsk_files.obj_id = tsk_objects.par_obj_id WHERE tsk_objects.obj_id = ?"), //NON-NLS
+		COUNT_CHILD_OBJECTS_BY_PARENT_AND_TYPE("SELECT type, COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ? GROUP BY type"), //NON-NLS
 		SELECT_FILE_SYSTEM_BY_OBJECT("SELECT fs_obj_id from tsk_files WHERE obj_id=?"), //NON-NLS
 		SELECT_TAG_NAMES("SELECT * FROM tag_names"), //NON-NLS
 		SELECT_TAG_NAMES_IN_USE("SELECT * FROM tag_names " //NON-NLS
@@ -13053,8 +14102,10 @@ private final class PostgreSQLConnections extends ConnectionPool {
 		PostgreSQLConnections(String host, int port, String dbName, String userName, String password) throws PropertyVetoException, UnsupportedEncodingException {
 			ComboPooledDataSource comboPooledDataSource = new ComboPooledDataSource();
 			comboPooledDataSource.setDriverClass("org.postgresql.Driver"); //loads the jdbc driver
+			// reWriteBatchedInserts makes the driver send JDBC batches of INSERTs as multi-row VALUES statements.
 			comboPooledDataSource.setJdbcUrl("jdbc:postgresql://" + host + ":" + port + "/"
-					+ URLEncoder.encode(dbName, StandardCharsets.UTF_8.toString()));
+					+ URLEncoder.encode(dbName, StandardCharsets.UTF_8.toString())
+					+ "?reWriteBatchedInserts=true"); //NON-NLS
 			comboPooledDataSource.setUser(userName);
 			comboPooledDataSource.setPassword(password);
 			comboPooledDataSource.setAcquireIncrement(2);
@@ -13460,6 +14511,27 @@ void executeUpdate(PreparedStatement statement) throws SQLException {
 			executeCommand(executePreparedStatementUpdate);
 		}
 
+		/**
+		 * Executes the batch of commands queued on the statement with
+		 * addBatch(). The batch is cleared afterward.
+		 *
+		 * Unlike the other commands, a batch is not retried on a busy or
+		 * communication error because the JDBC drivers discard the queued
+		 * commands when a batch fails. Batches should only be executed inside
+		 * a transaction so the caller can roll back and retry the whole unit.
+		 *
+		 * @param statement The prepared statement holding the batch.
+		 *
+		 * @throws SQLException
+		 */
+		void executeBatch(PreparedStatement statement) throws SQLException {
+			try {
+				statement.executeBatch();
+			} finally {
+				statement.clearBatch();
+			}
+		}
+
 		/**
 		 * Close the connection to the database.
 		 */
@@ -13602,11 +14674,15 @@ public static final class CaseDbTransaction {
 		// When the transaction is committed, events are fired to notify any listeners.
 		// Score changes are stored as a map keyed by objId to prevent duplicates.
 		private Map<Long, ScoreChange> scoreChangeMap = new HashMap<>();
+		// The objects whose batched score changes are not written to the case database yet.
+		private Set<Long> unwrittenScoreObjIds = new HashSet<>();
 		private List<Host> hostsAdded = new ArrayList<>();
 		private List<OsAccount> accountsChanged = new ArrayList<>();
 		private List<OsAccount> accountsAdded = new ArrayList<>();
 		private List<Long> deletedOsAccountObjectIds = new ArrayList<>();
 		private List<Long> deletedResultObjectIds = new ArrayList<>();
+		private Set<Long> updatedContentObjectIds = new HashSet<>();
+		private List<CommunicationsGraph.Relationship> relationshipsAdded = new ArrayList<>();
 
 		private static Set<Long> threadsWithOpenTransaction = new HashSet<>();
 		private static final Object threadsWithOpenTransactionLock = new Object();
@@ -13648,6 +14724,61 @@ void registerScoreChange(ScoreChange scoreChange) {
 			scoreChangeMap.put(scoreChange.getObjectId(), scoreChange);
 		}
 
+		/**
+		 * Removes the score change done for an object as part of the
+		 * transaction.
+		 *
+		 * @param objId The object id.
+		 */
+		void unregisterScoreChange(long objId) {
+			scoreChangeMap.remove(objId);
+		}
+
+		/**
+		 * Gets the score change done for an object as part of the
+		 * transaction.
+		 *
+		 * @param objId The object id.
+		 *
+		 * @return The score change, or null if the score of the object has
+		 *         not changed.
+		 */
+		ScoreChange getRegisteredScoreChange(long objId) {
+			return scoreChangeMap.get(objId);
+		}
+
+		/**
+		 * Saves that the registered score change for an object is to be
+		 * written to the case database when the transaction is committed.
+		 *
+		 * @param objId The object id.
+		 */
+		void registerUnwrittenScore(long objId) {
+			unwrittenScoreObjIds.add(objId);
+		}
+
+		/**
+		 * Removes an object from the objects whose score changes are to be
+		 * written when the transaction is committed.
+		 *
+		 * @param objId The object id.
+		 *
+		 * @return True if the score change of the object was not written.
+		 */
+		boolean removeUnwrittenScore(long objId) {
+			return unwrittenScoreObjIds.remove(objId);
+		}
+
+		/**
+		 * Gets the objects whose score changes are to be written when the
+		 * transaction is committed.
+		 *
+		 * @return The object ids.
+		 */
+		Set<Long> getUnwrittenScores() {
+			return new HashSet<>(unwrittenScoreObjIds);
+		}
+
 		/**
 		 * Saves a host that has been added as a part of this transaction.
 		 *
@@ -13700,6 +14831,30 @@ void registerDeletedAnalysisResult(long analysisResultObjId) {
 			this.deletedResultObjectIds.add(analysisResultObjId);
 		}
 
+		/**
+		 * Saves the ID of a content object that has been updated as a part of
+		 * this transaction. The object is removed from the content cache now
+		 * and again when the transaction is committed, since other connections
+		 * may read the old row until then.
+		 *
+		 * @param objId The object ID.
+		 */
+		void registerUpdatedContent(long objId) {
+			sleuthkitCase.invalidateCachedContent(objId);
+			this.updatedContentObjectIds.add(objId);
+		}
+
+		/**
+		 * Saves account relationships that have been added as a part of this
+		 * transaction, for the in memory relationship index of the
+		 * CommunicationsManager.
+		 *
+		 * @param relationships The relationships.
+		 */
+		void registerAddedAccountRelationships(Collection<CommunicationsGraph.Relationship> relationships) {
+			relationshipsAdded.addAll(relationships);
+		}
+
 		/**
 		 * Check if the given thread has an open transaction.
 		 *
@@ -13721,13 +14876,32 @@ private static boolean hasOpenTransaction(long threadId) {
 		 * @throws TskCoreException
 		 */
 		public void commit() throws TskCoreException {
+			CommunicationsGraph graphBeforeCommit = null;
+			if (!relationshipsAdded.isEmpty()) {
+				graphBeforeCommit = sleuthkitCase.communicationsMgr.getLoadedGraph();
+			}
+			boolean committed = false;
 			try {
+				sleuthkitCase.scoringManager.writeUnwrittenScores(this);
 				this.connection.commitTransaction();
+				if (!scoreChangeMap.isEmpty()) {
+					sleuthkitCase.scoringManager.scoresCommitted(scoreChangeMap.values());
+				}
+				committed = true;
 			} catch (SQLException ex) {
 				throw new TskCoreException("Failed to commit transaction on case database", ex);
 			} finally {
 				close();
 
+				// Done after the write lock is released, since updating the
+				// relationships index waits for the index lock
+				if (committed && !relationshipsAdded.isEmpty()) {
+					sleuthkitCase.communicationsMgr.relationshipsCommitted(graphBeforeCommit, relationshipsAdded);
+				}
+
+				for (Long objId : updatedContentObjectIds) {
+					sleuthkitCase.invalidateCachedContent(objId);
+				}
 				if (!scoreChangeMap.isEmpty()) {
 					Map<Long, List<ScoreChange>> changesByDataSource = scoreChangeMap.values().stream()
 							.collect(Collectors.groupingBy(ScoreChange::getDataSourceObjectId));
@@ -18,21 +18,26 @@
  */
 package org.sleuthkit.datamodel;
 
+import com.google.common.util.concurrent.Striped;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
@@ -61,6 +66,19 @@ public class SleuthkitJNI {
 	 */
 	private static final ReadWriteLock tskLock = new ReentrantReadWriteLock();
 
+	/*
+	 * Locks used to serialize access to each pool, since the APFS code is not
+	 * thread-safe. A pool lock is obtained after the TSK read lock and before
+	 * HandleCache.cacheLock.
+	 */
+	private static final Striped<Lock> poolLocks = Striped.lock(32);
+
+	/*
+	 * Cache of blocks read from image and file handles. Disabled until a size
+	 * is set with setReadCacheSize().
+	 */
+	private static final ContentReadCache readCache = new ContentReadCache();
+
 	/*
 	 * Loads the SleuthKit libraries.
 	 */
@@ -91,12 +109,6 @@ private static class CaseHandles {
 		 */
 		private final Map<Long, Map<Long, Long>> fsHandleCache = new HashMap<>();
 
-		/*
-		 * The collection of open file handles. We will only allow requests
-		 * through to the C code if the file handle exists in this collection.
-		 */
-		private final Set<Long> fileHandleCache = new HashSet<>();
-
 		private final Map<Long, List<Long>> fileSystemToFileHandles = new HashMap<>();
 		
 		private final Map<Long, Map<Long, Long>> poolHandleCache = new HashMap<>();
@@ -107,11 +119,11 @@ private static class CaseHandles {
 		/*
 		 * Currently, our APFS code is not thread-safe and it is the only code
 		 * that uses pools. To prevent crashes, we make any reads to a file system
-		 * contained in a pool single-threaded. This cache keeps track of which
-		 * open file system handles are contained in a pool so we can set the locks
-		 * appropriately. 
+		 * contained in a pool single-threaded for that pool. This cache maps
+		 * the open file system handles that are contained in a pool to the pool
+		 * handle so we can set the locks appropriately.
 		 */
-		private final List<Long> poolFsList = new ArrayList<>();
+		private final Map<Long, Long> poolFsToPoolHandle = new ConcurrentHashMap<>();
 		
 		private CaseHandles() {
 			// Nothing to do here
@@ -123,29 +135,85 @@ private CaseHandles() {
 	 * lookup of frequently used handles (e.g. file system and image) (b)
 	 * ensuring all handles passed in by clients of SleuthkitJNI are valid. (c)
 	 * consistent cleanup of handles on closure.
+	 *
+	 * Opening and closing handles is guarded by cacheLock. Checking that an
+	 * image or file handle is valid is not, so reads do not contend on it.
 	 */
 	private static class HandleCache {
 
 		/*
-		 * A monitor used to guard access to cached Sleuthkit JNI handles.
+		 * A monitor used to guard changes to cached Sleuthkit JNI handles.
 		 */
 		private static final Object cacheLock = new Object();
 
-		private static final Map<String, CaseHandles> caseHandlesCache = new HashMap<>();
+		private static final Map<String, CaseHandles> caseHandlesCache = new ConcurrentHashMap<>();
 
 		private static final String INVALID_FILE_HANDLE = "Invalid file handle."; //NON-NLS
-		
+
 		/*
-		 * Currently, our APFS code is not thread-safe and it is the only code
-		 * that uses pools. To prevent crashes, we make any reads to a file system
-		 * contained in a pool single-threaded. This cache keeps track of which
-		 * open file handles are contained in a pool so we can set the locks
-		 * appropriately. 
-		 * 
-		 * Access to this list should be guarded by cacheLock.
+		 * The open file handles of all cases. We will only allow requests
+		 * through to the C code if the file handle exists in this map.
 		 */
-		private static final List<Long> poolFileHandles = new ArrayList<>();
-		
+		private static final Map<Long, OpenFileHandle> openFileHandles = new ConcurrentHashMap<>();
+
+		/*
+		 * The image handles of all cases that have a file system handle
+		 * cache, used to check that image handles are valid.
+		 */
+		private static final Set<Long> openImageHandles = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * An open file handle. Handles are reference counted so that a file
+		 * closed while another thread is reading it is only closed in the
+		 * SleuthKit once that read has finished.
+		 */
+		private static final class OpenFileHandle {
+
+			private final String caseIdentifier;
+
+			/*
+			 * Currently, our APFS code is not thread-safe and it is the only
+			 * code that uses pools. To prevent crashes, we make any reads to a
+			 * file system contained in a pool single-threaded for that pool.
+			 * This is the pool containing the file, or null.
+			 */
+			private final Long poolHandle;
+
+			// One reference while the handle is open plus one per read in progress
+			private final AtomicInteger references = new AtomicInteger(1);
+
+			private OpenFileHandle(String caseIdentifier, Long poolHandle) {
+				this.caseIdentifier = caseIdentifier;
+				this.poolHandle = poolHandle;
+			}
+
+			/**
+			 * Add a reference, unless the handle has already been closed.
+			 *
+			 * @return True if a reference was added.
+			 */
+			private boolean acquire() {
+				while (true) {
+					int count = references.get();
+					if (count == 0) {
+						return false;
+					}
+					if (references.compareAndSet(count, count + 1)) {
+						return true;
+					}
+				}
+			}
+
+			/**
+			 * Remove a reference.
+			 *
+			 * @return True if this was the last reference.
+			 */
+			private boolean release() {
+				return references.decrementAndGet() == 0;
+			}
+		}
+
 		/**
 		 * Create the empty cache for a new case
 		 * 
@@ -185,13 +253,12 @@ private static String getDefaultCaseIdentifier() throws TskCoreException {
 		 * @throws TskCoreException If there is no cache for this case.
 		 */
 		private static CaseHandles getCaseHandles(String caseIdentifier) throws TskCoreException {
-			synchronized (cacheLock) {
-				if (caseHandlesCache.containsKey(caseIdentifier)) {
-					return caseHandlesCache.get(caseIdentifier);
-				}
-				// If the CaseHandles object isn't in there, it should mean the case has been closed.
-				throw new TskCoreException("No entry for case " + caseIdentifier + " in cache. Case may have been closed");
+			CaseHandles caseHandles = caseHandlesCache.get(caseIdentifier);
+			if (caseHandles != null) {
+				return caseHandles;
 			}
+			// If the CaseHandles object isn't in there, it should mean the case has been closed.
+			throw new TskCoreException("No entry for case " + caseIdentifier + " in cache. Case may have been closed");
 		}
 		
 		/**
@@ -202,9 +269,10 @@ private static CaseHandles getCaseHandles(String caseIdentifier) throws TskCoreE
 		private static void removeCaseHandlesCache(String caseIdentifier) {
 			synchronized (cacheLock) {
 				if (caseHandlesCache.containsKey(caseIdentifier)) {
+					openImageHandles.removeAll(caseHandlesCache.get(caseIdentifier).fsHandleCache.keySet());
 					caseHandlesCache.get(caseIdentifier).fsHandleCache.clear();
 					caseHandlesCache.get(caseIdentifier).imageHandleCache.clear();
-					caseHandlesCache.get(caseIdentifier).fileHandleCache.clear();
+					openFileHandles.values().removeIf(openFileHandle -> openFileHandle.caseIdentifier.equals(caseIdentifier));
 					caseHandlesCache.get(caseIdentifier).fileSystemToFileHandles.clear();
 					caseHandlesCache.get(caseIdentifier).poolHandleCache.clear();
 					caseHandlesCache.remove(caseIdentifier);
@@ -220,14 +288,23 @@ private static void removeCaseHandlesCache(String caseIdentifier) {
 		 * @return true if the handle is found in any cache, false otherwise
 		 */
 		private static boolean isImageInAnyCache(long imgHandle) {
-			synchronized (cacheLock) {
-				for (String caseIdentifier:caseHandlesCache.keySet()) {
-					if (caseHandlesCache.get(caseIdentifier).fsHandleCache.keySet().contains(imgHandle)) {
-						return true;
-					}
-				}
-				return false;
-			}
+			return openImageHandles.contains(imgHandle);
+		}
+
+		/**
+		 * Add a new image handle to the cache. Must be called while holding
+		 * cacheLock.
+		 *
+		 * @param caseIdentifier Unique identifier for the case.
+		 * @param imageKey       The concatenated image file paths.
+		 * @param imageHandle    The new image handle.
+		 *
+		 * @throws TskCoreException If there is no cache for this case.
+		 */
+		private static void addImageHandle(String caseIdentifier, String imageKey, long imageHandle) throws TskCoreException {
+			getCaseHandles(caseIdentifier).fsHandleCache.put(imageHandle, new HashMap<>());
+			getCaseHandles(caseIdentifier).imageHandleCache.put(imageKey, imageHandle);
+			openImageHandles.add(imageHandle);
 		}
 		
 		/**
@@ -236,12 +313,13 @@ private static boolean isImageInAnyCache(long imgHandle) {
 		 * @param caseIdentifier Unique identifier for the case.
 		 * @param fileHandle The new file handle.
 		 * @param fsHandle   The file system handle in which the file lives.
+		 * @param poolHandle The pool containing the file system, or null.
 		 */
-		private static void addFileHandle(String caseIdentifier, long fileHandle, long fsHandle) {
+		private static void addFileHandle(String caseIdentifier, long fileHandle, long fsHandle, Long poolHandle) {
 			try {
 				synchronized (cacheLock) {
 					// Add to collection of open file handles.
-					getCaseHandles(caseIdentifier).fileHandleCache.add(fileHandle);
+					openFileHandles.put(fileHandle, new OpenFileHandle(caseIdentifier, poolHandle));
 
 					// Add to map of file system to file handles.
 					if (getCaseHandles(caseIdentifier).fileSystemToFileHandles.containsKey(fsHandle)) {
@@ -256,30 +334,41 @@ private static void addFileHandle(String caseIdentifier, long fileHandle, long f
 		}
 
 		/**
-		 * Removes a file handle from the cache for the given case
+		 * Removes a file handle from the cache for the given case. The caller
+		 * must pass the returned object to releaseFileHandle() to close the
+		 * handle.
 		 * 
 		 * @param fileHandle
-		 * @param skCase     Can be null. If so, the first matching handle will be removed.
+		 * @param skCase     Can be null. If so, the handle will be removed
+		 *                   whichever case it belongs to.
+		 *
+		 * @return The removed handle, or null if the handle was not open.
 		 */
-		private static void removeFileHandle(long fileHandle, SleuthkitCase skCase) {
-			synchronized (cacheLock) {
-				// Remove from collection of open file handles.
-				if (skCase != null) {
-					try {
-						getCaseHandles(skCase.getCaseHandleIdentifier()).fileHandleCache.remove(fileHandle);
-					} catch (TskCoreException ex) {
-						// If the call to getCaseHandles() failed, we've already cleared the cache.
-					}
-				} else {
-					// If we don't know what case the handle is from, delete the first one we find
-					for (String caseIdentifier:caseHandlesCache.keySet()) {
-						if (caseHandlesCache.get(caseIdentifier).fileHandleCache.contains(fileHandle)) {
-							caseHandlesCache.get(caseIdentifier).fileHandleCache.remove(fileHandle);
-							return;
-						}
-					}
-				}
+		private static OpenFileHandle removeFileHandle(long fileHandle, SleuthkitCase skCase) {
+			if (skCase == null) {
+				return openFileHandles.remove(fileHandle);
 			}
+			return removeFileHandle(fileHandle, skCase.getCaseHandleIdentifier());
+		}
+
+		/**
+		 * Removes a file handle from the cache for the given case. The caller
+		 * must pass the returned object to releaseFileHandle() to close the
+		 * handle.
+		 *
+		 * @param fileHandle
+		 * @param caseIdentifier Unique identifier for the case.
+		 *
+		 * @return The removed handle, or null if the handle was not open in
+		 *         the case.
+		 */
+		private static OpenFileHandle removeFileHandle(long fileHandle, String caseIdentifier) {
+			OpenFileHandle openFileHandle = openFileHandles.get(fileHandle);
+			if (openFileHandle != null && openFileHandle.caseIdentifier.equals(caseIdentifier)
+					&& openFileHandles.remove(fileHandle, openFileHandle)) {
+				return openFileHandle;
+			}
+			return null;
 		}
 
 		/**
@@ -290,13 +379,55 @@ private static void removeFileHandle(long fileHandle, SleuthkitCase skCase) {
 		 * @return true if the handle is found in any cache, false otherwise
 		 */
 		private static boolean isValidFileHandle(long fileHandle) {
-			synchronized (cacheLock) {
-				for (String caseIdentifier:caseHandlesCache.keySet()) {
-					if (caseHandlesCache.get(caseIdentifier).fileHandleCache.contains(fileHandle)) {
-						return true;
-					}
-				}
-				return false;
+			return openFileHandles.containsKey(fileHandle);
+		}
+
+		/**
+		 * Gets the pool containing the file system of an open file handle.
+		 *
+		 * @param fileHandle
+		 *
+		 * @return The pool handle, or null if the file is not in a pool or the
+		 *         handle is not open.
+		 */
+		private static Long getPoolHandle(long fileHandle) {
+			OpenFileHandle openFileHandle = openFileHandles.get(fileHandle);
+			return (openFileHandle != null) ? openFileHandle.poolHandle : null;
+		}
+
+		/**
+		 * Gets an open file handle for use by the C code. The caller must hold
+		 * the TSK read lock, and the pool lock if the file is in a pool, until
+		 * it passes the returned object to releaseFileHandle().
+		 *
+		 * @param fileHandle
+		 *
+		 * @return The open file handle.
+		 *
+		 * @throws TskCoreException If the handle is not open.
+		 */
+		private static OpenFileHandle acquireFileHandle(long fileHandle) throws TskCoreException {
+			OpenFileHandle openFileHandle = openFileHandles.get(fileHandle);
+			if (openFileHandle == null || !openFileHandle.acquire()) {
+				throw new TskCoreException(INVALID_FILE_HANDLE);
+			}
+			return openFileHandle;
+		}
+
+		/**
+		 * Releases a file handle obtained from acquireFileHandle() or
+		 * removeFileHandle(), closing it in the C code if the handle has been
+		 * removed and this was the last use of it. The caller must hold the TSK
+		 * read lock, and the pool lock if the file is in a pool.
+		 *
+		 * @param fileHandle
+		 * @param openFileHandle
+		 */
+		private static void releaseFileHandle(long fileHandle, OpenFileHandle openFileHandle) {
+			if (openFileHandle.release()) {
+				// Drop the cached blocks first, the native code may reuse the handle value once it is closed
+				readCache.invalidate(fileHandle);
+				closeFileNat(fileHandle);
 			}
 		}
 
@@ -310,11 +441,11 @@ private static void closeHandlesAndClearCache(String caseIdentifier) throws TskC
 						// First close all open file handles for the file system.
 						if (getCaseHandles(caseIdentifier).fileSystemToFileHandles.containsKey(fsHandle)) {
 							for (Long fileHandle : getCaseHandles(caseIdentifier).fileSystemToFileHandles.get(fsHandle)) {
-								// Update the cache of file handles contained in pools
-								if (poolFileHandles.contains(fileHandle)) {
-									poolFileHandles.remove(fileHandle);
+								// The TSK write lock is held, so no reads are in progress
+								OpenFileHandle openFileHandle = removeFileHandle(fileHandle, caseIdentifier);
+								if (openFileHandle != null) {
+									releaseFileHandle(fileHandle, openFileHandle);
 								}
-								closeFile(fileHandle);
 							}
 						}
 						// Then close the file system handle.
@@ -323,9 +454,9 @@ private static void closeHandlesAndClearCache(String caseIdentifier) throws TskC
 				}
 				
 				/*
-				 * Clear out the list of pool file systems.
+				 * Clear out the map of pool file systems.
 				 */
-				getCaseHandles(caseIdentifier).poolFsList.clear();
+				getCaseHandles(caseIdentifier).poolFsToPoolHandle.clear();
 				
 				/*
 				 * Close any cached pools
@@ -340,6 +471,7 @@ private static void closeHandlesAndClearCache(String caseIdentifier) throws TskC
 				 * Close any open pool images
 				 */
 				for (Long imageHandle : getCaseHandles(caseIdentifier).poolImgCache) {
+					readCache.invalidate(imageHandle);
 					closeImgNat(imageHandle);
 				}
 
@@ -347,6 +479,7 @@ private static void closeHandlesAndClearCache(String caseIdentifier) throws TskC
 				 * Close any cached image handles.
 				 */
 				for (Long imageHandle : getCaseHandles(caseIdentifier).imageHandleCache.values()) {
+					readCache.invalidate(imageHandle);
 					closeImgNat(imageHandle);
 				}
 
@@ -498,6 +631,9 @@ public class AddImageProcess {
 			private boolean isCanceled;
 			private final SleuthkitCase skCase;
 			private TskCaseDbBridge dbHelper;
+			private int fileBatchSize = TskCaseDbBridge.DEFAULT_BATCH_FILE_THRESHOLD;
+			private int pipelineQueueCapacity = 0;
+			private int fileSystemWalkThreads = 1;
 
 			/**
 			 * Constructs an object that encapsulates a multi-step process to
@@ -564,7 +700,7 @@ public void run(String deviceId, String[] imageFilePaths, int sectorSize) throws
 			public void run(String deviceId, Image image, int sectorSize, 
 					AddDataSourceCallbacks addDataSourceCallbacks) throws TskCoreException, TskDataException {	
 				
-				dbHelper = new TskCaseDbBridge(skCase, addDataSourceCallbacks, image.getHost());
+				dbHelper = new TskCaseDbBridge(skCase, addDataSourceCallbacks, image.getHost(), fileBatchSize, pipelineQueueCapacity);
 				getTSKReadLock();
 				try {
 					long imageHandle = 0;
@@ -579,6 +715,9 @@ public void run(String deviceId, Image image, int sectorSize,
 						if (0 == tskAutoDbPointer) {
 							throw new TskCoreException("initAddImgNat returned a NULL TskAutoDb pointer");
 						}
+						if (fileSystemWalkThreads > 1) {
+							setFileSystemWalkThreadsNat(tskAutoDbPointer, fileSystemWalkThreads);
+						}
 					}
 					if (imageHandle != 0) {
 						runAddImgNat(tskAutoDbPointer, deviceId, imageHandle, image.getId(), timeZone, imageWriterPath);
@@ -589,6 +728,67 @@ public void run(String deviceId, Image image, int sectorSize,
 				}
 			}			
 
+			/**
+			 * Sets the number of files (and layout file ranges) that are
+			 * collected before they are written to the case database with
+			 * batched statements in a single transaction. Larger batches
+			 * reduce the number of transactions at the cost of memory. Must
+			 * be called before run().
+			 *
+			 * @param batchSize The batch size, must be positive. Defaults to
+			 *                  500.
+			 */
+			public synchronized void setFileBatchSize(int batchSize) {
+				if (batchSize < 1) {
+					throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+				}
+				this.fileBatchSize = batchSize;
+			}
+
+			/**
+			 * Enables pipelined database writes. By default the files found
+			 * by the SleuthKit are written to the case database on the thread
+			 * that calls run(), so walking the file systems stops whenever the
+			 * database is busy. In pipelined mode the files are put in a
+			 * bounded queue and written by a separate database writer thread,
+			 * so file system parsing and database writes run concurrently.
+			 * When the queue is full the file system walk waits for the
+			 * writer. The AddDataSourceCallbacks.onFilesAdded() callback is
+			 * called from the writer thread in this mode. Must be called
+			 * before run().
+			 *
+			 * @param queueCapacity The maximum number of files waiting to be
+			 *                      written, or 0 to disable pipelining.
+			 */
+			public synchronized void setPipelinedWrites(int queueCapacity) {
+				if (queueCapacity < 0) {
+					throw new IllegalArgumentException("Queue capacity must not be negative: " + queueCapacity);
+				}
+				this.pipelineQueueCapacity = queueCapacity;
+			}
+
+			/**
+			 * Sets the number of file systems that are walked at the same
+			 * time. By default the file systems of an image are walked one
+			 * after the other. With more than one thread, each file system
+			 * that is found directly in the image or in a volume is walked on
+			 * its own thread while the SleuthKit goes on looking for the next
+			 * one, so images with several partitions are added faster. File
+			 * systems in pools are still walked one at a time. The files of
+			 * the file systems are written to the case database in
+			 * interleaved batches, so their object IDs are no longer grouped
+			 * by file system. Must be called before run().
+			 *
+			 * @param threads The number of file systems to walk at the same
+			 *                time, must be positive. Defaults to 1.
+			 */
+			public synchronized void setFileSystemWalkThreads(int threads) {
+				if (threads < 1) {
+					throw new IllegalArgumentException("Thread count must be positive: " + threads);
+				}
+				this.fileSystemWalkThreads = threads;
+			}
+
 			/**
 			 * Stops the process of adding the image to the case database that
 			 * was started by calling AddImageProcess.run.
@@ -605,6 +805,10 @@ public synchronized void stop() throws TskCoreException {
 					if (tskAutoDbPointer != 0) {
 						stopAddImgNat(tskAutoDbPointer);
 					}
+					if (dbHelper != null) {
+						// Discard files still queued for the database writer
+						dbHelper.stop();
+					}
 				} finally {
 					releaseTSKReadLock();
 				}
@@ -619,23 +823,32 @@ public synchronized void stop() throws TskCoreException {
 			 * and submit for any further processing through the callback. 
 			 * 
 			 * @throws TskCoreException 
+			 * @throws TskDataException if some of the final files could not
+			 *                          be added to the database
 			 */
-			private synchronized void finishAddImageProcess() throws TskCoreException {
+			private synchronized void finishAddImageProcess() throws TskCoreException, TskDataException {
 				if (tskAutoDbPointer == 0) {
+					if (dbHelper != null) {
+						dbHelper.stop();
+					}
 					return;
 				}
 
-				// If the process wasn't cancelled, finish up processing the
-				// remaining files.
-				if (! this.isCanceled && dbHelper != null) {
-					dbHelper.finish();
-				}
-
-				// Free the auto DB pointer and get the image ID
-				imageId = finishAddImgNat(tskAutoDbPointer);
-				tskAutoDbPointer = 0;
+				try {
+					// If the process wasn't cancelled, finish up processing the
+					// remaining files.
+					if (! this.isCanceled && dbHelper != null) {
+						dbHelper.finish();
+					} else if (dbHelper != null) {
+						dbHelper.stop();
+					}
+				} finally {
+					// Free the auto DB pointer and get the image ID
+					imageId = finishAddImgNat(tskAutoDbPointer);
+					tskAutoDbPointer = 0;
 
-				skCase.addDataSourceToHasChildrenMap();
+					skCase.addDataSourceToHasChildrenMap();
+				}
 			}			
 
 			/**
@@ -892,8 +1105,7 @@ private static long openImage(String[] imageFiles, int sSize, boolean useCache,
 				} else {
 					//open new handle and cache it
 					imageHandle = openImgNat(imageFiles, imageFiles.length, sSize);
-					HandleCache.getCaseHandles(nonNullCaseIdentifer).fsHandleCache.put(imageHandle, new HashMap<>());
-					HandleCache.getCaseHandles(nonNullCaseIdentifer).imageHandleCache.put(imageKey, imageHandle);
+					HandleCache.addImageHandle(nonNullCaseIdentifer, imageKey, imageHandle);
 				}
 			}
 			return imageHandle;
@@ -928,8 +1140,7 @@ private static void cacheImageHandle(SleuthkitCase skCase, List<String> imagePat
 		String caseIdentifier = skCase.getCaseHandleIdentifier();
 
 		synchronized (HandleCache.cacheLock) {
-			HandleCache.getCaseHandles(caseIdentifier).fsHandleCache.put(imageHandle, new HashMap<>());
-			HandleCache.getCaseHandles(caseIdentifier).imageHandleCache.put(imageKey, imageHandle);
+			HandleCache.addImageHandle(caseIdentifier, imageKey, imageHandle);
 		}
 	}
 	
@@ -1179,9 +1390,11 @@ static long openFsPool(long imgHandle, long fsOffset, long poolHandle, long pool
 		/*
 		 * Currently, our APFS code is not thread-safe and it is the only code
 		 * that uses pools. To prevent crashes, we make any reads to a file system
-		 * contained in a pool single-threaded.
+		 * contained in a pool single-threaded for that pool.
 		 */
-		getTSKWriteLock();
+		Lock poolLock = poolLocks.get(poolHandle);
+		getTSKReadLock();
+		lockPool(poolLock);
 		try {
 			long fsHandle;
 			synchronized (HandleCache.cacheLock) {
@@ -1205,12 +1418,13 @@ static long openFsPool(long imgHandle, long fsOffset, long poolHandle, long pool
 					fsHandle = openFsNat(poolImgHandle, fsOffset);
 					//cache it
 					imgOffSetToFsHandle.put(poolBlock, fsHandle);
-					HandleCache.getCaseHandles(caseIdentifier).poolFsList.add(fsHandle);
+					HandleCache.getCaseHandles(caseIdentifier).poolFsToPoolHandle.put(fsHandle, poolHandle);
 				}
 			}
 			return fsHandle;
 		} finally {
-			releaseTSKWriteLock();
+			unlockPool(poolLock);
+			releaseTSKReadLock();
 		}
 	}
 
@@ -1240,53 +1454,32 @@ public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM at
 		 * need to convert negative attribute id to uint16 which is what TSK is
 		 * using to store attribute id.
 		 */
-		boolean withinPool = false;
-		synchronized (HandleCache.cacheLock) {
-			String caseIdentifier;
-			if (skCase == null) {
-				caseIdentifier = HandleCache.getDefaultCaseIdentifier();
-			} else {
-				caseIdentifier = skCase.getCaseHandleIdentifier();
-			}
-			if (HandleCache.getCaseHandles(caseIdentifier).poolFsList.contains(fsHandle)) {
-				withinPool = true;
-			}
+		String caseIdentifier;
+		if (skCase == null) {
+			caseIdentifier = HandleCache.getDefaultCaseIdentifier();
+		} else {
+			caseIdentifier = skCase.getCaseHandleIdentifier();
 		}
+		Long poolHandle = HandleCache.getCaseHandles(caseIdentifier).poolFsToPoolHandle.get(fsHandle);
 		
 		/*
 		 * The current APFS code is not thread-safe. To compensate, we make any
-		 * reads to the APFS pool single-threaded by obtaining a write
-		 * lock instead of a read lock.
+		 * reads to a file system in a pool single-threaded for that pool by
+		 * also obtaining the lock for the pool.
 		 */
-		if (withinPool) {
-			getTSKWriteLock();
-		} else {
-			getTSKReadLock();
-		}
+		Lock poolLock = (poolHandle != null) ? poolLocks.get(poolHandle) : null;
+		getTSKReadLock();
+		lockPool(poolLock);
 		try {
 			long fileHandle = openFileNat(fsHandle, fileId, attrType.getValue(), convertSignedToUnsigned(attrId));
-			synchronized (HandleCache.cacheLock) {
-				String caseIdentifier;
-				if (skCase == null) {
-					caseIdentifier = HandleCache.getDefaultCaseIdentifier();
-				} else {
-					caseIdentifier = skCase.getCaseHandleIdentifier();
-				}
-				HandleCache.addFileHandle(caseIdentifier, fileHandle, fsHandle);
 
-				// If this file is in a pool file system, record it so the locks
-				// can be set appropriately when reading it.
-				if (withinPool) {
-					HandleCache.poolFileHandles.add(fileHandle);
-				}
-			}
+			// If this file is in a pool file system, its pool is recorded so the
+			// locks can be set appropriately when reading it.
+			HandleCache.addFileHandle(caseIdentifier, fileHandle, fsHandle, poolHandle);
 			return fileHandle;
 		} finally {
-			if (withinPool) {
-				releaseTSKWriteLock();
-			} else {
-				releaseTSKReadLock();
-			}
+			unlockPool(poolLock);
+			releaseTSKReadLock();
 		}
 	}
 
@@ -1311,9 +1504,7 @@ private static int convertSignedToUnsigned(int val) {
 	 * @return true if it is valid, false otherwise
 	 */
 	private static boolean imgHandleIsValid(long imgHandle) {
-		synchronized(HandleCache.cacheLock) {
-			return HandleCache.isImageInAnyCache(imgHandle);
-		}
+		return HandleCache.isImageInAnyCache(imgHandle);
 	}
 
 	//do reads
@@ -1332,6 +1523,24 @@ private static boolean imgHandleIsValid(long imgHandle) {
 	 *                          TSK
 	 */
 	public static int readImg(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
+		return readCache.read(imgHandle, readBuffer, offset, len, (buffer, readOffset, readLen) -> readImgUncached(imgHandle, buffer, readOffset, readLen));
+	}
+
+	/**
+	 * Reads data from an image without going through the read cache.
+	 *
+	 * @param imgHandle
+	 * @param readBuffer buffer to read to
+	 * @param offset     byte offset in the image to start at
+	 * @param len        amount of data to read
+	 *
+	 * @return the number of characters read, or -1 if the end of the stream has
+	 *         been reached
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	private static int readImgUncached(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		getTSKReadLock();
 		try {
 			if(! imgHandleIsValid(imgHandle)) {
@@ -1470,35 +1679,42 @@ int getValue() {
 	 *                          TSK
 	 */
 	public static int readFile(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
-		boolean withinPool = false;
-		synchronized (HandleCache.cacheLock) {
-			if (HandleCache.poolFileHandles.contains(fileHandle)) {
-				withinPool = true;
-			}
-		}
-		
+		return readCache.read(fileHandle, readBuffer, offset, len, (buffer, readOffset, readLen) -> readFileUncached(fileHandle, buffer, readOffset, readLen));
+	}
+
+	/**
+	 * Reads data from a file without going through the read cache.
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param readBuffer pre-allocated buffer to read to
+	 * @param offset     byte offset in the image to start at
+	 * @param len        amount of data to read
+	 *
+	 * @return the number of characters read, or -1 if the end of the stream has
+	 *         been reached
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	private static int readFileUncached(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		/*
 		 * The current APFS code is not thread-safe. To compensate, we make any
-		 * reads to the APFS pool single-threaded by obtaining a write
-		 * lock instead of a read lock.
+		 * reads to a file in a pool single-threaded for that pool by also
+		 * obtaining the lock for the pool.
 		 */
-		if (withinPool) {
-			getTSKWriteLock();
-		} else {
-			getTSKReadLock();
-		}
+		Lock poolLock = getPoolLockForFile(fileHandle);
+		getTSKReadLock();
+		lockPool(poolLock);
 		try {
-			if (!HandleCache.isValidFileHandle(fileHandle)) {
-				throw new TskCoreException(HandleCache.INVALID_FILE_HANDLE);
+			HandleCache.OpenFileHandle openFileHandle = HandleCache.acquireFileHandle(fileHandle);
+			try {
+				return readFileNat(fileHandle, readBuffer, offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_FILE.getValue(), len);
+			} finally {
+				HandleCache.releaseFileHandle(fileHandle, openFileHandle);
 			}
-
-			return readFileNat(fileHandle, readBuffer, offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_FILE.getValue(), len);
 		} finally {
-			if (withinPool) {
-				releaseTSKWriteLock();
-			} else {
-				releaseTSKReadLock();
-			}
+			unlockPool(poolLock);
+			releaseTSKReadLock();
 		}
 	}
 
@@ -1517,18 +1733,208 @@ public static int readFile(long fileHandle, byte[] readBuffer, long offset, long
 	 *                          TSK
 	 */
 	public static int readFileSlack(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
+		Lock poolLock = getPoolLockForFile(fileHandle);
 		getTSKReadLock();
+		lockPool(poolLock);
 		try {
-			if (!HandleCache.isValidFileHandle(fileHandle)) {
-				throw new TskCoreException(HandleCache.INVALID_FILE_HANDLE);
+			HandleCache.OpenFileHandle openFileHandle = HandleCache.acquireFileHandle(fileHandle);
+			try {
+				return readFileNat(fileHandle, readBuffer, offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_SLACK.getValue(), len);
+			} finally {
+				HandleCache.releaseFileHandle(fileHandle, openFileHandle);
 			}
+		} finally {
+			unlockPool(poolLock);
+			releaseTSKReadLock();
+		}
+	}
 
-			return readFileNat(fileHandle, readBuffer, offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_SLACK.getValue(), len);
+	/**
+	 * Reads data from an image into a buffer. Data is written to the buffer
+	 * starting at its position and the position is advanced by the number of
+	 * bytes read. Direct buffers are filled by the SleuthKit without copying
+	 * through a Java array.
+	 *
+	 * @param imgHandle
+	 * @param dst       buffer to read to, up to its remaining bytes
+	 * @param offset    byte offset in the image to start at
+	 *
+	 * @return the number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	public static int readImg(long imgHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (!dst.isDirect()) {
+			return ByteBufferReads.read(dst, offset, (buffer, readOffset, len) -> readImg(imgHandle, buffer, readOffset, len));
+		}
+		getTSKReadLock();
+		try {
+			if (!imgHandleIsValid(imgHandle)) {
+				throw new TskCoreException("Image handle " + imgHandle + " is closed");
+			}
+			return ByteBufferReads.advancePosition(dst, readImgDirectNat(imgHandle, dst, dst.position(), offset, dst.remaining()));
+		} finally {
+			releaseTSKReadLock();
+		}
+	}
+
+	/**
+	 * Reads data from a pool into a buffer. Data is written to the buffer
+	 * starting at its position and the position is advanced by the number of
+	 * bytes read.
+	 *
+	 * @param poolHandle handle to the pool info struct
+	 * @param dst        buffer to read to, up to its remaining bytes
+	 * @param offset     starting offset
+	 *
+	 * @return number of bytes read
+	 *
+	 * @throws TskCoreException
+	 */
+	static int readPool(long poolHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (!dst.isDirect()) {
+			return ByteBufferReads.read(dst, offset, (buffer, readOffset, len) -> readPool(poolHandle, buffer, readOffset, len));
+		}
+		getTSKReadLock();
+		try {
+			return ByteBufferReads.advancePosition(dst, readPoolDirectNat(poolHandle, dst, dst.position(), offset, dst.remaining()));
+		} finally {
+			releaseTSKReadLock();
+		}
+	}
+
+	/**
+	 * Reads data from a volume into a buffer. Data is written to the buffer
+	 * starting at its position and the position is advanced by the number of
+	 * bytes read.
+	 *
+	 * @param volHandle pointer to a volume structure in the sleuthkit
+	 * @param dst       buffer to read to, up to its remaining bytes
+	 * @param offset    byte offset in the volume to start at
+	 *
+	 * @return the number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	public static int readVsPart(long volHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (!dst.isDirect()) {
+			return ByteBufferReads.read(dst, offset, (buffer, readOffset, len) -> readVsPart(volHandle, buffer, readOffset, len));
+		}
+		getTSKReadLock();
+		try {
+			return ByteBufferReads.advancePosition(dst, readVolDirectNat(volHandle, dst, dst.position(), offset, dst.remaining()));
+		} finally {
+			releaseTSKReadLock();
+		}
+	}
+
+	/**
+	 * Reads data from a file system into a buffer. Data is written to the
+	 * buffer starting at its position and the position is advanced by the
+	 * number of bytes read.
+	 *
+	 * @param fsHandle pointer to a file system structure in the sleuthkit
+	 * @param dst      buffer to read to, up to its remaining bytes
+	 * @param offset   byte offset in the file system to start at
+	 *
+	 * @return the number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	public static int readFs(long fsHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (!dst.isDirect()) {
+			return ByteBufferReads.read(dst, offset, (buffer, readOffset, len) -> readFs(fsHandle, buffer, readOffset, len));
+		}
+		getTSKReadLock();
+		try {
+			return ByteBufferReads.advancePosition(dst, readFsDirectNat(fsHandle, dst, dst.position(), offset, dst.remaining()));
 		} finally {
 			releaseTSKReadLock();
 		}
 	}
 
+	/**
+	 * Reads data from a file into a buffer. Data is written to the buffer
+	 * starting at its position and the position is advanced by the number of
+	 * bytes read. Reads into direct buffers do not go through the read cache.
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param dst        buffer to read to, up to its remaining bytes
+	 * @param offset     byte offset in the file to start at
+	 *
+	 * @return the number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	public static int readFile(long fileHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		return readFileDirect(fileHandle, dst, offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_FILE);
+	}
+
+	/**
+	 * Reads data from the slack space of a file into a buffer. Data is written
+	 * to the buffer starting at its position and the position is advanced by
+	 * the number of bytes read.
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param dst        buffer to read to, up to its remaining bytes
+	 * @param offset     byte offset in the slack to start at
+	 *
+	 * @return the number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	public static int readFileSlack(long fileHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		return readFileDirect(fileHandle, dst, offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_SLACK);
+	}
+
+	/**
+	 * Reads data from a file or its slack space into a buffer.
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param dst        buffer to read to, up to its remaining bytes
+	 * @param offset     byte offset to start at
+	 * @param offsetType whether the offset is from the start of the file or
+	 *                   the slack space
+	 *
+	 * @return the number of bytes read
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	private static int readFileDirect(long fileHandle, ByteBuffer dst, long offset, TSK_FS_FILE_READ_OFFSET_TYPE_ENUM offsetType) throws TskCoreException {
+		if (!dst.isDirect()) {
+			if (offsetType == TSK_FS_FILE_READ_OFFSET_TYPE_ENUM.START_OF_SLACK) {
+				return ByteBufferReads.read(dst, offset, (buffer, readOffset, len) -> readFileSlack(fileHandle, buffer, readOffset, len));
+			}
+			return ByteBufferReads.read(dst, offset, (buffer, readOffset, len) -> readFile(fileHandle, buffer, readOffset, len));
+		}
+
+		/*
+		 * The current APFS code is not thread-safe. To compensate, we make any
+		 * reads to a file in a pool single-threaded for that pool by also
+		 * obtaining the lock for the pool.
+		 */
+		Lock poolLock = getPoolLockForFile(fileHandle);
+		getTSKReadLock();
+		lockPool(poolLock);
+		try {
+			HandleCache.OpenFileHandle openFileHandle = HandleCache.acquireFileHandle(fileHandle);
+			try {
+				return ByteBufferReads.advancePosition(dst, readFileDirectNat(fileHandle, dst, dst.position(), offset, offsetType.getValue(), dst.remaining()));
+			} finally {
+				HandleCache.releaseFileHandle(fileHandle, openFileHandle);
+			}
+		} finally {
+			unlockPool(poolLock);
+			releaseTSKReadLock();
+		}
+	}
+
 	/**
 	 * Get human readable (some what) details about a file. This is the same as
 	 * the 'istat' TSK tool
@@ -1590,41 +1996,26 @@ public static void closeFile(long fileHandle) {
 	 * @param skCase     the case containing the file
 	 */
 	public static void closeFile(long fileHandle, SleuthkitCase skCase) {		
-		boolean withinPool = false;
-		synchronized (HandleCache.cacheLock) {
-			if (HandleCache.poolFileHandles.contains(fileHandle)) {
-				withinPool = true;
-			}
-		}
-		
 		/*
 		 * The current APFS code is not thread-safe. To compensate, we make any
-		 * reads to the APFS pool single-threaded by obtaining a write
-		 * lock instead of a read lock.
+		 * reads to a file in a pool single-threaded for that pool by also
+		 * obtaining the lock for the pool.
 		 */
-		if (withinPool) {
-			getTSKWriteLock();
-		} else {
-			getTSKReadLock();
-		}
+		Lock poolLock = getPoolLockForFile(fileHandle);
+		getTSKReadLock();
+		lockPool(poolLock);
 		try {
-			synchronized (HandleCache.cacheLock) {
-				if (!HandleCache.isValidFileHandle(fileHandle)) {
-					// File handle is not open so this is a no-op.
-					return;
-				}
-				closeFileNat(fileHandle);
-				HandleCache.removeFileHandle(fileHandle, skCase);
-				if (HandleCache.poolFileHandles.contains(fileHandle)) {
-					HandleCache.poolFileHandles.remove(fileHandle);
-				}
+			HandleCache.OpenFileHandle openFileHandle = HandleCache.removeFileHandle(fileHandle, skCase);
+			if (openFileHandle == null) {
+				// File handle is not open so this is a no-op.
+				return;
 			}
+			// The handle is closed now, or when the last read in progress
+			// on another thread finishes.
+			HandleCache.releaseFileHandle(fileHandle, openFileHandle);
 		} finally {
-			if (withinPool) {
-				releaseTSKWriteLock();
-			} else {
-				releaseTSKReadLock();
-			}
+			unlockPool(poolLock);
+			releaseTSKReadLock();
 		}
 	}
 
@@ -1780,6 +2171,90 @@ public static HashHitInfo lookupInHashDatabaseVerbose(String hash, int dbHandle)
 		return hashDbLookupVerbose(hash, dbHandle);
 	}
 
+	/**
+	 * Lookup a set of binary hash values and get basic answers. The hash
+	 * values are sorted and the database index is walked once, which is much
+	 * faster than looking the values up one at a time.
+	 *
+	 * @param hashes     Buffer with the hash values packed one after the other
+	 *                   between its position and limit. The position is not
+	 *                   changed. A direct buffer avoids a copy.
+	 * @param hashLength Number of bytes in each hash value (16 for MD5, 20
+	 *                   for SHA-1 and 32 for SHA-256).
+	 * @param dbHandle   Handle of database to lookup in.
+	 *
+	 * @return A bit set with bit i set if hash value i was found in the
+	 *         database.
+	 *
+	 * @throws TskCoreException
+	 */
+	public static BitSet lookupInHashDatabase(ByteBuffer hashes, int hashLength, int dbHandle) throws TskCoreException {
+		int hashCount = getHashCount(hashes, hashLength);
+		if (hashCount == 0) {
+			return new BitSet();
+		}
+
+		ByteBuffer directHashes;
+		if (hashes.isDirect()) {
+			directHashes = hashes.slice();
+		} else {
+			directHashes = ByteBuffer.allocateDirect(hashes.remaining());
+			directHashes.put(hashes.duplicate());
+		}
+		return BitSet.valueOf(hashDbLookupBatch(directHashes, hashCount, hashLength, dbHandle));
+	}
+
+	/**
+	 * Lookup a set of binary hash values and return details on the results.
+	 * The details are only looked up for the hash values found by
+	 * lookupInHashDatabase(ByteBuffer, int, int).
+	 *
+	 * @param hashes     Buffer with the hash values packed one after the other
+	 *                   between its position and limit. The position is not
+	 *                   changed.
+	 * @param hashLength Number of bytes in each hash value (16 for MD5, 20
+	 *                   for SHA-1 and 32 for SHA-256).
+	 * @param dbHandle   Handle of database to lookup in.
+	 *
+	 * @return An array with the details on hash value i at index i, or null
+	 *         if hash value i was not found.
+	 *
+	 * @throws TskCoreException
+	 */
+	public static HashHitInfo[] lookupInHashDatabaseVerbose(ByteBuffer hashes, int hashLength, int dbHandle) throws TskCoreException {
+		HashHitInfo[] hitInfos = new HashHitInfo[getHashCount(hashes, hashLength)];
+		BitSet hits = lookupInHashDatabase(hashes, hashLength, dbHandle);
+		StringBuilder hash = new StringBuilder(hashLength * 2);
+		for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+			hash.setLength(0);
+			int offset = hashes.position() + i * hashLength;
+			for (int j = 0; j < hashLength; j++) {
+				hash.append(String.format("%02x", hashes.get(offset + j))); //NON-NLS
+			}
+			hitInfos[i] = hashDbLookupVerbose(hash.toString(), dbHandle);
+		}
+		return hitInfos;
+	}
+
+	/**
+	 * Gets the number of binary hash values in a buffer.
+	 *
+	 * @param hashes     Buffer with the hash values between its position and
+	 *                   limit.
+	 * @param hashLength Number of bytes in each hash value.
+	 *
+	 * @return The number of hash values.
+	 */
+	private static int getHashCount(ByteBuffer hashes, int hashLength) {
+		if (hashLength != 16 && hashLength != 20 && hashLength != 32) {
+			throw new IllegalArgumentException("Unsupported hash length: " + hashLength);
+		}
+		if (hashes.remaining() % hashLength != 0) {
+			throw new IllegalArgumentException("Buffer size " + hashes.remaining() + " is not a multiple of the hash length " + hashLength);
+		}
+		return hashes.remaining() / hashLength;
+	}
+
 	/**
 	 * Adds a hash value to a hash database.
 	 *
@@ -1951,6 +2426,130 @@ static long getSleuthkitVersion() {
 		return getSleuthkitVersionNat();
 	}
 
+	/**
+	 * Set the maximum amount of memory used to cache data read from images
+	 * and files. Small reads are served from 64 KiB blocks held in the cache,
+	 * and sequential reads cause the following blocks to be read ahead. The
+	 * cache is disabled by default. Changing the size discards the current
+	 * contents of the cache.
+	 *
+	 * @param maxSizeInBytes The maximum cache size in bytes, or zero to
+	 *                       disable the cache.
+	 *
+	 * @throws IllegalArgumentException if the size is negative.
+	 */
+	public static void setReadCacheSize(long maxSizeInBytes) {
+		readCache.setMaxSize(maxSizeInBytes);
+	}
+
+	/**
+	 * Get the maximum amount of memory used to cache data read from images
+	 * and files.
+	 *
+	 * @return The maximum cache size in bytes, zero if the cache is disabled.
+	 */
+	public static long getReadCacheSize() {
+		return readCache.getMaxSize();
+	}
+
+	/**
+	 * Get statistics for the image and file read cache since its size was
+	 * last set.
+	 *
+	 * @return The read cache statistics.
+	 */
+	public static ReadCacheStatistics getReadCacheStatistics() {
+		return readCache.getStatistics();
+	}
+
+	/**
+	 * Statistics for the image and file read cache.
+	 */
+	public static final class ReadCacheStatistics {
+
+		private final long hitCount;
+		private final long missCount;
+		private final long readAheadBlockCount;
+		private final long evictionCount;
+		private final long blockCount;
+		private final long sizeInBytes;
+
+		ReadCacheStatistics(long hitCount, long missCount, long readAheadBlockCount, long evictionCount, long blockCount, long sizeInBytes) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.readAheadBlockCount = readAheadBlockCount;
+			this.evictionCount = evictionCount;
+			this.blockCount = blockCount;
+			this.sizeInBytes = sizeInBytes;
+		}
+
+		/**
+		 * Get the number of block lookups that were found in the cache.
+		 *
+		 * @return The hit count.
+		 */
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		/**
+		 * Get the number of block lookups that had to be read from the
+		 * SleuthKit.
+		 *
+		 * @return The miss count.
+		 */
+		public long getMissCount() {
+			return missCount;
+		}
+
+		/**
+		 * Get the fraction of block lookups that were found in the cache.
+		 *
+		 * @return The hit rate, 1.0 if there have been no lookups.
+		 */
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return (total == 0) ? 1.0 : (double) hitCount / total;
+		}
+
+		/**
+		 * Get the number of blocks read beyond what was requested because the
+		 * data was being read sequentially.
+		 *
+		 * @return The read ahead block count.
+		 */
+		public long getReadAheadBlockCount() {
+			return readAheadBlockCount;
+		}
+
+		/**
+		 * Get the number of blocks evicted to stay within the cache size.
+		 *
+		 * @return The eviction count.
+		 */
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		/**
+		 * Get the number of blocks currently in the cache.
+		 *
+		 * @return The block count.
+		 */
+		public long getBlockCount() {
+			return blockCount;
+		}
+
+		/**
+		 * Get the number of bytes currently in the cache.
+		 *
+		 * @return The size in bytes.
+		 */
+		public long getSizeInBytes() {
+			return sizeInBytes;
+		}
+	}
+
 	/**
 	 * Get a read lock for the C++ layer. Do not get this lock after obtaining
 	 * HandleCache.cacheLock.
@@ -1967,22 +2566,43 @@ private static void releaseTSKReadLock() {
 	}
 	
 	/**
-	 * Get a write lock for the C++ layer. Do not get this lock after obtaining
-	 * HandleCache.cacheLock.
-	 * 
+	 * Get the lock for the pool containing a file, if any. Do not call this
+	 * while holding a pool lock.
+	 *
 	 * This is a temporary fix for APFS which is not thread-safe. Should be used
 	 * when accessing anything under a pool.
+	 *
+	 * @param fileHandle The file handle.
+	 *
+	 * @return The pool lock, or null if the file is not in a pool.
 	 */
-	private static void getTSKWriteLock() {
-		tskLock.writeLock().lock();
+	private static Lock getPoolLockForFile(long fileHandle) {
+		Long poolHandle = HandleCache.getPoolHandle(fileHandle);
+		return (poolHandle != null) ? poolLocks.get(poolHandle) : null;
 	}
 
 	/**
-	 * Release the write lock
+	 * Get a pool lock. Get this lock after the TSK read lock and do not get it
+	 * after obtaining HandleCache.cacheLock.
+	 *
+	 * @param poolLock The pool lock, may be null.
 	 */
-	private static void releaseTSKWriteLock() {
-		tskLock.writeLock().unlock();
-	}	
+	private static void lockPool(Lock poolLock) {
+		if (poolLock != null) {
+			poolLock.lock();
+		}
+	}
+
+	/**
+	 * Release a pool lock
+	 *
+	 * @param poolLock The pool lock, may be null.
+	 */
+	private static void unlockPool(Lock poolLock) {
+		if (poolLock != null) {
+			poolLock.unlock();
+		}
+	}
 
 	//free pointers
 	/**
@@ -2131,6 +2751,8 @@ public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM at
 
 	private static native HashHitInfo hashDbLookupVerbose(String hash, int dbHandle) throws TskCoreException;
 
+	private static native byte[] hashDbLookupBatch(ByteBuffer hashes, int hashCount, int hashLength, int dbHandle) throws TskCoreException;
+
 	private static native long initAddImgNat(TskCaseDbBridge dbHelperObj, String timezone, boolean addUnallocSpace, boolean skipFatFsOrphans) throws TskCoreException;
 
 	private static native long initializeAddImgNat(TskCaseDbBridge dbHelperObj, String timezone, boolean addFileSystems, boolean addUnallocSpace, boolean skipFatFsOrphans) throws TskCoreException;
@@ -2139,6 +2761,8 @@ public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM at
 
 	private static native void runAddImgNat(long process, String deviceId, long a_img_info, long image_id, String timeZone, String imageWriterPath) throws TskCoreException, TskDataException;
 
+	private static native void setFileSystemWalkThreadsNat(long process, int threads) throws TskCoreException;
+
 	private static native void stopAddImgNat(long process) throws TskCoreException;
 
 	private static native long finishAddImgNat(long process) throws TskCoreException;
@@ -2169,6 +2793,16 @@ public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM at
 
 	private static native int readFileNat(long fileHandle, byte[] readBuffer, long offset, int offset_type, long len) throws TskCoreException;
 
+	private static native int readImgDirectNat(long imgHandle, ByteBuffer dst, int dstOffset, long offset, long len) throws TskCoreException;
+
+	private static native int readPoolDirectNat(long poolHandle, ByteBuffer dst, int dstOffset, long offset, long len) throws TskCoreException;
+
+	private static native int readVolDirectNat(long volHandle, ByteBuffer dst, int dstOffset, long offset, long len) throws TskCoreException;
+
+	private static native int readFsDirectNat(long fsHandle, ByteBuffer dst, int dstOffset, long offset, long len) throws TskCoreException;
+
+	private static native int readFileDirectNat(long fileHandle, ByteBuffer dst, int dstOffset, long offset, int offset_type, long len) throws TskCoreException;
+
 	private static native int saveFileMetaDataTextNat(long fileHandle, String fileName) throws TskCoreException;
 	
 	private static native String[] getPathsForImageNat(long imgHandle);
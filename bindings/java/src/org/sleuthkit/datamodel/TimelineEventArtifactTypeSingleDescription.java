@@ -56,6 +56,11 @@ TimelineEventDescription parseDescription(String fullDescription, String medDesc
 		return new TimelineEventDescription(fullDescription);
 	}
 
+	@Override
+	boolean parsesFullDescription() {
+		return true;
+	}
+
 	/**
 	 * Function that always returns the empty string no matter what it is
 	 * applied to.
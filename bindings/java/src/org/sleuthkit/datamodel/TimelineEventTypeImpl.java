@@ -52,6 +52,17 @@ TimelineEventDescription parseDescription(String fullDescriptionRaw, String medD
 		return new TimelineEventDescription(fullDescriptionRaw, medDescriptionRaw, shortDescriptionRaw);
 	}
 
+	/**
+	 * Indicates whether parseDescription() derives the descriptions for all
+	 * levels of detail from the full description.
+	 *
+	 * @return True if only the full description needs to be read from the
+	 *         case database.
+	 */
+	boolean parsesFullDescription() {
+		return false;
+	}
+
 	@Override
 	public SortedSet<? extends TimelineEventType> getChildren() {
 		return ImmutableSortedSet.of();
@@ -104,6 +104,11 @@ TimelineEventDescription parseDescription(String fullDescription, String medDesc
 			return parseFilePathDescription(fullDescription);
 		}
 
+		@Override
+		boolean parsesFullDescription() {
+			return true;
+		}
+
 	}
 
 	static class FilePathArtifactEventType extends TimelineEventArtifactTypeSingleDescription {
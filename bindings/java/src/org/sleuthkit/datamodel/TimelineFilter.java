@@ -25,6 +25,7 @@
 import java.util.Arrays;
 import static java.util.Arrays.asList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -61,6 +62,24 @@ public abstract class TimelineFilter {
 	 */
 	abstract String getSQLWhere(TimelineManager manager);
 
+	/**
+	 * Get the SQL where clause corresponding to this filter, with ?
+	 * placeholders for the values that can differ between filters of the same
+	 * structure, so that the query can be prepared once and reused. Filters
+	 * that do not override this get their literal where clause.
+	 *
+	 * @param manager    The TimelineManager to use for DB specific parts of
+	 *                   the query.
+	 * @param parameters The list to add the values of the placeholders to, in
+	 *                   order.
+	 *
+	 * @return an SQL where clause (without the "where") corresponding to this
+	 *         filter
+	 */
+	String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+		return getSQLWhere(manager);
+	}
+
 	/**
 	 * Makes a copy of this filter.
 	 *
@@ -119,6 +138,24 @@ String getSQLWhere(TimelineManager manager) {
 			return join.isEmpty() ? trueLiteral : "(" + join + ")";
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			String trueLiteral = manager.getSQLWhere(null);
+			List<String> clauses = new ArrayList<>();
+			for (TimelineFilter filter : getSubFilters()) {
+				if (filter == null) {
+					continue;
+				}
+				List<Object> filterParameters = new ArrayList<>();
+				String sqlString = filter.getParameterizedSQLWhere(manager, filterParameters);
+				if (notEqual(sqlString, trueLiteral)) {
+					clauses.add(sqlString);
+					parameters.addAll(filterParameters);
+				}
+			}
+			return clauses.isEmpty() ? trueLiteral : "(" + String.join(" AND ", clauses) + ")";
+		}
+
 	}
 
 	/**
@@ -221,6 +258,13 @@ String getSQLWhere(TimelineManager manager) {
 			return "(tsk_events.event_type_id IN (" + getSubTypeIDs().collect(Collectors.joining(",")) + "))"; //NON-NLS
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			List<String> typeIDs = getSubTypeIDs().collect(Collectors.toList());
+			typeIDs.forEach(typeID -> parameters.add(Long.valueOf(typeID)));
+			return "(tsk_events.event_type_id IN (" + String.join(",", Collections.nCopies(typeIDs.size(), "?")) + "))"; //NON-NLS
+		}
+
 		private Stream<String> getSubTypeIDs() {
 			if (this.getSubFilters().isEmpty()) {
 				return Stream.of(String.valueOf(getRootEventType().getTypeID()));
@@ -325,6 +369,12 @@ String getSQLWhere(TimelineManager manager) {
 			return whereStr;
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			parameters.add(eventSourcesAreTagged ? 1 : 0);
+			return "tagged = ?"; //NON-NLS
+		}
+
 	}
 
 	/**
@@ -356,6 +406,14 @@ String getSQLWhere(TimelineManager manager) {
 			return join.isEmpty() ? manager.getSQLWhere(null) : "(" + join + ")";
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			String join = getSubFilters().stream()
+					.map(subFilter -> subFilter.getParameterizedSQLWhere(manager, parameters))
+					.collect(Collectors.joining(" OR "));
+			return join.isEmpty() ? manager.getSQLWhere(null) : "(" + join + ")";
+		}
+
 	}
 
 	/**
@@ -448,6 +506,17 @@ String getSQLWhere(TimelineManager manager) {
 			}
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			if (StringUtils.isNotBlank(this.getDescriptionSubstring())) {
+				String pattern = "%" + this.getDescriptionSubstring() + "%";
+				parameters.addAll(asList(pattern, pattern, pattern));
+				return "((med_description like ?) or (full_description like ?) or (short_description like ?))"; //NON-NLS
+			} else {
+				return manager.getSQLWhere(null);
+			}
+		}
+
 		@Override
 		public String toString() {
 			return "TextFilter{" + "textProperty=" + descriptionSubstring + '}';
@@ -617,7 +686,8 @@ public int hashCode() {
 			hash = 17 * hash + Objects.hashCode(this.eventTypesFilter);
 			hash = 17 * hash + Objects.hashCode(this.dataSourcesFilter);
 			hash = 17 * hash + Objects.hashCode(this.fileTypesFilter);
-			hash = 17 * hash + Objects.hashCode(this.additionalFilters);
+			// Include the extra sub filters as well as the named ones
+			hash = 17 * hash + Objects.hashCode(new HashSet<>(getSubFilters()));
 			return hash;
 		}
 
@@ -656,7 +726,7 @@ public boolean equals(Object obj) {
 				return false;
 			}
 
-			return Objects.equals(this.additionalFilters, new HashSet<>(other.getSubFilters()));
+			return Objects.equals(new HashSet<>(getSubFilters()), new HashSet<>(other.getSubFilters()));
 		}
 
 	}
@@ -861,6 +931,12 @@ String getSQLWhere(TimelineManager manager) {
 			return "(data_source_obj_id = '" + this.getDataSourceID() + "')"; //NON-NLS
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			parameters.add(this.getDataSourceID());
+			return "(data_source_obj_id = ?)"; //NON-NLS
+		}
+
 	}
 
 	/**
@@ -952,6 +1028,12 @@ String getSQLWhere(TimelineManager manager) {
 			return whereStr;
 		}
 
+		@Override
+		String getParameterizedSQLWhere(TimelineManager manager, List<Object> parameters) {
+			parameters.add(eventSourcesHaveHashSetHits ? 1 : 0);
+			return "hash_hit = ?"; //NON-NLS
+		}
+
 	}
 
 	/**
@@ -19,8 +19,12 @@
 package org.sleuthkit.datamodel;
 
 import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Longs;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -28,6 +32,7 @@
 import java.sql.Types;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -45,8 +50,8 @@
 import org.joda.time.Interval;
 import static org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE.TSK_TL_EVENT;
 import static org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE.TSK_TL_EVENT_TYPE;
-import static org.sleuthkit.datamodel.CollectionUtils.isNotEmpty;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbTransaction;
 import static org.sleuthkit.datamodel.SleuthkitCase.escapeSingleQuotes;
 import static org.sleuthkit.datamodel.StringUtils.buildCSVString;
 
@@ -103,6 +108,48 @@ public final class TimelineManager {
 	 */
 	private final Map<Long, TimelineEventType> eventTypeIDMap = new HashMap<>();
 
+	/**
+	 * The sizes, in seconds, of the time buckets in the tsk_event_counts
+	 * table: hours, days, weeks and 52 week "years". Each size is a multiple
+	 * of the previous one, so every bucket is exactly covered by the finer
+	 * buckets inside it.
+	 */
+	static final long[] EVENT_COUNT_GRANULARITIES = {3600, 86400, 604800, 31449600};
+
+	/**
+	 * An SQL expression for the tsk_event_counts table with the super type
+	 * column added, aliased as tsk_events so that the SQL of the filters that
+	 * only use event type, data source, hash hit and tagged columns can be
+	 * applied to it.
+	 */
+	private static final String EVENT_COUNTS_TABLE_SQL
+			= "( SELECT granularity, bucket_start, tsk_event_counts.event_type_id, super_type_id, "
+			+ " data_source_obj_id, hash_hit, tagged, event_count "
+			+ " FROM tsk_event_counts "
+			+ " JOIN tsk_event_types ON (tsk_event_counts.event_type_id = tsk_event_types.event_type_id) "
+			+ ") AS tsk_events"; //NON-NLS
+
+	/**
+	 * The maximum number of compiled filters to keep.
+	 */
+	private static final int MAX_COMPILED_FILTERS = 100;
+
+	/**
+	 * Filters compiled into parameterized SQL, keyed by copies of the filters.
+	 * The same filter is typically used for many queries that only differ in
+	 * their time range, so the filter only needs to be turned into SQL once,
+	 * and since the time bounds and the filter values are bound as parameters
+	 * the queries have the same SQL text, which lets the connections reuse
+	 * their prepared statements (and query plans).
+	 */
+	private final Cache<TimelineFilter.RootFilter, CompiledFilter> compiledFilters = CacheBuilder.newBuilder()
+			.maximumSize(MAX_COMPILED_FILTERS)
+			.build();
+
+	// Whether a TimelineEventAddedEvent is also fired for each event added for
+	// posted artifacts.
+	private volatile boolean artifactEventAddedEventsEnabled = false;
+
 	/**
 	 * Constructs a timeline manager that provides access to the timeline data
 	 * in a case database.
@@ -189,25 +236,35 @@ public Interval getSpanningInterval(Collection<Long> eventIDs) throws TskCoreExc
 	public Interval getSpanningInterval(Interval timeRange, TimelineFilter.RootFilter filter, DateTimeZone timeZone) throws TskCoreException {
 		long start = timeRange.getStartMillis() / 1000;
 		long end = timeRange.getEndMillis() / 1000;
-		String sqlWhere = getSQLWhere(filter);
-		String augmentedEventsTablesSQL = getAugmentedEventsTablesSQL(filter);
+		CompiledFilter compiledFilter = getCompiledFilter(filter);
+		String sqlWhere = compiledFilter.getSQLWhere();
+		String augmentedEventsTablesSQL = compiledFilter.getEventsTablesSQL();
 		String queryString = " SELECT (SELECT Max(time) FROM " + augmentedEventsTablesSQL
-				+ "			 WHERE time <=" + start + " AND " + sqlWhere + ") AS start,"
+				+ "			 WHERE time <= ? AND " + sqlWhere + ") AS start,"
 				+ "		 (SELECT Min(time)  FROM " + augmentedEventsTablesSQL
-				+ "			 WHERE time >= " + end + " AND " + sqlWhere + ") AS end";//NON-NLS
+				+ "			 WHERE time >= ? AND " + sqlWhere + ") AS end";//NON-NLS
+		List<Object> parameters = compiledFilter.getParameters(start);
+		parameters.addAll(compiledFilter.getParameters(end));
 		caseDB.acquireSingleUserCaseReadLock();
-		try (CaseDbConnection con = caseDB.getConnection();
-				Statement stmt = con.createStatement(); //can't use prepared statement because of complex where clause
-				ResultSet results = stmt.executeQuery(queryString);) {
-
-			if (results.next()) {
-				long start2 = results.getLong("start"); // NON-NLS
-				long end2 = results.getLong("end"); // NON-NLS
-
-				if (end2 == 0) {
+		try (CaseDbConnection con = caseDB.getConnection()) {
+			if (canUseEventCounts(filter)) {
+				Long start2 = getClosestEventTime(con, start, true, compiledFilter);
+				Long end2 = getClosestEventTime(con, end, false, compiledFilter);
+				if (end2 == null) {
 					end2 = getMaxEventTime();
 				}
-				return new Interval(start2 * 1000, (end2 + 1) * 1000, timeZone);
+				return new Interval((start2 == null ? 0 : start2) * 1000, (end2 + 1) * 1000, timeZone);
+			}
+			try (ResultSet results = con.executeQuery(prepareQuery(con, queryString, parameters))) {
+				if (results.next()) {
+					long start2 = results.getLong("start"); // NON-NLS
+					long end2 = results.getLong("end"); // NON-NLS
+
+					if (end2 == 0) {
+						end2 = getMaxEventTime();
+					}
+					return new Interval(start2 * 1000, (end2 + 1) * 1000, timeZone);
+				}
 			}
 		} catch (SQLException ex) {
 			throw new TskCoreException("Failed to get MIN time.", ex); // NON-NLS
@@ -217,6 +274,76 @@ public Interval getSpanningInterval(Interval timeRange, TimelineFilter.RootFilte
 		return null;
 	}
 
+	/**
+	 * Uses the hourly event counts to find the time of the matching event
+	 * closest to a given time, so that only the events of at most two hours
+	 * need to be scanned.
+	 *
+	 * @param con            The database connection.
+	 * @param time           The time (seconds from UNIX epoch).
+	 * @param before         True to find the latest event at or before the
+	 *                       time, false to find the earliest event at or after
+	 *                       it.
+	 * @param compiledFilter The filter, which must be usable with the event
+	 *                       counts.
+	 *
+	 * @return The time of the closest event, or null if there is none.
+	 *
+	 * @throws SQLException
+	 */
+	private Long getClosestEventTime(CaseDbConnection con, long time, boolean before, CompiledFilter compiledFilter) throws SQLException {
+		long hour = EVENT_COUNT_GRANULARITIES[0];
+		long hourStart = Math.floorDiv(time, hour) * hour;
+		String aggregate = before ? "Max" : "Min"; //NON-NLS
+		String augmentedEventsTablesSQL = compiledFilter.getEventsTablesSQL();
+		String sqlWhere = compiledFilter.getSQLWhere();
+
+		// Look at the hour the time is in first
+		Long closestTime = queryTime(con, "SELECT " + aggregate + "(time) AS event_time FROM " + augmentedEventsTablesSQL
+				+ " WHERE " + (before ? "time >= ? AND time <= ?" : "time >= ? AND time < ?")
+				+ " AND " + sqlWhere, //NON-NLS
+				before ? compiledFilter.getParameters(hourStart, time) : compiledFilter.getParameters(time, hourStart + hour));
+		if (closestTime != null) {
+			return closestTime;
+		}
+
+		// Then find the closest other hour that has matching events
+		Long closestHour = queryTime(con, "SELECT " + aggregate + "(bucket_start) AS event_time FROM " + EVENT_COUNTS_TABLE_SQL
+				+ " WHERE granularity = ? AND event_count > 0"
+				+ " AND bucket_start " + (before ? "< ?" : ">= ?")
+				+ " AND " + sqlWhere, //NON-NLS
+				compiledFilter.getParameters(hour, before ? hourStart : hourStart + hour));
+		if (closestHour == null) {
+			return null;
+		}
+		closestTime = queryTime(con, "SELECT " + aggregate + "(time) AS event_time FROM " + augmentedEventsTablesSQL
+				+ " WHERE time >= ? AND time < ?"
+				+ " AND " + sqlWhere, //NON-NLS
+				compiledFilter.getParameters(closestHour, closestHour + hour));
+		if (closestTime == null) {
+			// The event counts are out of date, search all of the events
+			logger.log(Level.WARNING, "Timeline event counts do not match the events in hour {0}", closestHour); //NON-NLS
+			closestTime = queryTime(con, "SELECT " + aggregate + "(time) AS event_time FROM " + augmentedEventsTablesSQL
+					+ " WHERE time " + (before ? "<= ?" : ">= ?") + " AND " + sqlWhere, //NON-NLS
+					compiledFilter.getParameters(time));
+		}
+		return closestTime;
+	}
+
+	/**
+	 * Runs a query that returns a single, possibly null, time in a column
+	 * named event_time.
+	 */
+	private static Long queryTime(CaseDbConnection con, String query, List<Object> parameters) throws SQLException {
+		try (ResultSet results = con.executeQuery(prepareQuery(con, query, parameters))) {
+			if (results.next()) {
+				long time = results.getLong("event_time"); //NON-NLS
+				return results.wasNull() ? null : time;
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * Gets the timeline event with a given event ID.
 	 *
@@ -276,16 +403,16 @@ public List<Long> getEventIDs(Interval timeRange, TimelineFilter.RootFilter filt
 
 		ArrayList<Long> resultIDs = new ArrayList<>();
 
-		String query = "SELECT tsk_events.event_id AS event_id FROM " + getAugmentedEventsTablesSQL(filter)
-				+ " WHERE time >=  " + startTime + " AND time <" + endTime + " AND " + getSQLWhere(filter) + " ORDER BY time ASC"; // NON-NLS
+		CompiledFilter compiledFilter = getCompiledFilter(filter);
+		String query = "SELECT tsk_events.event_id AS event_id FROM " + compiledFilter.getEventsTablesSQL()
+				+ " WHERE time >= ? AND time < ? AND " + compiledFilter.getSQLWhere() + " ORDER BY time ASC"; // NON-NLS
 		caseDB.acquireSingleUserCaseReadLock();
-		try (CaseDbConnection con = caseDB.getConnection();
-				Statement stmt = con.createStatement();
-				ResultSet results = stmt.executeQuery(query);) {
-			while (results.next()) {
-				resultIDs.add(results.getLong("event_id")); //NON-NLS
+		try (CaseDbConnection con = caseDB.getConnection()) {
+			try (ResultSet results = con.executeQuery(prepareQuery(con, query, compiledFilter.getParameters(startTime, endTime)))) {
+				while (results.next()) {
+					resultIDs.add(results.getLong("event_id")); //NON-NLS
+				}
 			}
-
 		} catch (SQLException sqlEx) {
 			throw new TskCoreException("Error while executing query " + query, sqlEx); // NON-NLS
 		} finally {
@@ -582,10 +709,7 @@ Collection<TimelineEvent> addEventsForNewFile(AbstractFile file, CaseDbConnectio
 	 */
 	Set<TimelineEvent> addEventsForNewFileQuiet(AbstractFile file, CaseDbConnection connection) throws TskCoreException {
 		//gather time stamps into map
-		Map<TimelineEventType, Long> timeMap = ImmutableMap.of(TimelineEventType.FILE_CREATED, file.getCrtime(),
-				TimelineEventType.FILE_ACCESSED, file.getAtime(),
-				TimelineEventType.FILE_CHANGED, file.getCtime(),
-				TimelineEventType.FILE_MODIFIED, file.getMtime());
+		Map<TimelineEventType, Long> timeMap = getFileTimeMap(file);
 
 		/*
 		 * If there are no legitimate ( greater than zero ) time stamps skip the
@@ -598,6 +722,7 @@ Set<TimelineEvent> addEventsForNewFileQuiet(AbstractFile file, CaseDbConnection
 		String description = file.getParentPath() + file.getName();
 		long fileObjId = file.getId();
 		Set<TimelineEvent> events = new HashSet<>();
+		List<Long> eventIDs = new ArrayList<>();
 		caseDB.acquireSingleUserCaseWriteLock();
 		try {
 			Long descriptionID = addEventDescription(file.getDataSourceObjectId(), fileObjId, null,
@@ -612,6 +737,7 @@ Set<TimelineEvent> addEventsForNewFileQuiet(AbstractFile file, CaseDbConnection
 					if (time > 0 && time < MAX_TIMESTAMP_TO_ADD) {// if the time is legitimate ( greater than zero and less then 12 years from current date) insert it
 						TimelineEventType type = timeEntry.getKey();
 						long eventID = addEventWithExistingDescription(time, type, descriptionID, connection);
+						eventIDs.add(eventID);
 
 						/*
 						 * Last two flags indicating hasTags and hasHashHits are
@@ -634,31 +760,180 @@ Set<TimelineEvent> addEventsForNewFileQuiet(AbstractFile file, CaseDbConnection
 		} finally {
 			caseDB.releaseSingleUserCaseWriteLock();
 		}
+		updateEventCounts(connection, "tsk_events.event_id", eventIDs, false);
 
 		return events;
 	}
 
 	/**
-	 * Add any events that can be created from the given Artifact. If the
+	 * Adds timeline events for a batch of new files to the database using one
+	 * JDBC batch for the descriptions and one for the events. Like
+	 * addEventsForNewFileQuiet(), does not fire TSKEvents. The event
+	 * description IDs are reserved up front, so this should only be used for
+	 * files added in the same transaction, which cannot have any existing
+	 * event descriptions.
+	 *
+	 * @param files      The new files.
+	 * @param connection Database connection to use, with an open transaction.
+	 *
+	 * @throws TskCoreException
+	 */
+	void addEventsForNewFilesQuiet(List<AbstractFile> files, CaseDbConnection connection) throws TskCoreException {
+		/*
+		 * Skip files with no legitimate ( greater than zero ) time stamps.
+		 */
+		List<AbstractFile> filesWithTimes = new ArrayList<>();
+		for (AbstractFile file : files) {
+			if (Collections.max(getFileTimeMap(file).values()) > 0) {
+				filesWithTimes.add(file);
+			}
+		}
+		if (filesWithTimes.isEmpty()) {
+			return;
+		}
+
+		String insertDescriptionSql = "INSERT INTO tsk_event_descriptions ( "
+				+ "event_description_id, data_source_obj_id, content_obj_id, artifact_id, "
+				+ " full_description, med_description, short_description, "
+				+ " hash_hit, tagged "
+				+ " ) VALUES "
+				+ "(?, ?, ?, ?, ?, ?, ?, ?, ?)"; //NON-NLS
+		String insertEventSql = getSqlIgnoreConflict("tsk_events ( event_type_id, event_description_id , time) VALUES (?, ?, ?)");
+
+		caseDB.acquireSingleUserCaseWriteLock();
+		try {
+			long[] descriptionIDs = caseDB.reserveRowIds("tsk_event_descriptions", "event_description_id", filesWithTimes.size(), connection);
+			PreparedStatement insertDescriptionStmt = connection.getPreparedStatement(insertDescriptionSql, Statement.NO_GENERATED_KEYS);
+			PreparedStatement insertEventStmt = connection.getPreparedStatement(insertEventSql, Statement.NO_GENERATED_KEYS);
+			insertDescriptionStmt.clearBatch();
+			insertEventStmt.clearBatch();
+			for (int i = 0; i < filesWithTimes.size(); i++) {
+				AbstractFile file = filesWithTimes.get(i);
+				insertDescriptionStmt.clearParameters();
+				insertDescriptionStmt.setLong(1, descriptionIDs[i]);
+				insertDescriptionStmt.setLong(2, file.getDataSourceObjectId());
+				insertDescriptionStmt.setLong(3, file.getId());
+				insertDescriptionStmt.setNull(4, Types.INTEGER);
+				insertDescriptionStmt.setString(5, file.getParentPath() + file.getName());
+				insertDescriptionStmt.setNull(6, Types.VARCHAR);
+				insertDescriptionStmt.setNull(7, Types.VARCHAR);
+				// A new file can not have tags or hash hits yet. See JIRA-5407
+				insertDescriptionStmt.setInt(8, booleanToInt(false));
+				insertDescriptionStmt.setInt(9, booleanToInt(false));
+				insertDescriptionStmt.addBatch();
+
+				for (Map.Entry<TimelineEventType, Long> timeEntry : getFileTimeMap(file).entrySet()) {
+					Long time = timeEntry.getValue();
+					if (time > 0 && time < MAX_TIMESTAMP_TO_ADD) {
+						insertEventStmt.clearParameters();
+						insertEventStmt.setLong(1, timeEntry.getKey().getTypeID());
+						insertEventStmt.setLong(2, descriptionIDs[i]);
+						insertEventStmt.setLong(3, time);
+						insertEventStmt.addBatch();
+					} else if (time >= MAX_TIMESTAMP_TO_ADD) {
+						logger.log(Level.WARNING, String.format("Date/Time discarded from Timeline for %s for file %s with Id %d", timeEntry.getKey().getDisplayName(), file.getParentPath() + file.getName(), file.getId()));
+					}
+				}
+			}
+			connection.executeBatch(insertDescriptionStmt);
+			connection.executeBatch(insertEventStmt);
+			updateEventCounts(connection, "tsk_events.event_description_id", Longs.asList(descriptionIDs), false);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Failed to insert events for new files.", ex); // NON-NLS
+		} finally {
+			caseDB.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Gets the file system time stamps of a file keyed by the corresponding
+	 * timeline event type.
+	 *
+	 * @param file The file.
+	 *
+	 * @return The time stamps, which may be zero if unset.
+	 */
+	private static Map<TimelineEventType, Long> getFileTimeMap(AbstractFile file) {
+		return ImmutableMap.of(TimelineEventType.FILE_CREATED, file.getCrtime(),
+				TimelineEventType.FILE_ACCESSED, file.getAtime(),
+				TimelineEventType.FILE_CHANGED, file.getCtime(),
+				TimelineEventType.FILE_MODIFIED, file.getMtime());
+	}
+
+	/**
+	 * Add any events that can be created from a batch of artifacts. If an
 	 * artifact is a TSK_EVENT then the TSK_DATETIME, TSK_EVENT_TYPE and
 	 * TSK_DESCRIPTION are used to make the event, otherwise each event type is
-	 * checked to see if it can automatically create an event from the given
-	 * artifact.
+	 * checked to see if it can automatically create an event from the
+	 * artifact. The event descriptions are made in memory, then all of the
+	 * descriptions and events are written with batched statements in one
+	 * transaction. A single TimelineEventsAddedTskEvent is fired for all of
+	 * the new events, preceded by a TimelineEventAddedEvent for each of them
+	 * if setArtifactEventAddedEventsEnabled() has enabled those.
 	 *
-	 * @param artifact The artifact to add events for
+	 * @param artifacts The artifacts to add events for.
 	 *
 	 * @return A set of added events.
 	 *
 	 * @throws TskCoreException
 	 */
-	Set<TimelineEvent> addArtifactEvents(BlackboardArtifact artifact) throws TskCoreException {
+	Set<TimelineEvent> addArtifactEvents(Collection<BlackboardArtifact> artifacts) throws TskCoreException {
+		if (artifacts.isEmpty()) {
+			return Collections.emptySet();
+		}
+
+		// The event types read the attributes of the artifacts
+		caseDB.loadBlackboardAttributes(artifacts);
+		List<ArtifactEventDescription> eventDescriptions = new ArrayList<>();
+		for (BlackboardArtifact artifact : artifacts) {
+			if (artifact.getDataSourceObjectID() == null) {
+				logger.log(Level.SEVERE, String.format("Failed to create timeline event for artifact (%d), artifact data source was null", artifact.getId()));
+				continue;
+			}
+			eventDescriptions.addAll(makeArtifactEventDescriptions(artifact));
+		}
+		if (eventDescriptions.isEmpty()) {
+			return Collections.emptySet();
+		}
+
 		Set<TimelineEvent> newEvents = new HashSet<>();
+		CaseDbTransaction transaction = caseDB.beginTransaction();
+		try {
+			addArtifactEvents(eventDescriptions, transaction.getConnection(), newEvents);
+			transaction.commit();
+			transaction = null;
+		} finally {
+			if (transaction != null) {
+				transaction.rollback();
+			}
+		}
 
-		/*
-		 * If the artifact is a TSK_TL_EVENT, use the TSK_TL_EVENT_TYPE
-		 * attribute to determine its event type, but give it a generic
-		 * description.
-		 */
+		if (!newEvents.isEmpty()) {
+			if (artifactEventAddedEventsEnabled) {
+				newEvents.stream()
+						.map(TimelineEventAddedEvent::new)
+						.forEach(caseDB::fireTSKEvent);
+			}
+			caseDB.fireTSKEvent(new TskEvent.TimelineEventsAddedTskEvent(new ArrayList<>(newEvents)));
+		}
+		return newEvents;
+	}
+
+	/**
+	 * Makes the event descriptions for an artifact. If the artifact is a
+	 * TSK_TL_EVENT, the TSK_TL_EVENT_TYPE attribute determines its event type,
+	 * but it gets a generic description. Otherwise the event types configured
+	 * to make descriptions for the artifact type are used, and if none of them
+	 * makes a description, an 'other' event description is made.
+	 *
+	 * @param artifact The artifact.
+	 *
+	 * @return The descriptions with legitimate times.
+	 *
+	 * @throws TskCoreException
+	 */
+	private List<ArtifactEventDescription> makeArtifactEventDescriptions(BlackboardArtifact artifact) throws TskCoreException {
+		List<ArtifactEventDescription> descriptions = new ArrayList<>();
 		if (artifact.getArtifactTypeID() == TSK_TL_EVENT.getTypeID()) {
 			TimelineEventType eventType;//the type of the event to add.
 			BlackboardAttribute attribute = artifact.getAttribute(new BlackboardAttribute.Type(TSK_TL_EVENT_TYPE));
@@ -669,13 +944,9 @@ Set<TimelineEvent> addArtifactEvents(BlackboardArtifact artifact) throws TskCore
 				eventType = eventTypeIDMap.getOrDefault(eventTypeID, TimelineEventType.OTHER);
 			}
 
-			try {
-				// @@@ This casting is risky if we change class hierarchy, but was expedient.  Should move parsing to another class
-				addArtifactEvent(((TimelineEventArtifactTypeImpl) TimelineEventType.OTHER).makeEventDescription(artifact), eventType, artifact)
-						.ifPresent(newEvents::add);
-			} catch (DuplicateException ex) {
-				logger.log(Level.SEVERE, getDuplicateExceptionMessage(artifact, "Attempt to make a timeline event artifact duplicate"), ex);
-			}
+			// @@@ This casting is risky if we change class hierarchy, but was expedient.  Should move parsing to another class
+			addArtifactEventDescription(descriptions, artifact, eventType,
+					((TimelineEventArtifactTypeImpl) TimelineEventType.OTHER).makeEventDescription(artifact));
 		} else {
 			/*
 			 * If there are any event types configured to make descriptions
@@ -687,30 +958,226 @@ Set<TimelineEvent> addArtifactEvents(BlackboardArtifact artifact) throws TskCore
 					.filter(eventType -> eventType.getArtifactTypeID() == artifact.getArtifactTypeID())
 					.collect(Collectors.toSet());
 
-			boolean duplicateExists = false;
 			for (TimelineEventArtifactTypeImpl eventType : eventTypesForArtifact) {
-				try {
-					addArtifactEvent(eventType.makeEventDescription(artifact), eventType, artifact)
-							.ifPresent(newEvents::add);
-				} catch (DuplicateException ex) {
-					duplicateExists = true;
-					logger.log(Level.SEVERE, getDuplicateExceptionMessage(artifact, "Attempt to make artifact event duplicate"), ex);
+				addArtifactEventDescription(descriptions, artifact, eventType, eventType.makeEventDescription(artifact));
+			}
+
+			// if no other timeline events can be created directly, then create a new 'other' one.
+			if (descriptions.isEmpty()) {
+				addArtifactEventDescription(descriptions, artifact, getOtherEventType(artifact), makeOtherEventDescription(artifact));
+			}
+		}
+		return descriptions;
+	}
+
+	/**
+	 * Adds an event description for an artifact to a list if it has a
+	 * legitimate time (greater than zero and less than 12 years from now).
+	 */
+	private void addArtifactEventDescription(List<ArtifactEventDescription> descriptions, BlackboardArtifact artifact,
+			TimelineEventType eventType, TimelineEventDescriptionWithTime eventPayload) {
+		if (eventPayload == null) {
+			return;
+		}
+		long time = eventPayload.getTime();
+		if (time <= 0 || time >= MAX_TIMESTAMP_TO_ADD) {
+			if (time >= MAX_TIMESTAMP_TO_ADD) {
+				logger.log(Level.WARNING, String.format("Date/Time discarded from Timeline for %s for artifact %s with id %d", artifact.getDisplayName(), eventPayload.getDescription(TimelineLevelOfDetail.HIGH), artifact.getId()));
+			}
+			return;
+		}
+		descriptions.add(new ArtifactEventDescription(artifact, eventType, eventPayload));
+	}
+
+	/**
+	 * Writes the events for a batch of artifact event descriptions. Existing
+	 * event descriptions are reused, existing events are skipped, and the
+	 * new descriptions and events are inserted with batched statements.
+	 *
+	 * @param eventDescriptions The event descriptions.
+	 * @param connection        The connection of the transaction to use.
+	 * @param newEvents         The set to add the new events to.
+	 *
+	 * @throws TskCoreException
+	 */
+	private void addArtifactEvents(List<ArtifactEventDescription> eventDescriptions, CaseDbConnection connection, Set<TimelineEvent> newEvents) throws TskCoreException {
+		Set<Long> artifactIDs = new HashSet<>();
+		Set<Long> sourceObjIDs = new HashSet<>();
+		for (ArtifactEventDescription eventDescription : eventDescriptions) {
+			artifactIDs.add(eventDescription.artifact.getArtifactID());
+			sourceObjIDs.add(eventDescription.artifact.getObjectID());
+		}
+
+		String insertDescriptionSql = "INSERT INTO tsk_event_descriptions ( "
+				+ "event_description_id, data_source_obj_id, content_obj_id, artifact_id, "
+				+ " full_description, med_description, short_description, "
+				+ " hash_hit, tagged "
+				+ " ) VALUES "
+				+ "(?, ?, ?, ?, ?, ?, ?, ?, ?)"; //NON-NLS
+		String insertEventSql = "INSERT INTO tsk_events ( event_id, event_type_id, event_description_id , time) VALUES (?, ?, ?, ?)"; //NON-NLS
+
+		caseDB.acquireSingleUserCaseWriteLock();
+		try {
+			Set<Long> taggedArtifactIDs = queryIDs(connection, "SELECT DISTINCT artifact_id AS id FROM blackboard_artifact_tags WHERE artifact_id IN ", artifactIDs); //NON-NLS
+			// Only files can have hash set hits
+			Set<Long> hashHitObjIDs = queryIDs(connection, "SELECT DISTINCT arts.obj_id AS id FROM blackboard_artifacts AS arts"
+					+ " JOIN tsk_files ON (arts.obj_id = tsk_files.obj_id)"
+					+ " JOIN blackboard_attributes AS attrs ON (attrs.artifact_id = arts.artifact_id)"
+					+ " WHERE arts.artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getTypeID()
+					+ " AND attrs.attribute_type_id = " + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID()
+					+ " AND arts.obj_id IN ", sourceObjIDs); //NON-NLS
+
+			// Find the descriptions and events that already exist
+			Map<String, Long> descriptionIDs = new HashMap<>();
+			Map<Long, Long> descriptionArtifactIDs = new HashMap<>();
+			for (List<Long> idBatch : Iterables.partition(artifactIDs, SleuthkitCase.MAX_IDS_PER_QUERY)) {
+				String query = "SELECT event_description_id, artifact_id, full_description FROM tsk_event_descriptions"
+						+ " WHERE artifact_id IN (" + buildCSVString(idBatch) + ")"; //NON-NLS
+				try (Statement statement = connection.createStatement();
+						ResultSet resultSet = connection.executeQuery(statement, query)) {
+					while (resultSet.next()) {
+						long artifactID = resultSet.getLong("artifact_id");
+						long descriptionID = resultSet.getLong("event_description_id");
+						descriptionIDs.put(getDescriptionKey(artifactID, resultSet.getString("full_description")), descriptionID);
+						descriptionArtifactIDs.put(descriptionID, artifactID);
+					}
+				}
+			}
+			Set<String> eventKeys = new HashSet<>();
+			for (List<Long> idBatch : Iterables.partition(descriptionArtifactIDs.keySet(), SleuthkitCase.MAX_IDS_PER_QUERY)) {
+				String query = "SELECT event_type_id, event_description_id, time FROM tsk_events"
+						+ " WHERE event_description_id IN (" + buildCSVString(idBatch) + ")"; //NON-NLS
+				try (Statement statement = connection.createStatement();
+						ResultSet resultSet = connection.executeQuery(statement, query)) {
+					while (resultSet.next()) {
+						eventKeys.add(getEventKey(resultSet.getLong("event_type_id"), resultSet.getLong("event_description_id"), resultSet.getLong("time")));
+					}
 				}
 			}
 
-			// if no other timeline events were created directly, then create new 'other' ones.
-			if (!duplicateExists && newEvents.isEmpty()) {
-				try {
-					addOtherEventDesc(artifact).ifPresent(newEvents::add);
-				} catch (DuplicateException ex) {
-					logger.log(Level.SEVERE, getDuplicateExceptionMessage(artifact, "Attempt to make 'other' artifact event duplicate"), ex);
+			// Assign description IDs to the new descriptions
+			List<ArtifactEventDescription> newDescriptions = new ArrayList<>();
+			for (ArtifactEventDescription eventDescription : eventDescriptions) {
+				String descriptionKey = getDescriptionKey(eventDescription.artifact.getArtifactID(), eventDescription.getFullDescription());
+				if (!descriptionIDs.containsKey(descriptionKey)) {
+					descriptionIDs.put(descriptionKey, null);
+					newDescriptions.add(eventDescription);
+				}
+			}
+			long[] newDescriptionIDs = caseDB.reserveRowIds("tsk_event_descriptions", "event_description_id", newDescriptions.size(), connection);
+			PreparedStatement insertDescriptionStmt = connection.getPreparedStatement(insertDescriptionSql, Statement.NO_GENERATED_KEYS);
+			insertDescriptionStmt.clearBatch();
+			for (int i = 0; i < newDescriptions.size(); i++) {
+				ArtifactEventDescription eventDescription = newDescriptions.get(i);
+				BlackboardArtifact artifact = eventDescription.artifact;
+				descriptionIDs.put(getDescriptionKey(artifact.getArtifactID(), eventDescription.getFullDescription()), newDescriptionIDs[i]);
+				insertDescriptionStmt.clearParameters();
+				insertDescriptionStmt.setLong(1, newDescriptionIDs[i]);
+				insertDescriptionStmt.setLong(2, artifact.getDataSourceObjectID());
+				insertDescriptionStmt.setLong(3, artifact.getObjectID());
+				insertDescriptionStmt.setLong(4, artifact.getArtifactID());
+				insertDescriptionStmt.setString(5, eventDescription.getFullDescription());
+				insertDescriptionStmt.setString(6, eventDescription.eventPayload.getDescription(TimelineLevelOfDetail.MEDIUM));
+				insertDescriptionStmt.setString(7, eventDescription.eventPayload.getDescription(TimelineLevelOfDetail.LOW));
+				insertDescriptionStmt.setInt(8, booleanToInt(hashHitObjIDs.contains(artifact.getObjectID())));
+				insertDescriptionStmt.setInt(9, booleanToInt(taggedArtifactIDs.contains(artifact.getArtifactID())));
+				insertDescriptionStmt.addBatch();
+			}
+
+			// Make the events that do not exist yet
+			List<ArtifactEventDescription> newEventDescriptions = new ArrayList<>();
+			for (ArtifactEventDescription eventDescription : eventDescriptions) {
+				long descriptionID = descriptionIDs.get(getDescriptionKey(eventDescription.artifact.getArtifactID(), eventDescription.getFullDescription()));
+				if (eventKeys.add(getEventKey(eventDescription.eventType.getTypeID(), descriptionID, eventDescription.eventPayload.getTime()))) {
+					newEventDescriptions.add(eventDescription);
+				} else {
+					logger.log(Level.SEVERE, getDuplicateExceptionMessage(eventDescription.artifact, "Attempt to make artifact event duplicate"));
 				}
 			}
+			long[] eventIDs = caseDB.reserveRowIds("tsk_events", "event_id", newEventDescriptions.size(), connection);
+			PreparedStatement insertEventStmt = connection.getPreparedStatement(insertEventSql, Statement.NO_GENERATED_KEYS);
+			insertEventStmt.clearBatch();
+			for (int i = 0; i < newEventDescriptions.size(); i++) {
+				ArtifactEventDescription eventDescription = newEventDescriptions.get(i);
+				BlackboardArtifact artifact = eventDescription.artifact;
+				long descriptionID = descriptionIDs.get(getDescriptionKey(artifact.getArtifactID(), eventDescription.getFullDescription()));
+				long time = eventDescription.eventPayload.getTime();
+				insertEventStmt.clearParameters();
+				insertEventStmt.setLong(1, eventIDs[i]);
+				insertEventStmt.setLong(2, eventDescription.eventType.getTypeID());
+				insertEventStmt.setLong(3, descriptionID);
+				insertEventStmt.setLong(4, time);
+				insertEventStmt.addBatch();
+
+				newEvents.add(new TimelineEvent(eventIDs[i], artifact.getDataSourceObjectID(), artifact.getObjectID(), artifact.getArtifactID(),
+						time, eventDescription.eventType, eventDescription.getFullDescription(),
+						eventDescription.eventPayload.getDescription(TimelineLevelOfDetail.MEDIUM),
+						eventDescription.eventPayload.getDescription(TimelineLevelOfDetail.LOW),
+						hashHitObjIDs.contains(artifact.getObjectID()), taggedArtifactIDs.contains(artifact.getArtifactID())));
+			}
+
+			connection.executeBatch(insertDescriptionStmt);
+			connection.executeBatch(insertEventStmt);
+			updateEventCounts(connection, "tsk_events.event_id", Longs.asList(eventIDs), false);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Failed to insert events for artifacts.", ex); // NON-NLS
+		} finally {
+			caseDB.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Runs a query for IDs in chunks of IDs.
+	 *
+	 * @param connection  The database connection.
+	 * @param queryPrefix The query, up to and including "IN", with the IDs in
+	 *                    a column named id.
+	 * @param ids         The IDs to put in the IN list.
+	 *
+	 * @return The IDs returned by the query.
+	 *
+	 * @throws SQLException
+	 */
+	private static Set<Long> queryIDs(CaseDbConnection connection, String queryPrefix, Collection<Long> ids) throws SQLException {
+		Set<Long> results = new HashSet<>();
+		for (List<Long> idBatch : Iterables.partition(ids, SleuthkitCase.MAX_IDS_PER_QUERY)) {
+			try (Statement statement = connection.createStatement();
+					ResultSet resultSet = connection.executeQuery(statement, queryPrefix + "(" + buildCSVString(idBatch) + ")")) {
+				while (resultSet.next()) {
+					results.add(resultSet.getLong("id"));
+				}
+			}
+		}
+		return results;
+	}
+
+	private static String getDescriptionKey(long artifactID, String fullDescription) {
+		return artifactID + ":" + fullDescription;
+	}
+
+	private static String getEventKey(long eventTypeID, long descriptionID, long time) {
+		return eventTypeID + ":" + descriptionID + ":" + time;
+	}
+
+	/**
+	 * An event description made for an artifact, waiting to be written to the
+	 * case database.
+	 */
+	private static final class ArtifactEventDescription {
+
+		private final BlackboardArtifact artifact;
+		private final TimelineEventType eventType;
+		private final TimelineEventDescriptionWithTime eventPayload;
+
+		private ArtifactEventDescription(BlackboardArtifact artifact, TimelineEventType eventType, TimelineEventDescriptionWithTime eventPayload) {
+			this.artifact = artifact;
+			this.eventType = eventType;
+			this.eventPayload = eventPayload;
+		}
+
+		private String getFullDescription() {
+			return eventPayload.getDescription(TimelineLevelOfDetail.HIGH);
 		}
-		newEvents.stream()
-				.map(TimelineEventAddedEvent::new)
-				.forEach(caseDB::fireTSKEvent);
-		return newEvents;
 	}
 
 	/**
@@ -750,21 +1217,17 @@ private String getDuplicateExceptionMessage(BlackboardArtifact artifact, String
 	}
 
 	/**
-	 * Adds 'other' type events for artifacts that have no corresponding
-	 * TimelineEventType.
+	 * Makes an 'other' event description for an artifact that has no
+	 * corresponding TimelineEventType, using its first date time attribute.
 	 *
-	 * @param artifact The artifact for which to add a new timeline event.
+	 * @param artifact The artifact for which to make the description.
 	 *
-	 * @return An optional of a new timeline event or empty if no time attribute
-	 *         can be determined or the artifact is null.
+	 * @return The description, or null if the artifact has no date time
+	 *         attribute.
 	 *
 	 * @throws TskCoreException
 	 */
-	private Optional<TimelineEvent> addOtherEventDesc(BlackboardArtifact artifact) throws TskCoreException, DuplicateException {
-		if (artifact == null) {
-			return Optional.empty();
-		}
-
+	private TimelineEventDescriptionWithTime makeOtherEventDescription(BlackboardArtifact artifact) throws TskCoreException {
 		Long timeVal = artifact.getAttributes().stream()
 				.filter((attr) -> attr.getAttributeType().getValueType() == BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.DATETIME)
 				.map(attr -> attr.getValueLong())
@@ -772,94 +1235,25 @@ private Optional<TimelineEvent> addOtherEventDesc(BlackboardArtifact artifact) t
 				.orElse(null);
 
 		if (timeVal == null) {
-			return Optional.empty();
+			return null;
 		}
 
 		String description = String.format("%s: %d", artifact.getDisplayName(), artifact.getId());
 
-		TimelineEventDescriptionWithTime evtWDesc = new TimelineEventDescriptionWithTime(timeVal, description, description, description);
-
-		TimelineEventType evtType = (ARTIFACT_TYPE_IDS.contains(artifact.getArtifactTypeID()))
-				? TimelineEventType.OTHER
-				: TimelineEventType.USER_CREATED;
-
-		return addArtifactEvent(evtWDesc, evtType, artifact);
+		return new TimelineEventDescriptionWithTime(timeVal, description, description, description);
 	}
 
 	/**
-	 * Add an event of the given type from the given artifact to the database.
+	 * Gets the event type of the 'other' event of an artifact.
 	 *
-	 * @param eventPayload A description for this artifact including the time.
-	 * @param eventType    The event type to create.
-	 * @param artifact     The artifact to create the event from.
-	 *
-	 * @return The created event, wrapped in an Optional, or an empty Optional
-	 *         if no event was created.
+	 * @param artifact The artifact.
 	 *
-	 * @throws TskCoreException
-	 * @throws DuplicateException
+	 * @return OTHER for the predefined artifact types, USER_CREATED otherwise.
 	 */
-	private Optional<TimelineEvent> addArtifactEvent(TimelineEventDescriptionWithTime eventPayload,
-			TimelineEventType eventType, BlackboardArtifact artifact) throws TskCoreException, DuplicateException {
-
-		if (eventPayload == null) {
-			return Optional.empty();
-		}
-		long time = eventPayload.getTime();
-		// if the time is legitimate ( greater than or equal to zero or less than or equal to 12 years from present time) insert it into the db
-		if (time <= 0 || time >= MAX_TIMESTAMP_TO_ADD) {
-			if (time >= MAX_TIMESTAMP_TO_ADD) {
-				logger.log(Level.WARNING, String.format("Date/Time discarded from Timeline for %s for artifact %s with id %d", artifact.getDisplayName(), eventPayload.getDescription(TimelineLevelOfDetail.HIGH), artifact.getId()));
-			}
-			return Optional.empty();
-		}
-		String fullDescription = eventPayload.getDescription(TimelineLevelOfDetail.HIGH);
-		String medDescription = eventPayload.getDescription(TimelineLevelOfDetail.MEDIUM);
-		String shortDescription = eventPayload.getDescription(TimelineLevelOfDetail.LOW);
-		long artifactID = artifact.getArtifactID();
-		long fileObjId = artifact.getObjectID();
-		Long dataSourceObjectID = artifact.getDataSourceObjectID();
-		
-		if(dataSourceObjectID == null) {
-			logger.log(Level.SEVERE, String.format("Failed to create timeline event for artifact (%d), artifact data source was null"), artifact.getId());
-			return Optional.empty();
-		}
-
-		AbstractFile file = caseDB.getAbstractFileById(fileObjId);
-		boolean hasHashHits = false;
-		// file will be null if source was data source or some non-file
-		if (file != null) {
-			hasHashHits = isNotEmpty(file.getHashSetNames());
-		}
-		boolean tagged = isNotEmpty(caseDB.getBlackboardArtifactTagsByArtifact(artifact));
-
-		TimelineEvent event;
-		caseDB.acquireSingleUserCaseWriteLock();
-		try (CaseDbConnection connection = caseDB.getConnection();) {
-
-			Long descriptionID = addEventDescription(dataSourceObjectID, fileObjId, artifactID,
-				fullDescription, medDescription, shortDescription,
-				hasHashHits, tagged, connection);
-			
-			if(descriptionID == null) {
-				descriptionID = getEventDescription(dataSourceObjectID, fileObjId, artifactID,
-					fullDescription, connection);
-			} 
-
-			if(descriptionID != null) {
-				long eventID = addEventWithExistingDescription(time, eventType, descriptionID, connection);
-
-				event = new TimelineEvent(eventID, dataSourceObjectID, fileObjId, artifactID,
-						time, eventType, fullDescription, medDescription, shortDescription,
-						hasHashHits, tagged);
-			} else {
-				throw new TskCoreException(String.format("Failed to get event description for file id = %d, artifactId %d", fileObjId, artifactID));
-			}
-
-		} finally {
-			caseDB.releaseSingleUserCaseWriteLock();
-		}
-		return Optional.of(event);
+	private static TimelineEventType getOtherEventType(BlackboardArtifact artifact) {
+		return (ARTIFACT_TYPE_IDS.contains(artifact.getArtifactTypeID()))
+				? TimelineEventType.OTHER
+				: TimelineEventType.USER_CREATED;
 	}
 
 	private long addEventWithExistingDescription(Long time, TimelineEventType type, long descriptionID, CaseDbConnection connection) throws TskCoreException, DuplicateException {
@@ -1038,18 +1432,122 @@ public Set<Long> updateEventsForArtifactTagDeleted(BlackboardArtifact artifact)
 	}
 
 	private void updateEventSourceTaggedFlag(CaseDbConnection conn, Collection<Long> eventDescriptionIDs, int flagValue) throws TskCoreException {
+		updateEventSourceFlag(conn, "tagged", eventDescriptionIDs, flagValue); //NON-NLS
+	}
+
+	/**
+	 * Sets the hash_hit or tagged flag of event descriptions, and moves the
+	 * events of the descriptions whose flag changes to the matching event
+	 * counts in the same transaction.
+	 *
+	 * @param conn                A connection that is not in a transaction.
+	 * @param flagColumn          The flag column, hash_hit or tagged.
+	 * @param eventDescriptionIDs The event description IDs.
+	 * @param flagValue           The new value of the flag.
+	 *
+	 * @throws TskCoreException
+	 */
+	private void updateEventSourceFlag(CaseDbConnection conn, String flagColumn, Collection<Long> eventDescriptionIDs, int flagValue) throws TskCoreException {
 		if (eventDescriptionIDs.isEmpty()) {
 			return;
 		}
 
-		String sql = "UPDATE tsk_event_descriptions SET tagged = " + flagValue + " WHERE event_description_id IN (" + buildCSVString(eventDescriptionIDs) + ")"; //NON-NLS
-		try (Statement updateStatement = conn.createStatement()) {
-			updateStatement.executeUpdate(sql);
+		String selectSql = "SELECT event_description_id FROM tsk_event_descriptions"
+				+ " WHERE event_description_id IN (" + buildCSVString(eventDescriptionIDs) + ")"
+				+ " AND " + flagColumn + " != " + flagValue; //NON-NLS
+		String updateSql = null;
+		try (Statement statement = conn.createStatement()) {
+			List<Long> changedDescriptionIDs = new ArrayList<>();
+			try (ResultSet resultSet = conn.executeQuery(statement, selectSql)) {
+				while (resultSet.next()) {
+					changedDescriptionIDs.add(resultSet.getLong("event_description_id")); //NON-NLS
+				}
+			}
+			if (changedDescriptionIDs.isEmpty()) {
+				return;
+			}
+
+			updateSql = "UPDATE tsk_event_descriptions SET " + flagColumn + " = " + flagValue
+					+ " WHERE event_description_id IN (" + buildCSVString(changedDescriptionIDs) + ")"; //NON-NLS
+			conn.beginTransaction();
+			try {
+				updateEventCounts(conn, "tsk_events.event_description_id", changedDescriptionIDs, true);
+				conn.executeUpdate(statement, updateSql);
+				updateEventCounts(conn, "tsk_events.event_description_id", changedDescriptionIDs, false);
+				conn.commitTransaction();
+			} catch (SQLException | TskCoreException ex) {
+				conn.rollbackTransaction();
+				throw ex;
+			}
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error marking content events tagged: " + sql, ex);//NON-NLS
+			throw new TskCoreException("Error setting " + flagColumn + " of events: " + (updateSql != null ? updateSql : selectSql), ex);//NON-NLS
 		}
 	}
 
+	/**
+	 * Adds the given events to the tsk_event_counts table, or subtracts them
+	 * from it. Events must be added after they are inserted and subtracted
+	 * before they are deleted or their descriptions are changed.
+	 *
+	 * The counts are maintained here rather than with triggers so that a
+	 * batch of new events is aggregated with one statement per batch rather
+	 * than one per event, and so that the same SQL works for SQLite and
+	 * PostgreSQL.
+	 *
+	 * @param connection The database connection, which should be in a
+	 *                   transaction with the change to the events.
+	 * @param idColumn   The column to select the events with, e.g.
+	 *                   tsk_events.event_id or
+	 *                   tsk_event_descriptions.artifact_id.
+	 * @param ids        The values of the column.
+	 * @param subtract   True to subtract the events from the counts.
+	 *
+	 * @throws TskCoreException
+	 */
+	void updateEventCounts(CaseDbConnection connection, String idColumn, Collection<Long> ids, boolean subtract) throws TskCoreException {
+		if (ids.isEmpty()) {
+			return;
+		}
+		caseDB.acquireSingleUserCaseWriteLock();
+		try (Statement statement = connection.createStatement()) {
+			for (List<Long> idBatch : Iterables.partition(ids, SleuthkitCase.MAX_IDS_PER_QUERY)) {
+				connection.executeUpdate(statement, getEventCountsUpdateSql(idColumn + " IN (" + buildCSVString(idBatch) + ")", subtract));
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error updating timeline event counts", ex); // NON-NLS
+		} finally {
+			caseDB.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Gets an SQL statement that adds the events that match a where clause to
+	 * the tsk_event_counts table, or subtracts them from it.
+	 *
+	 * @param eventsWhereClause A where clause (without the "where") over the
+	 *                          tsk_events and tsk_event_descriptions tables.
+	 * @param subtract          True to subtract the events from the counts.
+	 *
+	 * @return The SQL statement.
+	 */
+	static String getEventCountsUpdateSql(String eventsWhereClause, boolean subtract) {
+		String granularities = Arrays.stream(EVENT_COUNT_GRANULARITIES)
+				.mapToObj(granularity -> "SELECT " + granularity + " AS granularity")
+				.collect(Collectors.joining(" UNION ALL ")); //NON-NLS
+		String bucketStart = "tsk_events.time - (tsk_events.time % granularities.granularity)"; //NON-NLS
+		String keyColumns = "tsk_events.event_type_id, tsk_event_descriptions.data_source_obj_id, "
+				+ "tsk_event_descriptions.hash_hit, tsk_event_descriptions.tagged"; //NON-NLS
+		return "INSERT INTO tsk_event_counts (granularity, bucket_start, event_type_id, data_source_obj_id, hash_hit, tagged, event_count)"
+				+ " SELECT granularities.granularity, " + bucketStart + ", " + keyColumns + ", " + (subtract ? "-" : "") + "COUNT(*)"
+				+ " FROM tsk_events"
+				+ " JOIN tsk_event_descriptions ON (tsk_event_descriptions.event_description_id = tsk_events.event_description_id)"
+				+ " CROSS JOIN (" + granularities + ") AS granularities"
+				+ " WHERE " + eventsWhereClause
+				+ " GROUP BY granularities.granularity, " + bucketStart + ", " + keyColumns
+				+ " ON CONFLICT (granularity, bucket_start, event_type_id, data_source_obj_id, hash_hit, tagged)"
+				+ " DO UPDATE SET event_count = tsk_event_counts.event_count + excluded.event_count"; //NON-NLS
+	}
+
 	/**
 	 * Finds all of the timeline events associated directly or indirectly with a
 	 * given content and marks them as having an event source that has a hash
@@ -1066,21 +1564,10 @@ private void updateEventSourceTaggedFlag(CaseDbConnection conn, Collection<Long>
 	 */
 	public Set<Long> updateEventsForHashSetHit(Content content) throws TskCoreException {
 		caseDB.acquireSingleUserCaseWriteLock();
-		try (CaseDbConnection con = caseDB.getConnection(); Statement updateStatement = con.createStatement();) {
+		try (CaseDbConnection con = caseDB.getConnection()) {
 			Map<Long, Long> eventIDs = getEventAndDescriptionIDs(con, content.getId(), true);
-			if (!eventIDs.isEmpty()) {
-				String sql = "UPDATE tsk_event_descriptions SET hash_hit = 1" + " WHERE event_description_id IN (" + buildCSVString(eventIDs.values()) + ")"; //NON-NLS
-				try {
-					updateStatement.executeUpdate(sql); //NON-NLS
-					return eventIDs.keySet();
-				} catch (SQLException ex) {
-					throw new TskCoreException("Error setting hash_hit of events.", ex);//NON-NLS
-				}
-			} else {
-				return eventIDs.keySet();
-			}
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error setting hash_hit of events.", ex);//NON-NLS
+			updateEventSourceFlag(con, "hash_hit", eventIDs.values(), 1); //NON-NLS
+			return eventIDs.keySet();
 		} finally {
 			caseDB.releaseSingleUserCaseWriteLock();
 		}
@@ -1114,22 +1601,50 @@ public Map<TimelineEventType, Long> countEventsByType(Long startTime, Long endTi
 		//do we want the base or subtype column of the databse
 		String typeColumn = typeColumnHelper(TimelineEventType.HierarchyLevel.EVENT.equals(typeHierachyLevel));
 
+		CompiledFilter compiledFilter = getCompiledFilter(filter);
+		String sqlWhere = compiledFilter.getSQLWhere();
+
+		/*
+		 * If the filter allows it, count the whole hours in the time range
+		 * from the tsk_event_counts table, and only count the events in the
+		 * partial hours at the ends of the range.
+		 */
+		List<EventCountRange> countRanges = canUseEventCounts(filter)
+				? getEventCountRanges(startTime, adjustedEndTime)
+				: Collections.emptyList();
+		String timeClause = "time >= ? AND time < ?"; //NON-NLS
+		List<Object> parameters = compiledFilter.getParameters(startTime, adjustedEndTime);
+		String countsQueryString = null;
+		List<Object> countsParameters = new ArrayList<>();
+		if (!countRanges.isEmpty()) {
+			long countsStart = countRanges.stream().mapToLong(EventCountRange::getStart).min().getAsLong();
+			long countsEnd = countRanges.stream().mapToLong(EventCountRange::getEnd).max().getAsLong();
+			timeClause = "((time >= ? AND time < ?) OR (time >= ? AND time < ?))"; //NON-NLS
+			parameters = compiledFilter.getParameters(startTime, countsStart, countsEnd, adjustedEndTime);
+			for (EventCountRange countRange : countRanges) {
+				countsParameters.addAll(Arrays.asList(countRange.getGranularity(), countRange.getStart(), countRange.getEnd()));
+			}
+			countsParameters.addAll(compiledFilter.getParameters());
+			countsQueryString = "SELECT SUM(event_count) AS count, " + typeColumn //NON-NLS
+					+ " FROM " + EVENT_COUNTS_TABLE_SQL //NON-NLS
+					+ " WHERE event_count > 0 AND ("
+					+ countRanges.stream().map(EventCountRange::getSQLWhere).collect(Collectors.joining(" OR "))
+					+ ") AND " + sqlWhere // NON-NLS
+					+ " GROUP BY " + typeColumn; // NON-NLS
+		}
+
 		String queryString = "SELECT count(DISTINCT tsk_events.event_id) AS count, " + typeColumn//NON-NLS
-				+ " FROM " + getAugmentedEventsTablesSQL(filter)//NON-NLS
-				+ " WHERE time >= " + startTime + " AND time < " + adjustedEndTime + " AND " + getSQLWhere(filter) // NON-NLS
+				+ " FROM " + compiledFilter.getEventsTablesSQL()//NON-NLS
+				+ " WHERE " + timeClause + " AND " + sqlWhere // NON-NLS
 				+ " GROUP BY " + typeColumn; // NON-NLS
 
 		caseDB.acquireSingleUserCaseReadLock();
-		try (CaseDbConnection con = caseDB.getConnection();
-				Statement stmt = con.createStatement();
-				ResultSet results = stmt.executeQuery(queryString);) {
+		try (CaseDbConnection con = caseDB.getConnection()) {
 			Map<TimelineEventType, Long> typeMap = new HashMap<>();
-			while (results.next()) {
-				int eventTypeID = results.getInt(typeColumn);
-				TimelineEventType eventType = getEventType(eventTypeID)
-						.orElseThrow(() -> newEventTypeMappingException(eventTypeID));//NON-NLS
-
-				typeMap.put(eventType, results.getLong("count")); // NON-NLS
+			addEventCounts(con, queryString, parameters, typeColumn, typeMap);
+			if (countsQueryString != null) {
+				queryString = countsQueryString;
+				addEventCounts(con, queryString, countsParameters, typeColumn, typeMap);
 			}
 			return typeMap;
 		} catch (SQLException ex) {
@@ -1139,6 +1654,145 @@ public Map<TimelineEventType, Long> countEventsByType(Long startTime, Long endTi
 		}
 	}
 
+	/**
+	 * Runs a query for event counts by type and adds the counts to a map.
+	 *
+	 * @param con         The connection to run the query with.
+	 * @param queryString A query with a count column and a type column.
+	 * @param parameters  The parameters of the query.
+	 * @param typeColumn  The name of the type column.
+	 * @param typeMap     The map to add the counts to.
+	 *
+	 * @throws SQLException
+	 * @throws TskCoreException
+	 */
+	private void addEventCounts(CaseDbConnection con, String queryString, List<Object> parameters, String typeColumn, Map<TimelineEventType, Long> typeMap) throws SQLException, TskCoreException {
+		try (ResultSet results = con.executeQuery(prepareQuery(con, queryString, parameters))) {
+			while (results.next()) {
+				int eventTypeID = results.getInt(typeColumn);
+				TimelineEventType eventType = getEventType(eventTypeID)
+						.orElseThrow(() -> newEventTypeMappingException(eventTypeID));//NON-NLS
+
+				typeMap.merge(eventType, results.getLong("count"), Long::sum); // NON-NLS
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the events that pass a filter can be counted from the
+	 * tsk_event_counts table, which only has the event type, data source, hash
+	 * hit and tagged columns.
+	 *
+	 * @param filter The filter.
+	 *
+	 * @return True if the filter only uses those columns.
+	 */
+	private static boolean canUseEventCounts(TimelineFilter.RootFilter filter) {
+		if (filter == null) {
+			return false;
+		}
+		for (TimelineFilter subFilter : filter.getSubFilters()) {
+			if (subFilter instanceof TimelineFilter.TextFilter) {
+				String substring = ((TimelineFilter.TextFilter) subFilter).getDescriptionSubstring();
+				if (substring != null && !substring.trim().isEmpty()) {
+					return false;
+				}
+			} else if (subFilter instanceof TimelineFilter.FileTypesFilter) {
+				if (((TimelineFilter.FileTypesFilter) subFilter).hasSubFilters()) {
+					return false;
+				}
+			} else if (!(subFilter instanceof TimelineFilter.TagsFilter
+					|| subFilter instanceof TimelineFilter.HashHitsFilter
+					|| subFilter instanceof TimelineFilter.EventTypeFilter
+					|| subFilter instanceof TimelineFilter.DataSourcesFilter)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Splits the whole hours of a time range into as few time buckets of the
+	 * tsk_event_counts table as possible, using the coarsest granularity that
+	 * fits in the middle of the range and finer ones towards the ends.
+	 *
+	 * @param startTime The start of the range (seconds from UNIX epoch).
+	 * @param endTime   The exclusive end of the range.
+	 *
+	 * @return The bucket ranges, empty if the range has no whole hours.
+	 */
+	static List<EventCountRange> getEventCountRanges(long startTime, long endTime) {
+		List<EventCountRange> ranges = new ArrayList<>();
+		long start = ceilToGranularity(startTime, EVENT_COUNT_GRANULARITIES[0]);
+		long end = floorToGranularity(endTime, EVENT_COUNT_GRANULARITIES[0]);
+		for (int i = 0; i < EVENT_COUNT_GRANULARITIES.length && start < end; i++) {
+			long granularity = EVENT_COUNT_GRANULARITIES[i];
+			if (i + 1 < EVENT_COUNT_GRANULARITIES.length) {
+				long coarseStart = ceilToGranularity(start, EVENT_COUNT_GRANULARITIES[i + 1]);
+				long coarseEnd = floorToGranularity(end, EVENT_COUNT_GRANULARITIES[i + 1]);
+				if (coarseStart < coarseEnd) {
+					if (start < coarseStart) {
+						ranges.add(new EventCountRange(granularity, start, coarseStart));
+					}
+					if (coarseEnd < end) {
+						ranges.add(new EventCountRange(granularity, coarseEnd, end));
+					}
+					start = coarseStart;
+					end = coarseEnd;
+					continue;
+				}
+			}
+			ranges.add(new EventCountRange(granularity, start, end));
+			break;
+		}
+		return ranges;
+	}
+
+	private static long floorToGranularity(long time, long granularity) {
+		return Math.floorDiv(time, granularity) * granularity;
+	}
+
+	private static long ceilToGranularity(long time, long granularity) {
+		return -Math.floorDiv(-time, granularity) * granularity;
+	}
+
+	/**
+	 * A range of time buckets of one granularity in the tsk_event_counts
+	 * table.
+	 */
+	static final class EventCountRange {
+
+		private final long granularity;
+		private final long start;
+		private final long end;
+
+		EventCountRange(long granularity, long start, long end) {
+			this.granularity = granularity;
+			this.start = start;
+			this.end = end;
+		}
+
+		long getGranularity() {
+			return granularity;
+		}
+
+		long getStart() {
+			return start;
+		}
+
+		long getEnd() {
+			return end;
+		}
+
+		/**
+		 * Gets the where clause for the range, with placeholders for the
+		 * granularity, start and end.
+		 */
+		private String getSQLWhere() {
+			return "(granularity = ? AND bucket_start >= ? AND bucket_start < ?)"; //NON-NLS
+		}
+	}
+
 	private static TskCoreException newEventTypeMappingException(int eventTypeID) {
 		return new TskCoreException("Error mapping event type id " + eventTypeID + " to EventType.");//NON-NLS
 	}
@@ -1231,8 +1885,127 @@ private static boolean intToBoolean(int value) {
 	 * @throws TskCoreException If there is an error querying the case database.
 	 */
 	public List<TimelineEvent> getEvents(Interval timeRange, TimelineFilter.RootFilter filter) throws TskCoreException {
+		List<Object> parameters = new ArrayList<>();
+		String querySql = getEventsQuery(timeRange, filter, null, null, parameters);
+		if (querySql == null) {
+			return new ArrayList<>();
+		}
+		return getEvents(querySql, parameters);
+	}
+
+	/**
+	 * Gets one page of the timeline events that fall within a given time
+	 * interval and satisfy a given event filter, ordered by time and event
+	 * ID. The next page starts after the last event of the previous page
+	 * (keyset pagination), so pages stay cheap to get deep into a large time
+	 * range.
+	 *
+	 * @param timeRange     The time range.
+	 * @param filter        The event filter.
+	 * @param afterEvent    The last event of the previous page, or null for
+	 *                      the first page.
+	 * @param pageSize      The maximum number of events to get.
+	 * @param levelOfDetail The level of detail of the description to get, or
+	 *                      null to get the descriptions for all levels. The
+	 *                      descriptions for the other levels of detail may
+	 *                      be empty or null.
+	 *
+	 * @return The events of the page. Fewer than pageSize events means there
+	 *         are no more pages.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	public List<TimelineEvent> getEvents(Interval timeRange, TimelineFilter.RootFilter filter,
+			TimelineEvent afterEvent, int pageSize, TimelineLevelOfDetail levelOfDetail) throws TskCoreException {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+		}
+		List<Object> parameters = new ArrayList<>();
+		String querySql = getEventsQuery(timeRange, filter, afterEvent, levelOfDetail, parameters);
+		if (querySql == null) {
+			return new ArrayList<>();
+		}
+		parameters.add(pageSize);
+		return getEvents(querySql + " LIMIT ?", parameters); //NON-NLS
+	}
+
+	/**
+	 * Gets a stream over the timeline events that fall within a given time
+	 * interval and satisfy a given event filter, ordered by time and event
+	 * ID. The events are read from the case database as the stream is
+	 * consumed.
+	 *
+	 * The stream holds a database connection and, for single-user cases, the
+	 * case read lock until it is closed, so it must be used from a single
+	 * thread in a try-with-resources statement, and no other writes to the
+	 * case database should be made from that thread until it is closed.
+	 *
+	 * @param timeRange     The time range.
+	 * @param filter        The event filter.
+	 * @param levelOfDetail The level of detail of the description to get, or
+	 *                      null to get the descriptions for all levels. The
+	 *                      descriptions for the other levels of detail may
+	 *                      be empty or null.
+	 *
+	 * @return The stream of events. Errors while reading the stream are thrown
+	 *         as UncheckedTskCoreException.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	public Stream<TimelineEvent> streamEvents(Interval timeRange, TimelineFilter.RootFilter filter, TimelineLevelOfDetail levelOfDetail) throws TskCoreException {
+		List<Object> parameters = new ArrayList<>();
+		String querySql = getEventsQuery(timeRange, filter, null, levelOfDetail, parameters);
+		if (querySql == null) {
+			return Stream.empty();
+		}
+		return CaseDbResultStream.create(caseDB, querySql, parameters, CaseDbResultStream.DEFAULT_FETCH_SIZE,
+				(resultSet, connection) -> resultSetRowToTimelineEvent(resultSet));
+	}
+
+	/**
+	 * Gets the events for a query built by getEventsQuery().
+	 *
+	 * @param querySql   The query.
+	 * @param parameters The parameters of the query.
+	 *
+	 * @return The events.
+	 *
+	 * @throws TskCoreException If there is an error querying the case database.
+	 */
+	private List<TimelineEvent> getEvents(String querySql, List<Object> parameters) throws TskCoreException {
 		List<TimelineEvent> events = new ArrayList<>();
+		caseDB.acquireSingleUserCaseReadLock();
+		try (CaseDbConnection con = caseDB.getConnection()) {
+			try (ResultSet resultSet = con.executeQuery(prepareQuery(con, querySql, parameters))) {
+				while (resultSet.next()) {
+					events.add(resultSetRowToTimelineEvent(resultSet));
+				}
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting events from db: " + querySql, ex); // NON-NLS
+		} finally {
+			caseDB.releaseSingleUserCaseReadLock();
+		}
 
+		return events;
+	}
+
+	/**
+	 * Builds the query for the timeline events that fall within a given time
+	 * interval and satisfy a given event filter.
+	 *
+	 * @param timeRange     The time range.
+	 * @param filter        The event filter.
+	 * @param afterEvent    Only get the events after this one in time and
+	 *                      event ID order, may be null.
+	 * @param levelOfDetail The level of detail of the description to get, or
+	 *                      null to get all of them.
+	 * @param parameters    The list to add the parameters of the query to.
+	 *
+	 * @return The query, or null if no events can match.
+	 */
+	private String getEventsQuery(Interval timeRange, TimelineFilter.RootFilter filter,
+			TimelineEvent afterEvent, TimelineLevelOfDetail levelOfDetail, List<Object> parameters) {
 		Long startTime = timeRange.getStartMillis() / 1000;
 		Long endTime = timeRange.getEndMillis() / 1000;
 
@@ -1241,57 +2014,93 @@ public List<TimelineEvent> getEvents(Interval timeRange, TimelineFilter.RootFilt
 		}
 
 		if (filter == null) {
-			return events;
+			return null;
 		}
 
 		if (endTime < startTime) {
-			return events;
+			return null;
+		}
+
+		CompiledFilter compiledFilter = getCompiledFilter(filter);
+		parameters.addAll(compiledFilter.getParameters(startTime, endTime));
+		String afterEventClause = "";
+		if (afterEvent != null) {
+			afterEventClause = " AND (time > ? OR (time = ? AND event_id > ?))"; // NON-NLS
+			parameters.addAll(Arrays.asList(afterEvent.getTime(), afterEvent.getTime(), afterEvent.getEventID()));
 		}
 
 		//build dynamic parts of query
-		String querySql = "SELECT time, content_obj_id, data_source_obj_id, artifact_id, " // NON-NLS
+		return "SELECT time, content_obj_id, data_source_obj_id, artifact_id, " // NON-NLS
 				+ "  event_id, " //NON-NLS
 				+ " hash_hit, " //NON-NLS
 				+ " tagged, " //NON-NLS
 				+ " event_type_id, super_type_id, "
-				+ " full_description, med_description, short_description " // NON-NLS
-				+ " FROM " + getAugmentedEventsTablesSQL(filter) // NON-NLS
-				+ " WHERE time >= " + startTime + " AND time < " + endTime + " AND " + getSQLWhere(filter) // NON-NLS
-				+ " ORDER BY time"; // NON-NLS
-
-		caseDB.acquireSingleUserCaseReadLock();
-		try (CaseDbConnection con = caseDB.getConnection();
-				Statement stmt = con.createStatement();
-				ResultSet resultSet = stmt.executeQuery(querySql);) {
-
-			while (resultSet.next()) {
-				int eventTypeID = resultSet.getInt("event_type_id");
-				TimelineEventType eventType = getEventType(eventTypeID).orElseThrow(()
-						-> new TskCoreException("Error mapping event type id " + eventTypeID + "to EventType."));//NON-NLS
-
-				TimelineEvent event = new TimelineEvent(
-						resultSet.getLong("event_id"), // NON-NLS
-						resultSet.getLong("data_source_obj_id"), // NON-NLS
-						resultSet.getLong("content_obj_id"), // NON-NLS
-						resultSet.getLong("artifact_id"), // NON-NLS
-						resultSet.getLong("time"), // NON-NLS
-						eventType,
-						resultSet.getString("full_description"), // NON-NLS
-						resultSet.getString("med_description"), // NON-NLS
-						resultSet.getString("short_description"), // NON-NLS
-						resultSet.getInt("hash_hit") != 0, //NON-NLS
-						resultSet.getInt("tagged") != 0);
-
-				events.add(event);
-			}
+				+ getDescriptionColumnsSQL(levelOfDetail) // NON-NLS
+				+ " FROM " + compiledFilter.getEventsTablesSQL() // NON-NLS
+				+ " WHERE time >= ? AND time < ? AND " + compiledFilter.getSQLWhere() // NON-NLS
+				+ afterEventClause
+				+ " ORDER BY time, event_id"; // NON-NLS
+	}
 
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting events from db: " + querySql, ex); // NON-NLS
-		} finally {
-			caseDB.releaseSingleUserCaseReadLock();
+	/**
+	 * Gets the description columns to select for a level of detail. The full
+	 * description is still selected for the event types that derive all the
+	 * levels of detail from it.
+	 *
+	 * @param levelOfDetail The level of detail, or null for all of them.
+	 *
+	 * @return The full_description, med_description and short_description
+	 *         columns, with NULL for the ones not needed.
+	 */
+	private String getDescriptionColumnsSQL(TimelineLevelOfDetail levelOfDetail) {
+		if (levelOfDetail == null) {
+			return " full_description, med_description, short_description "; // NON-NLS
 		}
+		String fullDescription;
+		if (levelOfDetail == TimelineLevelOfDetail.HIGH) {
+			fullDescription = "full_description"; // NON-NLS
+		} else {
+			String fullDescriptionTypeIDs = eventTypeIDMap.values().stream()
+					.filter(type -> type instanceof TimelineEventTypeImpl && ((TimelineEventTypeImpl) type).parsesFullDescription())
+					.map(type -> String.valueOf(type.getTypeID()))
+					.collect(Collectors.joining(","));
+			fullDescription = fullDescriptionTypeIDs.isEmpty()
+					? "NULL AS full_description" // NON-NLS
+					: "CASE WHEN event_type_id IN (" + fullDescriptionTypeIDs + ") THEN full_description ELSE NULL END AS full_description"; // NON-NLS
+		}
+		return " " + fullDescription + ", "
+				+ (levelOfDetail == TimelineLevelOfDetail.MEDIUM ? "med_description" : "NULL AS med_description") + ", " // NON-NLS
+				+ (levelOfDetail == TimelineLevelOfDetail.LOW ? "short_description" : "NULL AS short_description") + " "; // NON-NLS
+	}
 
-		return events;
+	/**
+	 * Creates a timeline event from the current row of a result set of a
+	 * query built by getEventsQuery().
+	 *
+	 * @param resultSet The result set.
+	 *
+	 * @return The event.
+	 *
+	 * @throws SQLException
+	 * @throws TskCoreException If the event type is unknown.
+	 */
+	private TimelineEvent resultSetRowToTimelineEvent(ResultSet resultSet) throws SQLException, TskCoreException {
+		int eventTypeID = resultSet.getInt("event_type_id");
+		TimelineEventType eventType = getEventType(eventTypeID).orElseThrow(()
+				-> new TskCoreException("Error mapping event type id " + eventTypeID + "to EventType."));//NON-NLS
+
+		return new TimelineEvent(
+				resultSet.getLong("event_id"), // NON-NLS
+				resultSet.getLong("data_source_obj_id"), // NON-NLS
+				resultSet.getLong("content_obj_id"), // NON-NLS
+				resultSet.getLong("artifact_id"), // NON-NLS
+				resultSet.getLong("time"), // NON-NLS
+				eventType,
+				resultSet.getString("full_description"), // NON-NLS
+				resultSet.getString("med_description"), // NON-NLS
+				resultSet.getString("short_description"), // NON-NLS
+				resultSet.getInt("hash_hit") != 0, //NON-NLS
+				resultSet.getInt("tagged") != 0);
 	}
 
 	/**
@@ -1325,6 +2134,119 @@ String getSQLWhere(TimelineFilter.RootFilter filter) {
 		return result;
 	}
 
+	/**
+	 * Gets the given filter compiled into parameterized SQL, from the cache of
+	 * compiled filters if the same filter has been used before.
+	 *
+	 * @param filter The filter, may be null.
+	 *
+	 * @return The compiled filter.
+	 */
+	CompiledFilter getCompiledFilter(TimelineFilter.RootFilter filter) {
+		if (filter == null) {
+			return new CompiledFilter(getAugmentedEventsTablesSQL(false), getTrueLiteral(), Collections.emptyList());
+		}
+		CompiledFilter compiledFilter = compiledFilters.getIfPresent(filter);
+		if (compiledFilter == null) {
+			if (isCompleteFilter(filter)) {
+				// Compile and cache a copy, since the filters are mutable
+				TimelineFilter.RootFilter filterCopy = filter.copyOf();
+				compiledFilter = compileFilter(filterCopy);
+				compiledFilters.put(filterCopy, compiledFilter);
+			} else {
+				compiledFilter = compileFilter(filter);
+			}
+		}
+		return compiledFilter;
+	}
+
+	private CompiledFilter compileFilter(TimelineFilter.RootFilter filter) {
+		List<Object> parameters = new ArrayList<>();
+		String sqlWhere = filter.getParameterizedSQLWhere(this, parameters);
+		return new CompiledFilter(getAugmentedEventsTablesSQL(filter), sqlWhere, parameters);
+	}
+
+	/**
+	 * Checks whether all of the standard sub filters of a root filter are
+	 * set, which is required to copy it.
+	 */
+	private static boolean isCompleteFilter(TimelineFilter.RootFilter filter) {
+		return filter.getKnownFilter() != null
+				&& filter.getTagsFilter() != null
+				&& filter.getHashHitsFilter() != null
+				&& filter.getTextFilter() != null
+				&& filter.getEventTypeFilter() != null
+				&& filter.getDataSourcesFilter() != null
+				&& filter.getFileTypesFilter() != null;
+	}
+
+	/**
+	 * Gets the prepared statement for a query from the statements cached by a
+	 * connection, and sets its parameters.
+	 *
+	 * @param con        The connection.
+	 * @param query      The query, with ? placeholders.
+	 * @param parameters The values of the placeholders, in order.
+	 *
+	 * @return The prepared statement, which is closed with the connection.
+	 *
+	 * @throws SQLException
+	 */
+	private static PreparedStatement prepareQuery(CaseDbConnection con, String query, List<Object> parameters) throws SQLException {
+		PreparedStatement statement = con.getPreparedStatement(query, Statement.NO_GENERATED_KEYS);
+		statement.clearParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			statement.setObject(i + 1, parameters.get(i));
+		}
+		return statement;
+	}
+
+	/**
+	 * A timeline filter compiled into an events table expression and a where
+	 * clause with ? placeholders, and the values of the placeholders.
+	 */
+	static final class CompiledFilter {
+
+		private final String eventsTablesSQL;
+		private final String sqlWhere;
+		private final List<Object> parameters;
+
+		private CompiledFilter(String eventsTablesSQL, String sqlWhere, List<Object> parameters) {
+			this.eventsTablesSQL = eventsTablesSQL;
+			this.sqlWhere = sqlWhere;
+			this.parameters = ImmutableList.copyOf(parameters);
+		}
+
+		/**
+		 * Gets the expression for the events table augmented with the columns
+		 * used by the filter.
+		 */
+		String getEventsTablesSQL() {
+			return eventsTablesSQL;
+		}
+
+		/**
+		 * Gets the where clause (without the "where") of the filter.
+		 */
+		String getSQLWhere() {
+			return sqlWhere;
+		}
+
+		/**
+		 * Gets the parameters of a query in which the given parameters come
+		 * before the where clause of the filter.
+		 *
+		 * @param leadingParameters The parameters before the where clause.
+		 *
+		 * @return A new, modifiable list of the parameters.
+		 */
+		List<Object> getParameters(Object... leadingParameters) {
+			List<Object> queryParameters = new ArrayList<>(Arrays.asList(leadingParameters));
+			queryParameters.addAll(parameters);
+			return queryParameters;
+		}
+	}
+
 	/**
 	 * Creates a sql statement that will do nothing due to unique constraint.
 	 *
@@ -1359,9 +2281,36 @@ private String getTrueLiteral() {
 		}
 	}
 
+	/**
+	 * Sets whether a TimelineEventAddedEvent is fired for each timeline event
+	 * added for posted artifacts. These events are off by default: the events
+	 * for a batch of posted artifacts are published together in one
+	 * TskEvent.TimelineEventsAddedTskEvent. Listeners that still rely on a
+	 * TimelineEventAddedEvent for every artifact event can enable them, but
+	 * should then not also handle the TimelineEventsAddedTskEvent, or they
+	 * will handle each event twice.
+	 *
+	 * @param enabled True to fire a TimelineEventAddedEvent for each event
+	 *                added for posted artifacts.
+	 */
+	public void setArtifactEventAddedEventsEnabled(boolean enabled) {
+		artifactEventAddedEventsEnabled = enabled;
+	}
+
+	/**
+	 * Indicates whether a TimelineEventAddedEvent is fired for each timeline
+	 * event added for posted artifacts.
+	 *
+	 * @return True if the events are fired.
+	 */
+	public boolean isArtifactEventAddedEventsEnabled() {
+		return artifactEventAddedEventsEnabled;
+	}
+
 	/**
 	 * Event fired by SleuthkitCase to indicate that a event has been added to
-	 * the tsk_events table.
+	 * the tsk_events table. For events added for posted artifacts, it is only
+	 * fired if enabled with setArtifactEventAddedEventsEnabled().
 	 */
 	final static public class TimelineEventAddedEvent {
 
@@ -19,6 +19,12 @@
 package org.sleuthkit.datamodel;
 
 import com.google.common.base.Strings;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -26,6 +32,7 @@
 import java.util.List;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -33,6 +40,11 @@
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sleuthkit.datamodel.OsAccountManager.NotUserSIDException;
@@ -46,32 +58,117 @@
  * 
  * Note that this code should only be used for the add image process, and not
  * to add additional files afterward.
+ * 
+ * The native code may call the bridge from several threads when it walks file
+ * systems in parallel. The methods that use the current transaction are
+ * synchronized, and files from all of the threads go into the same batches.
+ * Files from one file system still arrive in the order they were walked, so
+ * parent directories are always written before their contents.
  */
 class TskCaseDbBridge {
     
     private static final Logger logger = Logger.getLogger(TskCaseDbBridge.class.getName());
     
     private final SleuthkitCase caseDb;
-    private CaseDbTransaction trans = null;
+    private CaseDbTransaction trans = null; // Guarded by this
     private final AddDataSourceCallbacks addDataSourceCallbacks;
 	private final Host imageHost;
     
-    private final Map<Long, Long> fsIdToRootDir = new HashMap<>();
-    private final Map<Long, TskData.TSK_FS_TYPE_ENUM> fsIdToFsType = new HashMap<>();
-    private final Map<ParentCacheKey, Long> parentDirCache = new HashMap<>();
+    private final Map<Long, Long> fsIdToRootDir = new ConcurrentHashMap<>();
+    private final Map<Long, TskData.TSK_FS_TYPE_ENUM> fsIdToFsType = new ConcurrentHashMap<>();
+    private final Map<ParentCacheKey, Long> parentDirCache = new ConcurrentHashMap<>();
     
-    private final Map<String, OsAccount> ownerIdToAccountMap = new HashMap<>();
+    private final Map<String, OsAccount> ownerIdToAccountMap = new HashMap<>(); // Guarded by this
 	
-    private static final long BATCH_FILE_THRESHOLD = 500;
+    static final int DEFAULT_BATCH_FILE_THRESHOLD = 500;
+    private final int batchFileThreshold;
     private final Queue<FileInfo> batchedFiles = new LinkedList<>();
     private final Queue<LayoutRangeInfo> batchedLayoutRanges = new LinkedList<>();
     private final List<Long> layoutFileIds = new ArrayList<>();
     
+    /*
+     * Pipelined mode. The native code hands files to addFile() which puts them
+     * in a bounded queue, and a single writer thread drains the queue and
+     * writes the files in batches. There is only one writer because files
+     * are resolved to their parent directories in the order they are
+     * walked, and the case database only supports one writer at a time anyway.
+     * The writer thread and the native callback thread (which still adds
+     * volumes, file systems and layout files) share the current transaction,
+     * so every use of it must hold the lock on this object.
+     */
+    private static final long PIPELINE_LINGER_MS = 50;
+    private final BlockingQueue<FileInfo> pipelineQueue;
+    private final Thread pipelineWriter;
+    private final Object pipelineLock = new Object();
+    private long pendingPipelineFiles = 0; // Guarded by pipelineLock
+    private volatile boolean pipelineClosing = false;
+    private volatile boolean pipelineStopped = false;
+    // Set when the writer thread fails to write a batch, cleared when the
+    // failure is reported to the caller
+    private final AtomicBoolean pipelineWriteFailed = new AtomicBoolean(false);
+    
+    private static final String FILE_INSERT_SQL = "INSERT INTO tsk_files (fs_obj_id, obj_id, data_source_obj_id, type, attr_type, attr_id, name, meta_addr, meta_seq, dir_type, meta_type, dir_flags, meta_flags, size, crtime, ctime, atime, mtime, mode, gid, uid, md5, known, parent_path, extension, has_layout, owner_uid, os_account_obj_id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"; // NON-NLS
+    private static final String LAYOUT_RANGE_INSERT_SQL = "INSERT INTO tsk_file_layout (obj_id, byte_start, byte_len, sequence) " //NON-NLS
+            + "VALUES (?, ?, ?, ?)";
+    // Decodes the strings of file batches. Decoders are not thread safe and
+    // several file system walker threads may send batches at once.
+    private static final ThreadLocal<CharsetDecoder> BATCH_STRING_DECODER = ThreadLocal.withInitial(() -> StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .replaceWith("^"));
+    
     TskCaseDbBridge(SleuthkitCase caseDb, AddDataSourceCallbacks addDataSourceCallbacks, Host host) {
+        this(caseDb, addDataSourceCallbacks, host, DEFAULT_BATCH_FILE_THRESHOLD);
+    }
+    
+    /**
+     * Create the bridge.
+     * 
+     * @param caseDb                 The case database.
+     * @param addDataSourceCallbacks The callbacks to use to send data to ingest.
+     * @param host                   The host of the image.
+     * @param batchFileThreshold     The number of files and layout ranges to
+     *                               collect before writing them to the
+     *                               database in one transaction.
+     */
+    TskCaseDbBridge(SleuthkitCase caseDb, AddDataSourceCallbacks addDataSourceCallbacks, Host host, int batchFileThreshold) {
+        this(caseDb, addDataSourceCallbacks, host, batchFileThreshold, 0);
+    }
+    
+    /**
+     * Create the bridge, optionally in pipelined mode. In pipelined mode the
+     * files received from the native code are written to the database on a
+     * separate thread, so the file system walk does not wait on the database.
+     * The files added callback is then also called from that thread.
+     * 
+     * @param caseDb                 The case database.
+     * @param addDataSourceCallbacks The callbacks to use to send data to ingest.
+     * @param host                   The host of the image.
+     * @param batchFileThreshold     The number of files and layout ranges to
+     *                               collect before writing them to the
+     *                               database in one transaction.
+     * @param pipelineQueueCapacity  The number of files that can be waiting
+     *                               for the database writer before the native
+     *                               code is blocked, or 0 to write the files
+     *                               on the calling thread.
+     */
+    TskCaseDbBridge(SleuthkitCase caseDb, AddDataSourceCallbacks addDataSourceCallbacks, Host host, int batchFileThreshold,
+            int pipelineQueueCapacity) {
         this.caseDb = caseDb;
         this.addDataSourceCallbacks = addDataSourceCallbacks;
 		imageHost = host;
+        this.batchFileThreshold = batchFileThreshold;
         trans = null;
+        if (pipelineQueueCapacity > 0) {
+            pipelineQueue = new ArrayBlockingQueue<>(pipelineQueueCapacity);
+            pipelineWriter = new Thread(this::runPipelineWriter, "TSK add image database writer"); //NON-NLS
+            pipelineWriter.setDaemon(true);
+            pipelineWriter.start();
+        } else {
+            pipelineQueue = null;
+            pipelineWriter = null;
+        }
     }
     
     /**
@@ -80,6 +177,7 @@ class TskCaseDbBridge {
      * @throws TskCoreException 
      */
     private void beginTransaction() throws TskCoreException {
+        assert Thread.holdsLock(this);
         trans = caseDb.beginTransaction();
     }
     
@@ -89,6 +187,7 @@ private void beginTransaction() throws TskCoreException {
      * @throws TskCoreException 
      */
     private void commitTransaction() throws TskCoreException {
+        assert Thread.holdsLock(this);
         trans.commit();
         trans = null;
     }
@@ -97,6 +196,7 @@ private void commitTransaction() throws TskCoreException {
      * Revert the current transaction
      */
     private void revertTransaction() {
+        assert Thread.holdsLock(this);
         try {
             if (trans != null) {
                 trans.rollback();
@@ -109,11 +209,166 @@ private void revertTransaction() {
     
     /**
      * Add any remaining files to the database.
+     * 
+     * @throws TskDataException if the pipeline writer thread failed to write
+     *                          files after the last failure was reported to
+     *                          the native code. The remaining files are still
+     *                          added.
      */
-    void finish() {
-        addBatchedFilesToDb();
+    void finish() throws TskDataException {
+        if (pipelineQueue != null) {
+            shutDownPipeline();
+        } else {
+            addBatchedFilesToDb();
+        }
         addBatchedLayoutRangesToDb();
         processLayoutFiles();
+        if (pipelineWriteFailed.getAndSet(false)) {
+            throw new TskDataException("Error adding a batch of files to the case database"); //NON-NLS
+        }
+    }
+    
+    /**
+     * Stop writing files to the database. In pipelined mode any files that are
+     * still queued are discarded and the writer thread is shut down, the same
+     * way the files batched in non-pipelined mode are discarded when the add
+     * image process is canceled. A batch that is currently being written is
+     * still committed. Safe to call from any thread and more than once.
+     */
+    void stop() {
+        if (pipelineQueue == null) {
+            return;
+        }
+        pipelineStopped = true;
+        shutDownPipeline();
+    }
+    
+    /**
+     * Queue a file for the pipeline writer thread, blocking while the queue
+     * is full.
+     * 
+     * @param fileInfo The file.
+     * 
+     * @return 0 if successful, -1 if not or if the writer thread failed to
+     *         write an earlier batch since the last failure was reported
+     */
+    private long enqueueFile(FileInfo fileInfo) {
+        if (pipelineStopped) {
+            // Files are being discarded
+            return 0;
+        }
+        synchronized (pipelineLock) {
+            pendingPipelineFiles++;
+        }
+        try {
+            while (!pipelineQueue.offer(fileInfo, PIPELINE_LINGER_MS, TimeUnit.MILLISECONDS)) {
+                if (pipelineStopped || !pipelineWriter.isAlive()) {
+                    filesRemovedFromPipeline(1);
+                    return pipelineStopped ? 0 : -1;
+                }
+            }
+            // Report a failed batch so that the native code registers an error
+            return pipelineWriteFailed.getAndSet(false) ? -1 : 0;
+        } catch (InterruptedException ex) {
+            filesRemovedFromPipeline(1);
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+    
+    /**
+     * Body of the pipeline writer thread. Collects queued files into batches
+     * and writes a batch when it is full or when no new file has arrived for
+     * a short time.
+     */
+    private void runPipelineWriter() {
+        List<FileInfo> drained = new ArrayList<>();
+        try {
+            while (true) {
+                FileInfo fileInfo = pipelineQueue.poll(PIPELINE_LINGER_MS, TimeUnit.MILLISECONDS);
+                if (fileInfo != null) {
+                    drained.add(fileInfo);
+                    pipelineQueue.drainTo(drained, batchFileThreshold - drained.size());
+                }
+                if (pipelineStopped) {
+                    filesRemovedFromPipeline(drained.size());
+                    drained.clear();
+                    if (fileInfo == null) {
+                        return;
+                    }
+                } else if (drained.size() >= batchFileThreshold || (fileInfo == null && ! drained.isEmpty())) {
+                    batchedFiles.addAll(drained);
+                    try {
+                        if (addBatchedFilesToDb() < 0) {
+                            pipelineWriteFailed.set(true);
+                        }
+                    } catch (RuntimeException ex) {
+                        // Keep the writer alive so the native code is not blocked forever
+                        logger.log(Level.SEVERE, "Unexpected error writing batched files to database", ex);
+                        batchedFiles.clear();
+                        pipelineWriteFailed.set(true);
+                    }
+                    filesRemovedFromPipeline(drained.size());
+                    drained.clear();
+                } else if (fileInfo == null && pipelineClosing) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            logger.log(Level.WARNING, "Add image database writer interrupted", ex);
+            filesRemovedFromPipeline(drained.size() + pipelineQueue.size());
+            pipelineQueue.clear();
+        }
+    }
+    
+    /**
+     * Record that files have left the pipeline, either written or discarded,
+     * and wake up any thread waiting for the pipeline to drain.
+     * 
+     * @param count The number of files.
+     */
+    private void filesRemovedFromPipeline(int count) {
+        synchronized (pipelineLock) {
+            pendingPipelineFiles -= count;
+            pipelineLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Wait until every file queued so far has been written (or discarded) by
+     * the pipeline writer thread.
+     */
+    private void flushPipeline() {
+        if (pipelineQueue == null) {
+            return;
+        }
+        synchronized (pipelineLock) {
+            while (pendingPipelineFiles > 0 && pipelineWriter.isAlive()) {
+                try {
+                    pipelineLock.wait(PIPELINE_LINGER_MS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Let the pipeline writer thread finish the queued files (unless stopped)
+     * and wait for it to exit.
+     */
+    private void shutDownPipeline() {
+        pipelineClosing = true;
+        if (Thread.currentThread() == pipelineWriter) {
+            return;
+        }
+        try {
+            pipelineWriter.join();
+        } catch (InterruptedException ex) {
+            logger.log(Level.WARNING, "Interrupted waiting for the add image database writer to finish", ex);
+            Thread.currentThread().interrupt();
+        }
     }
     
     /**
@@ -135,7 +390,7 @@ void finish() {
      * 
      * @return The object ID of the new image or -1 if an error occurred
      */
-    long addImageInfo(int type, long ssize, String timezone, 
+    synchronized long addImageInfo(int type, long ssize, String timezone, 
             long size, String md5, String sha1, String sha256, String deviceId, 
             String collectionDetails, String[] paths) {    
         try {
@@ -160,7 +415,7 @@ long addImageInfo(int type, long ssize, String timezone,
 	 * @param imgId   ID of the image
 	 * @param details The details
 	 */
-	void addAcquisitionDetails(long imgId, String details) {
+	synchronized void addAcquisitionDetails(long imgId, String details) {
         try {
             beginTransaction();
             caseDb.setAcquisitionDetails(imgId, details, trans);
@@ -182,7 +437,7 @@ void addAcquisitionDetails(long imgId, String details) {
      * 
      * @return The object ID of the new volume system or -1 if an error occurred
      */
-    long addVsInfo(long parentObjId, int vsType, long imgOffset, long blockSize) {
+    synchronized long addVsInfo(long parentObjId, int vsType, long imgOffset, long blockSize) {
         try {
             beginTransaction();
             VolumeSystem vs = caseDb.addVolumeSystem(parentObjId, TskData.TSK_VS_TYPE_ENUM.valueOf(vsType), imgOffset, blockSize, trans);
@@ -209,7 +464,7 @@ long addVsInfo(long parentObjId, int vsType, long imgOffset, long blockSize) {
      * 
      * @return The object ID of the new volume or -1 if an error occurred
      */
-    long addVolume(long parentObjId, long addr, long start, long length, String desc,
+    synchronized long addVolume(long parentObjId, long addr, long start, long length, String desc,
             long flags) {
         try {
             beginTransaction();
@@ -233,7 +488,7 @@ long addVolume(long parentObjId, long addr, long start, long length, String desc
      * 
      * @return The object ID of the new pool or -1 if an error occurred
      */
-    long addPool(long parentObjId, int poolType) {
+    synchronized long addPool(long parentObjId, int poolType) {
         try {
             beginTransaction();
             Pool pool = caseDb.addPool(parentObjId, TskData.TSK_POOL_TYPE_ENUM.valueOf(poolType), trans);
@@ -261,7 +516,7 @@ long addPool(long parentObjId, int poolType) {
      * 
      * @return The object ID of the new file system or -1 if an error occurred
      */
-    long addFileSystem(long parentObjId, long imgOffset, int fsType, long blockSize, long blockCount,
+    synchronized long addFileSystem(long parentObjId, long imgOffset, int fsType, long blockSize, long blockCount,
             long rootInum, long firstInum, long lastInum) {
         try {
             beginTransaction();
@@ -331,8 +586,7 @@ long addFile(long parentObjId,
         String escaped_path, String extension, 
         long seq, long parMetaAddr, long parSeq, String ownerUid) {
         
-        // Add the new file to the list
-        batchedFiles.add(new FileInfo(parentObjId,
+        FileInfo fileInfo = new FileInfo(parentObjId,
                 fsObjId, dataSourceObjId,
                 fsType,
                 attrType, attrId, name,
@@ -342,24 +596,130 @@ long addFile(long parentObjId,
                 crtime, ctime, atime, mtime,
                 meta_mode, gid, uid,
                 escaped_path, extension,
-                seq, parMetaAddr, parSeq, ownerUid));
+                seq, parMetaAddr, parSeq, ownerUid);
         
-        // Add the current files to the database if we've exceeded the threshold or if we
-        // have the root folder.
-        if ((fsObjId == parentObjId)
-                || (batchedFiles.size() > BATCH_FILE_THRESHOLD)) {
-            return addBatchedFilesToDb();
+        // In pipelined mode the writer thread takes it from here
+        if (pipelineQueue != null) {
+            return enqueueFile(fileInfo);
+        }
+        
+        // The native code may walk several file systems at once, so the batch
+        // is shared by all of the walker threads.
+        synchronized (this) {
+            // Add the new file to the list
+            batchedFiles.add(fileInfo);
+
+            // Add the current files to the database if we've exceeded the threshold or if we
+            // have the root folder.
+            if ((fsObjId == parentObjId)
+                    || (batchedFiles.size() > batchFileThreshold)) {
+                return addBatchedFilesToDb();
+            }
         }
         return 0;
     }
     
     /**
-     * Add the current set of files to the database.
+     * Add a batch of files to the database. Each file is handled the same way
+     * as a call to addFile(), so the files may not be added immediately.
+     * Intended to be called from the native code during the add image process.
+     * 
+     * The records are packed by the native code in native byte order, each
+     * with the values of the addFile() parameters in the same order. Strings
+     * are stored as an int offset into the UTF-8 string area and an int
+     * length, which is -1 for a null string. Both buffers are only valid
+     * for the duration of the call.
+     * 
+     * @param records     The packed file records.
+     * @param recordCount The number of records.
+     * @param strings     The string area.
      * 
      * @return 0 if successful, -1 if not
      */
-    private long addBatchedFilesToDb() {
-        List<Long> newObjIds = new ArrayList<>();
+    long addFileBatch(ByteBuffer records, int recordCount, ByteBuffer strings) {
+        records.order(ByteOrder.nativeOrder());
+        long retVal = 0;
+        String lastPath = null;
+        int lastPathOffset = -1;
+        for (int i = 0; i < recordCount; i++) {
+            long parentObjId = records.getLong();
+            long fsObjId = records.getLong();
+            long dataSourceObjId = records.getLong();
+            int fsType = records.getInt();
+            int attrType = records.getInt();
+            int attrId = records.getInt();
+            String name = getBatchString(strings, records.getInt(), records.getInt());
+            long metaAddr = records.getLong();
+            long metaSeq = records.getLong();
+            int dirType = records.getInt();
+            int metaType = records.getInt();
+            int dirFlags = records.getInt();
+            int metaFlags = records.getInt();
+            long size = records.getLong();
+            long crtime = records.getLong();
+            long ctime = records.getLong();
+            long atime = records.getLong();
+            long mtime = records.getLong();
+            int meta_mode = records.getInt();
+            int gid = records.getInt();
+            int uid = records.getInt();
+            // Files in the same folder share the path in the string area
+            int pathOffset = records.getInt();
+            int pathLength = records.getInt();
+            if (pathOffset != lastPathOffset) {
+                lastPath = getBatchString(strings, pathOffset, pathLength);
+                lastPathOffset = pathOffset;
+            }
+            String extension = getBatchString(strings, records.getInt(), records.getInt());
+            long seq = records.getLong();
+            long parMetaAddr = records.getLong();
+            long parSeq = records.getLong();
+            String ownerUid = getBatchString(strings, records.getInt(), records.getInt());
+
+            if (addFile(parentObjId, fsObjId, dataSourceObjId, fsType, attrType, attrId, name,
+                    metaAddr, metaSeq, dirType, metaType, dirFlags, metaFlags,
+                    size, crtime, ctime, atime, mtime, meta_mode, gid, uid,
+                    lastPath, extension, seq, parMetaAddr, parSeq, ownerUid) < 0) {
+                retVal = -1;
+            }
+        }
+        return retVal;
+    }
+    
+    /**
+     * Decode a string from the string area of a file batch. Invalid UTF-8 is
+     * replaced with '^', the character the SleuthKit uses when it cleans up
+     * file names (see tsk_cleanupUTF8()), rather than with U+FFFD.
+     * 
+     * @param strings The string area.
+     * @param offset  The offset of the string.
+     * @param length  The length of the string in bytes, or -1 for null.
+     * 
+     * @return The string, may be null
+     */
+    private static String getBatchString(ByteBuffer strings, int offset, int length) {
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer bytes = strings.duplicate();
+        bytes.position(offset);
+        bytes.limit(offset + length);
+        try {
+            return BATCH_STRING_DECODER.get().decode(bytes).toString();
+        } catch (CharacterCodingException ex) {
+            // Not thrown when malformed input is replaced
+            throw new IllegalStateException("Error decoding file batch string", ex); //NON-NLS
+        }
+    }
+    
+    /**
+     * Add the current set of files to the database. If the batch can not be
+     * written, the files are added one at a time so that a bad file does not
+     * prevent the others from being added.
+     * 
+     * @return 0 if successful, -1 if any of the files could not be added
+     */
+    private synchronized long addBatchedFilesToDb() {
         try {
 			
 			// loop through the batch, and make sure owner accounts exist for all the files in the batch.
@@ -395,12 +755,69 @@ private long addBatchedFilesToDb() {
 					}
 				}
 			}
-			
-			
-					
+        } catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "Error adding batched files to database", ex);
+            return -1;
+        }
+        
+        List<FileInfo> files = new ArrayList<>(batchedFiles);
+        batchedFiles.clear();
+        try {
+            addFilesToDb(files);
+        } catch (TskCoreException | SQLException ex) {
+            if (files.size() == 1) {
+                logger.log(Level.SEVERE, "Error adding batched files to database", ex);
+                return -1;
+            }
+            
+            // One bad row fails the whole JDBC batch, so add the files one at
+            // a time to lose only the bad ones
+            logger.log(Level.SEVERE, "Error adding batched files to database, adding the files individually", ex);
+            long retVal = 0;
+            for (FileInfo fileInfo : files) {
+                try {
+                    addFilesToDb(Collections.singletonList(fileInfo));
+                } catch (TskCoreException | SQLException fileEx) {
+                    logger.log(Level.SEVERE, "Error adding file to the database - parent object ID: " + fileInfo.parentObjId
+                        + ", file system object ID: " + fileInfo.fsObjId + ", name: " + fileInfo.name, fileEx);
+                    retVal = -1;
+                }
+            }
+            return retVal;
+        }
+        return 0;
+    }
+    
+    /**
+     * Add files to the database in one transaction. If the transaction fails,
+     * the directories it added to the parent caches are removed from them,
+     * since their object IDs are rolled back.
+     * 
+     * @param files The files to add.
+     * 
+     * @throws TskCoreException
+     * @throws SQLException 
+     */
+    private void addFilesToDb(List<FileInfo> files) throws TskCoreException, SQLException {
+        assert Thread.holdsLock(this);
+        List<Long> newObjIds = new ArrayList<>();
+        List<Long> cachedRootDirFsObjIds = new ArrayList<>();
+        List<ParentCacheKey> cachedParentKeys = new ArrayList<>();
+        try {
             beginTransaction();
-            FileInfo fileInfo;
-            while ((fileInfo = batchedFiles.poll()) != null) {
+            SleuthkitCase.CaseDbConnection connection = trans.getConnection();
+            
+            // Reserve the object IDs for the whole batch so that the tsk_objects,
+            // tsk_files and timeline rows can all be written with JDBC batches.
+            long[] reservedObjIds = caseDb.reserveRowIds("tsk_objects", "obj_id", files.size(), connection);
+            int nextReservedObjId = 0;
+            List<Long> objIds = new ArrayList<>();
+            List<Long> parentObjIds = new ArrayList<>();
+            List<AbstractFile> timelineFiles = new ArrayList<>();
+            PreparedStatement fileInsertStatement = connection.getPreparedStatement(FILE_INSERT_SQL, Statement.NO_GENERATED_KEYS);
+            fileInsertStatement.clearBatch();
+            
+            for (FileInfo fileInfo : files) {
                 long computedParentObjId = fileInfo.parentObjId;
                 try {
                     // If we weren't given the parent object ID, look it up
@@ -429,7 +846,8 @@ private long addBatchedFilesToDb() {
 						fileInfo.metaType = TskData.TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue();
 					}
 					
-                    long objId = addFileToDb(computedParentObjId, 
+                    long objId = reservedObjIds[nextReservedObjId++];
+                    setFileInsertParameters(fileInsertStatement, objId,
                         fileInfo.fsObjId, fileInfo.dataSourceObjId,
                         fileInfo.fsType,
                         fileInfo.attrType, fileInfo.attrId, fileInfo.name,
@@ -440,7 +858,18 @@ private long addBatchedFilesToDb() {
                         fileInfo.meta_mode, fileInfo.gid, fileInfo.uid,
                         null, TskData.FileKnown.UNKNOWN,
                         fileInfo.escaped_path, fileInfo.extension, fileInfo.ownerUid, ownerAccountObjId,
-                        false, trans);
+                        false);
+                    fileInsertStatement.addBatch();
+                    objIds.add(objId);
+                    parentObjIds.add(computedParentObjId);
+                    
+                    if (needsTimelineEvents(false, fileInfo.fsType, fileInfo.name)) {
+                        timelineFiles.add(createTimelineFile(objId, fileInfo.dataSourceObjId, fileInfo.name,
+                                fileInfo.dirType, fileInfo.metaType, fileInfo.dirFlags, fileInfo.metaFlags,
+                                fileInfo.size, fileInfo.crtime, fileInfo.ctime, fileInfo.atime, fileInfo.mtime,
+                                fileInfo.escaped_path, computedParentObjId, fileInfo.extension, fileInfo.ownerUid, ownerAccountObjId));
+                    }
+                    
                     if (fileInfo.fsObjId != fileInfo.parentObjId) {
                         // Add new file ID to the list to send to ingest unless it is the root folder
                         newObjIds.add(objId);
@@ -449,6 +878,7 @@ private long addBatchedFilesToDb() {
                     // If we're adding the root directory for the file system, cache it
                     if (fileInfo.parentObjId == fileInfo.fsObjId) {
                         fsIdToRootDir.put(fileInfo.fsObjId, objId);
+                        cachedRootDirFsObjIds.add(fileInfo.fsObjId);
                     }
 
                     // If the file is a directory, cache the object ID.
@@ -460,8 +890,9 @@ private long addBatchedFilesToDb() {
                         String dirName = fileInfo.escaped_path + fileInfo.name;
                         ParentCacheKey key = new ParentCacheKey(fileInfo.fsObjId, fileInfo.metaAddr, fileInfo.seq, dirName);
                         parentDirCache.put(key, objId);
+                        cachedParentKeys.add(key);
                     }
-                } catch (TskCoreException ex) {
+                } catch (TskCoreException | SQLException ex) {
                     if (computedParentObjId > 0) {
                         // Most likely a database error occurred
                         logger.log(Level.SEVERE, "Error adding file to the database - parent object ID: " + computedParentObjId
@@ -472,19 +903,25 @@ private long addBatchedFilesToDb() {
                     }
                 }
             }
+            
+            // Write the batch. The objects must go in first to satisfy the foreign keys.
+            caseDb.addObjects(objIds, parentObjIds, TskData.ObjectType.ABSTRACTFILE.getObjectType(), connection);
+            connection.executeBatch(fileInsertStatement);
+            caseDb.getTimelineManager().addEventsForNewFilesQuiet(timelineFiles, connection);
+            
             commitTransaction();
-            try {
-                addDataSourceCallbacks.onFilesAdded(newObjIds);
-			} catch (Exception ex) {
-                // Exception firewall to prevent unexpected return to the native code
-                logger.log(Level.SEVERE, "Unexpected error from files added callback", ex);
-            }
-        } catch (TskCoreException ex) {
-            logger.log(Level.SEVERE, "Error adding batched files to database", ex);
+        } catch (TskCoreException | SQLException ex) {
             revertTransaction();
-            return -1;
+            cachedRootDirFsObjIds.forEach(fsIdToRootDir::remove);
+            cachedParentKeys.forEach(parentDirCache::remove);
+            throw ex;
+        }
+        try {
+            addDataSourceCallbacks.onFilesAdded(newObjIds);
+        } catch (Exception ex) {
+            // Exception firewall to prevent unexpected return to the native code
+            logger.log(Level.SEVERE, "Unexpected error from files added callback", ex);
         }
-        return 0;
     }
     
     /**
@@ -528,7 +965,7 @@ private long getParentObjId(FileInfo fileInfo) throws TskCoreException {
      * 
      * @return The object ID of the new file or -1 if an error occurred
      */
-    long addLayoutFile(long parentObjId, 
+    synchronized long addLayoutFile(long parentObjId, 
         long fsObjId, long dataSourceObjId,
         int fileType,
         String name, long size) {
@@ -581,10 +1018,10 @@ long addLayoutFile(long parentObjId,
      * 
      * @return 0 if successful, -1 if not
      */
-    long addLayoutFileRange(long objId, long byteStart, long byteLen, long seq) {
+    synchronized long addLayoutFileRange(long objId, long byteStart, long byteLen, long seq) {
         batchedLayoutRanges.add(new LayoutRangeInfo(objId, byteStart, byteLen, seq));
         
-        if (batchedLayoutRanges.size() > BATCH_FILE_THRESHOLD) {
+        if (batchedLayoutRanges.size() > batchFileThreshold) {
             return addBatchedLayoutRangesToDb();
         }
         return 0;
@@ -595,21 +1032,25 @@ long addLayoutFileRange(long objId, long byteStart, long byteLen, long seq) {
      * 
      * @return 0 if successful, -1 if not
      */
-    private long addBatchedLayoutRangesToDb() {
+    private synchronized long addBatchedLayoutRangesToDb() {
         try {
             beginTransaction();
+            SleuthkitCase.CaseDbConnection connection = trans.getConnection();
+            PreparedStatement preparedStatement = connection.getPreparedStatement(LAYOUT_RANGE_INSERT_SQL, Statement.NO_GENERATED_KEYS);
+            preparedStatement.clearBatch();
     		LayoutRangeInfo range;
             while ((range = batchedLayoutRanges.poll()) != null) {
-                try {
-                    addLayoutFileRangeToDb(range.objId, range.byteStart, range.byteLen, range.seq, trans);
-                } catch (TskCoreException ex) {
-                    logger.log(Level.SEVERE, "Error adding layout file range to the database - layout file ID: " + range.objId 
-                        + ", byte start: " + range.byteStart + ", length: " + range.byteLen + ", seq: " + range.seq, ex);
-                }
+                preparedStatement.clearParameters();
+                preparedStatement.setLong(1, range.objId);
+                preparedStatement.setLong(2, range.byteStart);
+                preparedStatement.setLong(3, range.byteLen);
+                preparedStatement.setLong(4, range.seq);
+                preparedStatement.addBatch();
             }
+            connection.executeBatch(preparedStatement);
             commitTransaction();
             return 0;
-        } catch (TskCoreException ex) {
+        } catch (TskCoreException | SQLException ex) {
             logger.log(Level.SEVERE, "Error adding batched files to database", ex);
             revertTransaction();
             return -1;
@@ -621,7 +1062,7 @@ private long addBatchedLayoutRangesToDb() {
      * Note that this must wait until we know all the ranges for each
      * file have been added to the database. 
      */
-    void processLayoutFiles() {
+    synchronized void processLayoutFiles() {
         addDataSourceCallbacks.onFilesAdded(layoutFileIds);
         layoutFileIds.clear();
     }
@@ -636,20 +1077,24 @@ void processLayoutFiles() {
      * @return The object ID of the new virtual directory or -1 if an error occurred
      */
     long addUnallocFsBlockFilesParent(long fsObjId, String name) {
-        try {
-            if (! fsIdToRootDir.containsKey(fsObjId)) {
-                logger.log(Level.SEVERE, "Error - root directory for file system ID {0} not found", fsObjId);
+        // The root directory may still be waiting for the pipeline writer
+        flushPipeline();
+        synchronized (this) {
+            try {
+                if (! fsIdToRootDir.containsKey(fsObjId)) {
+                    logger.log(Level.SEVERE, "Error - root directory for file system ID {0} not found", fsObjId);
+                    return -1;
+                }
+                beginTransaction();
+                VirtualDirectory dir = caseDb.addVirtualDirectory(fsIdToRootDir.get(fsObjId), name, trans);
+                commitTransaction();
+                addDataSourceCallbacks.onFilesAdded(Arrays.asList(dir.getId()));
+                return dir.getId();
+            } catch (TskCoreException ex) {
+                logger.log(Level.SEVERE, "Error creating virtual directory " + name + " under file system ID " + fsObjId, ex);
+                revertTransaction();
                 return -1;
             }
-            beginTransaction();
-            VirtualDirectory dir = caseDb.addVirtualDirectory(fsIdToRootDir.get(fsObjId), name, trans);
-            commitTransaction();
-            addDataSourceCallbacks.onFilesAdded(Arrays.asList(dir.getId()));
-            return dir.getId();
-        } catch (TskCoreException ex) {
-            logger.log(Level.SEVERE, "Error creating virtual directory " + name + " under file system ID " + fsObjId, ex);
-            revertTransaction();
-            return -1;
         }
     }
     
@@ -867,111 +1312,28 @@ private long addFileToDb(long parentObjId,
 			// INSERT INTO tsk_objects (par_obj_id, type) VALUES (?, ?)
 			long objectId = caseDb.addObject(parentObjId, TskData.ObjectType.ABSTRACTFILE.getObjectType(), connection);
 				
-			String fileInsert = "INSERT INTO tsk_files (fs_obj_id, obj_id, data_source_obj_id, type, attr_type, attr_id, name, meta_addr, meta_seq, dir_type, meta_type, dir_flags, meta_flags, size, crtime, ctime, atime, mtime, mode, gid, uid, md5, known, parent_path, extension, has_layout, owner_uid, os_account_obj_id)"
-				+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"; // NON-NLS
-			PreparedStatement preparedStatement = connection.getPreparedStatement(fileInsert, Statement.NO_GENERATED_KEYS);			
-			preparedStatement.clearParameters();
-			
-			if (fsObjId != null) {
-				preparedStatement.setLong(1, fsObjId);			    // fs_obj_id
-			} else {
-				preparedStatement.setNull(1, java.sql.Types.BIGINT);
-			}
-			preparedStatement.setLong(2, objectId);					// obj_id 
-			preparedStatement.setLong(3, dataSourceObjId);			// data_source_obj_id 
-			preparedStatement.setShort(4, (short) fsType);	        // type
-			if (attrType != null) {
-				preparedStatement.setShort(5, attrType.shortValue());  // attr_type
-			} else {
-				preparedStatement.setNull(5, java.sql.Types.SMALLINT);
-			}
-			if (attrId != null) {
-				preparedStatement.setInt(6, attrId);				// attr_id
-			} else {
-				preparedStatement.setNull(6, java.sql.Types.INTEGER);
-			}
-			preparedStatement.setString(7, name);					// name
-			if (metaAddr != null) {
-				preparedStatement.setLong(8, metaAddr);				// meta_addr
-			} else {
-				preparedStatement.setNull(8, java.sql.Types.BIGINT);
-			}
-			if (metaSeq != null) {
-				preparedStatement.setInt(9, metaSeq.intValue());	// meta_seq
-			} else {
-				preparedStatement.setNull(9, java.sql.Types.INTEGER);
-			}
-			preparedStatement.setShort(10, (short) dirType);			// dir_type
-			preparedStatement.setShort(11, (short) metaType);		// meta_type
-			preparedStatement.setShort(12, (short) dirFlags);		// dir_flags
-			preparedStatement.setShort(13, (short) metaFlags);		// meta_flags
-			preparedStatement.setLong(14, size < 0 ? 0 : size);     // size
-			if (crtime != null) {
-				preparedStatement.setLong(15, crtime);              // crtime
-			} else {
-				preparedStatement.setNull(15, java.sql.Types.BIGINT);
-			}
-			if (ctime != null) {
-				preparedStatement.setLong(16, ctime);               // ctime
-			} else {
-				preparedStatement.setNull(16, java.sql.Types.BIGINT);
-			}
-			if (atime != null) {
-				preparedStatement.setLong(17, atime);               // atime
-			} else {
-				preparedStatement.setNull(17, java.sql.Types.BIGINT);
-			}
-			if (mtime != null) {
-				preparedStatement.setLong(18, mtime);               // mtime
-			} else {
-				preparedStatement.setNull(18, java.sql.Types.BIGINT);
-			}
-			if (meta_mode != null) {
-				preparedStatement.setLong(19, meta_mode);           // mode
-			} else {
-				preparedStatement.setNull(19, java.sql.Types.BIGINT);
-			}
-			if (gid != null) {
-				preparedStatement.setLong(20, gid);                 // gid
-			} else {
-				preparedStatement.setNull(20, java.sql.Types.BIGINT);
-			}
-			if (uid != null) {
-				preparedStatement.setLong(21, uid);                 // uid
-			} else {
-				preparedStatement.setNull(21, java.sql.Types.BIGINT);
-			}
-			preparedStatement.setString(22, md5);                   // md5
-			preparedStatement.setInt(23, known.getFileKnownValue());// known
-			preparedStatement.setString(24, escaped_path);          // parent_path
-			preparedStatement.setString(25, extension);             // extension
-			if (hasLayout) {
-				preparedStatement.setInt(26, 1);                    // has_layout
-			} else {
-				preparedStatement.setNull(26, java.sql.Types.INTEGER);
-			}
-			
-			preparedStatement.setString(27, ownerUid); // ownerUid
-			
-			if (ownerAcctObjId != OsAccount.NO_ACCOUNT) {
-				preparedStatement.setLong(28, ownerAcctObjId); //
-			} else {
-				preparedStatement.setNull(28, java.sql.Types.BIGINT);
-			}
-			
+			PreparedStatement preparedStatement = connection.getPreparedStatement(FILE_INSERT_SQL, Statement.NO_GENERATED_KEYS);			
+			setFileInsertParameters(preparedStatement, objectId,
+					fsObjId, dataSourceObjId,
+					fsType,
+					attrType, attrId, name,
+					metaAddr, metaSeq,
+					dirType, metaType, dirFlags, metaFlags,
+					size,
+					crtime, ctime, atime, mtime,
+					meta_mode, gid, uid,
+					md5, known,
+					escaped_path, extension, ownerUid, ownerAcctObjId,
+					hasLayout);
 			connection.executeUpdate(preparedStatement);
 
 			// If this is not a slack file create the timeline events
-			if (!hasLayout
-					&& TskData.TSK_DB_FILES_TYPE_ENUM.SLACK.getFileType() != fsType
-					&& (!name.equals(".")) && (!name.equals(".."))) {
+			if (needsTimelineEvents(hasLayout, fsType, name)) {
 				TimelineManager timelineManager = caseDb.getTimelineManager();
-				DerivedFile derivedFile = new DerivedFile(caseDb, objectId, dataSourceObjId, name,
-						TskData.TSK_FS_NAME_TYPE_ENUM.valueOf((short) dirType),
-						TskData.TSK_FS_META_TYPE_ENUM.valueOf((short) metaType),
-						TskData.TSK_FS_NAME_FLAG_ENUM.valueOf(dirFlags),
-						(short) metaFlags,
-						size, ctime, crtime, atime, mtime, null, null, null, escaped_path, null, parentObjId, null, null, extension, ownerUid, ownerAcctObjId);
+				DerivedFile derivedFile = createTimelineFile(objectId, dataSourceObjId, name,
+						dirType, metaType, dirFlags, metaFlags,
+						size, crtime, ctime, atime, mtime,
+						escaped_path, parentObjId, extension, ownerUid, ownerAcctObjId);
 
 				timelineManager.addEventsForNewFileQuiet(derivedFile, connection);
 			}
@@ -980,6 +1342,152 @@ private long addFileToDb(long parentObjId,
 		} catch (SQLException ex) {
 			throw new TskCoreException("Failed to add file system file", ex);
 		}
+	}
+	
+	/**
+	 * Set the parameters of the tsk_files insert statement for a file.
+	 * The caller either executes the statement or adds it to a batch.
+	 *
+	 * @param preparedStatement The statement for FILE_INSERT_SQL.
+	 * @param objectId          The object ID of the file.
+	 * 
+	 * See addFileToDb() for the remaining parameters.
+	 *
+	 * @throws SQLException
+	 */
+	private void setFileInsertParameters(PreparedStatement preparedStatement, long objectId,
+			Long fsObjId, long dataSourceObjId,
+			int fsType,
+			Integer attrType, Integer attrId, String name,
+			Long metaAddr, Long metaSeq,
+			int dirType, int metaType, int dirFlags, int metaFlags,
+			long size,
+			Long crtime, Long ctime, Long atime, Long mtime,
+			Integer meta_mode, Integer gid, Integer uid,
+			String md5, TskData.FileKnown known,
+			String escaped_path, String extension, String ownerUid, Long ownerAcctObjId,
+			boolean hasLayout) throws SQLException {
+		preparedStatement.clearParameters();
+		if (fsObjId != null) {
+			preparedStatement.setLong(1, fsObjId);			    // fs_obj_id
+		} else {
+			preparedStatement.setNull(1, java.sql.Types.BIGINT);
+		}
+		preparedStatement.setLong(2, objectId);					// obj_id 
+		preparedStatement.setLong(3, dataSourceObjId);			// data_source_obj_id 
+		preparedStatement.setShort(4, (short) fsType);	        // type
+		if (attrType != null) {
+			preparedStatement.setShort(5, attrType.shortValue());  // attr_type
+		} else {
+			preparedStatement.setNull(5, java.sql.Types.SMALLINT);
+		}
+		if (attrId != null) {
+			preparedStatement.setInt(6, attrId);				// attr_id
+		} else {
+			preparedStatement.setNull(6, java.sql.Types.INTEGER);
+		}
+		preparedStatement.setString(7, name);					// name
+		if (metaAddr != null) {
+			preparedStatement.setLong(8, metaAddr);				// meta_addr
+		} else {
+			preparedStatement.setNull(8, java.sql.Types.BIGINT);
+		}
+		if (metaSeq != null) {
+			preparedStatement.setInt(9, metaSeq.intValue());	// meta_seq
+		} else {
+			preparedStatement.setNull(9, java.sql.Types.INTEGER);
+		}
+		preparedStatement.setShort(10, (short) dirType);			// dir_type
+		preparedStatement.setShort(11, (short) metaType);		// meta_type
+		preparedStatement.setShort(12, (short) dirFlags);		// dir_flags
+		preparedStatement.setShort(13, (short) metaFlags);		// meta_flags
+		preparedStatement.setLong(14, size < 0 ? 0 : size);     // size
+		if (crtime != null) {
+			preparedStatement.setLong(15, crtime);              // crtime
+		} else {
+			preparedStatement.setNull(15, java.sql.Types.BIGINT);
+		}
+		if (ctime != null) {
+			preparedStatement.setLong(16, ctime);               // ctime
+		} else {
+			preparedStatement.setNull(16, java.sql.Types.BIGINT);
+		}
+		if (atime != null) {
+			preparedStatement.setLong(17, atime);               // atime
+		} else {
+			preparedStatement.setNull(17, java.sql.Types.BIGINT);
+		}
+		if (mtime != null) {
+			preparedStatement.setLong(18, mtime);               // mtime
+		} else {
+			preparedStatement.setNull(18, java.sql.Types.BIGINT);
+		}
+		if (meta_mode != null) {
+			preparedStatement.setLong(19, meta_mode);           // mode
+		} else {
+			preparedStatement.setNull(19, java.sql.Types.BIGINT);
+		}
+		if (gid != null) {
+			preparedStatement.setLong(20, gid);                 // gid
+		} else {
+			preparedStatement.setNull(20, java.sql.Types.BIGINT);
+		}
+		if (uid != null) {
+			preparedStatement.setLong(21, uid);                 // uid
+		} else {
+			preparedStatement.setNull(21, java.sql.Types.BIGINT);
+		}
+		preparedStatement.setString(22, md5);                   // md5
+		preparedStatement.setInt(23, known.getFileKnownValue());// known
+		preparedStatement.setString(24, escaped_path);          // parent_path
+		preparedStatement.setString(25, extension);             // extension
+		if (hasLayout) {
+			preparedStatement.setInt(26, 1);                    // has_layout
+		} else {
+			preparedStatement.setNull(26, java.sql.Types.INTEGER);
+		}
+		
+		preparedStatement.setString(27, ownerUid); // ownerUid
+		
+		if (ownerAcctObjId != OsAccount.NO_ACCOUNT) {
+			preparedStatement.setLong(28, ownerAcctObjId); //
+		} else {
+			preparedStatement.setNull(28, java.sql.Types.BIGINT);
+		}
+	}
+	
+	/**
+	 * Check whether timeline events should be created for a new file. 
+	 * Layout files, slack files and the "." and ".." entries are skipped.
+	 *
+	 * @param hasLayout True if this is a layout file, false otherwise.
+	 * @param fsType    The file type.
+	 * @param name      The name of the file.
+	 *
+	 * @return True if timeline events should be created.
+	 */
+	private static boolean needsTimelineEvents(boolean hasLayout, int fsType, String name) {
+		return !hasLayout
+				&& TskData.TSK_DB_FILES_TYPE_ENUM.SLACK.getFileType() != fsType
+				&& (!name.equals(".")) && (!name.equals(".."));
+	}
+	
+	/**
+	 * Create a lightweight file object holding the data the timeline manager
+	 * needs to create the events for a new file.
+	 * 
+	 * @return The file object.
+	 */
+	private DerivedFile createTimelineFile(long objectId, long dataSourceObjId, String name,
+			int dirType, int metaType, int dirFlags, int metaFlags,
+			long size, Long crtime, Long ctime, Long atime, Long mtime,
+			String escaped_path, long parentObjId, String extension, String ownerUid, Long ownerAcctObjId) {
+		return new DerivedFile(caseDb, objectId, dataSourceObjId, name,
+				TskData.TSK_FS_NAME_TYPE_ENUM.valueOf((short) dirType),
+				TskData.TSK_FS_META_TYPE_ENUM.valueOf((short) metaType),
+				TskData.TSK_FS_NAME_FLAG_ENUM.valueOf(dirFlags),
+				(short) metaFlags,
+				size, ctime, crtime, atime, mtime, null, null, null, escaped_path, null, parentObjId, null, null, extension, ownerUid, ownerAcctObjId);
 	}	
 	
 	/**
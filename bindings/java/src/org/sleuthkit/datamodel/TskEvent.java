@@ -493,4 +493,31 @@ public List<Long> getHostIds() {
 
 	}
 
+	/**
+	 * An event published when timeline events are added for one or more
+	 * posted artifacts.
+	 */
+	public final static class TimelineEventsAddedTskEvent extends TskObjectsEvent<TimelineEvent> {
+
+		/**
+		 * Constructs an event published when timeline events are added for
+		 * one or more posted artifacts.
+		 *
+		 * @param events The timeline events that were added.
+		 */
+		TimelineEventsAddedTskEvent(List<TimelineEvent> events) {
+			super(events);
+		}
+
+		/**
+		 * Gets the timeline events that were added.
+		 *
+		 * @return The timeline events.
+		 */
+		public List<TimelineEvent> getAddedEvents() {
+			return getDataModelObjects();
+		}
+
+	}
+
 }
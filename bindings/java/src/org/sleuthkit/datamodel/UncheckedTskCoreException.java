@@ -0,0 +1,47 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+/**
+ * Wraps a TskCoreException where a checked exception can not be thrown, such
+ * as while consuming a Stream returned by the case database.
+ */
+public class UncheckedTskCoreException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Create exception wrapping a TskCoreException
+	 *
+	 * @param cause the TskCoreException
+	 */
+	public UncheckedTskCoreException(TskCoreException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	/**
+	 * Get the wrapped TskCoreException
+	 *
+	 * @return the TskCoreException
+	 */
+	@Override
+	public synchronized TskCoreException getCause() {
+		return (TskCoreException) super.getCause();
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ResourceBundle;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,6 +65,22 @@ protected Volume(SleuthkitCase db, long obj_id, long addr, long startSector, lon
 
 	@Override
 	public int read(byte[] buf, long offset, long len) throws TskCoreException {
+		return SleuthkitJNI.readVsPart(getVolumeHandle(), buf, offset, len);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return SleuthkitJNI.readVsPart(getVolumeHandle(), dst, offset);
+	}
+
+	/**
+	 * Lazily opens the volume in the SleuthKit.
+	 *
+	 * @return The JNI volume handle.
+	 *
+	 * @throws TskCoreException if the volume cannot be opened.
+	 */
+	private long getVolumeHandle() throws TskCoreException {
 		synchronized (this) {
 			Content myParent = getParent();
 			if (!(myParent instanceof VolumeSystem)) {
@@ -76,13 +93,12 @@ public int read(byte[] buf, long offset, long len) throws TskCoreException {
 				throw new TskCoreException("Reading APFS pool volumes not yet supported");
 			}
 			
-			// read from the volume
+			// open the volume
 			if (volumeHandle == 0) {
 				volumeHandle = SleuthkitJNI.openVsPart(parentVs.getVolumeSystemHandle(), addr);
 			}
-
+			return volumeHandle;
 		}
-		return SleuthkitJNI.readVsPart(volumeHandle, buf, offset, len);
 	}
 
 	@Override
@@ -117,9 +133,9 @@ public String getUniquePath() throws TskCoreException {
 				tempUniquePath = "/vol_" + name; //NON-NLS
 			}
 
-			Content myParent = getParent();
-			if (myParent != null) {
-				tempUniquePath = myParent.getUniquePath() + tempUniquePath;
+			String parentPath = getParentUniquePath();
+			if (parentPath != null) {
+				tempUniquePath = parentPath + tempUniquePath;
 			}
 			
 			// Don't update uniquePath until it is complete.
@@ -0,0 +1,223 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbTransaction;
+
+/**
+ * Tests the aggregate scores written when score updates are batched until
+ * the transaction is committed.
+ */
+public class AggregateScoreBatchingTest {
+
+	private static final Logger LOGGER = Logger.getLogger(AggregateScoreBatchingTest.class.getName());
+
+	private final static String TEST_DB = "AggregateScoreBatchingTest.db";
+
+	private static final BlackboardArtifact.Type RESULT_TYPE = new BlackboardArtifact.Type(BlackboardArtifact.ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT);
+
+	private static SleuthkitCase caseDB;
+
+	private static Image image;
+
+	private static FileSystem fs;
+
+	private static int fileCount = 0;
+
+	@BeforeClass
+	public static void setUpClass() {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		try {
+			String dbPath = Paths.get(tempDirPath, TEST_DB).toString();
+
+			// Delete the DB file, in case
+			java.io.File dbFile = new java.io.File(dbPath);
+			dbFile.delete();
+			if (dbFile.getParentFile() != null) {
+				dbFile.getParentFile().mkdirs();
+			}
+
+			caseDB = SleuthkitCase.newCase(dbPath);
+
+			CaseDbTransaction trans = caseDB.beginTransaction();
+			image = caseDB.addImage(TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_DETECT, 512, 1024, "", Collections.emptyList(), "America/NewYork", null, null, null, "first", trans);
+			fs = caseDB.addFileSystem(image.getId(), 0, TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_RAW, 0, 0, 0, 0, 0, "", trans);
+			trans.commit();
+		} catch (TskCoreException ex) {
+			LOGGER.log(Level.SEVERE, "Failed to create new case", ex);
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (caseDB != null) {
+			caseDB.close();
+		}
+	}
+
+	@Before
+	public void setUp() throws TskCoreException {
+		caseDB.getScoringManager().setBatchedScoreUpdatesEnabled(true);
+	}
+
+	@After
+	public void tearDown() throws TskCoreException {
+		caseDB.getScoringManager().setBatchedScoreUpdatesEnabled(false);
+	}
+
+	@Test
+	public void testCommitRereadsStoredScore() throws TskCoreException, Blackboard.BlackboardException {
+		AbstractFile file = addFile();
+
+		CaseDbTransaction trans = caseDB.beginTransaction();
+		AnalysisResultAdded added = addResult(file, Score.SCORE_NOTABLE, trans);
+		assertScore(Score.SCORE_NOTABLE, added.getAggregateScore());
+
+		// Another client stores a lower score before the commit. The batched
+		// score is compared with it again when it is written.
+		setStoredScore(file, Score.SCORE_LIKELY_NOTABLE, trans);
+		trans.commit();
+
+		assertScore(Score.SCORE_NOTABLE, getStoredScore(file));
+		assertScore(Score.SCORE_NOTABLE, caseDB.getScoringManager().getAggregateScore(file.getId()));
+	}
+
+	@Test
+	public void testHigherStoredScoreIsKept() throws TskCoreException, Blackboard.BlackboardException {
+		AbstractFile file = addFile();
+
+		CaseDbTransaction trans = caseDB.beginTransaction();
+		AnalysisResultAdded added = addResult(file, Score.SCORE_LIKELY_NOTABLE, trans);
+		assertScore(Score.SCORE_LIKELY_NOTABLE, added.getAggregateScore());
+
+		// Another client stores a higher score before the commit, so the
+		// batched score is dropped rather than lowering it.
+		setStoredScore(file, Score.SCORE_NOTABLE, trans);
+		trans.commit();
+
+		assertScore(Score.SCORE_NOTABLE, getStoredScore(file));
+		assertScore(Score.SCORE_NOTABLE, caseDB.getScoringManager().getAggregateScore(file.getId()));
+	}
+
+	@Test
+	public void testDeletionReplacesBatchedScore() throws TskCoreException, Blackboard.BlackboardException {
+		AbstractFile file = addFile();
+
+		CaseDbTransaction trans = caseDB.beginTransaction();
+		addResult(file, Score.SCORE_LIKELY_NOTABLE, trans);
+		trans.commit();
+		assertScore(Score.SCORE_LIKELY_NOTABLE, getStoredScore(file));
+
+		// The recalculation after the deletion replaces the batched score of
+		// the deleted result
+		trans = caseDB.beginTransaction();
+		AnalysisResultAdded added = addResult(file, Score.SCORE_NOTABLE, trans);
+		assertScore(Score.SCORE_NOTABLE, added.getAggregateScore());
+		Score newScore = caseDB.getBlackboard().deleteAnalysisResult(added.getAnalysisResult().getId(), trans);
+		assertScore(Score.SCORE_LIKELY_NOTABLE, newScore);
+		trans.commit();
+
+		assertScore(Score.SCORE_LIKELY_NOTABLE, getStoredScore(file));
+		assertScore(Score.SCORE_LIKELY_NOTABLE, caseDB.getScoringManager().getAggregateScore(file.getId()));
+	}
+
+	@Test
+	public void testRollbackLeavesCachedScore() throws TskCoreException, Blackboard.BlackboardException {
+		AbstractFile file = addFile();
+		assertScore(Score.SCORE_UNKNOWN, caseDB.getScoringManager().getAggregateScore(file.getId()));
+
+		CaseDbTransaction trans = caseDB.beginTransaction();
+		assertScore(Score.SCORE_NOTABLE, addResult(file, Score.SCORE_NOTABLE, trans).getAggregateScore());
+		trans.rollback();
+
+		assertScore(Score.SCORE_UNKNOWN, getStoredScore(file));
+		assertScore(Score.SCORE_UNKNOWN, caseDB.getScoringManager().getAggregateScore(file.getId()));
+
+		// A later commit still updates the cache
+		trans = caseDB.beginTransaction();
+		addResult(file, Score.SCORE_LIKELY_NOTABLE, trans);
+		trans.commit();
+		assertScore(Score.SCORE_LIKELY_NOTABLE, caseDB.getScoringManager().getAggregateScore(file.getId()));
+	}
+
+	private static AbstractFile addFile() throws TskCoreException {
+		CaseDbTransaction trans = caseDB.beginTransaction();
+		AbstractFile file = caseDB.addFileSystemFile(image.getId(), fs.getId(), "file" + (fileCount++) + ".txt", 0, 0,
+				TskData.TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT, 0, TskData.TSK_FS_NAME_FLAG_ENUM.ALLOC,
+				(short) 0, 200, 0, 0, 0, 0, null, null, null, true, fs, null, null, Collections.emptyList(), trans);
+		trans.commit();
+		return file;
+	}
+
+	private static AnalysisResultAdded addResult(AbstractFile file, Score score, CaseDbTransaction trans) throws TskCoreException, Blackboard.BlackboardException {
+		return caseDB.getBlackboard().newAnalysisResult(RESULT_TYPE, file.getId(), file.getDataSourceObjectId(),
+				score, "", "", "", Collections.emptyList(), trans);
+	}
+
+	/**
+	 * Writes an aggregate score the way another client would, without
+	 * updating the cache.
+	 */
+	private static void setStoredScore(AbstractFile file, Score score, CaseDbTransaction trans) throws TskCoreException {
+		String sql = "INSERT INTO tsk_aggregate_score (obj_id, data_source_obj_id, significance, priority)"
+				+ " VALUES (" + file.getId() + ", " + file.getDataSourceObjectId() + ", " + score.getSignificance().getId() + ", " + score.getPriority().getId() + ")"
+				+ " ON CONFLICT (obj_id) DO UPDATE SET significance = " + score.getSignificance().getId() + ", priority = " + score.getPriority().getId();
+		try (Statement statement = trans.getConnection().createStatement()) {
+			trans.getConnection().executeUpdate(statement, sql);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error setting aggregate score", ex);
+		}
+	}
+
+	/**
+	 * Reads the aggregate score from the database rather than the cache.
+	 */
+	private static Score getStoredScore(AbstractFile file) throws TskCoreException {
+		String query = "SELECT significance, priority FROM tsk_aggregate_score WHERE obj_id = " + file.getId();
+		try (CaseDbConnection connection = caseDB.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = connection.executeQuery(statement, query)) {
+			if (resultSet.next()) {
+				return new Score(Score.Significance.fromID(resultSet.getInt("significance")), Score.Priority.fromID(resultSet.getInt("priority")));
+			}
+			return Score.SCORE_UNKNOWN;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting aggregate score", ex);
+		}
+	}
+
+	private static void assertScore(Score expected, Score actual) {
+		assertEquals(expected.getSignificance().getId(), actual.getSignificance().getId());
+		assertEquals(expected.getPriority().getId(), actual.getPriority().getId());
+	}
+}
@@ -25,6 +25,7 @@
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.assertEquals;
@@ -319,6 +320,11 @@ public void artifactTests() throws TskCoreException, Blackboard.BlackboardExcept
 		analysisResultResults = caseDB.getBlackboard().getAnalysisResultsWhere("obj_id=" + defTextFile.getId());
 		assertEquals(analysisResultCount, analysisResultResults.size());
 
+		// TEST: streamAnalysisResultsWhere("obj_id = <file id>")
+		try (Stream<AnalysisResult> resultStream = caseDB.getBlackboard().streamAnalysisResultsWhere("obj_id=" + defTextFile.getId(), 2)) {
+			assertEquals(analysisResultCount, resultStream.count());
+		}
+
 		// Test: getArtifacts(artifact type, data source id)
 		List<BlackboardArtifact> artifactResults = caseDB.getBlackboard().getArtifacts(analysisArtType.getTypeID(), fs.getDataSource().getId());
 		assertEquals(analysisResultCount, artifactResults.size());
@@ -372,6 +378,13 @@ public void artifactTests() throws TskCoreException, Blackboard.BlackboardExcept
 		// TEST: getDataArtifacts(artifact type id, data source id)
 		dataArtifactResults = caseDB.getBlackboard().getDataArtifacts(dataArtType.getTypeID(), fs.getDataSource().getId());
 		assertEquals(dataArtifactCount, dataArtifactResults.size());
+
+		// TEST: getDataArtifacts(artifact type id, prefetch attributes)
+		dataArtifactResults = caseDB.getBlackboard().getDataArtifacts(dataArtType.getTypeID(), true);
+		assertEquals(dataArtifactCount, dataArtifactResults.size());
+		for (DataArtifact dataArtifact : dataArtifactResults) {
+			assertEquals(caseDB.getBlackboardAttributes(dataArtifact).size(), dataArtifact.getAttributes().size());
+		}
 		
 		// TEST: getBlackboardArtifacts(artifact type id, data source id)
 		artifactResults = caseDB.getBlackboardArtifacts(dataArtType.getTypeID());
@@ -388,6 +401,16 @@ public void artifactTests() throws TskCoreException, Blackboard.BlackboardExcept
         // TEST: getMatchingArtifacts(where clause)
         artifactResults = caseDB.getMatchingArtifacts("WHERE artifact_type_id=" + dataArtType.getTypeID());
 		assertEquals(dataArtifactCount, artifactResults.size());
+
+		// TEST: streamMatchingArtifacts(where clause)
+		try (Stream<BlackboardArtifact> artifactStream = caseDB.streamMatchingArtifacts("WHERE artifact_type_id=" + dataArtType.getTypeID())) {
+			assertEquals(dataArtifactCount, artifactStream.count());
+		}
+
+		// TEST: streamAllFilesWhere(where clause)
+		try (Stream<AbstractFile> fileStream = caseDB.streamAllFilesWhere("fs_obj_id=" + fs.getId(), 1)) {
+			assertEquals(caseDB.findAllFilesWhere("fs_obj_id=" + fs.getId()).size(), fileStream.count());
+		}
 		
         // TEST: getBlackboardArtifact(artifactId) 
 		art = caseDB.getBlackboardArtifact(dataArt1.getArtifactID());
@@ -0,0 +1,100 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Tests reading into byte buffers with byte array reads.
+ */
+public class ByteBufferReadsTest {
+
+	private static final byte[] CONTENT = new byte[1000];
+
+	static {
+		for (int i = 0; i < CONTENT.length; i++) {
+			CONTENT[i] = (byte) (i * 7);
+		}
+	}
+
+	private static int readContent(byte[] buf, long offset, long len) {
+		int count = (int) Math.min(len, CONTENT.length - offset);
+		System.arraycopy(CONTENT, (int) offset, buf, 0, count);
+		return count;
+	}
+
+	@Test
+	public void testBackingArrayIsUsed() throws TskCoreException {
+		byte[] array = new byte[100];
+		ByteBuffer dst = ByteBuffer.wrap(array);
+		byte[][] readArray = new byte[1][];
+		int bytesRead = ByteBufferReads.read(dst, 10, (buf, offset, len) -> {
+			readArray[0] = buf;
+			return readContent(buf, offset, len);
+		});
+		assertEquals(100, bytesRead);
+		assertEquals(100, dst.position());
+		assertSame(array, readArray[0]);
+		assertArrayEquals(Arrays.copyOfRange(CONTENT, 10, 110), array);
+	}
+
+	@Test
+	public void testReadAtPositionAndIntoDirectBuffer() throws TskCoreException {
+		byte[] array = new byte[100];
+		ByteBuffer dst = ByteBuffer.wrap(array);
+		dst.position(40);
+		assertEquals(60, ByteBufferReads.read(dst, 0, ByteBufferReadsTest::readContent));
+		assertEquals(100, dst.position());
+		assertArrayEquals(new byte[40], Arrays.copyOfRange(array, 0, 40));
+		assertArrayEquals(Arrays.copyOfRange(CONTENT, 0, 60), Arrays.copyOfRange(array, 40, 100));
+
+		// Short read at the end of the content
+		ByteBuffer direct = ByteBuffer.allocateDirect(100);
+		assertEquals(50, ByteBufferReads.read(direct, CONTENT.length - 50, ByteBufferReadsTest::readContent));
+		assertEquals(50, direct.position());
+		direct.flip();
+		byte[] result = new byte[50];
+		direct.get(result);
+		assertArrayEquals(Arrays.copyOfRange(CONTENT, CONTENT.length - 50, CONTENT.length), result);
+	}
+
+	@Test
+	public void testNestedRead() throws TskCoreException {
+		ByteBuffer outer = ByteBuffer.allocateDirect(20);
+		ByteBuffer inner = ByteBuffer.allocateDirect(20);
+		ByteBufferReads.read(outer, 100, (buf, offset, len) -> {
+			int count = readContent(buf, offset, len);
+			// A read on the same thread while the outer one is in progress
+			ByteBufferReads.read(inner, 500, ByteBufferReadsTest::readContent);
+			return count;
+		});
+		byte[] result = new byte[20];
+		outer.flip();
+		outer.get(result);
+		assertArrayEquals(Arrays.copyOfRange(CONTENT, 100, 120), result);
+		inner.flip();
+		inner.get(result);
+		assertArrayEquals(Arrays.copyOfRange(CONTENT, 500, 520), result);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the in memory index of account relationships.
+ */
+public class CommunicationsGraphTest {
+
+	private static final int PHONE = 1;
+	private static final int EMAIL = 2;
+	private static final int MESSAGE = 10;
+	private static final int CALL_LOG = 11;
+	private static final long HOUR = CommunicationsGraph.DATE_BUCKET_SIZE;
+
+	private static CommunicationsGraph createGraph() {
+		CommunicationsGraph graph = new CommunicationsGraph();
+		graph.addRelationship(1, PHONE, 2, PHONE, 100, MESSAGE, 10 * HOUR + 5);
+		graph.addRelationship(2, PHONE, 1, PHONE, 100, MESSAGE, 10 * HOUR + 6);
+		graph.addRelationship(1, PHONE, 3, EMAIL, 100, MESSAGE, null);
+		graph.addRelationship(2, PHONE, 3, EMAIL, 200, CALL_LOG, 20 * HOUR);
+		return graph;
+	}
+
+	private static Set<Long> setOf(Long... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+	@Test
+	public void testUnfiltered() {
+		CommunicationsGraph graph = createGraph();
+		CommunicationsGraph.RelationshipFilter filter = new CommunicationsGraph.RelationshipFilter();
+
+		Map<Long, Set<Long>> expected = new HashMap<>();
+		expected.put(1L, setOf(100L));
+		expected.put(2L, setOf(100L, 200L));
+		expected.put(3L, setOf(100L, 200L));
+		assertEquals(expected, graph.getAccountDataSources(filter));
+
+		Map<Long, Set<Long>> related = graph.getRelatedAccountDataSources(1, filter);
+		assertEquals(setOf(2L, 3L), related.keySet());
+
+		List<long[]> counts = graph.getRelationshipCounts(setOf(1L, 2L), filter);
+		assertEquals(1, counts.size());
+		assertTrue(Arrays.equals(new long[]{1, 2, 100, 2}, counts.get(0)));
+	}
+
+	@Test
+	public void testFiltered() {
+		CommunicationsGraph graph = createGraph();
+
+		CommunicationsGraph.RelationshipFilter typeFilter = new CommunicationsGraph.RelationshipFilter();
+		typeFilter.restrictRelationshipTypes(Collections.singleton(CALL_LOG));
+		assertEquals(setOf(2L, 3L), graph.getAccountDataSources(typeFilter).keySet());
+
+		CommunicationsGraph.RelationshipFilter accountTypeFilter = new CommunicationsGraph.RelationshipFilter();
+		accountTypeFilter.restrictAccountTypes(Collections.singleton(EMAIL));
+		assertEquals(setOf(3L), graph.getRelatedAccountDataSources(2, accountTypeFilter).keySet());
+
+		// Relationships without a date pass any date range
+		CommunicationsGraph.RelationshipFilter dateFilter = new CommunicationsGraph.RelationshipFilter();
+		dateFilter.restrictStartTime(11 * HOUR);
+		dateFilter.restrictEndTime(20 * HOUR);
+		assertEquals(setOf(1L, 3L), graph.getAccountDataSources(dateFilter).keySet());
+
+		CommunicationsGraph.RelationshipFilter dataSourceFilter = new CommunicationsGraph.RelationshipFilter();
+		dataSourceFilter.restrictDataSources(setOf(200L));
+		assertEquals(0, graph.getRelationshipCounts(setOf(1L, 2L), dataSourceFilter).size());
+		assertEquals(1, graph.getRelationshipCounts(setOf(2L, 3L), dataSourceFilter).size());
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the block cache used for image and file reads.
+ */
+public class ContentReadCacheTest {
+
+	private static final int CONTENT_SIZE = 10 * ContentReadCache.BLOCK_SIZE + 123;
+
+	/**
+	 * Reads from an in memory byte array and counts the calls.
+	 */
+	private static final class FakeReader implements ContentReadCache.BlockReader {
+
+		private final byte[] content;
+		private int readCount = 0;
+
+		FakeReader(byte[] content) {
+			this.content = content;
+		}
+
+		@Override
+		public int read(byte[] readBuffer, long offset, long len) throws TskCoreException {
+			readCount++;
+			if (offset >= content.length) {
+				throw new TskCoreException("Read past end of content at offset " + offset);
+			}
+			int count = (int) Math.min(Math.min(len, readBuffer.length), content.length - offset);
+			System.arraycopy(content, (int) offset, readBuffer, 0, count);
+			return count;
+		}
+	}
+
+	private static byte[] createContent() {
+		byte[] content = new byte[CONTENT_SIZE];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i * 31 + i / 7);
+		}
+		return content;
+	}
+
+	@Test
+	public void testDisabledCachePassesThrough() throws TskCoreException {
+		byte[] content = createContent();
+		FakeReader reader = new FakeReader(content);
+		ContentReadCache cache = new ContentReadCache();
+
+		byte[] buffer = new byte[100];
+		assertEquals(100, cache.read(1, buffer, 50, 100, reader));
+		assertEquals(100, cache.read(1, buffer, 50, 100, reader));
+		assertEquals(2, reader.readCount);
+		assertArrayEquals(Arrays.copyOfRange(content, 50, 150), buffer);
+	}
+
+	@Test
+	public void testSequentialReads() throws TskCoreException {
+		byte[] content = createContent();
+		FakeReader reader = new FakeReader(content);
+		ContentReadCache cache = new ContentReadCache();
+		cache.setMaxSize(64L * ContentReadCache.BLOCK_SIZE);
+
+		byte[] result = new byte[CONTENT_SIZE];
+		byte[] buffer = new byte[4096];
+		int position = 0;
+		while (position < CONTENT_SIZE) {
+			int bytesRead = cache.read(1, buffer, position, buffer.length, reader);
+			assertTrue(bytesRead > 0);
+			System.arraycopy(buffer, 0, result, position, bytesRead);
+			position += bytesRead;
+		}
+		assertArrayEquals(content, result);
+		// Read ahead should make the number of reads much lower than the number of blocks
+		assertTrue("Too many reads: " + reader.readCount, reader.readCount < 6);
+
+		// Reading at the end of the content goes to the reader, as without the cache
+		int readCount = reader.readCount;
+		try {
+			cache.read(1, buffer, CONTENT_SIZE, buffer.length, reader);
+		} catch (TskCoreException ex) {
+			// Expected
+		}
+		assertEquals(readCount + 1, reader.readCount);
+	}
+
+	@Test
+	public void testRepeatedAndStraddlingReads() throws TskCoreException {
+		byte[] content = createContent();
+		FakeReader reader = new FakeReader(content);
+		ContentReadCache cache = new ContentReadCache();
+		cache.setMaxSize(64L * ContentReadCache.BLOCK_SIZE);
+
+		int offset = 3 * ContentReadCache.BLOCK_SIZE - 10;
+		byte[] buffer = new byte[20];
+		assertEquals(20, cache.read(1, buffer, offset, 20, reader));
+		assertArrayEquals(Arrays.copyOfRange(content, offset, offset + 20), buffer);
+		int readCount = reader.readCount;
+
+		byte[] second = new byte[20];
+		assertEquals(20, cache.read(1, second, offset, 20, reader));
+		assertArrayEquals(buffer, second);
+		assertEquals(readCount, reader.readCount);
+		assertTrue(cache.getStatistics().getHitCount() > 0);
+	}
+
+	@Test
+	public void testStatistics() throws TskCoreException {
+		byte[] content = createContent();
+		FakeReader reader = new FakeReader(content);
+		ContentReadCache cache = new ContentReadCache();
+		cache.setMaxSize(64L * ContentReadCache.BLOCK_SIZE);
+
+		// Two cold reads of different blocks are both misses
+		byte[] buffer = new byte[10];
+		cache.read(1, buffer, 0, 10, reader);
+		cache.read(1, buffer, 5L * ContentReadCache.BLOCK_SIZE, 10, reader);
+		assertEquals(0, cache.getStatistics().getHitCount());
+		assertEquals(2, cache.getStatistics().getMissCount());
+
+		cache.read(1, buffer, 0, 10, reader);
+		assertEquals(1, cache.getStatistics().getHitCount());
+		assertEquals(2, cache.getStatistics().getMissCount());
+		assertEquals(2, reader.readCount);
+	}
+
+	@Test
+	public void testInvalidate() throws TskCoreException {
+		byte[] content = createContent();
+		FakeReader reader = new FakeReader(content);
+		ContentReadCache cache = new ContentReadCache();
+		cache.setMaxSize(64L * ContentReadCache.BLOCK_SIZE);
+
+		byte[] buffer = new byte[10];
+		cache.read(1, buffer, 0, 10, reader);
+		cache.read(1, buffer, 0, 10, reader);
+		assertEquals(1, reader.readCount);
+
+		// A closed handle value may be reused for other content
+		cache.invalidate(1);
+		byte[] otherContent = new byte[CONTENT_SIZE];
+		FakeReader otherReader = new FakeReader(otherContent);
+		cache.read(1, buffer, 0, 10, otherReader);
+		assertEquals(1, otherReader.readCount);
+		assertArrayEquals(new byte[10], buffer);
+	}
+}
@@ -47,8 +47,18 @@
 	CaseDbSchemaVersionNumberTest.class,
 	AttributeTest.class,
 	ArtifactTest.class,
+	AggregateScoreBatchingTest.class,
 	OsAccountTest.class,
 	TimelineEventTypesTest.class,
+	ContentReadCacheTest.class,
+	ByteBufferReadsTest.class,
+	TimelineEventCountsTest.class,
+	TimelineEventCountsConsistencyTest.class,
+	TimelinePaginationTest.class,
+	TimelineFilterSQLTest.class,
+	CommunicationsGraphTest.class,
+	HashUtilityTest.class,
+	HasChildrenSnapshotTest.class,
 	
 //  Note: these tests have dependencies on images being placed in the input folder: nps-2009-canon2-gen6, ntfs1-gen, and small2	
 //	org.sleuthkit.datamodel.TopDownTraversal.class, 
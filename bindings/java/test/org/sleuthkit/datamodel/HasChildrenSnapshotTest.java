@@ -0,0 +1,98 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests writing and reading the has children snapshot.
+ */
+public class HasChildrenSnapshotTest {
+
+	private Path snapshotDir;
+	private Path snapshotPath;
+
+	@Before
+	public void setUp() throws IOException {
+		snapshotDir = Files.createTempDirectory("haschildren"); //NON-NLS
+		snapshotPath = snapshotDir.resolve("case.db" + HasChildrenSnapshot.FILE_SUFFIX); //NON-NLS
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(snapshotPath);
+		Files.deleteIfExists(snapshotDir);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		long[] setBits = {1, 63, 65, 65535, 65537, 100003, Integer.MAX_VALUE + 5L, 1L << 40};
+		ConcurrentBitSet bitSet = new ConcurrentBitSet();
+		for (long bit : setBits) {
+			bitSet.set(bit);
+		}
+
+		new HasChildrenSnapshot(123456, 42, 4, bitSet).write(snapshotPath);
+		HasChildrenSnapshot snapshot = HasChildrenSnapshot.read(snapshotPath);
+
+		assertEquals(123456, snapshot.getLastObjId());
+		assertEquals(42, snapshot.getLastParentObjId());
+		assertEquals(4, snapshot.getLastObjType());
+		for (long bit : setBits) {
+			assertTrue(snapshot.getBitSet().get(bit));
+			assertFalse(snapshot.getBitSet().get(bit + 1));
+		}
+		assertFalse(snapshot.getBitSet().get(0));
+		assertEquals(bitSet.getSegmentIndexes(), snapshot.getBitSet().getSegmentIndexes());
+	}
+
+	@Test
+	public void testMissingSnapshot() throws IOException {
+		assertNull(HasChildrenSnapshot.read(snapshotPath));
+	}
+
+	@Test
+	public void testTruncatedSnapshot() throws IOException {
+		ConcurrentBitSet bitSet = new ConcurrentBitSet();
+		for (long bit = 10; bit < 1000; bit++) {
+			bitSet.set(bit);
+		}
+		new HasChildrenSnapshot(1000, 1, 4, bitSet).write(snapshotPath);
+
+		byte[] data = Files.readAllBytes(snapshotPath);
+		Files.write(snapshotPath, Arrays.copyOf(data, data.length - 3));
+		try {
+			HasChildrenSnapshot.read(snapshotPath);
+			fail("Truncated snapshot was read");
+		} catch (IOException ex) {
+			// Expected
+		}
+	}
+}
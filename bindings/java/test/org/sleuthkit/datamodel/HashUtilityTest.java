@@ -0,0 +1,88 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests the hash calculation of HashUtility.
+ */
+public class HashUtilityTest {
+
+	private static final int MAX_READ = 100000;
+
+	private static byte[] createData(int size) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 13 + i / 251);
+		}
+		return data;
+	}
+
+	private static String expectedHash(HashUtility.HashType type, byte[] data) throws NoSuchAlgorithmException {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : MessageDigest.getInstance(type.getName()).digest(data)) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	private static void checkHashes(byte[] data, boolean shortReads) throws Exception {
+		HashUtility.HashDataReader reader = (buffer, offset, len) -> {
+			if (offset >= data.length) {
+				return -1;
+			}
+			int count = (int) Math.min(Math.min(len, buffer.length), data.length - offset);
+			if (shortReads) {
+				count = Math.min(count, MAX_READ);
+			}
+			System.arraycopy(data, (int) offset, buffer, 0, count);
+			return count;
+		};
+		List<HashUtility.HashType> types = Arrays.asList(HashUtility.HashType.MD5, HashUtility.HashType.SHA1, HashUtility.HashType.SHA256);
+		List<HashUtility.HashResult> results = HashUtility.calculateHashes(reader, data.length, 1, types);
+		assertEquals(types.size(), results.size());
+		for (int i = 0; i < types.size(); i++) {
+			assertEquals(types.get(i), results.get(i).getType());
+			assertEquals(expectedHash(types.get(i), data), results.get(i).getValue());
+		}
+	}
+
+	@Test
+	public void testSmallData() throws Exception {
+		checkHashes(new byte[0], false);
+		checkHashes(createData(1000), false);
+	}
+
+	@Test
+	public void testLargeData() throws Exception {
+		checkHashes(createData(1024 * 1024), false);
+		checkHashes(createData(3 * 1024 * 1024 + 17), false);
+	}
+
+	@Test
+	public void testShortReads() throws Exception {
+		checkHashes(createData(2 * 1024 * 1024 + 5), true);
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+
+/**
+ * Tests that the tsk_event_counts table stays equal to the counts of the
+ * tsk_events table as events are added, flagged and deleted.
+ */
+public class TimelineEventCountsConsistencyTest {
+
+	private static final String MODULE_NAME = "TimelineEventCountsConsistencyTest";
+
+	private static final Logger LOGGER = Logger.getLogger(TimelineEventCountsConsistencyTest.class.getName());
+
+	private final static String TEST_DB = "TimelineEventCountsConsistencyTest.db";
+
+	private static final long HOUR = 3600;
+
+	private static final long START_TIME = 1600000000;
+
+	private static SleuthkitCase caseDB;
+
+	private static TimelineManager timelineManager;
+
+	private static Image image;
+
+	private static FileSystem fs;
+
+	private static FsContent root;
+
+	private static TimelineFilter.RootFilter filter;
+
+	@BeforeClass
+	public static void setUpClass() {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		try {
+			String dbPath = Paths.get(tempDirPath, TEST_DB).toString();
+
+			// Delete the DB file, in case
+			java.io.File dbFile = new java.io.File(dbPath);
+			dbFile.delete();
+			if (dbFile.getParentFile() != null) {
+				dbFile.getParentFile().mkdirs();
+			}
+
+			caseDB = SleuthkitCase.newCase(dbPath);
+
+			SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+			image = caseDB.addImage(TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_DETECT, 512, 1024, "", Collections.emptyList(), "America/NewYork", null, null, null, "first", trans);
+			fs = caseDB.addFileSystem(image.getId(), 0, TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_RAW, 0, 0, 0, 0, 0, "", trans);
+			root = caseDB.addFileSystemFile(image.getId(), fs.getId(), "", 0, 0,
+					TskData.TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT, 0, TskData.TSK_FS_NAME_FLAG_ENUM.ALLOC,
+					(short) 0, 200, 0, 0, 0, 0, null, null, null, false, fs, null, null, Collections.emptyList(), trans);
+			trans.commit();
+
+			timelineManager = caseDB.getTimelineManager();
+			filter = new TimelineFilter.RootFilter(null, null, null, null,
+					new TimelineFilter.EventTypeFilter(TimelineEventType.ROOT_EVENT_TYPE), null, null, Collections.emptyList());
+		} catch (TskCoreException ex) {
+			LOGGER.log(Level.SEVERE, "Failed to create new case", ex);
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (caseDB != null) {
+			caseDB.close();
+		}
+	}
+
+	@Test
+	public void testFileEvents() throws TskCoreException {
+		long eventCount = getEventCount();
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		caseDB.addLocalFile("local.txt", "", 10, START_TIME, START_TIME + HOUR, START_TIME + HOUR + 10, START_TIME + 30 * HOUR,
+				true, TskData.EncodingType.NONE, root, trans);
+		trans.commit();
+		assertEquals(eventCount + 4, getEventCount());
+		assertCountsMatch();
+	}
+
+	@Test
+	public void testBatchedFileEvents() throws TskCoreException, TskDataException {
+		long eventCount = getEventCount();
+		TskCaseDbBridge bridge = new TskCaseDbBridge(caseDB, new DefaultAddDataSourceCallbacks(), image.getHost(), 100);
+		for (int i = 0; i < 5; i++) {
+			long time = START_TIME + i * HOUR / 2;
+			assertEquals(0, bridge.addFile(root.getId(), fs.getId(), image.getId(),
+					TskData.TSK_DB_FILES_TYPE_ENUM.FS.getFileType(),
+					TskData.TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT.getValue(), 0, "batched" + i + ".txt",
+					100 + i, 0,
+					TskData.TSK_FS_NAME_TYPE_ENUM.REG.getValue(), TskData.TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG.getValue(),
+					TskData.TSK_FS_NAME_FLAG_ENUM.ALLOC.getValue(), TskData.TSK_FS_META_FLAG_ENUM.ALLOC.getValue(),
+					10,
+					time, time + 1, time + 2 * HOUR, time + 3,
+					0, 0, 0,
+					"/", "txt", 0, 0, 0, ""));
+		}
+		bridge.finish();
+		assertEquals(eventCount + 20, getEventCount());
+		assertCountsMatch();
+	}
+
+	@Test
+	public void testArtifactEventsAndFlags() throws TskCoreException, Blackboard.BlackboardException {
+		long eventCount = getEventCount();
+		List<BlackboardArtifact> artifacts = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			artifacts.add(newEventArtifact(root.getId(), START_TIME + i * 1000));
+		}
+		caseDB.getBlackboard().postArtifacts(artifacts, MODULE_NAME);
+		assertEquals(eventCount + 6, getEventCount());
+		assertCountsMatch();
+
+		// Tagging and untagging moves the events between the tagged counts
+		TagName tagName = caseDB.addOrUpdateTagName("Counts", "", TagName.HTML_COLOR.NONE, TskData.FileKnown.UNKNOWN);
+		BlackboardArtifactTag tag = caseDB.addBlackboardArtifactTag(artifacts.get(0), tagName, "");
+		assertEquals(1, timelineManager.updateEventsForArtifactTagAdded(artifacts.get(0)).size());
+		assertCountsMatch();
+		ContentTag contentTag = caseDB.addContentTag(root, tagName, "", 0, 0);
+		assertTrue(!timelineManager.updateEventsForContentTagAdded(root).isEmpty());
+		assertCountsMatch();
+
+		// Setting a flag that is already set leaves the counts alone
+		timelineManager.updateEventsForArtifactTagAdded(artifacts.get(0));
+		assertCountsMatch();
+
+		caseDB.deleteBlackboardArtifactTag(tag);
+		timelineManager.updateEventsForArtifactTagDeleted(artifacts.get(0));
+		assertCountsMatch();
+		caseDB.deleteContentTag(contentTag);
+		timelineManager.updateEventsForContentTagDeleted(root);
+		assertCountsMatch();
+
+		// Hash hits
+		assertTrue(!timelineManager.updateEventsForHashSetHit(root).isEmpty());
+		assertCountsMatch();
+		assertEquals(eventCount + 6, getEventCount());
+	}
+
+	@Test
+	public void testDeleteAnalysisResult() throws TskCoreException, Blackboard.BlackboardException {
+		long eventCount = getEventCount();
+		AnalysisResult result = root.newAnalysisResult(new BlackboardArtifact.Type(BlackboardArtifact.ARTIFACT_TYPE.TSK_METADATA_EXIF),
+				Score.SCORE_UNKNOWN, null, null, null, Arrays.asList(
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DATETIME_CREATED, MODULE_NAME, START_TIME + 5 * HOUR),
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DEVICE_MAKE, MODULE_NAME, "Make"),
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DEVICE_MODEL, MODULE_NAME, "Model")))
+				.getAnalysisResult();
+		caseDB.getBlackboard().postArtifact(result, MODULE_NAME);
+		assertEquals(eventCount + 1, getEventCount());
+		assertCountsMatch();
+
+		caseDB.getBlackboard().deleteAnalysisResult(result);
+		assertEquals(eventCount, getEventCount());
+		assertCountsMatch();
+	}
+
+	@Test
+	public void testDeleteReport() throws TskCoreException, Blackboard.BlackboardException {
+		long eventCount = getEventCount();
+		Report report = caseDB.addReport(Paths.get(caseDB.getDbDirPath(), "report.html").toString(), MODULE_NAME, "Report", image);
+		caseDB.getBlackboard().postArtifact(newEventArtifact(report.getId(), START_TIME + 7 * HOUR), MODULE_NAME);
+		assertEquals(eventCount + 1, getEventCount());
+		assertCountsMatch();
+
+		caseDB.deleteReport(report);
+		assertEquals(eventCount, getEventCount());
+		assertCountsMatch();
+	}
+
+	/**
+	 * Makes a TSK_TL_EVENT artifact, which has one event at its TSK_DATETIME.
+	 */
+	private static DataArtifact newEventArtifact(long sourceObjId, long time) throws TskCoreException {
+		return caseDB.getBlackboard().newDataArtifact(new BlackboardArtifact.Type(BlackboardArtifact.ARTIFACT_TYPE.TSK_TL_EVENT),
+				sourceObjId, image.getId(), Arrays.asList(
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DATETIME, MODULE_NAME, time),
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DESCRIPTION, MODULE_NAME, "Event at " + time)),
+				null);
+	}
+
+	private static long getEventCount() throws TskCoreException {
+		return getCounts("SELECT 0 AS event_key, COUNT(*) AS event_count FROM tsk_events").getOrDefault("0", 0L);
+	}
+
+	/**
+	 * Checks that every bucket of the tsk_event_counts table has the count of
+	 * the matching events, and that counting events by type with the table
+	 * gives the same counts as counting the events themselves.
+	 */
+	private static void assertCountsMatch() throws TskCoreException {
+		String keyColumns = "tsk_events.event_type_id, tsk_event_descriptions.data_source_obj_id, "
+				+ "tsk_event_descriptions.hash_hit, tsk_event_descriptions.tagged";
+		for (long granularity : TimelineManager.EVENT_COUNT_GRANULARITIES) {
+			String bucketStart = "tsk_events.time - (tsk_events.time % " + granularity + ")";
+			Map<String, Long> expected = getCounts("SELECT " + bucketStart + " || ',' || " + keyColumns.replace(", ", " || ',' || ") + " AS event_key, COUNT(*) AS event_count"
+					+ " FROM tsk_events"
+					+ " JOIN tsk_event_descriptions ON (tsk_event_descriptions.event_description_id = tsk_events.event_description_id)"
+					+ " GROUP BY " + bucketStart + ", " + keyColumns);
+			Map<String, Long> actual = getCounts("SELECT bucket_start || ',' || event_type_id || ',' || data_source_obj_id || ',' || hash_hit || ',' || tagged AS event_key, event_count"
+					+ " FROM tsk_event_counts WHERE granularity = " + granularity + " AND event_count != 0");
+			assertEquals("Granularity " + granularity, expected, actual);
+		}
+
+		// Whole hours only, whole hours and part hours, and part of one hour
+		long[][] timeRanges = {
+			{START_TIME - (START_TIME % HOUR), START_TIME - (START_TIME % HOUR) + 40 * HOUR},
+			{0, START_TIME * 2},
+			{START_TIME + HOUR / 2, START_TIME + 5 * HOUR + 600},
+			{START_TIME + 10, START_TIME + 20}
+		};
+		for (long[] timeRange : timeRanges) {
+			Map<String, Long> expected = getCounts("SELECT event_type_id AS event_key, COUNT(*) AS event_count FROM tsk_events"
+					+ " WHERE time >= " + timeRange[0] + " AND time < " + timeRange[1]
+					+ " GROUP BY event_type_id");
+			Map<String, Long> actual = new HashMap<>();
+			timelineManager.countEventsByType(timeRange[0], timeRange[1], filter, TimelineEventType.HierarchyLevel.EVENT).forEach((type, count) -> {
+				if (count != 0) {
+					actual.put(Long.toString(type.getTypeID()), count);
+				}
+			});
+			assertEquals("Time range " + timeRange[0] + " - " + timeRange[1], expected, actual);
+		}
+	}
+
+	/**
+	 * Runs a query for event_key and event_count columns.
+	 */
+	private static Map<String, Long> getCounts(String query) throws TskCoreException {
+		Map<String, Long> counts = new HashMap<>();
+		try (CaseDbConnection connection = caseDB.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = connection.executeQuery(statement, query)) {
+			while (resultSet.next()) {
+				counts.put(resultSet.getString("event_key"), resultSet.getLong("event_count"));
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error running " + query, ex);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TimelineManager.EventCountRange;
+
+/**
+ * Tests the splitting of time ranges into the time buckets of the timeline
+ * event counts table.
+ */
+public class TimelineEventCountsTest {
+
+	private static final long HOUR = 3600;
+
+	@Test
+	public void testRangeWithoutWholeHours() {
+		assertTrue(TimelineManager.getEventCountRanges(HOUR + 10, 2 * HOUR - 10).isEmpty());
+		assertTrue(TimelineManager.getEventCountRanges(HOUR + 10, 2 * HOUR + 10).isEmpty());
+	}
+
+	@Test
+	public void testRangesCoverWholeHours() {
+		long[][] timeRanges = {
+			{0, HOUR},
+			{1234567, 98765432},
+			{HOUR * 5 + 1, HOUR * 24 * 400 - 1},
+			{1600000000, 1600000000 + HOUR * 24 * 3},
+			{-HOUR * 30, HOUR * 30}
+		};
+		for (long[] timeRange : timeRanges) {
+			List<EventCountRange> ranges = TimelineManager.getEventCountRanges(timeRange[0], timeRange[1]).stream()
+					.sorted(Comparator.comparingLong(EventCountRange::getStart))
+					.collect(Collectors.toList());
+			long expectedStart = Math.floorDiv(timeRange[0] + HOUR - 1, HOUR) * HOUR;
+			long expectedEnd = Math.floorDiv(timeRange[1], HOUR) * HOUR;
+			long position = expectedStart;
+			for (EventCountRange range : ranges) {
+				assertEquals(position, range.getStart());
+				assertTrue(range.getStart() < range.getEnd());
+				assertEquals(0, Math.floorMod(range.getStart(), range.getGranularity()));
+				assertEquals(0, Math.floorMod(range.getEnd(), range.getGranularity()));
+				position = range.getEnd();
+			}
+			assertEquals(expectedEnd, position);
+		}
+	}
+
+	@Test
+	public void testLongRangeUsesCoarseBuckets() {
+		List<EventCountRange> ranges = TimelineManager.getEventCountRanges(0, TimelineManager.EVENT_COUNT_GRANULARITIES[3] * 10);
+		assertEquals(1, ranges.size());
+		assertEquals(TimelineManager.EVENT_COUNT_GRANULARITIES[3], ranges.get(0).getGranularity());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+/**
+ * Tests the parameterized SQL of the timeline filters.
+ */
+public class TimelineFilterSQLTest {
+
+	private static int countPlaceholders(String sql) {
+		return sql.length() - sql.replace("?", "").length();
+	}
+
+	@Test
+	public void testValuesAreParameters() {
+		TimelineFilter.DataSourcesFilter dataSourcesFilter = new TimelineFilter.DataSourcesFilter();
+		dataSourcesFilter.addSubFilter(new TimelineFilter.DataSourceFilter("first", 1));
+		dataSourcesFilter.addSubFilter(new TimelineFilter.DataSourceFilter("second", 2));
+		List<TimelineFilter> filters = Arrays.asList(
+				new TimelineFilter.TagsFilter(true),
+				new TimelineFilter.HashHitsFilter(false),
+				new TimelineFilter.TextFilter("it's"),
+				new TimelineFilter.EventTypeFilter(TimelineEventType.FILE_SYSTEM),
+				dataSourcesFilter);
+
+		for (TimelineFilter filter : filters) {
+			List<Object> parameters = new ArrayList<>();
+			String sql = filter.getParameterizedSQLWhere(null, parameters);
+			assertFalse(parameters.isEmpty());
+			assertEquals(sql, parameters.size(), countPlaceholders(sql));
+			assertFalse(sql, sql.contains("'"));
+		}
+	}
+
+	@Test
+	public void testSameStructureHasSameSQL() {
+		List<Object> firstParameters = new ArrayList<>();
+		List<Object> secondParameters = new ArrayList<>();
+		String firstSql = new TimelineFilter.DataSourceFilter("first", 1).getParameterizedSQLWhere(null, firstParameters);
+		String secondSql = new TimelineFilter.DataSourceFilter("second", 2).getParameterizedSQLWhere(null, secondParameters);
+		assertEquals(firstSql, secondSql);
+		assertEquals(Arrays.asList(1L), firstParameters);
+		assertEquals(Arrays.asList(2L), secondParameters);
+
+		List<Object> textParameters = new ArrayList<>();
+		new TimelineFilter.TextFilter("it's").getParameterizedSQLWhere(null, textParameters);
+		assertEquals(Arrays.asList("%it's%", "%it's%", "%it's%"), textParameters);
+	}
+
+	private static TimelineFilter.RootFilter createRootFilter(Collection<TimelineFilter> additionalFilters) {
+		return new TimelineFilter.RootFilter(new TimelineFilter.HideKnownFilter(), new TimelineFilter.TagsFilter(),
+				new TimelineFilter.HashHitsFilter(), new TimelineFilter.TextFilter(),
+				new TimelineFilter.EventTypeFilter(TimelineEventType.ROOT_EVENT_TYPE),
+				new TimelineFilter.DataSourcesFilter(), new TimelineFilter.FileTypesFilter(), additionalFilters);
+	}
+
+	@Test
+	public void testAdditionalFilterChangesRootFilter() {
+		TimelineFilter.RootFilter plain = createRootFilter(Collections.emptyList());
+		TimelineFilter.RootFilter withExtra = createRootFilter(Arrays.asList(new TimelineFilter.DataSourceFilter("extra", 5)));
+
+		// The compiled filters are cached by root filter, so filters with
+		// different SQL must not be equal either way
+		assertFalse(plain.equals(withExtra));
+		assertFalse(withExtra.equals(plain));
+		assertFalse(plain.hashCode() == withExtra.hashCode());
+		assertEquals(plain, createRootFilter(Collections.emptyList()));
+		assertEquals(plain.hashCode(), createRootFilter(Collections.emptyList()).hashCode());
+		assertEquals(withExtra, withExtra.copyOf());
+		assertEquals(withExtra.hashCode(), withExtra.copyOf().hashCode());
+		assertFalse(withExtra.equals(createRootFilter(Arrays.asList(new TimelineFilter.DataSourceFilter("other", 6)))));
+	}
+}
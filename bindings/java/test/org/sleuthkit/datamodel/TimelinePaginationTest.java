@@ -0,0 +1,197 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the keyset pagination and streaming of timeline events.
+ */
+public class TimelinePaginationTest {
+
+	private static final String MODULE_NAME = "TimelinePaginationTest";
+
+	private static final Logger LOGGER = Logger.getLogger(TimelinePaginationTest.class.getName());
+
+	private final static String TEST_DB = "TimelinePaginationTest.db";
+
+	private static final long START_TIME = 1600000000;
+
+	/**
+	 * Event times, with runs of equal times so that pages end in the middle
+	 * of a run.
+	 */
+	private static final long[] EVENT_TIMES = {
+		START_TIME, START_TIME, START_TIME, START_TIME, START_TIME,
+		START_TIME + 10,
+		START_TIME + 20, START_TIME + 20,
+		START_TIME + 30, START_TIME + 30, START_TIME + 30, START_TIME + 30,
+		START_TIME + 40
+	};
+
+	private static SleuthkitCase caseDB;
+
+	private static TimelineManager timelineManager;
+
+	private static Interval timeRange;
+
+	private static TimelineFilter.RootFilter filter;
+
+	@BeforeClass
+	public static void setUpClass() {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		try {
+			String dbPath = Paths.get(tempDirPath, TEST_DB).toString();
+
+			// Delete the DB file, in case
+			java.io.File dbFile = new java.io.File(dbPath);
+			dbFile.delete();
+			if (dbFile.getParentFile() != null) {
+				dbFile.getParentFile().mkdirs();
+			}
+
+			caseDB = SleuthkitCase.newCase(dbPath);
+
+			SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+			Image image = caseDB.addImage(TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_DETECT, 512, 1024, "", Collections.emptyList(), "America/NewYork", null, null, null, "first", trans);
+			FileSystem fs = caseDB.addFileSystem(image.getId(), 0, TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_RAW, 0, 0, 0, 0, 0, "", trans);
+			FsContent root = caseDB.addFileSystemFile(image.getId(), fs.getId(), "", 0, 0,
+					TskData.TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT, 0, TskData.TSK_FS_NAME_FLAG_ENUM.ALLOC,
+					(short) 0, 200, 0, 0, 0, 0, null, null, null, false, fs, null, null, Collections.emptyList(), trans);
+			trans.commit();
+
+			// One TSK_TL_EVENT artifact makes one event at its TSK_DATETIME
+			List<BlackboardArtifact> artifacts = new ArrayList<>();
+			for (int i = 0; i < EVENT_TIMES.length; i++) {
+				artifacts.add(root.newDataArtifact(new BlackboardArtifact.Type(BlackboardArtifact.ARTIFACT_TYPE.TSK_TL_EVENT), Arrays.asList(
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DATETIME, MODULE_NAME, EVENT_TIMES[i]),
+						new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DESCRIPTION, MODULE_NAME, "Event " + i))));
+			}
+			caseDB.getBlackboard().postArtifacts(artifacts, MODULE_NAME);
+
+			timelineManager = caseDB.getTimelineManager();
+			timeRange = new Interval(START_TIME * 1000, (START_TIME + 100) * 1000, DateTimeZone.UTC);
+			filter = new TimelineFilter.RootFilter(null, null, null, null,
+					new TimelineFilter.EventTypeFilter(TimelineEventType.ROOT_EVENT_TYPE), null, null, Collections.emptyList());
+		} catch (TskCoreException | Blackboard.BlackboardException ex) {
+			LOGGER.log(Level.SEVERE, "Failed to create new case", ex);
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (caseDB != null) {
+			caseDB.close();
+		}
+	}
+
+	private static List<Long> getEventIDs(List<TimelineEvent> events) {
+		return events.stream().map(TimelineEvent::getEventID).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testAllEventsOrdered() throws TskCoreException {
+		List<TimelineEvent> events = timelineManager.getEvents(timeRange, filter);
+		assertEquals(EVENT_TIMES.length, events.size());
+		for (int i = 1; i < events.size(); i++) {
+			TimelineEvent previous = events.get(i - 1);
+			TimelineEvent event = events.get(i);
+			assertTrue(previous.getTime() < event.getTime()
+					|| (previous.getTime() == event.getTime() && previous.getEventID() < event.getEventID()));
+		}
+	}
+
+	@Test
+	public void testPagesCoverAllEventsOnce() throws TskCoreException {
+		List<Long> expectedIDs = getEventIDs(timelineManager.getEvents(timeRange, filter));
+
+		// Page sizes that end pages inside runs of equal times, on the last
+		// event and past the last event
+		for (int pageSize : new int[]{1, 2, 3, 4, EVENT_TIMES.length, EVENT_TIMES.length + 1}) {
+			List<Long> pagedIDs = new ArrayList<>();
+			TimelineEvent afterEvent = null;
+			int pageCount = 0;
+			while (true) {
+				List<TimelineEvent> page = timelineManager.getEvents(timeRange, filter, afterEvent, pageSize, TimelineLevelOfDetail.HIGH);
+				assertTrue(page.size() <= pageSize);
+				pagedIDs.addAll(getEventIDs(page));
+				pageCount++;
+				assertTrue("Too many pages for page size " + pageSize, pageCount <= EVENT_TIMES.length + 1);
+				if (page.size() < pageSize) {
+					break;
+				}
+				afterEvent = page.get(page.size() - 1);
+			}
+			assertEquals("Page size " + pageSize, expectedIDs, pagedIDs);
+			assertEquals(EVENT_TIMES.length / pageSize + 1, pageCount);
+		}
+	}
+
+	@Test
+	public void testPageAfterEqualTimes() throws TskCoreException {
+		List<TimelineEvent> firstPage = timelineManager.getEvents(timeRange, filter, null, 2, TimelineLevelOfDetail.HIGH);
+		assertEquals(2, firstPage.size());
+		assertEquals(START_TIME, firstPage.get(1).getTime());
+
+		// The next page continues with the other events at the same time
+		List<TimelineEvent> secondPage = timelineManager.getEvents(timeRange, filter, firstPage.get(1), 4, TimelineLevelOfDetail.HIGH);
+		assertEquals(4, secondPage.size());
+		assertEquals(START_TIME, secondPage.get(0).getTime());
+		assertEquals(START_TIME, secondPage.get(2).getTime());
+		assertEquals(START_TIME + 10, secondPage.get(3).getTime());
+		Set<Long> firstPageIDs = new HashSet<>(getEventIDs(firstPage));
+		for (TimelineEvent event : secondPage) {
+			assertTrue(!firstPageIDs.contains(event.getEventID()));
+		}
+
+		// Nothing after the last event
+		List<TimelineEvent> events = timelineManager.getEvents(timeRange, filter);
+		assertTrue(timelineManager.getEvents(timeRange, filter, events.get(events.size() - 1), 10, TimelineLevelOfDetail.HIGH).isEmpty());
+	}
+
+	@Test
+	public void testStreamMatchesList() throws TskCoreException {
+		List<Long> expectedIDs = getEventIDs(timelineManager.getEvents(timeRange, filter));
+		try (Stream<TimelineEvent> events = timelineManager.streamEvents(timeRange, filter, TimelineLevelOfDetail.HIGH)) {
+			assertEquals(expectedIDs, events.map(TimelineEvent::getEventID).collect(Collectors.toList()));
+		}
+
+		// The stream can stop early
+		try (Stream<TimelineEvent> events = timelineManager.streamEvents(timeRange, filter, TimelineLevelOfDetail.HIGH)) {
+			assertEquals(expectedIDs.subList(0, 3), events.limit(3).map(TimelineEvent::getEventID).collect(Collectors.toList()));
+		}
+	}
+}
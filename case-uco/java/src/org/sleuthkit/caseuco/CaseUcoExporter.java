@@ -162,6 +162,20 @@ public final CaseUcoExporter setUUIDService(CaseUcoUUIDService uuidService) {
         return this;
     }
 
+    /**
+     * Gets the sleuthkit case instance containing the data to be exported.
+     */
+    SleuthkitCase getSleuthkitCase() {
+        return this.sleuthkitCase;
+    }
+
+    /**
+     * Gets the Gson instance used to serialize the CASE output.
+     */
+    Gson getGson() {
+        return this.gson;
+    }
+
     /**
      * Exports the SleuthkitCase instance passed during initialization to CASE.
      *
@@ -0,0 +1,346 @@
+/*
+ * Sleuth Kit CASE JSON LD Support
+ *
+ * Copyright 2021 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.caseuco;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.ContentTag;
+import org.sleuthkit.datamodel.DataSource;
+import org.sleuthkit.datamodel.FileSystem;
+import org.sleuthkit.datamodel.Pool;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+import org.sleuthkit.datamodel.Volume;
+import org.sleuthkit.datamodel.VolumeSystem;
+import org.sleuthkit.datamodel.blackboardutils.attributes.BlackboardJsonAttrUtil;
+
+/**
+ * Exports a whole Sleuth Kit case to CASE, writing the CASE JSON objects to a
+ * JsonWriter or OutputStream as they are produced. The case is read in pages,
+ * in object id order, and the objects are serialized by a pool of worker
+ * threads. The output is written in the same order as a single threaded
+ * export, and only a bounded number of objects are held in memory at once.
+ *
+ * The objects are exported with a CaseUcoExporter, so the exporter
+ * configuration properties and UUID service apply to the streamed output. When
+ * more than one thread is used, a custom UUID service must be thread safe.
+ *
+ * NOTE: The streaming exporter behavior can be configured by passing
+ * configuration parameters in a custom Properties instance. A list of
+ * available configuration properties can be found in the README.md file.
+ */
+public class CaseUcoStreamingExporter {
+
+    private static final Logger logger = Logger.getLogger(CaseUcoStreamingExporter.class.getName());
+
+    private static final String THREAD_COUNT_PROP = "exporter.streaming.threads";
+
+    // The number of files or artifacts read from the case per query
+    private static final int PAGE_SIZE = 1000;
+
+    // The number of objects each thread may have queued or finished but not written
+    private static final int PENDING_OBJECTS_PER_THREAD = 64;
+
+    private final CaseUcoExporter exporter;
+    private final SleuthkitCase sleuthkitCase;
+    private final int threadCount;
+
+    /**
+     * Creates a CaseUcoStreamingExporter that uses one thread per available
+     * processor.
+     *
+     * @param exporter The exporter used to export each object.
+     */
+    public CaseUcoStreamingExporter(CaseUcoExporter exporter) {
+        this(exporter, new Properties());
+    }
+
+    /**
+     * Creates a CaseUcoStreamingExporter configured to the properties present
+     * in the Properties instance.
+     *
+     * A list of available configuration properties can be found in the
+     * README.md file.
+     *
+     * @param exporter The exporter used to export each object.
+     * @param props Properties instance containing supported configuration
+     * parameters.
+     */
+    public CaseUcoStreamingExporter(CaseUcoExporter exporter, Properties props) {
+        this.exporter = exporter;
+        this.sleuthkitCase = exporter.getSleuthkitCase();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String threadsProp = props.getProperty(THREAD_COUNT_PROP);
+        if (threadsProp != null) {
+            try {
+                threads = Integer.parseInt(threadsProp.trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid value for " + THREAD_COUNT_PROP + ": " + threadsProp, ex);
+            }
+        }
+        this.threadCount = Math.max(1, threads);
+    }
+
+    /**
+     * Exports the whole case to CASE as a JSON array of CASE JSON objects,
+     * written to the OutputStream in UTF-8. The stream is flushed but not
+     * closed.
+     *
+     * @param outputStream The stream to write to.
+     *
+     * @throws IOException If an error occurred writing the output.
+     * @throws TskCoreException If an error occurred during database access.
+     */
+    public void exportSleuthkitCase(OutputStream outputStream) throws IOException, TskCoreException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        writer.beginArray();
+        exportSleuthkitCase(writer);
+        writer.endArray();
+        writer.flush();
+    }
+
+    /**
+     * Exports the whole case to CASE, writing each CASE JSON object as a value
+     * of the JsonWriter. The caller is responsible for opening and closing the
+     * enclosing JSON array, for example the "@graph" array of a JSON-LD
+     * document.
+     *
+     * The case, its data sources, volume systems, volumes, pools and file
+     * systems, files, artifacts and content tags are written in that order,
+     * each in object id order. Artifacts that can not be exported to CASE are
+     * skipped.
+     *
+     * @param writer The writer to write to.
+     *
+     * @throws IOException If an error occurred writing the output.
+     * @throws TskCoreException If an error occurred during database access.
+     */
+    public void exportSleuthkitCase(JsonWriter writer) throws IOException, TskCoreException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            OrderedOutput output = new OrderedOutput(writer, executor, exporter.getGson(), threadCount * PENDING_OBJECTS_PER_THREAD);
+
+            output.add(() -> exporter.exportSleuthkitCase());
+
+            List<DataSource> dataSources = sleuthkitCase.getDataSources();
+            dataSources.sort(Comparator.comparingLong(DataSource::getId));
+            Set<Long> dataSourceIds = new HashSet<>();
+            for (DataSource dataSource : dataSources) {
+                dataSourceIds.add(dataSource.getId());
+                output.add(() -> exporter.exportDataSource(dataSource));
+            }
+
+            for (long objId : getObjectIds(TskData.ObjectType.VS, TskData.ObjectType.VOL, TskData.ObjectType.POOL, TskData.ObjectType.FS)) {
+                output.add(() -> exportContent(objId));
+            }
+
+            long lastFileId = -1;
+            List<AbstractFile> files;
+            do {
+                files = sleuthkitCase.findAllFilesWhere("obj_id > " + lastFileId + " ORDER BY obj_id LIMIT " + PAGE_SIZE);
+                for (AbstractFile file : files) {
+                    lastFileId = file.getId();
+                    // Local files data sources are stored as files, but were exported above
+                    if (!dataSourceIds.contains(file.getId())) {
+                        output.add(() -> exporter.exportAbstractFile(file));
+                    }
+                }
+            } while (files.size() == PAGE_SIZE);
+
+            long lastArtifactId = -1;
+            List<BlackboardArtifact> artifacts;
+            do {
+                artifacts = sleuthkitCase.getMatchingArtifacts("WHERE blackboard_artifacts.artifact_obj_id > " + lastArtifactId
+                        + " ORDER BY blackboard_artifacts.artifact_obj_id LIMIT " + PAGE_SIZE);
+                for (BlackboardArtifact artifact : artifacts) {
+                    lastArtifactId = artifact.getId();
+                    output.add(() -> exportArtifact(artifact));
+                }
+            } while (artifacts.size() == PAGE_SIZE);
+
+            List<ContentTag> contentTags = sleuthkitCase.getAllContentTags();
+            contentTags.sort(Comparator.comparingLong(ContentTag::getId));
+            for (ContentTag contentTag : contentTags) {
+                output.add(() -> exporter.exportContentTag(contentTag));
+            }
+
+            output.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the ids of the objects of the given types, in id order.
+     */
+    private List<Long> getObjectIds(TskData.ObjectType... types) throws TskCoreException {
+        StringBuilder typeList = new StringBuilder();
+        for (TskData.ObjectType type : types) {
+            if (typeList.length() > 0) {
+                typeList.append(",");
+            }
+            typeList.append(type.getObjectType());
+        }
+
+        List<Long> objIds = new ArrayList<>();
+        try (SleuthkitCase.CaseDbQuery query = sleuthkitCase.executeQuery(
+                "SELECT obj_id FROM tsk_objects WHERE type IN (" + typeList + ") ORDER BY obj_id")) {
+            ResultSet resultSet = query.getResultSet();
+            while (resultSet.next()) {
+                objIds.add(resultSet.getLong("obj_id"));
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error getting object ids", ex);
+        }
+        return objIds;
+    }
+
+    /**
+     * Exports a volume system, volume, pool or file system.
+     */
+    private List<JsonElement> exportContent(long objId) throws TskCoreException {
+        Content content = sleuthkitCase.getContentById(objId);
+        if (content instanceof VolumeSystem) {
+            return exporter.exportVolumeSystem((VolumeSystem) content);
+        } else if (content instanceof Volume) {
+            return exporter.exportVolume((Volume) content);
+        } else if (content instanceof Pool) {
+            return exporter.exportPool((Pool) content);
+        } else if (content instanceof FileSystem) {
+            return exporter.exportFileSystem((FileSystem) content);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Exports an artifact, skipping it if it can not be exported.
+     */
+    private List<JsonElement> exportArtifact(BlackboardArtifact artifact) throws TskCoreException {
+        try {
+            return exporter.exportBlackboardArtifact(artifact);
+        } catch (ContentNotExportableException ex) {
+            return new ArrayList<>();
+        } catch (BlackboardJsonAttrUtil.InvalidJsonException ex) {
+            logger.log(Level.WARNING, "Skipping artifact with invalid JSON attribute, artifact id: " + artifact.getArtifactID(), ex);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Exports one object to CASE.
+     */
+    @FunctionalInterface
+    private interface ExportTask {
+
+        List<JsonElement> export() throws TskCoreException;
+    }
+
+    /**
+     * Runs export tasks on a thread pool and writes their output in the order
+     * the tasks were added. Adding a task blocks while too many tasks are
+     * queued or finished but not written.
+     */
+    private static final class OrderedOutput {
+
+        private final JsonWriter writer;
+        private final ExecutorService executor;
+        private final Gson gson;
+        private final int maxPending;
+        private final Deque<Future<List<String>>> pending = new ArrayDeque<>();
+
+        OrderedOutput(JsonWriter writer, ExecutorService executor, Gson gson, int maxPending) {
+            this.writer = writer;
+            this.executor = executor;
+            this.gson = gson;
+            this.maxPending = maxPending;
+        }
+
+        /**
+         * Adds an export task, whose output is serialized on the thread pool.
+         */
+        void add(ExportTask task) throws IOException, TskCoreException {
+            while (pending.size() >= maxPending) {
+                writeNext();
+            }
+            pending.add(executor.submit(() -> {
+                List<String> json = new ArrayList<>();
+                for (JsonElement element : task.export()) {
+                    json.add(gson.toJson(element));
+                }
+                return json;
+            }));
+        }
+
+        /**
+         * Writes the output of all of the tasks that were added.
+         */
+        void finish() throws IOException, TskCoreException {
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        }
+
+        private void writeNext() throws IOException, TskCoreException {
+            Future<List<String>> next = pending.poll();
+            List<String> json;
+            try {
+                json = next.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new TskCoreException("Interrupted while exporting to CASE", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof TskCoreException) {
+                    throw (TskCoreException) ex.getCause();
+                }
+                throw new TskCoreException("Error exporting to CASE", ex);
+            }
+            for (String value : json) {
+                writer.jsonValue(value);
+            }
+        }
+    }
+}
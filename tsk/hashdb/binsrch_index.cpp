@@ -11,6 +11,9 @@
 #include "tsk_hashdb_i.h"
 #include "tsk_hash_info.h"
 
+#include <algorithm>
+#include <vector>
+
 /**
 * \file binsrch_index.cpp
 * Functions common to all text hash databases (i.e. NSRL, HashKeeper, EnCase, etc.).
@@ -1522,6 +1525,231 @@ int8_t
     return tsk_hdb_lookup_str(hdb_info, hashbuf, flags, action, ptr);
 }
 
+/**
+* \internal
+* Reads the index file line at the given offset into idx_lbuf and 
+* terminates the hash value in it.  The caller must hold the lock.
+*
+* @param hdb_binsrch_info Open hash database (with index)
+* @param offset Offset of the line in the index file
+*
+* @return -1 on error, 1 if the offset is at the end of the file and 0 
+* if the line was read.
+*/
+static int8_t
+    hdb_binsrch_read_idx_line(TSK_HDB_BINSRCH_INFO * hdb_binsrch_info, TSK_OFF_T offset)
+{
+    if (0 != fseeko(hdb_binsrch_info->hIdx, offset, SEEK_SET)) {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_READIDX);
+        tsk_error_set_errstr(
+            "hdb_binsrch_read_idx_line: Error seeking in search: %" PRIdOFF,
+            offset);
+        return -1;
+    }
+
+    if (NULL ==
+        fgets(hdb_binsrch_info->idx_lbuf, (int) hdb_binsrch_info->idx_llen + 1,
+        hdb_binsrch_info->hIdx)) {
+            if (feof(hdb_binsrch_info->hIdx)) {
+                return 1;
+            }
+            tsk_error_reset();
+            tsk_error_set_errno(TSK_ERR_HDB_READIDX);
+            tsk_error_set_errstr(
+                "Error reading index file: %lu",
+                (unsigned long) offset);
+            return -1;
+    }
+
+    if ((strlen(hdb_binsrch_info->idx_lbuf) < hdb_binsrch_info->idx_llen) ||
+        (hdb_binsrch_info->idx_lbuf[hdb_binsrch_info->hash_len] != '|')) {
+            tsk_error_reset();
+            tsk_error_set_errno(TSK_ERR_HDB_CORRUPT);
+            tsk_error_set_errstr(
+                "Invalid line in index file: %lu (%s)",
+                (unsigned long) (offset / hdb_binsrch_info->idx_llen),
+                hdb_binsrch_info->idx_lbuf);
+            return -1;
+    }
+
+    hdb_binsrch_info->idx_lbuf[hdb_binsrch_info->hash_len] = '\0';
+    return 0;
+}
+
+/**
+* \ingroup hashdblib
+* \internal
+* Search the index for a set of hash values (in binary form).  The hash 
+* values are sorted and the index is walked once: the search for each 
+* value starts where the search for the previous (smaller) value ended.
+* See tsk_hdb_lookup_raw_batch() for details.
+*
+* @param hdb_info_base Open hash database (with index)
+* @param hashes Array with count binary hash values of len bytes each
+* @param count Number of hash values in the array
+* @param len Number of bytes in each binary hash value
+* @param hits Zeroed bitmap with a bit to set for each hash value found
+*
+* @return -1 on error, otherwise the number of hash values found.
+*/
+int64_t
+    hdb_binsrch_lookup_raw_batch(TSK_HDB_INFO * hdb_info_base, const uint8_t * hashes,
+    size_t count, uint8_t len, uint8_t * hits)
+{
+    const char *func_name = "hdb_binsrch_lookup_raw_batch";
+    TSK_HDB_BINSRCH_INFO *hdb_binsrch_info = (TSK_HDB_BINSRCH_INFO*)hdb_info_base; 
+    static const char hex[] = "0123456789ABCDEF";
+    char ucHash[TSK_HDB_HTYPE_SHA1_LEN + 1];
+    TSK_HDB_HTYPE_ENUM htype;
+    TSK_OFF_T cursor = 0;       // Offset of the first entry that may hold the next hash
+    const uint8_t *prevHash = NULL;
+    int prevFound = 0;
+    int64_t hitCount = 0;
+    size_t i;
+
+    if (2 * len == TSK_HDB_HTYPE_MD5_LEN) {
+        htype = TSK_HDB_HTYPE_MD5_ID;
+    }
+    else if (2 * len == TSK_HDB_HTYPE_SHA1_LEN) {
+        htype = TSK_HDB_HTYPE_SHA1_ID;
+    }
+    else {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_ARG);
+        tsk_error_set_errstr(
+            "%s: Invalid hash length: %d", func_name, (int) len);
+        return -1;
+    }
+
+    if (count == 0) {
+        return 0;
+    }
+
+    // verify the index is open
+    if (hdb_binsrch_open_idx(hdb_info_base, htype))
+        return -1;
+
+    if (hdb_binsrch_info->hash_len != 2 * (size_t) len) {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_ARG);
+        tsk_error_set_errstr(
+            "%s: Hash passed is different size than expected (%d vs %d)",
+            func_name, hdb_binsrch_info->hash_len, 2 * (int) len);
+        return -1;
+    }
+    else if (hdb_binsrch_info->idx_llen == 0) {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_CORRUPT);
+        tsk_error_set_errstr(
+            "%s: Error: Index line length is zero", func_name);
+        return -1;
+    }
+
+    // Comparing the binary values gives the same order as comparing the 
+    // hex strings in the index.
+    std::vector<size_t> order(count);
+    for (i = 0; i < count; i++) {
+        order[i] = i;
+    }
+    std::sort(order.begin(), order.end(), [hashes, len](size_t a, size_t b) {
+        return memcmp(&hashes[a * len], &hashes[b * len], len) < 0;
+    });
+
+    tsk_take_lock(&hdb_binsrch_info->base.lock);
+
+    for (size_t n = 0; n < count; n++) {
+        size_t hashIdx = order[n];
+        const uint8_t *hash = &hashes[hashIdx * len];
+        int found = 0;
+
+        if ((prevHash != NULL) && (memcmp(prevHash, hash, len) == 0)) {
+            found = prevFound;
+        }
+        else {
+            TSK_OFF_T low;
+            TSK_OFF_T up;
+            TSK_OFF_T lo;
+            TSK_OFF_T hi;
+
+            for (i = 0; i < len; i++) {
+                ucHash[2 * i] = hex[(hash[i] >> 4) & 0xf];
+                ucHash[2 * i + 1] = hex[hash[i] & 0xf];
+            }
+            ucHash[2 * len] = '\0';
+
+            // Bound the search by the index of the index file, as is done
+            // in hdb_binsrch_lookup_str().
+            if (hdb_binsrch_info->idx_offsets) {
+                size_t idx_idx_off = ((size_t) hash[0] << 4) | (hash[1] >> 4);
+                low = hdb_binsrch_info->idx_offsets[idx_idx_off];
+                up = hdb_binsrch_info->idx_size;
+                if (IDX_IDX_ENTRY_NOT_SET == (uint64_t)low) {
+                    prevHash = hash;
+                    prevFound = 0;
+                    continue;
+                }
+                for (++idx_idx_off; idx_idx_off < IDX_IDX_ENTRY_COUNT; ++idx_idx_off) {
+                    if (IDX_IDX_ENTRY_NOT_SET != hdb_binsrch_info->idx_offsets[idx_idx_off]) {
+                        up = hdb_binsrch_info->idx_offsets[idx_idx_off];
+                        break;
+                    }
+                }
+            }
+            else {
+                low = hdb_binsrch_info->idx_off;
+                up = hdb_binsrch_info->idx_size;
+            }
+
+            // Nothing before the cursor can match since the hashes are sorted
+            if (cursor > low) {
+                low = cursor;
+            }
+
+            // Find the first line (counted from low) that is not smaller
+            // than the hash
+            lo = 0;
+            hi = (up > low) ? (up - low) / hdb_binsrch_info->idx_llen : 0;
+            while (lo < hi) {
+                TSK_OFF_T mid = lo + (hi - lo) / 2;
+                int8_t retval = hdb_binsrch_read_idx_line(hdb_binsrch_info,
+                    low + mid * hdb_binsrch_info->idx_llen);
+                if (retval == -1) {
+                    tsk_release_lock(&hdb_binsrch_info->base.lock);
+                    tsk_error_set_errstr2("%s", func_name);
+                    return -1;
+                }
+                else if (retval == 1) {
+                    hi = mid;
+                    continue;
+                }
+
+                int cmp = strcasecmp(hdb_binsrch_info->idx_lbuf, ucHash);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                }
+                else {
+                    if (cmp == 0) {
+                        found = 1;
+                    }
+                    hi = mid;
+                }
+            }
+            cursor = low + lo * hdb_binsrch_info->idx_llen;
+        }
+
+        if (found) {
+            hits[hashIdx / 8] |= (uint8_t) (1 << (hashIdx % 8));
+            hitCount++;
+        }
+        prevHash = hash;
+        prevFound = found;
+    }
+
+    tsk_release_lock(&hdb_binsrch_info->base.lock);
+    return hitCount;
+}
+
 /**
 * \ingroup hashdblib
 * \internal 
@@ -433,6 +433,67 @@ int8_t
     return hdb_info->lookup_raw(hdb_info, hash, len, flags, action, ptr);
 }
 
+/**
+* \ingroup hashdblib
+* Search the index for a set of hash values (in binary form).  The 
+* lookups are done with the QUICK flag, so only a yes/no answer is 
+* given for each hash.  For text hash databases the hashes are sorted 
+* and the index is walked once, which is much faster than looking the 
+* values up one at a time.
+*
+* @param hdb_info Open hash database (with index)
+* @param hashes Array with count binary hash values of len bytes each
+* @param count Number of hash values in the array
+* @param len Number of bytes in each binary hash value
+* @param hits Array of at least (count + 7) / 8 bytes that will be 
+* filled in with a bit for each hash value (bit i % 8 of byte i / 8 
+* is set if hash value i was found)
+*
+* @return -1 on error, otherwise the number of hash values found.
+*/
+int64_t
+    tsk_hdb_lookup_raw_batch(TSK_HDB_INFO * hdb_info, const uint8_t * hashes,
+    size_t count, uint8_t len, uint8_t * hits)
+{
+    size_t i;
+    int64_t hitCount = 0;
+
+    if (!hdb_info) {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_ARG);
+        tsk_error_set_errstr("tsk_hdb_lookup_raw_batch: NULL hdb_info");
+        return -1;
+    }
+
+    if ((count > 0) && ((!hashes) || (!hits))) {
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_ARG);
+        tsk_error_set_errstr("tsk_hdb_lookup_raw_batch: NULL hashes or hits");
+        return -1;
+    }
+
+    memset(hits, 0, (count + 7) / 8);
+
+    if (hdb_info->lookup_raw == hdb_binsrch_lookup_bin) {
+        return hdb_binsrch_lookup_raw_batch(hdb_info, hashes, count, len, hits);
+    }
+
+    // Other database types do not have a sorted index to walk, so
+    // look the values up one at a time.
+    for (i = 0; i < count; i++) {
+        int8_t retval = hdb_info->lookup_raw(hdb_info, (uint8_t *) &hashes[i * len],
+            len, TSK_HDB_FLAG_QUICK, NULL, NULL);
+        if (retval == -1) {
+            return -1;
+        }
+        else if (retval == 1) {
+            hits[i / 8] |= (uint8_t) (1 << (i % 8));
+            hitCount++;
+        }
+    }
+    return hitCount;
+}
+
 int8_t
     tsk_hdb_lookup_verbose_str(TSK_HDB_INFO *hdb_info, const char *hash, void *result)
 {
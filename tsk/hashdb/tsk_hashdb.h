@@ -181,6 +181,8 @@ extern "C" {
         TSK_HDB_FLAG_ENUM, TSK_HDB_LOOKUP_FN, void *);
     extern int8_t tsk_hdb_lookup_raw(TSK_HDB_INFO *, uint8_t *, uint8_t, 
         TSK_HDB_FLAG_ENUM,  TSK_HDB_LOOKUP_FN, void *);
+    extern int64_t tsk_hdb_lookup_raw_batch(TSK_HDB_INFO *, const uint8_t *,
+        size_t, uint8_t, uint8_t *);
     extern int8_t tsk_hdb_lookup_verbose_str(TSK_HDB_INFO *, const char *, void *);
     extern uint8_t tsk_hdb_accepts_updates(TSK_HDB_INFO *);
     extern uint8_t tsk_hdb_add_entry(TSK_HDB_INFO *, const char*, const char*, 
@@ -92,6 +92,8 @@ extern "C" {
     extern int8_t hdb_binsrch_lookup_bin(TSK_HDB_INFO *, uint8_t *, 
         uint8_t, TSK_HDB_FLAG_ENUM, 
         TSK_HDB_LOOKUP_FN, void *);
+    extern int64_t hdb_binsrch_lookup_raw_batch(TSK_HDB_INFO *, const uint8_t *,
+        size_t, uint8_t, uint8_t *);
     extern int8_t hdb_binsrch_lookup_verbose_str(TSK_HDB_INFO *, const char *, void *);
     extern uint8_t hdb_binsrch_accepts_updates();
     extern void hdb_binsrch_close(TSK_HDB_INFO *) ;